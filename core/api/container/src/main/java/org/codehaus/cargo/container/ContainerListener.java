@@ -0,0 +1,47 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container;
+
+/**
+ * Listener that is triggered when the state of a {@link LocalContainer} changes or when the
+ * container's server ends on its own. Listeners are called in the thread that caused the event
+ * and should therefore return quickly.
+ */
+public interface ContainerListener
+{
+    /**
+     * The state of the container has changed.
+     * @param container the container
+     * @param previousState the state the container was in
+     * @param state the new state of the container
+     */
+    void stateChanged(LocalContainer container, State previousState, State state);
+
+    /**
+     * The container's server has ended, either because the container has been stopped or on its
+     * own. This event is published before the resulting state change, if any.
+     * @param container the container
+     * @param exitCode the exit code of the container's JVM, <code>-1</code> if not known, for
+     * example for embedded containers
+     * @param outputTail the last lines of the container's output, <code>null</code> if the
+     * container's output is not logged to a file
+     */
+    void containerExited(LocalContainer container, int exitCode, String outputTail);
+}
@@ -0,0 +1,40 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container;
+
+/**
+ * Optional interface of {@link LocalContainer}s which publish their state changes and the end of
+ * their server to {@link ContainerListener}s. Kept separate from {@link LocalContainer} so that
+ * existing container implementations do not need to implement it; callers check for it using
+ * <code>instanceof</code>.
+ */
+public interface ObservableContainer
+{
+    /**
+     * @param listener listener to notify of state changes and of the container's server ending.
+     */
+    void addContainerListener(ContainerListener listener);
+
+    /**
+     * @param listener listener to stop notifying.
+     * @see #addContainerListener(ContainerListener)
+     */
+    void removeContainerListener(ContainerListener listener);
+}
@@ -30,6 +30,8 @@ import org.apache.tools.ant.taskdefs.Get;
 import org.apache.tools.ant.taskdefs.Untar;
 import org.apache.tools.ant.taskdefs.Untar.UntarCompressionMethod;
 import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.lifecycle.LifecycleInstrumentation;
+import org.codehaus.cargo.container.lifecycle.LifecycleSpan;
 import org.codehaus.cargo.util.AntTaskFactory;
 import org.codehaus.cargo.util.AntUtils;
 import org.codehaus.cargo.util.DefaultFileHandler;
@@ -208,6 +210,27 @@ public class ZipURLInstaller extends LoggedObject implements Installer
      */
     @Override
     public void install()
+    {
+        LifecycleSpan span = LifecycleInstrumentation.begin(this, "install");
+        try
+        {
+            doInstall();
+        }
+        catch (RuntimeException e)
+        {
+            span.setFailure(e);
+            throw e;
+        }
+        finally
+        {
+            span.end();
+        }
+    }
+
+    /**
+     * Install the container, downloading and unpacking it unless already done.
+     */
+    private void doInstall()
     {
         if (!isAlreadyExtracted())
         {
@@ -222,15 +245,19 @@ public class ZipURLInstaller extends LoggedObject implements Installer
                 download();
             }
 
+            LifecycleSpan phase = LifecycleInstrumentation.begin(this, "unpack");
             try
             {
                 getLogger().debug("Container [" + getSourceFileName()
                     + "] is downloaded, now unpacking.", this.getClass().getName());
 
                 unpack();
+                phase.end();
             }
             catch (Exception e)
             {
+                phase.setFailure(e);
+                phase.end();
                 getLogger().debug("Container [" + getSourceFileName() + "] is broken.",
                     this.getClass().getName());
 
@@ -495,7 +522,16 @@ public class ZipURLInstaller extends LoggedObject implements Installer
         }
 
         getTask.setDest(targetFile);
-        getTask.execute();
+        LifecycleSpan phase = LifecycleInstrumentation.begin(this, "download");
+        try
+        {
+            getTask.execute();
+            phase.addBytes(targetFile.length());
+        }
+        finally
+        {
+            phase.end();
+        }
     }
 
     /**
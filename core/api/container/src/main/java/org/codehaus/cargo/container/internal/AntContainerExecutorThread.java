@@ -51,6 +51,11 @@ public class AntContainerExecutorThread extends Thread
      */
     private AtomicBoolean finishedFlag = new AtomicBoolean(false);
 
+    /**
+     * Exit code of the JVM, <code>-1</code> if not known.
+     */
+    private volatile int exitCode = -1;
+
     /**
      * @param java the Ant java command to execute
      * @param spawn {@code true} to launch JVM in spawn, {@code false} to launch normal JVM.
@@ -101,6 +106,16 @@ public class AntContainerExecutorThread extends Thread
         finishedFlag.set(b);
     }
 
+    /**
+     * Returns the exit code of the JVM, as reported by the Ant java command once it has finished.
+     *
+     * @return the exit code, <code>-1</code> if not known
+     */
+    public int getExitCode()
+    {
+        return this.exitCode;
+    }
+
     /**
      * Execute the Ant's java command.
      */
@@ -121,9 +136,11 @@ public class AntContainerExecutorThread extends Thread
         {
             // Blocking call
             this.java.execute();
+            this.exitCode = 0;
         }
         catch (BuildException ex)
         {
+            this.exitCode = parseExitCode(ex.getMessage());
             if (ex.getMessage().contains("Java returned: 1"))
             {
                 ex = new BuildException(ex.getMessage()
@@ -138,4 +155,38 @@ public class AntContainerExecutorThread extends Thread
 
         // Only reach here when the container is stopped
     }
+
+    /**
+     * Parse the exit code reported by the Ant java command when failing on error.
+     *
+     * @param message the message of the Ant build exception
+     * @return the exit code, <code>-1</code> if the message doesn't contain any
+     */
+    private static int parseExitCode(String message)
+    {
+        String prefix = "Java returned: ";
+        int index = message == null ? -1 : message.indexOf(prefix);
+        if (index == -1)
+        {
+            return -1;
+        }
+        int start = index + prefix.length();
+        int end = start;
+        if (end < message.length() && message.charAt(end) == '-')
+        {
+            end++;
+        }
+        while (end < message.length() && Character.isDigit(message.charAt(end)))
+        {
+            end++;
+        }
+        try
+        {
+            return Integer.parseInt(message.substring(start, end));
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
 }
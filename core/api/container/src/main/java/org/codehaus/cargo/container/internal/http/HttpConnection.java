@@ -226,8 +226,8 @@ public class HttpConnection extends LoggedObject
 
                     connection.setRequestProperty(key, value);
 
-                    getLogger().debug("Added property [" + key + "] = [" + value + "]",
-                        this.getClass().getName());
+                    getLazyLogger().debug("Added property [%s] = [%s]",
+                        this.getClass().getName(), key, value);
                 }
             }
 
@@ -277,8 +277,8 @@ public class HttpConnection extends LoggedObject
             result.setResponseMessage(e.toString());
         }
 
-        getLogger().debug("Called [" + url + "], result = [" + result.getResponseCode() + "]",
-            this.getClass().getName());
+        getLazyLogger().debug("Called [%s], result = [%d]", this.getClass().getName(), url,
+            result.getResponseCode());
 
         return result;
     }
@@ -0,0 +1,304 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+import org.codehaus.cargo.container.spi.jvm.JvmLauncher;
+import org.codehaus.cargo.util.CargoException;
+
+/**
+ * Dynamic class data sharing (AppCDS) archive of a container JVM. The first start of a given
+ * container home with a given JDK is a training start, during which the JVM is asked to dump the
+ * classes it has loaded into an archive when it exits; later starts map that archive using
+ * <code>-XX:SharedArchiveFile</code>, which saves most of the class loading and verification
+ * work.<br><br>
+ * Archives are named after a key computed from the JDK and from the container home (paths,
+ * sizes and modification times), so that updating either of them results in a new training
+ * start. That key is prefixed with one computed from the JDK and container home paths only, so
+ * that a training start only removes the outdated archives of the same JDK and container home and
+ * archives of other JDKs sharing the directory are kept. Dynamic archives require Java 13 or
+ * above.
+ */
+public class ClassDataSharingArchive
+{
+    /**
+     * Minimum major Java version supporting dynamic archives.
+     */
+    public static final int MINIMUM_JAVA_VERSION = 13;
+
+    /**
+     * Name of the property, in the archive's properties file, containing the duration of the
+     * training start.
+     */
+    private static final String TRAINING_STARTUP_TIME = "training.startupTime";
+
+    /**
+     * Prefix of the archive files for the JDK and container home, followed by the archive key.
+     */
+    private final String prefix;
+
+    /**
+     * Archive file.
+     */
+    private final File archiveFile;
+
+    /**
+     * File with the training start statistics.
+     */
+    private final File propertiesFile;
+
+    /**
+     * Whether the current start is a training start.
+     */
+    private boolean training;
+
+    /**
+     * @param directory Directory the archives are stored in.
+     * @param javaHome Home of the JDK running the container.
+     * @param containerHome Container home.
+     */
+    public ClassDataSharingArchive(File directory, String javaHome, String containerHome)
+    {
+        this.prefix = computePrefix(new File(javaHome), new File(containerHome)) + "-";
+        String key = this.prefix + computeKey(new File(javaHome), new File(containerHome));
+        this.archiveFile = new File(directory, key + ".jsa");
+        this.propertiesFile = new File(directory, key + ".properties");
+    }
+
+    /**
+     * @return Archive file.
+     */
+    public File getArchiveFile()
+    {
+        return this.archiveFile;
+    }
+
+    /**
+     * @return <code>true</code> if the archive has been created by a previous training start.
+     */
+    public boolean isAvailable()
+    {
+        return this.archiveFile.isFile() && this.archiveFile.length() > 0;
+    }
+
+    /**
+     * @return <code>true</code> if the last call to {@link #addJvmArguments(JvmLauncher)} has
+     * set up a training start.
+     */
+    public boolean isTraining()
+    {
+        return this.training;
+    }
+
+    /**
+     * Add the JVM arguments that either use the archive or, if it does not exist yet, create it
+     * when the JVM exits. When training, outdated archives made for earlier versions of the same
+     * JDK and container home are removed from the archive directory.
+     * 
+     * @param java JVM launcher of the container.
+     */
+    public void addJvmArguments(JvmLauncher java)
+    {
+        if (isAvailable())
+        {
+            this.training = false;
+            java.addJvmArguments("-XX:SharedArchiveFile=" + this.archiveFile.getAbsolutePath());
+        }
+        else
+        {
+            this.training = true;
+            File directory = this.archiveFile.getParentFile();
+            directory.mkdirs();
+            File[] oldFiles = directory.listFiles();
+            if (oldFiles != null)
+            {
+                for (File oldFile : oldFiles)
+                {
+                    String name = oldFile.getName();
+                    if (name.startsWith(this.prefix)
+                        && (name.endsWith(".jsa") || name.endsWith(".properties")))
+                    {
+                        oldFile.delete();
+                    }
+                }
+            }
+            java.addJvmArguments("-XX:ArchiveClassesAtExit="
+                + this.archiveFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Record the duration of a start.
+     * 
+     * @param startupTime Time, in milliseconds, the container took to start.
+     * @return For starts using the archive, the time saved compared to the training start;
+     * <code>null</code> for training starts or if the duration of the training start is unknown.
+     */
+    public Long recordStartupTime(long startupTime)
+    {
+        Properties properties = new Properties();
+        try
+        {
+            if (this.training)
+            {
+                properties.setProperty(TRAINING_STARTUP_TIME, Long.toString(startupTime));
+                OutputStream os = new FileOutputStream(this.propertiesFile);
+                try
+                {
+                    properties.store(os, "Cargo class data sharing archive statistics");
+                }
+                finally
+                {
+                    os.close();
+                }
+                return null;
+            }
+
+            if (!this.propertiesFile.isFile())
+            {
+                return null;
+            }
+            InputStream is = new FileInputStream(this.propertiesFile);
+            try
+            {
+                properties.load(is);
+            }
+            finally
+            {
+                is.close();
+            }
+            return Long.parseLong(properties.getProperty(TRAINING_STARTUP_TIME)) - startupTime;
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Compute the prefix of the archives of a JDK and container home.
+     * 
+     * @param javaHome JDK home.
+     * @param containerHome Container home.
+     * @return Prefix identifying the JDK and container home paths.
+     */
+    static String computePrefix(File javaHome, File containerHome)
+    {
+        MessageDigest digest = createDigest();
+        update(digest, javaHome.getAbsolutePath());
+        update(digest, containerHome.getAbsolutePath());
+        return toHex(digest);
+    }
+
+    /**
+     * Compute the key of an archive.
+     * 
+     * @param javaHome JDK home.
+     * @param containerHome Container home.
+     * @return Key identifying the JDK and container home.
+     */
+    static String computeKey(File javaHome, File containerHome)
+    {
+        MessageDigest digest = createDigest();
+        // The home directories themselves are only identified by their paths, since the
+        // archives are stored within the container home
+        update(digest, javaHome.getAbsolutePath());
+        update(digest, new File(javaHome, "release"));
+        update(digest, new File(javaHome, "lib/modules"));
+        update(digest, containerHome.getAbsolutePath());
+        update(digest, new File(containerHome, "bin"));
+        update(digest, new File(containerHome, "lib"));
+        update(digest, new File(containerHome, "modules"));
+        return toHex(digest);
+    }
+
+    /**
+     * @return New SHA-1 digest.
+     */
+    private static MessageDigest createDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new CargoException("SHA-1 is not supported", e);
+        }
+    }
+
+    /**
+     * @param digest Digest.
+     * @return Hexadecimal value of the digest.
+     */
+    private static String toHex(MessageDigest digest)
+    {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Add the path, size and modification time of a file to a digest.
+     * 
+     * @param digest Digest.
+     * @param file File or directory, which may not exist.
+     */
+    private static void update(MessageDigest digest, File file)
+    {
+        update(digest, file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified());
+    }
+
+    /**
+     * Add a value to a digest.
+     * 
+     * @param digest Digest.
+     * @param value Value.
+     */
+    private static void update(MessageDigest digest, String value)
+    {
+        try
+        {
+            digest.update((value + "\n").getBytes("UTF-8"));
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new CargoException("UTF-8 is not supported", e);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reflective handles (classes, methods and arbitrary wrappers built from them) resolved from a
+ * given {@link ClassLoader}. Embedded containers drive their server exclusively by reflection;
+ * when several embedded containers share the same classloader, for example because the Maven
+ * plugin reuses it across modules, the handles are looked up only once.<br><br>
+ * Handles are kept for as long as their classloader is reachable and memory is not short.
+ */
+public final class ClassLoaderHandles
+{
+    /**
+     * Handles of all classloaders.
+     */
+    private static final Map<ClassLoader, SoftReference<ClassLoaderHandles>> HANDLES =
+        new WeakHashMap<ClassLoader, SoftReference<ClassLoaderHandles>>();
+
+    /**
+     * Classloader the handles are resolved from.
+     */
+    private final ClassLoader classLoader;
+
+    /**
+     * Loaded classes, keyed by name.
+     */
+    private final ConcurrentMap<String, Class<?>> classes =
+        new ConcurrentHashMap<String, Class<?>>();
+
+    /**
+     * Looked up methods, keyed by class, name and parameter types.
+     */
+    private final ConcurrentMap<String, Method> methods = new ConcurrentHashMap<String, Method>();
+
+    /**
+     * Wrappers built on top of the classes of the classloader, keyed by name.
+     */
+    private final ConcurrentMap<String, Object> wrappers = new ConcurrentHashMap<String, Object>();
+
+    /**
+     * Use {@link #getInstance(ClassLoader)}.
+     * @param classLoader Classloader the handles are resolved from.
+     */
+    private ClassLoaderHandles(ClassLoader classLoader)
+    {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Get the handles of a classloader.
+     * @param classLoader Classloader.
+     * @return Handles resolved from <code>classLoader</code>.
+     */
+    public static ClassLoaderHandles getInstance(ClassLoader classLoader)
+    {
+        synchronized (HANDLES)
+        {
+            SoftReference<ClassLoaderHandles> reference = HANDLES.get(classLoader);
+            ClassLoaderHandles handles = reference == null ? null : reference.get();
+            if (handles == null)
+            {
+                handles = new ClassLoaderHandles(classLoader);
+                HANDLES.put(classLoader, new SoftReference<ClassLoaderHandles>(handles));
+            }
+            return handles;
+        }
+    }
+
+    /**
+     * @return Classloader the handles are resolved from.
+     */
+    public ClassLoader getClassLoader()
+    {
+        return this.classLoader;
+    }
+
+    /**
+     * Load a class, unless it has already been loaded through these handles.
+     * @param name Class name.
+     * @return Loaded class.
+     * @throws ClassNotFoundException If the class cannot be found.
+     */
+    public Class<?> loadClass(String name) throws ClassNotFoundException
+    {
+        Class<?> clazz = this.classes.get(name);
+        if (clazz == null)
+        {
+            clazz = this.classLoader.loadClass(name);
+            this.classes.put(name, clazz);
+        }
+        return clazz;
+    }
+
+    /**
+     * Look up a public method, unless it has already been looked up through these handles.
+     * @param clazz Class declaring or inheriting the method.
+     * @param name Method name.
+     * @param parameterTypes Parameter types, <code>null</code> meaning no parameters.
+     * @return Method.
+     * @throws NoSuchMethodException If the method cannot be found.
+     */
+    public Method getMethod(Class<?> clazz, String name, Class<?>... parameterTypes)
+        throws NoSuchMethodException
+    {
+        StringBuilder key = new StringBuilder(clazz.getName());
+        key.append('#');
+        key.append(name);
+        if (parameterTypes != null)
+        {
+            for (Class<?> parameterType : parameterTypes)
+            {
+                key.append(',');
+                key.append(parameterType.getName());
+            }
+        }
+        String methodKey = key.toString();
+
+        Method method = this.methods.get(methodKey);
+        // Classes of child classloaders can have the same name, in which case the cached method
+        // is only reused if it can be invoked on instances of the requested class
+        if (method == null || !method.getDeclaringClass().isAssignableFrom(clazz))
+        {
+            method = clazz.getMethod(name, parameterTypes);
+            this.methods.put(methodKey, method);
+        }
+        return method;
+    }
+
+    /**
+     * @param name Wrapper name.
+     * @return Wrapper previously stored with {@link #putWrapper(String, Object)},
+     * <code>null</code> if none.
+     */
+    public Object getWrapper(String name)
+    {
+        return this.wrappers.get(name);
+    }
+
+    /**
+     * Store a wrapper built on top of the classes of the classloader, such as a set of
+     * preloaded methods. If another wrapper has been stored concurrently, that one is kept.
+     * @param name Wrapper name.
+     * @param wrapper Wrapper.
+     * @return Wrapper stored under <code>name</code>.
+     */
+    public Object putWrapper(String name, Object wrapper)
+    {
+        Object existing = this.wrappers.putIfAbsent(name, wrapper);
+        if (existing == null)
+        {
+            return wrapper;
+        }
+        return existing;
+    }
+}
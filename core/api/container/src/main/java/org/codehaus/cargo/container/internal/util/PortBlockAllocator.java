@@ -0,0 +1,559 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.cargo.container.ContainerException;
+
+/**
+ * Allocator of port blocks for containers running concurrently on the same host. A block is the
+ * set of ports of a configuration shifted by a common offset; the allocator finds the lowest
+ * offset (in multiples of a step) for which none of the shifted ports is either reserved by
+ * another container or in use, and reserves them.<br><br>
+ * Reservations are stored in a registry file shared by all JVMs on the host and updated under an
+ * exclusive file lock, so that concurrent builds never get overlapping blocks. Reservations are
+ * released when the container stops, when the JVM that made them exits or, for JVMs that have
+ * crashed, once they are older than {@link #RESERVATION_TIMEOUT}.
+ */
+public class PortBlockAllocator
+{
+    /**
+     * Time, in milliseconds, after which a reservation is considered stale.
+     */
+    public static final long RESERVATION_TIMEOUT = 24L * 60 * 60 * 1000;
+
+    /**
+     * Default registry file, in the temporary directory.
+     */
+    private static final File DEFAULT_REGISTRY = new File(System.getProperty("java.io.tmpdir"),
+        "cargo-port-reservations.properties");
+
+    /**
+     * Allocator using the default registry file.
+     */
+    private static final PortBlockAllocator DEFAULT = new PortBlockAllocator(DEFAULT_REGISTRY);
+
+    /**
+     * Lock of all registry updates within this JVM, since file locks are held per JVM.
+     */
+    private static final Object JVM_LOCK = new Object();
+
+    /**
+     * Counter used to build unique reservation identifiers.
+     */
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    /**
+     * Identifier of this JVM.
+     */
+    private static final String JVM_ID = ManagementFactory.getRuntimeMXBean().getName() + "-"
+        + System.currentTimeMillis();
+
+    /**
+     * Registry file.
+     */
+    private final File registry;
+
+    /**
+     * Reservations made by this allocator which have not been released yet.
+     */
+    private final Set<String> reservations = new HashSet<String>();
+
+    /**
+     * Whether the shutdown hook releasing the reservations has been registered.
+     */
+    private boolean shutdownHookRegistered;
+
+    /**
+     * @param registry Registry file shared by all JVMs allocating ports on the host.
+     */
+    public PortBlockAllocator(File registry)
+    {
+        this.registry = registry;
+    }
+
+    /**
+     * @return Allocator using the default registry file.
+     */
+    public static PortBlockAllocator getInstance()
+    {
+        return DEFAULT;
+    }
+
+    /**
+     * Reserve a block of ports.
+     * 
+     * @param ports Ports of the configuration, without any offset.
+     * @param firstOffset Lowest offset to try.
+     * @param step Difference between two offsets tried.
+     * @return Reservation, with the offset to apply to <code>ports</code>.
+     */
+    public Reservation reserve(final Collection<Integer> ports, final int firstOffset,
+        final int step)
+    {
+        if (step < 1)
+        {
+            throw new IllegalArgumentException("Step must be positive: " + step);
+        }
+        int maxPort = 0;
+        for (int port : ports)
+        {
+            maxPort = Math.max(maxPort, port);
+        }
+
+        final String id = JVM_ID + "-" + COUNTER.incrementAndGet();
+        final int lastOffset = 65535 - maxPort;
+        Integer offset = update(new RegistryOperation<Integer>()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public Integer execute(Properties reservations)
+            {
+                Set<Integer> reserved = getReservedPorts(reservations);
+                for (int candidate = firstOffset; candidate <= lastOffset; candidate += step)
+                {
+                    Set<Integer> block = shift(ports, candidate);
+                    if (isAvailable(block, reserved))
+                    {
+                        reservations.setProperty(id, System.currentTimeMillis() + ":"
+                            + join(block));
+                        addReservation(id);
+                        return candidate;
+                    }
+                }
+                return null;
+            }
+        });
+        if (offset == null)
+        {
+            throw new ContainerException("No free block of ports " + ports
+                + " is available on this host, starting from offset " + firstOffset);
+        }
+        return new Reservation(id, offset);
+    }
+
+    /**
+     * Release a reservation. Releasing a reservation twice has no effect.
+     * 
+     * @param reservation Reservation to release.
+     */
+    public void release(Reservation reservation)
+    {
+        release(reservation.getId());
+    }
+
+    /**
+     * @return Ports currently reserved on this host.
+     */
+    public Set<Integer> getReservedPorts()
+    {
+        return update(new RegistryOperation<Set<Integer>>()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public Set<Integer> execute(Properties reservations)
+            {
+                return getReservedPorts(reservations);
+            }
+        });
+    }
+
+    /**
+     * Check whether a port is free, i.e. whether a server socket can be bound to it.
+     * 
+     * @param port Port.
+     * @return <code>true</code> if the port is free.
+     */
+    protected boolean isPortFree(int port)
+    {
+        try
+        {
+            ServerSocket socket = new ServerSocket(port);
+            socket.close();
+            return true;
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Release a reservation.
+     * 
+     * @param id Reservation identifier.
+     */
+    private void release(final String id)
+    {
+        synchronized (JVM_LOCK)
+        {
+            if (!this.reservations.remove(id))
+            {
+                return;
+            }
+        }
+        update(new RegistryOperation<Object>()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public Object execute(Properties reservations)
+            {
+                reservations.remove(id);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Remember a reservation, so that it gets released when the JVM exits.
+     * 
+     * @param id Reservation identifier.
+     */
+    private void addReservation(String id)
+    {
+        this.reservations.add(id);
+        if (!this.shutdownHookRegistered)
+        {
+            Runtime.getRuntime().addShutdownHook(new Thread("Cargo port reservations cleanup")
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void run()
+                {
+                    Set<String> ids;
+                    synchronized (JVM_LOCK)
+                    {
+                        ids = new HashSet<String>(PortBlockAllocator.this.reservations);
+                    }
+                    for (String remaining : ids)
+                    {
+                        try
+                        {
+                            release(remaining);
+                        }
+                        catch (ContainerException ignored)
+                        {
+                            // Stale reservations eventually time out
+                        }
+                    }
+                }
+            });
+            this.shutdownHookRegistered = true;
+        }
+    }
+
+    /**
+     * Execute an operation on the reservations, with the registry locked both within this JVM
+     * and across JVMs. The reservations are written back once the operation has completed.
+     * 
+     * @param <T> Type of the operation result.
+     * @param operation Operation.
+     * @return Result of the operation.
+     */
+    private <T> T update(RegistryOperation<T> operation)
+    {
+        synchronized (JVM_LOCK)
+        {
+            try
+            {
+                RandomAccessFile file = openRegistry();
+                try
+                {
+                    return executeLocked(file, operation);
+                }
+                finally
+                {
+                    file.close();
+                }
+            }
+            catch (IOException e)
+            {
+                throw new ContainerException("Cannot update the port reservations in "
+                    + this.registry, e);
+            }
+        }
+    }
+
+    /**
+     * Execute an operation on the reservations with the registry file locked.
+     * 
+     * @param <T> Type of the operation result.
+     * @param file Registry file.
+     * @param operation Operation.
+     * @return Result of the operation.
+     * @throws IOException If reading or writing the registry fails.
+     */
+    private static <T> T executeLocked(RandomAccessFile file, RegistryOperation<T> operation)
+        throws IOException
+    {
+        FileLock lock = file.getChannel().lock();
+        try
+        {
+            Properties reservations = read(file);
+            T result = operation.execute(reservations);
+            write(file, reservations);
+            return result;
+        }
+        finally
+        {
+            lock.release();
+        }
+    }
+
+    /**
+     * @return Registry file, opened for reading and writing.
+     * @throws IOException If the registry cannot be opened.
+     */
+    private RandomAccessFile openRegistry() throws IOException
+    {
+        File parent = this.registry.getAbsoluteFile().getParentFile();
+        if (parent != null)
+        {
+            parent.mkdirs();
+        }
+        return new RandomAccessFile(this.registry, "rw");
+    }
+
+    /**
+     * Check whether a block of ports is neither reserved nor in use.
+     * 
+     * @param block Ports.
+     * @param reserved Reserved ports.
+     * @return <code>true</code> if all ports of <code>block</code> are available.
+     */
+    private boolean isAvailable(Set<Integer> block, Set<Integer> reserved)
+    {
+        for (int port : block)
+        {
+            if (reserved.contains(port))
+            {
+                return false;
+            }
+        }
+        for (int port : block)
+        {
+            if (!isPortFree(port))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the reservations, dropping the stale ones.
+     * 
+     * @param file Locked registry file.
+     * @return Reservations.
+     * @throws IOException If reading fails.
+     */
+    private static Properties read(RandomAccessFile file) throws IOException
+    {
+        FileChannel channel = file.getChannel();
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        channel.position(0);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+        {
+            // Read until the buffer is full
+        }
+
+        Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(buffer.array(), 0, buffer.position()));
+
+        long now = System.currentTimeMillis();
+        for (String id : properties.stringPropertyNames())
+        {
+            String value = properties.getProperty(id);
+            int separator = value.indexOf(':');
+            try
+            {
+                if (separator == -1
+                    || now - Long.parseLong(value.substring(0, separator)) > RESERVATION_TIMEOUT)
+                {
+                    properties.remove(id);
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                properties.remove(id);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Write the reservations.
+     * 
+     * @param file Locked registry file.
+     * @param properties Reservations.
+     * @throws IOException If writing fails.
+     */
+    private static void write(RandomAccessFile file, Properties properties) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        properties.store(out, "Cargo port reservations");
+        FileChannel channel = file.getChannel();
+        channel.truncate(0);
+        channel.position(0);
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * @param properties Reservations.
+     * @return All reserved ports.
+     */
+    private static Set<Integer> getReservedPorts(Properties properties)
+    {
+        Set<Integer> reserved = new HashSet<Integer>();
+        for (String id : properties.stringPropertyNames())
+        {
+            String value = properties.getProperty(id);
+            for (String port : value.substring(value.indexOf(':') + 1).split(","))
+            {
+                try
+                {
+                    reserved.add(Integer.valueOf(port.trim()));
+                }
+                catch (NumberFormatException ignored)
+                {
+                    // Ignore broken entries
+                }
+            }
+        }
+        return reserved;
+    }
+
+    /**
+     * @param ports Ports.
+     * @param offset Offset.
+     * @return Ports shifted by <code>offset</code>.
+     */
+    private static Set<Integer> shift(Collection<Integer> ports, int offset)
+    {
+        Set<Integer> shifted = new HashSet<Integer>(ports.size());
+        for (int port : ports)
+        {
+            shifted.add(port + offset);
+        }
+        return shifted;
+    }
+
+    /**
+     * @param ports Ports.
+     * @return Comma-separated ports.
+     */
+    private static String join(Set<Integer> ports)
+    {
+        StringBuilder joined = new StringBuilder();
+        for (int port : ports)
+        {
+            if (joined.length() > 0)
+            {
+                joined.append(',');
+            }
+            joined.append(port);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Operation on the reservations of the registry.
+     * 
+     * @param <T> Type of the operation result.
+     */
+    private interface RegistryOperation<T>
+    {
+        /**
+         * @param reservations Reservations, which can be modified.
+         * @return Result of the operation.
+         */
+        T execute(Properties reservations);
+    }
+
+    /**
+     * Block of ports reserved by {@link PortBlockAllocator#reserve(Collection, int, int)}.
+     */
+    public static class Reservation
+    {
+        /**
+         * Reservation identifier.
+         */
+        private final String id;
+
+        /**
+         * Offset to apply to the ports.
+         */
+        private final int offset;
+
+        /**
+         * @param id Reservation identifier.
+         * @param offset Offset to apply to the ports.
+         */
+        Reservation(String id, int offset)
+        {
+            this.id = id;
+            this.offset = offset;
+        }
+
+        /**
+         * @return Reservation identifier.
+         */
+        public String getId()
+        {
+            return this.id;
+        }
+
+        /**
+         * @return Offset to apply to the ports.
+         */
+        public int getOffset()
+        {
+            return this.offset;
+        }
+    }
+}
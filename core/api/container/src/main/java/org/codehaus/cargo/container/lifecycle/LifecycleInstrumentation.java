@@ -0,0 +1,196 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.lifecycle;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.codehaus.cargo.container.Container;
+import org.codehaus.cargo.util.log.Loggable;
+
+/**
+ * Entry point of the lifecycle instrumentation. Containers, configurations, installers and
+ * deployers report the phases they go through with {@link #begin(Object, String)} and
+ * {@link LifecycleSpan#end()}; registered {@link LifecycleListener}s are notified of every
+ * completed phase with its duration, the bytes it has copied and the processes it has spawned.
+ * <br><br>
+ * Phases begun in the same thread are nested, and the counters of nested phases are added to the
+ * enclosing phase. Counters can be added to the innermost phase of the current thread using
+ * {@link #addBytes(long)} and {@link #addProcess()}, which lets low level code such as JVM
+ * launchers report what they do without knowing which phase they are part of.
+ */
+public final class LifecycleInstrumentation
+{
+    /**
+     * Registered listeners.
+     */
+    private static final List<LifecycleListener> LISTENERS =
+        new CopyOnWriteArrayList<LifecycleListener>();
+
+    /**
+     * Innermost span of each thread.
+     */
+    private static final ThreadLocal<LifecycleSpan> CURRENT = new ThreadLocal<LifecycleSpan>();
+
+    /**
+     * Utility class.
+     */
+    private LifecycleInstrumentation()
+    {
+        // Nothing
+    }
+
+    /**
+     * @param listener Listener to notify of all completed phases.
+     */
+    public static void addListener(LifecycleListener listener)
+    {
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * @param listener Listener not to notify anymore.
+     */
+    public static void removeListener(LifecycleListener listener)
+    {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * Begin a phase, nested within the innermost phase of the current thread if any.
+     * 
+     * @param source Object the phase belongs to.
+     * @param name Phase name.
+     * @return Span to end once the phase has completed.
+     */
+    public static LifecycleSpan begin(Object source, String name)
+    {
+        String sourceName;
+        if (source instanceof Container)
+        {
+            sourceName = ((Container) source).getId();
+        }
+        else
+        {
+            sourceName = source.getClass().getSimpleName();
+        }
+        LifecycleSpan span = new LifecycleSpan(source, sourceName, name, CURRENT.get());
+        CURRENT.set(span);
+        return span;
+    }
+
+    /**
+     * @param bytes Number of bytes copied or transferred by the innermost phase of the current
+     * thread. Ignored if there is no such phase.
+     */
+    public static void addBytes(long bytes)
+    {
+        LifecycleSpan span = CURRENT.get();
+        if (span != null)
+        {
+            span.addBytes(bytes);
+        }
+    }
+
+    /**
+     * Count a process spawned by the innermost phase of the current thread. Ignored if there is
+     * no such phase.
+     */
+    public static void addProcess()
+    {
+        LifecycleSpan span = CURRENT.get();
+        if (span != null)
+        {
+            span.addProcess();
+        }
+    }
+
+    /**
+     * End a span, as well as the spans nested within it which have not been ended yet.
+     * 
+     * @param span Span to end.
+     */
+    static void end(LifecycleSpan span)
+    {
+        if (span.isEnded())
+        {
+            return;
+        }
+
+        boolean current = false;
+        for (LifecycleSpan s = CURRENT.get(); s != null; s = s.getParent())
+        {
+            if (s == span)
+            {
+                current = true;
+                break;
+            }
+        }
+        if (!current)
+        {
+            // Span begun in another thread, or enclosing span already ended
+            notifyListeners(span.complete());
+            return;
+        }
+
+        for (LifecycleSpan s = CURRENT.get(); s != span; s = s.getParent())
+        {
+            s.interrupt();
+            notifyListeners(s.complete());
+        }
+        notifyListeners(span.complete());
+
+        LifecycleSpan parent = span.getParent();
+        if (parent == null)
+        {
+            CURRENT.remove();
+        }
+        else
+        {
+            CURRENT.set(parent);
+        }
+    }
+
+    /**
+     * Notify the listeners of a completed phase. A failing listener is logged and ignored, so
+     * that it neither leaves the span stack of the thread in a stale state nor hides the failure
+     * of the phase itself.
+     * 
+     * @param phase Completed phase to notify the listeners of.
+     */
+    private static void notifyListeners(LifecyclePhase phase)
+    {
+        for (LifecycleListener listener : LISTENERS)
+        {
+            try
+            {
+                listener.phaseCompleted(phase);
+            }
+            catch (RuntimeException e)
+            {
+                if (phase.getSource() instanceof Loggable)
+                {
+                    ((Loggable) phase.getSource()).getLogger().warn("Lifecycle listener "
+                        + listener + " failed: " + e, LifecycleInstrumentation.class.getName());
+                }
+            }
+        }
+    }
+}
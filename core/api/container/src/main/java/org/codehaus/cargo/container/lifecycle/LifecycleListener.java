@@ -0,0 +1,35 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.lifecycle;
+
+/**
+ * Listener notified of the lifecycle phases of containers, configurations, installers and
+ * deployers. Listeners are registered with {@link LifecycleInstrumentation#addListener}.
+ */
+public interface LifecycleListener
+{
+    /**
+     * Called when a phase has completed, whether successfully or not. Phases nested within
+     * another phase complete before it.
+     * 
+     * @param phase Completed phase.
+     */
+    void phaseCompleted(LifecyclePhase phase);
+}
@@ -0,0 +1,180 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.lifecycle;
+
+/**
+ * Timings and counters of a completed lifecycle phase.
+ */
+public class LifecyclePhase
+{
+    /**
+     * Object the phase belongs to.
+     */
+    private final Object source;
+
+    /**
+     * Name of the object the phase belongs to.
+     */
+    private final String sourceName;
+
+    /**
+     * Phase name.
+     */
+    private final String name;
+
+    /**
+     * Path of the phase, made of the names of the enclosing phases and of this phase.
+     */
+    private final String path;
+
+    /**
+     * Start time, in milliseconds since the epoch.
+     */
+    private final long startTime;
+
+    /**
+     * Duration, in milliseconds.
+     */
+    private final long duration;
+
+    /**
+     * Number of bytes copied or transferred.
+     */
+    private final long bytes;
+
+    /**
+     * Number of processes spawned.
+     */
+    private final int processes;
+
+    /**
+     * Failure message, <code>null</code> if the phase has succeeded.
+     */
+    private final String failure;
+
+    /**
+     * Save all attributes.
+     * 
+     * @param source Object the phase belongs to.
+     * @param sourceName Name of the object the phase belongs to.
+     * @param name Phase name.
+     * @param path Path of the phase.
+     * @param startTime Start time, in milliseconds since the epoch.
+     * @param duration Duration, in milliseconds.
+     * @param bytes Number of bytes copied or transferred.
+     * @param processes Number of processes spawned.
+     * @param failure Failure message, <code>null</code> if the phase has succeeded.
+     */
+    public LifecyclePhase(Object source, String sourceName, String name, String path,
+        long startTime, long duration, long bytes, int processes, String failure)
+    {
+        this.source = source;
+        this.sourceName = sourceName;
+        this.name = name;
+        this.path = path;
+        this.startTime = startTime;
+        this.duration = duration;
+        this.bytes = bytes;
+        this.processes = processes;
+        this.failure = failure;
+    }
+
+    /**
+     * @return Object the phase belongs to.
+     */
+    public Object getSource()
+    {
+        return this.source;
+    }
+
+    /**
+     * @return Name of the object the phase belongs to, for example the container id.
+     */
+    public String getSourceName()
+    {
+        return this.sourceName;
+    }
+
+    /**
+     * @return Phase name.
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * @return Path of the phase, made of the names of the enclosing phases and of this phase
+     * separated with slashes, for example <code>start/configure/doConfigure</code>.
+     */
+    public String getPath()
+    {
+        return this.path;
+    }
+
+    /**
+     * @return Start time, in milliseconds since the epoch.
+     */
+    public long getStartTime()
+    {
+        return this.startTime;
+    }
+
+    /**
+     * @return Duration, in milliseconds.
+     */
+    public long getDuration()
+    {
+        return this.duration;
+    }
+
+    /**
+     * @return Number of bytes copied or transferred, including nested phases.
+     */
+    public long getBytes()
+    {
+        return this.bytes;
+    }
+
+    /**
+     * @return Number of processes spawned, including nested phases.
+     */
+    public int getProcesses()
+    {
+        return this.processes;
+    }
+
+    /**
+     * @return Failure message, <code>null</code> if the phase has succeeded.
+     */
+    public String getFailure()
+    {
+        return this.failure;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return this.sourceName + " " + this.path + " " + this.duration + " ms";
+    }
+}
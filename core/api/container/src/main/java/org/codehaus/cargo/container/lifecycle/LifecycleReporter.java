@@ -0,0 +1,228 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.lifecycle;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Listener that collects completed lifecycle phases and writes them as JSON or CSV.
+ */
+public class LifecycleReporter implements LifecycleListener
+{
+    /**
+     * Columns of the CSV report.
+     */
+    private static final String CSV_HEADER =
+        "source,path,phase,startTime,duration,bytes,processes,failure";
+
+    /**
+     * Collected phases, in completion order.
+     */
+    private final LinkedList<LifecyclePhase> phases = new LinkedList<LifecyclePhase>();
+
+    /**
+     * Maximum number of phases kept.
+     */
+    private final int maxPhases;
+
+    /**
+     * Reporter keeping all phases.
+     */
+    public LifecycleReporter()
+    {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reporter keeping only the latest phases, for long running processes.
+     * 
+     * @param maxPhases Maximum number of phases kept, the oldest ones being dropped first.
+     */
+    public LifecycleReporter(int maxPhases)
+    {
+        this.maxPhases = maxPhases;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void phaseCompleted(LifecyclePhase phase)
+    {
+        this.phases.add(phase);
+        if (this.phases.size() > this.maxPhases)
+        {
+            this.phases.removeFirst();
+        }
+    }
+
+    /**
+     * @return Copy of the collected phases, in completion order.
+     */
+    public synchronized List<LifecyclePhase> getPhases()
+    {
+        return new ArrayList<LifecyclePhase>(this.phases);
+    }
+
+    /**
+     * Forget all collected phases.
+     */
+    public synchronized void clear()
+    {
+        this.phases.clear();
+    }
+
+    /**
+     * Write the collected phases to a file, as CSV if the file name ends with
+     * <code>.csv</code> and as JSON otherwise.
+     * 
+     * @param file Report file.
+     * @throws IOException If writing fails.
+     */
+    public void write(File file) throws IOException
+    {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+        {
+            parent.mkdirs();
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try
+        {
+            if (file.getName().toLowerCase().endsWith(".csv"))
+            {
+                writeCsv(writer);
+            }
+            else
+            {
+                writeJson(writer);
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Write the collected phases as a JSON array of objects.
+     * 
+     * @param writer Writer.
+     * @throws IOException If writing fails.
+     */
+    public void writeJson(Writer writer) throws IOException
+    {
+        writer.write("[");
+        boolean first = true;
+        for (LifecyclePhase phase : getPhases())
+        {
+            writer.write(first ? "\n" : ",\n");
+            first = false;
+            writer.write("  {\"source\": " + toJson(phase.getSourceName())
+                + ", \"path\": " + toJson(phase.getPath())
+                + ", \"phase\": " + toJson(phase.getName())
+                + ", \"startTime\": " + phase.getStartTime()
+                + ", \"duration\": " + phase.getDuration()
+                + ", \"bytes\": " + phase.getBytes()
+                + ", \"processes\": " + phase.getProcesses()
+                + ", \"failure\": " + toJson(phase.getFailure()) + "}");
+        }
+        writer.write(first ? "]\n" : "\n]\n");
+        writer.flush();
+    }
+
+    /**
+     * Write the collected phases as CSV, with a header line.
+     * 
+     * @param writer Writer.
+     * @throws IOException If writing fails.
+     */
+    public void writeCsv(Writer writer) throws IOException
+    {
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        for (LifecyclePhase phase : getPhases())
+        {
+            writer.write(toCsv(phase.getSourceName()) + "," + toCsv(phase.getPath()) + ","
+                + toCsv(phase.getName()) + "," + phase.getStartTime() + ","
+                + phase.getDuration() + "," + phase.getBytes() + "," + phase.getProcesses() + ","
+                + toCsv(phase.getFailure()));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * @param value Value, can be <code>null</code>.
+     * @return JSON string literal for <code>value</code>, or <code>null</code>.
+     */
+    private static String toJson(String value)
+    {
+        if (value == null)
+        {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder(value.length() + 2);
+        json.append('"');
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                json.append('\\');
+                json.append(c);
+            }
+            else if (c < 0x20)
+            {
+                json.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                json.append(c);
+            }
+        }
+        json.append('"');
+        return json.toString();
+    }
+
+    /**
+     * @param value Value, can be <code>null</code>.
+     * @return CSV field for <code>value</code>, quoted if needed.
+     */
+    private static String toCsv(String value)
+    {
+        if (value == null)
+        {
+            return "";
+        }
+        if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1)
+        {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
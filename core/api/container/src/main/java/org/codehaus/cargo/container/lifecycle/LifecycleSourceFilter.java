@@ -0,0 +1,93 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.lifecycle;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Listener forwarding to another listener only the phases of a given set of sources, or the
+ * phases completed on a given thread. As listeners are registered for the whole JVM, this lets a
+ * reporter only collect the phases of its own build when several builds share the JVM, for
+ * example the modules of a parallel Maven build.
+ */
+public class LifecycleSourceFilter implements LifecycleListener
+{
+    /**
+     * Listener to which accepted phases are forwarded.
+     */
+    private final LifecycleListener delegate;
+
+    /**
+     * Thread whose phases are all accepted, can be <code>null</code>.
+     */
+    private final Thread thread;
+
+    /**
+     * Sources whose phases are accepted, compared by identity.
+     */
+    private final Set<Object> sources = Collections.synchronizedSet(
+        Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()));
+
+    /**
+     * @param delegate Listener to which accepted phases are forwarded.
+     * @param thread Thread whose phases are all accepted, <code>null</code> to only accept the
+     * phases of the added sources.
+     */
+    public LifecycleSourceFilter(LifecycleListener delegate, Thread thread)
+    {
+        this.delegate = delegate;
+        this.thread = thread;
+    }
+
+    /**
+     * Accepts the phases of a source, whichever thread they complete on.
+     * @param source Container, configuration, installer or deployer.
+     */
+    public void addSource(Object source)
+    {
+        if (source != null)
+        {
+            this.sources.add(source);
+        }
+    }
+
+    /**
+     * @param phase Completed phase.
+     * @return <code>true</code> if the phase is forwarded to the delegate listener.
+     */
+    public boolean accepts(LifecyclePhase phase)
+    {
+        return Thread.currentThread() == this.thread || this.sources.contains(phase.getSource());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void phaseCompleted(LifecyclePhase phase)
+    {
+        if (accepts(phase))
+        {
+            this.delegate.phaseCompleted(phase);
+        }
+    }
+}
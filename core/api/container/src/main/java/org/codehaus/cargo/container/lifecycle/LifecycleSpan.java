@@ -0,0 +1,190 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.lifecycle;
+
+/**
+ * Lifecycle phase in progress, created with {@link LifecycleInstrumentation#begin}. Spans must
+ * be ended in the thread that has begun them, typically in a <code>finally</code> block.
+ */
+public class LifecycleSpan
+{
+    /**
+     * Object the phase belongs to.
+     */
+    private final Object source;
+
+    /**
+     * Name of the object the phase belongs to.
+     */
+    private final String sourceName;
+
+    /**
+     * Phase name.
+     */
+    private final String name;
+
+    /**
+     * Enclosing span, <code>null</code> if none.
+     */
+    private final LifecycleSpan parent;
+
+    /**
+     * Start time, in milliseconds since the epoch.
+     */
+    private final long startTime;
+
+    /**
+     * Number of bytes copied or transferred.
+     */
+    private long bytes;
+
+    /**
+     * Number of processes spawned.
+     */
+    private int processes;
+
+    /**
+     * Failure message, <code>null</code> if none.
+     */
+    private String failure;
+
+    /**
+     * Whether the span has ended.
+     */
+    private boolean ended;
+
+    /**
+     * Save all attributes and start the span.
+     * 
+     * @param source Object the phase belongs to.
+     * @param sourceName Name of the object the phase belongs to.
+     * @param name Phase name.
+     * @param parent Enclosing span, <code>null</code> if none.
+     */
+    LifecycleSpan(Object source, String sourceName, String name, LifecycleSpan parent)
+    {
+        this.source = source;
+        this.sourceName = sourceName;
+        this.name = name;
+        this.parent = parent;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return Phase name.
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * @return Enclosing span, <code>null</code> if none.
+     */
+    LifecycleSpan getParent()
+    {
+        return this.parent;
+    }
+
+    /**
+     * @return Whether the span has ended.
+     */
+    boolean isEnded()
+    {
+        return this.ended;
+    }
+
+    /**
+     * @param bytes Number of bytes copied or transferred during the phase.
+     */
+    public void addBytes(long bytes)
+    {
+        this.bytes += bytes;
+    }
+
+    /**
+     * Count a process spawned during the phase.
+     */
+    public void addProcess()
+    {
+        this.processes++;
+    }
+
+    /**
+     * Mark the phase as failed.
+     * 
+     * @param cause Failure cause.
+     */
+    public void setFailure(Throwable cause)
+    {
+        this.failure = cause.toString();
+    }
+
+    /**
+     * End the phase and notify the listeners. Spans nested within this one which have not been
+     * ended, for example because of an exception, are ended first and marked as failed. Ending a
+     * span twice has no effect.
+     */
+    public void end()
+    {
+        LifecycleInstrumentation.end(this);
+    }
+
+    /**
+     * End this span only, adding its counters to the enclosing span.
+     * 
+     * @return Completed phase.
+     */
+    LifecyclePhase complete()
+    {
+        this.ended = true;
+        if (this.parent != null)
+        {
+            this.parent.bytes += this.bytes;
+            this.parent.processes += this.processes;
+        }
+        return new LifecyclePhase(this.source, this.sourceName, this.name, getPath(),
+            this.startTime, System.currentTimeMillis() - this.startTime, this.bytes,
+                this.processes, this.failure);
+    }
+
+    /**
+     * Mark the phase as interrupted by an exception, unless a failure has already been set.
+     */
+    void interrupt()
+    {
+        if (this.failure == null)
+        {
+            this.failure = "Interrupted";
+        }
+    }
+
+    /**
+     * @return Path of the phase.
+     */
+    private String getPath()
+    {
+        if (this.parent == null)
+        {
+            return this.name;
+        }
+        return this.parent.getPath() + "/" + this.name;
+    }
+}
@@ -85,4 +85,58 @@ public interface GeneralPropertySet
      * The port offset to apply to the container ports.
      */
     String PORT_OFFSET = "cargo.port.offset";
+
+    /**
+     * Set to <code>true</code> to have local containers reserve, when starting, a block of free
+     * ports that no other container on the same host uses. The port offset is then chosen
+     * automatically, starting from {@link #PORT_OFFSET}, and the block is released when the
+     * container stops.
+     */
+    String PORT_ALLOCATION = "cargo.port.allocation";
+
+    /**
+     * Difference between two port offsets tried when {@link #PORT_ALLOCATION} is enabled.
+     */
+    String PORT_ALLOCATION_STEP = "cargo.port.allocation.step";
+
+    /**
+     * Directory in which snapshots of created standalone configurations are kept. When set, a
+     * standalone configuration whose inputs (properties, files, resources, datasources, users and
+     * deployables) have not changed since a snapshot was taken is restored from that snapshot
+     * instead of being created again.
+     */
+    String CONFIGURATION_SNAPSHOT_DIRECTORY = "cargo.configuration.snapshot.directory";
+
+    /**
+     * Whether configuration snapshots are relocatable, i.e. shared by configurations that only
+     * differ by their home, their {@link #CONFIGURATION_SNAPSHOT_ROOT} and their ports. When
+     * <code>true</code>, the home directory and the values of the <code>cargo.*.port</code>
+     * properties between 1024 and 65535 are left out of the snapshot fingerprint; the original
+     * home path is replaced by the new one in the restored text files and properties, and the
+     * original ports by the new ones in the restored text files.
+     */
+    String CONFIGURATION_SNAPSHOT_RELOCATABLE = "cargo.configuration.snapshot.relocatable";
+
+    /**
+     * Directory holding the local files of a relocatable configuration, such as its deployables
+     * and configuration files. Files in that directory are fingerprinted by their path relative
+     * to it, their size and their content, and the original directory path is replaced by the
+     * new one when restoring a relocatable snapshot, so that configurations whose files are
+     * copies kept in different directories share their snapshots.
+     */
+    String CONFIGURATION_SNAPSHOT_ROOT = "cargo.configuration.snapshot.root";
+
+    /**
+     * Maximum number of snapshots kept in the configuration snapshot directory. Once a snapshot
+     * has been saved, the least recently saved or restored snapshots beyond that number are
+     * deleted. Default is 16.
+     */
+    String CONFIGURATION_SNAPSHOT_MAX = "cargo.configuration.snapshot.max";
+
+    /**
+     * Set to <code>true</code> to start installed containers with a class data sharing archive.
+     * The first start with a given JDK and container home creates the archive when the container
+     * stops, later starts use it. Requires Java 13 or above.
+     */
+    String CLASS_DATA_SHARING = "cargo.jvm.cds";
 }
@@ -40,15 +40,18 @@ import org.codehaus.cargo.container.ContainerType;
 import org.codehaus.cargo.container.InstalledLocalContainer;
 import org.codehaus.cargo.container.configuration.LocalConfiguration;
 import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.internal.util.ClassDataSharingArchive;
 import org.codehaus.cargo.container.internal.util.HttpUtils;
 import org.codehaus.cargo.container.internal.util.JdkUtils;
 import org.codehaus.cargo.container.internal.util.ResourceUtils;
 import org.codehaus.cargo.container.property.GeneralPropertySet;
 import org.codehaus.cargo.container.property.SSHPropertySet;
 import org.codehaus.cargo.container.spi.jvm.DefaultJvmLauncherFactory;
+import org.codehaus.cargo.container.spi.jvm.JvmExitListener;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncher;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncherFactory;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncherRequest;
+import org.codehaus.cargo.container.spi.jvm.ObservableJvmLauncher;
 import org.codehaus.cargo.util.AntUtils;
 import org.codehaus.cargo.util.log.Logger;
 
@@ -102,13 +105,24 @@ public abstract class AbstractInstalledLocalContainer extends AbstractLocalConta
     /**
      * JVM launcher that started the container.
      */
-    private JvmLauncher jvmStartLauncher;
+    private volatile JvmLauncher jvmStartLauncher;
 
     /**
      * Major JVM version
      */
     private int jvmMajorVersion = -1;
 
+    /**
+     * Whether {@link #jvmMajorVersion} has been read from the container JVM, rather than taken
+     * from the current JVM because the container JVM version could not be read.
+     */
+    private boolean jvmMajorVersionProbed;
+
+    /**
+     * Class data sharing archive used by the current start, <code>null</code> if none.
+     */
+    private ClassDataSharingArchive classDataSharingArchive;
+
     /**
      * Default constructor.
      * 
@@ -285,6 +299,24 @@ public abstract class AbstractInstalledLocalContainer extends AbstractLocalConta
     protected void startInternal() throws Exception
     {
         jvmStartLauncher = createJvmLauncher(true);
+        if (isStartJvmMonitored() && jvmStartLauncher instanceof ObservableJvmLauncher)
+        {
+            ((ObservableJvmLauncher) jvmStartLauncher).setExitListener(new JvmExitListener()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void jvmExited(JvmLauncher launcher, int exitCode)
+                {
+                    // Ignore late exits of JVMs started before a restart
+                    if (launcher == jvmStartLauncher)
+                    {
+                        containerExited(exitCode);
+                    }
+                }
+            });
+        }
         // Due to defect in org.apache.tools.ant.taskdefs.Java#setAppend we
         // can't call setAppendOutput if we want to spawn the process. If the 
         // output isn't null we will have already disabled process spawning
@@ -293,9 +325,48 @@ public abstract class AbstractInstalledLocalContainer extends AbstractLocalConta
             jvmStartLauncher.setAppendOutput(isAppend());
         }
         addMemoryArguments(jvmStartLauncher);
+        addClassDataSharingArguments(jvmStartLauncher);
         doStart(jvmStartLauncher);
     }
 
+    /**
+     * Whether the JVM started by {@link #doStart(JvmLauncher)} runs the server until it is
+     * stopped, in which case its exit means that the container has ended. Containers which start
+     * the server using a command that returns once the server runs in another process must
+     * return <code>false</code>.
+     * @return <code>true</code>
+     */
+    protected boolean isStartJvmMonitored()
+    {
+        return true;
+    }
+
+    /**
+     * Reports the startup time saved by the class data sharing archive, if any. {@inheritDoc}
+     */
+    @Override
+    protected void startupCompleted(long startupTime)
+    {
+        if (classDataSharingArchive == null)
+        {
+            return;
+        }
+
+        Long saved = classDataSharingArchive.recordStartupTime(startupTime);
+        if (classDataSharingArchive.isTraining())
+        {
+            getLogger().info("Training start took " + startupTime + " ms, the class data "
+                + "sharing archive " + classDataSharingArchive.getArchiveFile()
+                    + " will be written when the container stops", this.getClass().getName());
+        }
+        else if (saved != null)
+        {
+            getLogger().info("Started in " + startupTime + " ms using the class data sharing "
+                + "archive, " + saved + " ms faster than the training start",
+                    this.getClass().getName());
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -366,19 +437,18 @@ public abstract class AbstractInstalledLocalContainer extends AbstractLocalConta
                     Thread.sleep(100);
                 }
                 br = new BufferedReader(new FileReader(jvmVersionFile));
-                jvmVersion = br.readLine();
-                if (jvmVersion != null && jvmVersion.startsWith("java version \""))
+                String line = br.readLine();
+                jvmVersion = parseJvmVersion(line);
+                if (jvmVersion == null)
                 {
-                    jvmVersion = jvmVersion.substring(jvmVersion.indexOf('"') + 1);
-                }
-                else
-                {
-                    throw new IOException("Can't read JVM version from line: " + jvmVersion);
+                    throw new IOException("Can't read JVM version from line: " + line);
                 }
+                jvmMajorVersionProbed = true;
             }
             catch (Throwable t)
             {
                 jvmVersion = System.getProperty("java.version");
+                jvmMajorVersionProbed = false;
             }
             finally
             {
@@ -660,6 +730,64 @@ public abstract class AbstractInstalledLocalContainer extends AbstractLocalConta
         }
     }
 
+    /**
+     * Read the JVM version from the first line printed by <code>java -version</code>, such as
+     * <code>java version "1.8.0_392"</code> or <code>openjdk version "17.0.9" 2023-10-17</code>.
+     * 
+     * @param line First line printed by <code>java -version</code>, can be <code>null</code>.
+     * @return JVM version, <code>null</code> if the line does not contain any.
+     */
+    static String parseJvmVersion(String line)
+    {
+        if (line == null
+            || !line.startsWith("java version \"") && !line.startsWith("openjdk version \""))
+        {
+            return null;
+        }
+        int start = line.indexOf('"') + 1;
+        int end = line.indexOf('"', start);
+        return end == -1 ? line.substring(start) : line.substring(start, end);
+    }
+
+    /**
+     * Adds the class data sharing arguments if {@link GeneralPropertySet#CLASS_DATA_SHARING} is
+     * enabled: the container JVM either creates a dynamic archive of its classes when it exits or
+     * uses the archive created by a previous start.
+     * 
+     * @param java the predefined JVM launcher on which to add class data sharing arguments
+     */
+    protected void addClassDataSharingArguments(JvmLauncher java)
+    {
+        classDataSharingArchive = null;
+        if (!Boolean.parseBoolean(getConfiguration().getPropertyValue(
+            GeneralPropertySet.CLASS_DATA_SHARING)) || getHome() == null
+            || getConfiguration().getPropertyValue(SSHPropertySet.HOST) != null)
+        {
+            return;
+        }
+        if (!jvmMajorVersionProbed)
+        {
+            getLogger().warn("Class data sharing archives are disabled since the version of the "
+                + "container JVM could not be read", this.getClass().getName());
+            return;
+        }
+        if (jvmMajorVersion < ClassDataSharingArchive.MINIMUM_JAVA_VERSION)
+        {
+            getLogger().warn("Class data sharing archives require Java "
+                + ClassDataSharingArchive.MINIMUM_JAVA_VERSION + " or above, the container JVM "
+                    + "is Java " + jvmMajorVersion, this.getClass().getName());
+            return;
+        }
+
+        String home = getFileHandler().getAbsolutePath(getHome());
+        classDataSharingArchive = new ClassDataSharingArchive(
+            new File(home, ".cargo-cds"), getJavaHome(), home);
+        classDataSharingArchive.addJvmArguments(java);
+        getLogger().debug("Using class data sharing arguments for archive "
+            + classDataSharingArchive.getArchiveFile() + ", training start: "
+                + classDataSharingArchive.isTraining(), this.getClass().getName());
+    }
+
     /**
      * Add option of spawn if property exists
      * 
@@ -22,14 +22,23 @@ package org.codehaus.cargo.container.spi;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.ContainerListener;
 import org.codehaus.cargo.container.LocalContainer;
+import org.codehaus.cargo.container.ObservableContainer;
 import org.codehaus.cargo.container.State;
 import org.codehaus.cargo.container.configuration.LocalConfiguration;
 import org.codehaus.cargo.container.deployer.DeployableMonitor;
 import org.codehaus.cargo.container.deployer.URLDeployableMonitor;
+import org.codehaus.cargo.container.internal.util.PortBlockAllocator;
+import org.codehaus.cargo.container.lifecycle.LifecycleInstrumentation;
+import org.codehaus.cargo.container.lifecycle.LifecycleSpan;
+import org.codehaus.cargo.container.property.GeneralPropertySet;
 import org.codehaus.cargo.container.property.ServletPropertySet;
 import org.codehaus.cargo.container.spi.deployer.DeployerWatchdog;
 import org.codehaus.cargo.container.spi.util.ContainerUtils;
@@ -41,7 +50,8 @@ import org.codehaus.cargo.util.FileHandler;
 /**
  * Default container implementation that all local container implementations must extend.
  */
-public abstract class AbstractLocalContainer extends AbstractContainer implements LocalContainer
+public abstract class AbstractLocalContainer extends AbstractContainer
+    implements LocalContainer, ObservableContainer
 {
     /**
      * The file to which output of the container should be written.
@@ -67,13 +77,28 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
     /**
      * Container state. Default to unknown state.
      */
-    private State state = State.UNKNOWN;
+    private volatile State state = State.UNKNOWN;
+
+    /**
+     * Listeners notified of state changes and of the container's server ending.
+     */
+    private final List<ContainerListener> listeners = new CopyOnWriteArrayList<ContainerListener>();
 
     /**
      * File utility class.
      */
     private FileHandler fileHandler;
 
+    /**
+     * Block of ports reserved for the container, <code>null</code> if none.
+     */
+    private PortBlockAllocator.Reservation portReservation;
+
+    /**
+     * Port offset of the configuration before ports have been reserved.
+     */
+    private String originalPortOffset;
+
     /**
      * Default constructor.
      * @param configuration the configuration to associate to this container. It can be changed
@@ -166,6 +191,17 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
         // No implementation defined here
     }
 
+    /**
+     * Called once the container has been waited for and is started, before the post start tasks
+     * are executed. Not called if the container is not waited for, i.e. if the timeout is 0.
+     * 
+     * @param startupTime Time, in milliseconds, the container took to start.
+     */
+    protected void startupCompleted(long startupTime)
+    {
+        // No implementation defined here
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -188,51 +224,80 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
 
         getLogger().info(getName() + " starting...", this.getClass().getName());
 
+        LifecycleSpan span = LifecycleInstrumentation.begin(this, "start");
         try
         {
-            this.getConfiguration().applyPortOffset();
+            LifecycleSpan phase = LifecycleInstrumentation.begin(this, "applyPortOffset");
+            try
+            {
+                reservePorts();
+                this.getConfiguration().applyPortOffset();
+            }
+            finally
+            {
+                phase.end();
+            }
 
             verify();
 
             // Ensure that the configuration is done before starting the container.
-            getConfiguration().configure(this);
+            phase = LifecycleInstrumentation.begin(this, "configure");
+            try
+            {
+                getConfiguration().configure(this);
+            }
+            finally
+            {
+                phase.end();
+            }
 
             // CARGO-365: Check if ports are in use
-            for (Map.Entry<String, String> property
-                : getConfiguration().getProperties().entrySet())
+            phase = LifecycleInstrumentation.begin(this, "checkPorts");
+            try
             {
-                // CARGO-1438: Only check ports for property names prefixed with "cargo."
-                if (property.getKey().startsWith("cargo.") && property.getKey().endsWith(".port")
-                    && property.getValue() != null)
-                {
-                    try
-                    {
-                        int port = Integer.parseInt(property.getValue());
-                        if (!isPortShutdown(port, 0))
-                        {
-                            throw new ContainerException("Port number " + property.getValue()
-                                + " (defined with the property " + property.getKey() + ") is "
-                                    + "in use. Please free it on the system or set it to a "
-                                        + "different port in the container configuration.");
-                        }
-                    }
-                    catch (NumberFormatException e) 
-                    {
-                        // We do nothing
-                    }
-                }
+                checkPorts();
+            }
+            finally
+            {
+                phase.end();
             }
 
-            startInternal();
+            long startTime = System.currentTimeMillis();
+            phase = LifecycleInstrumentation.begin(this, "startInternal");
+            try
+            {
+                startInternal();
+            }
+            finally
+            {
+                phase.end();
+            }
 
             // CARGO-712: If timeout is 0, don't wait at all
             if (getTimeout() != 0)
             {
                 // Wait until the container is fully started
-                waitForCompletion(true);
+                phase = LifecycleInstrumentation.begin(this, "waitForStart");
+                try
+                {
+                    waitForCompletion(true);
+                }
+                finally
+                {
+                    phase.end();
+                }
+                startupCompleted(System.currentTimeMillis() - startTime);
             }
 
-            executePostStartTasks();
+            phase = LifecycleInstrumentation.begin(this, "executePostStartTasks");
+            try
+            {
+                executePostStartTasks();
+            }
+            finally
+            {
+                phase.end();
+            }
 
             setState(State.STARTED);
             getLogger().info(getName() + " started on port ["
@@ -241,15 +306,21 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
         }
         catch (CargoException e)
         {
+            span.setFailure(e);
             setState(State.UNKNOWN);
             getLogger().warn(e.toString(), this.getClass().getName());
+            this.getConfiguration().revertPortOffset();
+            releasePorts();
 
             throw e;
         }
         catch (Throwable t)
         {
+            span.setFailure(t);
             setState(State.UNKNOWN);
             getLogger().warn(t.toString(), this.getClass().getName());
+            this.getConfiguration().revertPortOffset();
+            releasePorts();
 
             throw new ContainerException("Failed to start the " + getName() + " container."
                 + (getOutput() == null ? "" : " Check the [" + getOutput() + "] file "
@@ -258,6 +329,37 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
         finally 
         {
             this.getConfiguration().revertPortOffset();
+            span.end();
+        }
+    }
+
+    /**
+     * CARGO-365: Check that the ports of the configuration are not in use.
+     */
+    private void checkPorts()
+    {
+        for (Map.Entry<String, String> property : getConfiguration().getProperties().entrySet())
+        {
+            // CARGO-1438: Only check ports for property names prefixed with "cargo."
+            if (property.getKey().startsWith("cargo.") && property.getKey().endsWith(".port")
+                && property.getValue() != null)
+            {
+                try
+                {
+                    int port = Integer.parseInt(property.getValue());
+                    if (!isPortShutdown(port, 0))
+                    {
+                        throw new ContainerException("Port number " + property.getValue()
+                            + " (defined with the property " + property.getKey() + ") is "
+                                + "in use. Please free it on the system or set it to a "
+                                    + "different port in the container configuration.");
+                    }
+                }
+                catch (NumberFormatException e) 
+                {
+                    // We do nothing
+                }
+            }
         }
     }
 
@@ -272,6 +374,7 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
 
         final boolean isAppend = isAppend();
 
+        LifecycleSpan span = LifecycleInstrumentation.begin(this, "stop");
         try
         {
             this.getConfiguration().applyPortOffset();
@@ -281,13 +384,29 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
             // CARGO-520: Always set append to "true" when stopping
             setAppend(true);
 
-            stopInternal();
+            LifecycleSpan phase = LifecycleInstrumentation.begin(this, "stopInternal");
+            try
+            {
+                stopInternal();
+            }
+            finally
+            {
+                phase.end();
+            }
 
             // CARGO-712: If timeout is 0, don't wait at all
             if (getTimeout() != 0)
             {
                 // Wait until the container is fully stopped
-                waitForCompletion(false);
+                phase = LifecycleInstrumentation.begin(this, "waitForStop");
+                try
+                {
+                    waitForCompletion(false);
+                }
+                finally
+                {
+                    phase.end();
+                }
             }
 
             // Force the container to stop, should it not already be stopped.
@@ -300,6 +419,7 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
         }
         catch (Exception e)
         {
+            span.setFailure(e);
             setState(State.UNKNOWN);
             throw new ContainerException("Failed to stop the " + getName() + " container."
                 + (getOutput() == null ? "" : " Check the [" + getOutput() + "] file "
@@ -309,7 +429,94 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
         {
             setAppend(isAppend);
             this.getConfiguration().revertPortOffset();
+            releasePorts();
+            span.end();
+        }
+    }
+
+    /**
+     * Reserve a block of ports for the container if {@link GeneralPropertySet#PORT_ALLOCATION}
+     * is enabled, and set the port offset of the configuration accordingly. The reservation is
+     * kept until the container is stopped.
+     */
+    protected void reservePorts()
+    {
+        if (this.portReservation != null || !Boolean.parseBoolean(
+            getConfiguration().getPropertyValue(GeneralPropertySet.PORT_ALLOCATION)))
+        {
+            return;
         }
+
+        List<Integer> ports = new ArrayList<Integer>();
+        for (Map.Entry<String, String> property : getConfiguration().getProperties().entrySet())
+        {
+            // CARGO-1438: Only check ports for property names prefixed with "cargo."
+            if (property.getKey().startsWith("cargo.") && property.getKey().endsWith(".port")
+                && property.getValue() != null)
+            {
+                try
+                {
+                    int port = Integer.parseInt(property.getValue());
+                    if (port > 0 && port <= 65535)
+                    {
+                        ports.add(port);
+                    }
+                }
+                catch (NumberFormatException e)
+                {
+                    // We do nothing
+                }
+            }
+        }
+        if (ports.isEmpty())
+        {
+            return;
+        }
+
+        this.originalPortOffset = getConfiguration().getPropertyValue(
+            GeneralPropertySet.PORT_OFFSET);
+        int firstOffset = 0;
+        int step = 10;
+        try
+        {
+            if (this.originalPortOffset != null)
+            {
+                firstOffset = Integer.parseInt(this.originalPortOffset);
+            }
+            String stepValue =
+                getConfiguration().getPropertyValue(GeneralPropertySet.PORT_ALLOCATION_STEP);
+            if (stepValue != null)
+            {
+                step = Integer.parseInt(stepValue);
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ContainerException("Invalid port offset or port allocation step", e);
+        }
+
+        this.portReservation = PortBlockAllocator.getInstance().reserve(ports, firstOffset, step);
+        getConfiguration().setProperty(GeneralPropertySet.PORT_OFFSET,
+            Integer.toString(this.portReservation.getOffset()));
+        getLogger().info("Reserved ports " + ports + " with offset "
+            + this.portReservation.getOffset(), this.getClass().getName());
+    }
+
+    /**
+     * Release the block of ports reserved by {@link #reservePorts()}, if any, and restore the
+     * port offset of the configuration.
+     */
+    protected void releasePorts()
+    {
+        if (this.portReservation == null)
+        {
+            return;
+        }
+
+        PortBlockAllocator.getInstance().release(this.portReservation);
+        this.portReservation = null;
+        getConfiguration().setProperty(GeneralPropertySet.PORT_OFFSET, this.originalPortOffset);
+        getLogger().debug("Released reserved ports", this.getClass().getName());
     }
 
     /**
@@ -412,7 +619,7 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
                 }
 
                 waitForPortShutdown(port, connectTimeout, deadline);
-                getLogger().debug("\tPort " + port + " is shutdown", this.getClass().getName());
+                getLazyLogger().debug("\tPort %d is shutdown", this.getClass().getName(), port);
 
                 connectTimeout = 250;
                 continue;
@@ -436,8 +643,8 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
     protected void waitForPortShutdown(int port, int connectTimeout, long deadline)
         throws InterruptedException
     {
-        getLogger().debug("Waiting for port " + port + " to shutdown, deadline " + deadline,
-            this.getClass().getName());
+        getLazyLogger().debug("Waiting for port %d to shutdown, deadline %d",
+            this.getClass().getName(), port, deadline);
 
         while (true)
         {
@@ -502,11 +709,85 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
     }
 
     /**
+     * Set the container state and notify the {@link ContainerListener}s if it has changed.
      * @param state the container current state
      */
     protected void setState(State state)
     {
+        State previousState = this.state;
         this.state = state;
+        if (previousState != state)
+        {
+            for (ContainerListener listener : this.listeners)
+            {
+                try
+                {
+                    listener.stateChanged(this, previousState, state);
+                }
+                catch (RuntimeException e)
+                {
+                    getLogger().warn("Container listener " + listener + " failed: " + e,
+                        this.getClass().getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addContainerListener(ContainerListener listener)
+    {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeContainerListener(ContainerListener listener)
+    {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Notify the {@link ContainerListener}s that the container's server has ended. If the
+     * container was started, the server has ended on its own: this is logged along with the last
+     * lines of the container's output and the container is then considered stopped.
+     * @param exitCode the exit code of the container's JVM, <code>-1</code> if not known
+     */
+    protected void containerExited(int exitCode)
+    {
+        boolean unexpected = getState() == State.STARTED;
+        String outputTail = ContainerUtils.readOutputTail(getOutput());
+        if (unexpected)
+        {
+            getLogger().warn(getName() + " has ended unexpectedly"
+                + (exitCode == -1 ? "" : " with exit code " + exitCode)
+                + (outputTail == null ? "" : ", last lines of its output:"
+                    + System.getProperty("line.separator") + outputTail),
+                this.getClass().getName());
+        }
+
+        for (ContainerListener listener : this.listeners)
+        {
+            try
+            {
+                listener.containerExited(this, exitCode, outputTail);
+            }
+            catch (RuntimeException e)
+            {
+                getLogger().warn("Container listener " + listener + " failed: " + e,
+                    this.getClass().getName());
+            }
+        }
+
+        if (unexpected)
+        {
+            releasePorts();
+            setState(State.STOPPED);
+        }
     }
 
     /**
@@ -542,15 +823,15 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
         Socket s = new Socket();
         try
         {
-            getLogger().debug("\tConnection attempt with socket " + s + ", current time is "
-                + System.currentTimeMillis(), this.getClass().getName());
+            getLazyLogger().debug("\tConnection attempt with socket %s, current time is %d",
+                this.getClass().getName(), s, System.currentTimeMillis());
 
             s.bind(null);
 
             // If the remote port is closed, s.connect will throw an exception
             s.connect(new InetSocketAddress("localhost", port), connectTimeout);
-            getLogger().debug("\tSocket " + s + " for port " + port + " managed to connect",
-                this.getClass().getName());
+            getLazyLogger().debug("\tSocket %s for port %d managed to connect",
+                this.getClass().getName(), s, port);
 
             try
             {
@@ -559,8 +840,8 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
             catch (IOException e)
             {
                 // ignored, irrelevant
-                getLogger().debug("\tFailed to shutdown output for socket " + s + ": " + e,
-                    this.getClass().getName());
+                getLazyLogger().debug("\tFailed to shutdown output for socket %s: %s",
+                    this.getClass().getName(), s, e);
             }
             try
             {
@@ -569,12 +850,12 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
             catch (IOException e)
             {
                 // ignored, irrelevant
-                getLogger().debug("\tFailed to shutdown input for socket " + s + ": " + e,
-                    this.getClass().getName());
+                getLazyLogger().debug("\tFailed to shutdown input for socket %s: %s",
+                    this.getClass().getName(), s, e);
             }
 
-            getLogger().debug("\tSocket " + s + " for port " + port + " shutdown",
-                this.getClass().getName());
+            getLazyLogger().debug("\tSocket %s for port %d shutdown",
+                this.getClass().getName(), s, port);
         }
         catch (IOException ignored)
         {
@@ -590,13 +871,13 @@ public abstract class AbstractLocalContainer extends AbstractContainer implement
             catch (IOException e)
             {
                 // ignored, irrelevant
-                getLogger().debug("\tFailed to close socket " + s + ": " + e,
-                    this.getClass().getName());
+                getLazyLogger().debug("\tFailed to close socket %s: %s",
+                    this.getClass().getName(), s, e);
             }
             finally
             {
-                getLogger().debug("\tSocket " + s + " for port " + port + " closed",
-                    this.getClass().getName());
+                getLazyLogger().debug("\tSocket %s for port %d closed",
+                    this.getClass().getName(), s, port);
 
                 s = null;
                 System.gc();
@@ -29,6 +29,7 @@ import org.apache.tools.ant.types.FilterChain;
 
 import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.LocalContainer;
+import org.codehaus.cargo.container.configuration.ConfigurationType;
 import org.codehaus.cargo.container.configuration.FileConfig;
 import org.codehaus.cargo.container.configuration.LocalConfiguration;
 import org.codehaus.cargo.container.configuration.builder.ConfigurationEntryType;
@@ -36,6 +37,8 @@ import org.codehaus.cargo.container.configuration.entry.DataSource;
 import org.codehaus.cargo.container.configuration.entry.Resource;
 import org.codehaus.cargo.container.deployable.Deployable;
 import org.codehaus.cargo.container.internal.util.ResourceUtils;
+import org.codehaus.cargo.container.lifecycle.LifecycleInstrumentation;
+import org.codehaus.cargo.container.lifecycle.LifecycleSpan;
 import org.codehaus.cargo.container.property.DataSourceConverter;
 import org.codehaus.cargo.container.property.DatasourcePropertySet;
 import org.codehaus.cargo.container.property.GeneralPropertySet;
@@ -279,17 +282,98 @@ public abstract class AbstractLocalConfiguration extends AbstractConfiguration i
         parsePropertiesForPendingConfiguration();
         verify();
 
+        ConfigurationSnapshotCache snapshotCache = null;
+        String fingerprint = null;
+        String snapshotDirectory =
+            getPropertyValue(GeneralPropertySet.CONFIGURATION_SNAPSHOT_DIRECTORY);
+        if (snapshotDirectory != null && snapshotDirectory.length() > 0
+            && getType() == ConfigurationType.STANDALONE)
+        {
+            String maxSnapshotsValue =
+                getPropertyValue(GeneralPropertySet.CONFIGURATION_SNAPSHOT_MAX);
+            int maxSnapshots = ConfigurationSnapshotCache.DEFAULT_MAX_SNAPSHOTS;
+            if (maxSnapshotsValue != null && maxSnapshotsValue.trim().length() > 0)
+            {
+                try
+                {
+                    maxSnapshots = Integer.parseInt(maxSnapshotsValue.trim());
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new ContainerException("Invalid maximum number of snapshots ["
+                        + maxSnapshotsValue + "] for property "
+                            + GeneralPropertySet.CONFIGURATION_SNAPSHOT_MAX
+                                + ". The value must be an integer", e);
+                }
+            }
+            snapshotCache = new ConfigurationSnapshotCache(snapshotDirectory, getFileHandler(),
+                Boolean.parseBoolean(
+                    getPropertyValue(GeneralPropertySet.CONFIGURATION_SNAPSHOT_RELOCATABLE)),
+                maxSnapshots);
+            LifecycleSpan phase = LifecycleInstrumentation.begin(this, "restoreSnapshot");
+            boolean restored;
+            try
+            {
+                fingerprint = snapshotCache.computeFingerprint(container, this);
+                restored = snapshotCache.restore(fingerprint, this);
+            }
+            finally
+            {
+                phase.end();
+            }
+            if (restored)
+            {
+                getLogger().info("Restored configuration snapshot " + fingerprint + " into "
+                    + getHome(), this.getClass().getName());
+                return;
+            }
+        }
+
+        LifecycleSpan phase = LifecycleInstrumentation.begin(this, "doConfigure");
         try
         {
             doConfigure(container);
         }
         catch (Exception e)
         {
+            phase.setFailure(e);
             throw new ContainerException("Failed to create a " + container.getName() + " "
                 + getType().getType() + " configuration", e);
         }
+        finally
+        {
+            phase.end();
+        }
+
+        phase = LifecycleInstrumentation.begin(this, "configureFiles");
+        try
+        {
+            configureFiles(getFilterChain(), container);
+        }
+        finally
+        {
+            phase.end();
+        }
 
-        configureFiles(getFilterChain(), container);
+        if (snapshotCache != null)
+        {
+            phase = LifecycleInstrumentation.begin(this, "saveSnapshot");
+            try
+            {
+                snapshotCache.save(fingerprint, this);
+                getLogger().debug("Saved configuration snapshot " + fingerprint,
+                    this.getClass().getName());
+            }
+            catch (Exception e)
+            {
+                getLogger().warn("Failed to save configuration snapshot " + fingerprint + ": "
+                    + e, this.getClass().getName());
+            }
+            finally
+            {
+                phase.end();
+            }
+        }
     }
 
     /**
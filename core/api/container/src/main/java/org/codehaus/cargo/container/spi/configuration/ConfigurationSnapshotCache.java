@@ -0,0 +1,1325 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.configuration;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.codehaus.cargo.container.InstalledLocalContainer;
+import org.codehaus.cargo.container.LocalContainer;
+import org.codehaus.cargo.container.configuration.FileConfig;
+import org.codehaus.cargo.container.configuration.LocalConfiguration;
+import org.codehaus.cargo.container.configuration.StandaloneLocalConfiguration;
+import org.codehaus.cargo.container.configuration.entry.DataSource;
+import org.codehaus.cargo.container.configuration.entry.Resource;
+import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.internal.SpawnedContainer;
+import org.codehaus.cargo.container.property.GeneralPropertySet;
+import org.codehaus.cargo.container.property.User;
+import org.codehaus.cargo.util.CargoException;
+import org.codehaus.cargo.util.FileHandler;
+import org.codehaus.cargo.util.XmlReplacement;
+
+/**
+ * Cache of fully configured container homes. A snapshot of the home is saved after a standalone
+ * configuration has been created, keyed by a fingerprint of everything the configuration is made
+ * of: container installation, system properties and classpaths, properties and the local files
+ * they reference, configuration files, resources, datasources, users, XML replacements and
+ * deployables. When a configuration with the same fingerprint is configured
+ * again, the snapshot is copied back instead of generating the home again, which saves the
+ * domain creation scripts some containers need to run.<br><br>
+ * Local files, such as deployables and configuration files, are fingerprinted by path, size and
+ * modification time, so that any rebuilt file results in a new configuration.<br><br>
+ * Relocatable snapshots leave the home and the ports out of the fingerprint, so that a snapshot
+ * taken for one home can be cloned into another one; the original home path is then replaced by
+ * the new one in the restored text files and properties, and the original ports by the new ones
+ * in the restored text files. Local files within the
+ * {@link GeneralPropertySet#CONFIGURATION_SNAPSHOT_ROOT} of a relocatable configuration are
+ * fingerprinted by their path relative to it, their size and their content instead, and that root
+ * is replaced like the home, so that configurations using their own copies of the same files
+ * share their snapshots.<br><br>
+ * The number of snapshots is bounded: once a snapshot has been saved, the least recently saved or
+ * restored snapshots beyond the maximum are deleted. Restores and pruning are serialized using a
+ * lock file, so that a snapshot being restored is never deleted, even by another process.
+ */
+public class ConfigurationSnapshotCache
+{
+    /**
+     * Default maximum number of snapshots.
+     */
+    public static final int DEFAULT_MAX_SNAPSHOTS = 16;
+
+    /**
+     * Name of the directory, within a snapshot, containing the container home.
+     */
+    private static final String HOME_DIRECTORY = "home";
+
+    /**
+     * Name of the file, within a snapshot, containing the configuration properties as they were
+     * after the configuration had been created. This file is written last, so that incomplete
+     * snapshots are ignored.
+     */
+    private static final String PROPERTIES_FILE = "configuration.properties";
+
+    /**
+     * Entry of the properties file of a snapshot with the home the snapshot has been taken from.
+     */
+    private static final String SNAPSHOT_HOME = "cargo.configuration.snapshot.home";
+
+    /**
+     * Entry of the properties file of a snapshot with the
+     * {@link GeneralPropertySet#CONFIGURATION_SNAPSHOT_ROOT} the snapshot has been taken from.
+     */
+    private static final String SNAPSHOT_ROOT = "cargo.configuration.snapshot.rootPath";
+
+    /**
+     * Properties of the snapshot itself rather than of the configuration, which are not
+     * restored.
+     */
+    private static final List<String> SNAPSHOT_PROPERTIES = Arrays.asList(
+        GeneralPropertySet.CONFIGURATION_SNAPSHOT_DIRECTORY,
+        GeneralPropertySet.CONFIGURATION_SNAPSHOT_MAX,
+        GeneralPropertySet.CONFIGURATION_SNAPSHOT_ROOT, SNAPSHOT_HOME, SNAPSHOT_ROOT);
+
+    /**
+     * Replaces the {@link GeneralPropertySet#CONFIGURATION_SNAPSHOT_ROOT} in the fingerprinted
+     * paths and property values.
+     */
+    private static final String ROOT_PLACEHOLDER = "${cargo.configuration.snapshot.root}";
+
+    /**
+     * Lowest port relocatable snapshots leave out of the fingerprint. Lower ports are too short
+     * to be told apart from other numbers when relocating them.
+     */
+    private static final int MIN_RELOCATED_PORT = 1024;
+
+    /**
+     * Highest port.
+     */
+    private static final int MAX_PORT = 65535;
+
+    /**
+     * Punctuation characters which, next to letters and digits, are taken as part of file names
+     * when relocating paths.
+     */
+    private static final String FILE_NAME_PUNCTUATION = ".-_~+$";
+
+    /**
+     * Largest file, in bytes, in which the home path is replaced when restoring a relocatable
+     * snapshot.
+     */
+    private static final long MAX_RELOCATED_FILE_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Largest file, in bytes, referenced by a configuration property whose content is part of
+     * the fingerprint. Larger files are fingerprinted by size and modification time.
+     */
+    private static final long MAX_HASHED_FILE_SIZE = 1024 * 1024;
+
+    /**
+     * Directories of a container installation whose size and modification time identify the
+     * installed version.
+     */
+    private static final String[] INSTALLATION_DIRECTORIES = {"bin", "lib", "modules"};
+
+    /**
+     * Suffix of the directories snapshots are saved into before being renamed.
+     */
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /**
+     * Name of the lock file, in the snapshot directory.
+     */
+    private static final String LOCK_FILE = "snapshots.lock";
+
+    /**
+     * Locks of the snapshot directories used in this JVM, keyed by absolute path.
+     */
+    private static final ConcurrentMap<String, DirectoryLock> LOCKS =
+        new ConcurrentHashMap<String, DirectoryLock>();
+
+    /**
+     * Code versions computed by {@link #getCodeVersion(Class)}, keyed by code location.
+     */
+    private static final ConcurrentMap<String, String> CODE_VERSIONS =
+        new ConcurrentHashMap<String, String>();
+
+    /**
+     * Directory the snapshots are stored in.
+     */
+    private final File directory;
+
+    /**
+     * File handler used to copy container homes.
+     */
+    private final FileHandler fileHandler;
+
+    /**
+     * Whether snapshots can be restored into another home than the one they were taken from.
+     */
+    private final boolean relocatable;
+
+    /**
+     * Maximum number of snapshots, 0 or less for no maximum.
+     */
+    private final int maxSnapshots;
+
+    /**
+     * Lock of a snapshot directory, shared by the restores and exclusive for pruning, both between
+     * the threads of this JVM and between processes. As a JVM cannot hold overlapping locks on
+     * the same file, the shared file lock is held as long as any thread holds the shared lock.
+     */
+    private static final class DirectoryLock
+    {
+        /**
+         * Lock between the threads of this JVM.
+         */
+        private final ReentrantReadWriteLock threadLock = new ReentrantReadWriteLock();
+
+        /**
+         * Lock file.
+         */
+        private final File file;
+
+        /**
+         * Number of threads holding the shared lock.
+         */
+        private int sharedHolders;
+
+        /**
+         * Open lock file, holding the lock between processes.
+         */
+        private RandomAccessFile lockFile;
+
+        /**
+         * @param file Lock file.
+         */
+        private DirectoryLock(File file)
+        {
+            this.file = file;
+        }
+
+        /**
+         * Acquire the shared lock.
+         * 
+         * @throws IOException If locking the lock file fails.
+         */
+        private void lockShared() throws IOException
+        {
+            this.threadLock.readLock().lock();
+            try
+            {
+                synchronized (this)
+                {
+                    if (this.sharedHolders == 0)
+                    {
+                        lockFile(true);
+                    }
+                    this.sharedHolders++;
+                }
+            }
+            catch (IOException e)
+            {
+                this.threadLock.readLock().unlock();
+                throw e;
+            }
+        }
+
+        /**
+         * Release the shared lock.
+         */
+        private void unlockShared()
+        {
+            synchronized (this)
+            {
+                this.sharedHolders--;
+                if (this.sharedHolders == 0)
+                {
+                    unlockFile();
+                }
+            }
+            this.threadLock.readLock().unlock();
+        }
+
+        /**
+         * Acquire the exclusive lock.
+         * 
+         * @throws IOException If locking the lock file fails.
+         */
+        private void lockExclusive() throws IOException
+        {
+            this.threadLock.writeLock().lock();
+            try
+            {
+                synchronized (this)
+                {
+                    lockFile(false);
+                }
+            }
+            catch (IOException e)
+            {
+                this.threadLock.writeLock().unlock();
+                throw e;
+            }
+        }
+
+        /**
+         * Release the exclusive lock.
+         */
+        private void unlockExclusive()
+        {
+            synchronized (this)
+            {
+                unlockFile();
+            }
+            this.threadLock.writeLock().unlock();
+        }
+
+        /**
+         * Lock the lock file, waiting for other processes to release it if needed.
+         * 
+         * @param shared Whether to acquire a shared lock.
+         * @throws IOException If locking fails.
+         */
+        private void lockFile(boolean shared) throws IOException
+        {
+            this.file.getParentFile().mkdirs();
+            RandomAccessFile openFile = new RandomAccessFile(this.file, "rw");
+            try
+            {
+                openFile.getChannel().lock(0, Long.MAX_VALUE, shared);
+            }
+            catch (IOException e)
+            {
+                openFile.close();
+                throw e;
+            }
+            this.lockFile = openFile;
+        }
+
+        /**
+         * Unlock the lock file.
+         */
+        private void unlockFile()
+        {
+            try
+            {
+                // Closing the file releases the lock
+                this.lockFile.close();
+            }
+            catch (IOException ignored)
+            {
+                // Nothing more can be done
+            }
+            this.lockFile = null;
+        }
+    }
+
+    /**
+     * @param directory Directory the snapshots are stored in.
+     * @param fileHandler File handler used to copy container homes.
+     */
+    public ConfigurationSnapshotCache(String directory, FileHandler fileHandler)
+    {
+        this(directory, fileHandler, false);
+    }
+
+    /**
+     * @param directory Directory the snapshots are stored in.
+     * @param fileHandler File handler used to copy container homes.
+     * @param relocatable Whether snapshots can be restored into another home than the one they
+     * were taken from.
+     */
+    public ConfigurationSnapshotCache(String directory, FileHandler fileHandler,
+        boolean relocatable)
+    {
+        this(directory, fileHandler, relocatable, DEFAULT_MAX_SNAPSHOTS);
+    }
+
+    /**
+     * @param directory Directory the snapshots are stored in.
+     * @param fileHandler File handler used to copy container homes.
+     * @param relocatable Whether snapshots can be restored into another home than the one they
+     * were taken from.
+     * @param maxSnapshots Maximum number of snapshots, 0 or less for no maximum.
+     */
+    public ConfigurationSnapshotCache(String directory, FileHandler fileHandler,
+        boolean relocatable, int maxSnapshots)
+    {
+        this.directory = new File(directory);
+        this.fileHandler = fileHandler;
+        this.relocatable = relocatable;
+        this.maxSnapshots = maxSnapshots;
+    }
+
+    /**
+     * Compute the fingerprint of a configuration.
+     * 
+     * @param container Container the configuration is for.
+     * @param configuration Configuration, with all pending properties parsed.
+     * @return Fingerprint of all configuration inputs.
+     */
+    public String computeFingerprint(LocalContainer container, LocalConfiguration configuration)
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new CargoException("SHA-1 is not supported", e);
+        }
+        String root = getRoot(configuration);
+
+        update(digest, "cargo", getCodeVersion(ConfigurationSnapshotCache.class));
+        update(digest, "containerCode", getCodeVersion(container.getClass()));
+        update(digest, "configurationCode", getCodeVersion(configuration.getClass()));
+        update(digest, "container", container.getId());
+        update(digest, "containerName", container.getName());
+        if (container instanceof InstalledLocalContainer)
+        {
+            // The container version is identified by the installation's main directories, whose
+            // size and modification time change when the installation is replaced
+            String containerHome = ((InstalledLocalContainer) container).getHome();
+            update(digest, "containerHome", containerHome);
+            if (containerHome != null)
+            {
+                for (String directory : INSTALLATION_DIRECTORIES)
+                {
+                    File file = new File(containerHome, directory);
+                    update(digest, "installation", directory + "|" + file.length() + "|"
+                        + file.lastModified());
+                }
+            }
+        }
+        if (container instanceof SpawnedContainer)
+        {
+            SpawnedContainer spawnedContainer = (SpawnedContainer) container;
+            if (spawnedContainer.getSystemProperties() != null)
+            {
+                update(digest, "systemProperties", new TreeMap<String, String>(
+                    spawnedContainer.getSystemProperties()).toString());
+            }
+            if (spawnedContainer.getExtraClasspath() != null)
+            {
+                for (String location : spawnedContainer.getExtraClasspath())
+                {
+                    update(digest, "extraClasspath", relativize(location, root));
+                    updateFile(digest, location, root);
+                }
+            }
+            if (spawnedContainer.getSharedClasspath() != null)
+            {
+                for (String location : spawnedContainer.getSharedClasspath())
+                {
+                    update(digest, "sharedClasspath", relativize(location, root));
+                    updateFile(digest, location, root);
+                }
+            }
+        }
+        update(digest, "configuration", configuration.getClass().getName());
+        if (this.relocatable)
+        {
+            update(digest, "relocatable", "true");
+        }
+        else
+        {
+            update(digest, "home", configuration.getHome());
+        }
+
+        Map<String, String> properties =
+            new TreeMap<String, String>(configuration.getProperties());
+        properties.remove(GeneralPropertySet.CONFIGURATION_SNAPSHOT_DIRECTORY);
+        properties.remove(GeneralPropertySet.CONFIGURATION_SNAPSHOT_MAX);
+        properties.remove(GeneralPropertySet.CONFIGURATION_SNAPSHOT_ROOT);
+        if (this.relocatable)
+        {
+            // The port offset has already been applied to the ports
+            properties.remove(GeneralPropertySet.PORT_OFFSET);
+        }
+        Map<String, String> portsByValue = new TreeMap<String, String>();
+        for (Map.Entry<String, String> property : properties.entrySet())
+        {
+            if (this.relocatable && isRelocatablePort(property.getKey(), property.getValue()))
+            {
+                // Relocated ports are replaced when restoring, which requires the ports sharing a
+                // value to be the same
+                String firstPort = portsByValue.get(property.getValue());
+                if (firstPort == null)
+                {
+                    firstPort = property.getKey();
+                    portsByValue.put(property.getValue(), firstPort);
+                }
+                update(digest, "port", property.getKey() + "=" + firstPort);
+                continue;
+            }
+            update(digest, "property",
+                property.getKey() + "=" + relativize(property.getValue(), root));
+            // Properties can reference local files, such as scripts run while configuring
+            updateReferencedFile(digest, property.getValue(), root);
+        }
+
+        if (configuration.getFileProperties() != null)
+        {
+            for (FileConfig fileConfig : configuration.getFileProperties())
+            {
+                update(digest, "fileConfig", fileConfig.getToDir() + "|" + fileConfig.getToFile()
+                    + "|" + fileConfig.getOverwrite() + "|" + fileConfig.getConfigfile() + "|"
+                    + fileConfig.getEncoding());
+                updateFile(digest, fileConfig.getFile(), root);
+            }
+        }
+        for (Resource resource : configuration.getResources())
+        {
+            update(digest, "resource", resource.getId() + "|" + resource.getName() + "|"
+                + resource.getType() + "|" + resource.getClassName() + "|"
+                + new TreeMap<String, String>(resource.getParameters()));
+        }
+        for (DataSource dataSource : configuration.getDataSources())
+        {
+            update(digest, "dataSource", dataSource.getId() + "|" + dataSource.getJndiLocation()
+                + "|" + dataSource.getConnectionType() + "|" + dataSource.getTransactionSupport()
+                + "|" + dataSource.getDriverClass() + "|" + dataSource.getUrl() + "|"
+                + dataSource.getUsername() + "|" + dataSource.getPassword() + "|"
+                + new TreeMap<Object, Object>(dataSource.getConnectionProperties()));
+        }
+        for (User user : configuration.getUsers())
+        {
+            update(digest, "user", user.getName() + "|" + user.getPassword() + "|"
+                + user.getRoles());
+        }
+        if (configuration instanceof StandaloneLocalConfiguration)
+        {
+            for (XmlReplacement xmlReplacement
+                : ((StandaloneLocalConfiguration) configuration).getXmlReplacements())
+            {
+                update(digest, "xmlReplacement", xmlReplacement.getFile() + "|"
+                    + xmlReplacement.getXpathExpression() + "|"
+                    + xmlReplacement.getAttributeName() + "|"
+                    + xmlReplacement.isIgnoreIfNonExisting() + "|" + xmlReplacement.getValue());
+            }
+        }
+        for (Deployable deployable : configuration.getDeployables())
+        {
+            update(digest, "deployable", deployable.getClass().getName() + "|"
+                + deployable.getType() + "|" + deployable.getName());
+            updateFile(digest, deployable.getFile(), root);
+        }
+
+        StringBuilder fingerprint = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            fingerprint.append(Character.forDigit((b >> 4) & 0xF, 16));
+            fingerprint.append(Character.forDigit(b & 0xF, 16));
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Restore the snapshot with the given fingerprint, if any, into the configuration home. The
+     * configuration properties are set to the values they had once the snapshot was taken.
+     * 
+     * @param fingerprint Configuration fingerprint.
+     * @param configuration Configuration to restore.
+     * @return <code>true</code> if a snapshot has been restored, <code>false</code> if there is
+     * no snapshot for <code>fingerprint</code>.
+     */
+    public boolean restore(String fingerprint, LocalConfiguration configuration)
+    {
+        File snapshot = new File(this.directory, fingerprint);
+        File propertiesFile = new File(snapshot, PROPERTIES_FILE);
+        if (!propertiesFile.isFile())
+        {
+            return false;
+        }
+
+        String home = configuration.getHome();
+        Properties properties;
+        DirectoryLock lock = getLock();
+        try
+        {
+            lock.lockShared();
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+        try
+        {
+            properties = copySnapshot(snapshot, home);
+        }
+        finally
+        {
+            lock.unlockShared();
+        }
+        if (properties == null)
+        {
+            return false;
+        }
+
+        List<String[]> paths = new ArrayList<String[]>();
+        Map<String, String> ports = new TreeMap<String, String>();
+        if (this.relocatable)
+        {
+            addRelocation(paths, properties.getProperty(SNAPSHOT_HOME),
+                this.fileHandler.getAbsolutePath(home));
+            addRelocation(paths, properties.getProperty(SNAPSHOT_ROOT), getRoot(configuration));
+            for (String name : properties.stringPropertyNames())
+            {
+                String originalPort = properties.getProperty(name);
+                String newPort = configuration.getPropertyValue(name);
+                if (isRelocatablePort(name, originalPort) && isRelocatablePort(name, newPort)
+                    && !originalPort.equals(newPort))
+                {
+                    ports.put(originalPort, newPort);
+                }
+            }
+            if (!paths.isEmpty() || !ports.isEmpty())
+            {
+                relocateDirectory(home, paths, ports);
+            }
+        }
+
+        for (String name : properties.stringPropertyNames())
+        {
+            if (SNAPSHOT_PROPERTIES.contains(name) || this.relocatable
+                && isRelocatedProperty(name) && configuration.getPropertyValue(name) != null)
+            {
+                // Relocatable snapshots keep the ports of the configuration they are restored
+                // into, whereas the other properties are set to their value once the snapshot
+                // was taken
+                continue;
+            }
+            String value = properties.getProperty(name);
+            for (String[] path : paths)
+            {
+                value = replacePath(value, path[0], path[1]);
+            }
+            configuration.setProperty(name, value);
+        }
+        return true;
+    }
+
+    /**
+     * @param name Property name.
+     * @return Whether <code>name</code> is a port or the port offset, which configurations
+     * restoring a relocatable snapshot keep.
+     */
+    private static boolean isRelocatedProperty(String name)
+    {
+        return isPortProperty(name) || GeneralPropertySet.PORT_OFFSET.equals(name);
+    }
+
+    /**
+     * @param name Property name.
+     * @return Whether <code>name</code> is a port, using the same naming convention as the port
+     * offset.
+     */
+    private static boolean isPortProperty(String name)
+    {
+        return name.startsWith("cargo.") && name.endsWith(".port");
+    }
+
+    /**
+     * @param name Property name.
+     * @param value Property value, can be <code>null</code>.
+     * @return Whether <code>name</code> is a port whose value can be relocated.
+     */
+    private static boolean isRelocatablePort(String name, String value)
+    {
+        if (value == null || !isPortProperty(name))
+        {
+            return false;
+        }
+        try
+        {
+            int port = Integer.parseInt(value);
+            return port >= MIN_RELOCATED_PORT && port <= MAX_PORT
+                && value.equals(Integer.toString(port));
+        }
+        catch (NumberFormatException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Add a path to relocate when restoring a snapshot, if it has changed.
+     * 
+     * @param paths Paths to relocate, as pairs of original and new paths.
+     * @param originalPath Path the snapshot has been taken with, can be <code>null</code>.
+     * @param newPath Path the snapshot is restored with, can be <code>null</code>.
+     */
+    private static void addRelocation(List<String[]> paths, String originalPath, String newPath)
+    {
+        if (originalPath != null && newPath != null && !originalPath.equals(newPath))
+        {
+            paths.add(new String[] {originalPath, newPath});
+        }
+    }
+
+    /**
+     * @param configuration Configuration.
+     * @return Absolute path of the {@link GeneralPropertySet#CONFIGURATION_SNAPSHOT_ROOT} of the
+     * configuration, <code>null</code> if the snapshots are not relocatable or there is no root.
+     */
+    private String getRoot(LocalConfiguration configuration)
+    {
+        String root =
+            configuration.getPropertyValue(GeneralPropertySet.CONFIGURATION_SNAPSHOT_ROOT);
+        if (!this.relocatable || root == null || root.length() == 0)
+        {
+            return null;
+        }
+        return new File(root).getAbsolutePath();
+    }
+
+    /**
+     * Copy a snapshot into a home, and mark it as used. Must be called while holding the shared
+     * lock.
+     * 
+     * @param snapshot Snapshot directory.
+     * @param home Home to copy the snapshot into.
+     * @return Properties of the snapshot, <code>null</code> if the snapshot does not exist
+     * anymore.
+     */
+    private Properties copySnapshot(File snapshot, String home)
+    {
+        File propertiesFile = new File(snapshot, PROPERTIES_FILE);
+        Properties properties = new Properties();
+        try
+        {
+            InputStream is = new FileInputStream(propertiesFile);
+            try
+            {
+                properties.load(is);
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+
+        if (this.fileHandler.exists(home))
+        {
+            this.fileHandler.delete(home);
+        }
+        this.fileHandler.mkdirs(home);
+        this.fileHandler.copyDirectory(new File(snapshot, HOME_DIRECTORY).getAbsolutePath(),
+            home);
+
+        // The modification time of the properties file tells when the snapshot was last used
+        propertiesFile.setLastModified(System.currentTimeMillis());
+        return properties;
+    }
+
+    /**
+     * Save a snapshot of a configuration that has just been created, then delete the least
+     * recently used snapshots beyond the maximum. If a snapshot with the same fingerprint is being
+     * saved concurrently, only one of them is kept.
+     * 
+     * @param fingerprint Configuration fingerprint.
+     * @param configuration Created configuration.
+     * @throws IOException If saving fails.
+     */
+    public void save(String fingerprint, LocalConfiguration configuration) throws IOException
+    {
+        File snapshot = new File(this.directory, fingerprint);
+        if (new File(snapshot, PROPERTIES_FILE).isFile())
+        {
+            return;
+        }
+
+        File tmp = new File(this.directory, fingerprint + "." + System.nanoTime() + TMP_SUFFIX);
+        try
+        {
+            File home = new File(tmp, HOME_DIRECTORY);
+            if (!home.mkdirs())
+            {
+                throw new IOException("Cannot create directory " + home);
+            }
+            this.fileHandler.copyDirectory(configuration.getHome(), home.getAbsolutePath());
+
+            Properties properties = new Properties();
+            for (Map.Entry<String, String> property : configuration.getProperties().entrySet())
+            {
+                if (property.getValue() != null)
+                {
+                    properties.setProperty(property.getKey(), property.getValue());
+                }
+            }
+            properties.setProperty(SNAPSHOT_HOME,
+                this.fileHandler.getAbsolutePath(configuration.getHome()));
+            String root = getRoot(configuration);
+            if (root != null)
+            {
+                properties.setProperty(SNAPSHOT_ROOT, root);
+            }
+            OutputStream os = new FileOutputStream(new File(tmp, PROPERTIES_FILE));
+            try
+            {
+                properties.store(os, "Cargo configuration snapshot " + fingerprint);
+            }
+            finally
+            {
+                os.close();
+            }
+
+            if (!tmp.renameTo(snapshot) && !new File(snapshot, PROPERTIES_FILE).isFile())
+            {
+                throw new IOException("Cannot rename " + tmp + " to " + snapshot);
+            }
+        }
+        finally
+        {
+            if (tmp.exists())
+            {
+                this.fileHandler.delete(tmp.getAbsolutePath());
+            }
+        }
+
+        prune();
+    }
+
+    /**
+     * Delete the least recently saved or restored snapshots beyond the maximum number of
+     * snapshots. Snapshots being saved are ignored, and snapshots being restored are not deleted
+     * as pruning waits for the restores to complete.
+     * 
+     * @throws IOException If locking the snapshot directory fails.
+     */
+    public void prune() throws IOException
+    {
+        String[] children = this.directory.list();
+        if (this.maxSnapshots <= 0 || children == null || children.length <= this.maxSnapshots)
+        {
+            return;
+        }
+
+        DirectoryLock lock = getLock();
+        lock.lockExclusive();
+        try
+        {
+            List<File> snapshots = new ArrayList<File>();
+            final Map<File, Long> lastUsed = new TreeMap<File, Long>();
+            for (File snapshot : this.directory.listFiles())
+            {
+                File propertiesFile = new File(snapshot, PROPERTIES_FILE);
+                if (!snapshot.getName().endsWith(TMP_SUFFIX) && propertiesFile.isFile())
+                {
+                    snapshots.add(snapshot);
+                    lastUsed.put(snapshot, propertiesFile.lastModified());
+                }
+            }
+            if (snapshots.size() <= this.maxSnapshots)
+            {
+                return;
+            }
+
+            Collections.sort(snapshots, new Comparator<File>()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public int compare(File snapshot1, File snapshot2)
+                {
+                    return lastUsed.get(snapshot2).compareTo(lastUsed.get(snapshot1));
+                }
+            });
+            for (File snapshot : snapshots.subList(this.maxSnapshots, snapshots.size()))
+            {
+                // Delete the properties file first, so that the snapshot is ignored even if
+                // deleting the home fails
+                new File(snapshot, PROPERTIES_FILE).delete();
+                this.fileHandler.delete(snapshot.getAbsolutePath());
+            }
+        }
+        finally
+        {
+            lock.unlockExclusive();
+        }
+    }
+
+    /**
+     * @return Lock of the snapshot directory.
+     */
+    private DirectoryLock getLock()
+    {
+        String key = this.directory.getAbsolutePath();
+        DirectoryLock lock = LOCKS.get(key);
+        if (lock == null)
+        {
+            lock = new DirectoryLock(new File(this.directory, LOCK_FILE));
+            DirectoryLock existing = LOCKS.putIfAbsent(key, lock);
+            if (existing != null)
+            {
+                lock = existing;
+            }
+        }
+        return lock;
+    }
+
+    /**
+     * Replace the original paths and ports by the new ones in all text files of a restored home.
+     * 
+     * @param path File or directory.
+     * @param paths Paths to relocate, as pairs of original and new paths.
+     * @param ports New ports, keyed by original port.
+     */
+    private void relocateDirectory(String path, List<String[]> paths, Map<String, String> ports)
+    {
+        if (this.fileHandler.isDirectory(path))
+        {
+            for (String child : this.fileHandler.getChildren(path))
+            {
+                relocateDirectory(child, paths, ports);
+            }
+            return;
+        }
+        if (this.fileHandler.getSize(path) > MAX_RELOCATED_FILE_SIZE)
+        {
+            return;
+        }
+
+        // ISO-8859-1 maps every byte to a character, so that the file content is kept as is
+        String content = this.fileHandler.readTextFile(path, "ISO-8859-1");
+        if (content.indexOf('\0') != -1)
+        {
+            return;
+        }
+        String relocated = content;
+        for (String[] relocatedPath : paths)
+        {
+            String[] originalVariants = getPathVariants(relocatedPath[0]);
+            String[] newVariants = getPathVariants(relocatedPath[1]);
+            for (int i = 0; i < originalVariants.length; i++)
+            {
+                relocated = replacePath(relocated, originalVariants[i], newVariants[i]);
+            }
+        }
+        if (!ports.isEmpty())
+        {
+            relocated = replacePorts(relocated, ports);
+        }
+        if (!relocated.equals(content))
+        {
+            this.fileHandler.writeTextFile(path, relocated, "ISO-8859-1");
+        }
+    }
+
+    /**
+     * Replace a path by another one in a text. Only occurrences on path boundaries are replaced:
+     * an occurrence directly preceded or followed by a file name character, such as
+     * <code>/work/h1</code> in <code>/work/h10</code>, is part of another path and is kept.
+     * 
+     * @param text Text.
+     * @param original Path to replace.
+     * @param replacement Path to replace it with.
+     * @return <code>text</code> with the path replaced.
+     */
+    static String replacePath(String text, String original, String replacement)
+    {
+        StringBuilder result = null;
+        int copied = 0;
+        int index = text.indexOf(original);
+        while (index != -1)
+        {
+            int end = index + original.length();
+            if ((index == 0 || !isFileNameCharacter(text.charAt(index - 1)))
+                && (end == text.length() || !isFileNameCharacter(text.charAt(end))))
+            {
+                if (result == null)
+                {
+                    result = new StringBuilder(text.length());
+                }
+                result.append(text, copied, index).append(replacement);
+                copied = end;
+                index = text.indexOf(original, end);
+            }
+            else
+            {
+                index = text.indexOf(original, index + 1);
+            }
+        }
+        if (result == null)
+        {
+            return text;
+        }
+        return result.append(text, copied, text.length()).toString();
+    }
+
+    /**
+     * Replace ports by other ones in a text, in one pass so that swapped ports are replaced
+     * correctly. Only whole numbers are replaced: <code>8080</code> is kept in
+     * <code>18080</code>.
+     * 
+     * @param text Text.
+     * @param ports New ports, keyed by original port.
+     * @return <code>text</code> with the ports replaced.
+     */
+    static String replacePorts(String text, Map<String, String> ports)
+    {
+        StringBuilder result = null;
+        int copied = 0;
+        int index = 0;
+        while (index < text.length())
+        {
+            if (!isDigit(text.charAt(index)))
+            {
+                index++;
+                continue;
+            }
+            int start = index;
+            while (index < text.length() && isDigit(text.charAt(index)))
+            {
+                index++;
+            }
+            String replacement = ports.get(text.substring(start, index));
+            if (replacement != null)
+            {
+                if (result == null)
+                {
+                    result = new StringBuilder(text.length());
+                }
+                result.append(text, copied, start).append(replacement);
+                copied = index;
+            }
+        }
+        if (result == null)
+        {
+            return text;
+        }
+        return result.append(text, copied, text.length()).toString();
+    }
+
+    /**
+     * @param c Character.
+     * @return Whether <code>c</code> is an ASCII digit.
+     */
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Replace the {@link GeneralPropertySet#CONFIGURATION_SNAPSHOT_ROOT} in a path or property
+     * value by a placeholder, so that it is fingerprinted independently of the root.
+     * 
+     * @param value Path or property value, can be <code>null</code>.
+     * @param root Absolute path of the root, <code>null</code> if none.
+     * @return <code>value</code> with the root replaced.
+     */
+    private static String relativize(String value, String root)
+    {
+        if (value == null || root == null)
+        {
+            return value;
+        }
+        return replacePath(value, root, ROOT_PLACEHOLDER);
+    }
+
+    /**
+     * @param c Character.
+     * @return Whether <code>c</code> can be part of a file name.
+     */
+    private static boolean isFileNameCharacter(char c)
+    {
+        return Character.isLetterOrDigit(c) || FILE_NAME_PUNCTUATION.indexOf(c) != -1;
+    }
+
+    /**
+     * @param home Home path.
+     * @return Forms the home path can appear in within text files, as UTF-8 bytes read as
+     * ISO-8859-1: as is and, on platforms with another separator, with slashes.
+     */
+    private static String[] getPathVariants(String home)
+    {
+        if (File.separatorChar == '/')
+        {
+            return new String[] {toBytes(home)};
+        }
+        return new String[] {toBytes(home), toBytes(home.replace(File.separatorChar, '/'))};
+    }
+
+    /**
+     * @param text Text.
+     * @return UTF-8 bytes of <code>text</code>, read as ISO-8859-1.
+     */
+    private static String toBytes(String text)
+    {
+        try
+        {
+            return new String(text.getBytes("UTF-8"), "ISO-8859-1");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new CargoException("UTF-8 is not supported", e);
+        }
+    }
+
+    /**
+     * Get the version of the code of a class. Released code is identified by the implementation
+     * version of its package. That version is not set when running from an IDE and is the same
+     * for all SNAPSHOT builds, so the location, size and modification time of the JAR file or
+     * classes directory the class has been loaded from are then used as well.
+     * 
+     * @param clazz Class.
+     * @return Version of the code of <code>clazz</code>.
+     */
+    static String getCodeVersion(Class<?> clazz)
+    {
+        Package classPackage = clazz.getPackage();
+        String version = classPackage == null ? null : classPackage.getImplementationVersion();
+        if (version != null && !version.endsWith("-SNAPSHOT"))
+        {
+            return version;
+        }
+
+        File location = getCodeLocation(clazz);
+        if (location == null)
+        {
+            return version;
+        }
+        String key = location.getAbsolutePath();
+        String codeVersion = CODE_VERSIONS.get(key);
+        if (codeVersion == null)
+        {
+            long[] sizeAndLastModified = new long[2];
+            addSizeAndLastModified(location, sizeAndLastModified);
+            codeVersion = version + "|" + key + "|" + sizeAndLastModified[0] + "|"
+                + sizeAndLastModified[1];
+            CODE_VERSIONS.put(key, codeVersion);
+        }
+        return codeVersion;
+    }
+
+    /**
+     * @param clazz Class.
+     * @return JAR file or classes directory <code>clazz</code> has been loaded from,
+     * <code>null</code> if unknown or not a local file.
+     */
+    private static File getCodeLocation(Class<?> clazz)
+    {
+        try
+        {
+            CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+            URL location = codeSource == null ? null : codeSource.getLocation();
+            if (location == null || !"file".equals(location.getProtocol()))
+            {
+                return null;
+            }
+            return new File(location.toURI());
+        }
+        catch (SecurityException e)
+        {
+            return null;
+        }
+        catch (URISyntaxException e)
+        {
+            return null;
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Add the size of a file, or of all files in a directory, to the first element of an array
+     * and keep the latest modification time in its second element.
+     * 
+     * @param file File or directory.
+     * @param sizeAndLastModified Total size and latest modification time.
+     */
+    private static void addSizeAndLastModified(File file, long[] sizeAndLastModified)
+    {
+        File[] children = file.listFiles();
+        if (children == null)
+        {
+            sizeAndLastModified[0] += file.length();
+            sizeAndLastModified[1] = Math.max(sizeAndLastModified[1], file.lastModified());
+            return;
+        }
+        for (File child : children)
+        {
+            addSizeAndLastModified(child, sizeAndLastModified);
+        }
+    }
+
+    /**
+     * Add a fingerprint input to a digest.
+     * 
+     * @param digest Digest.
+     * @param name Input name.
+     * @param value Input value, can be <code>null</code>.
+     */
+    private static void update(MessageDigest digest, String name, String value)
+    {
+        try
+        {
+            digest.update((name + ":" + value + "\n").getBytes("UTF-8"));
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new CargoException("UTF-8 is not supported", e);
+        }
+    }
+
+    /**
+     * Add the content of a local file referenced by a property value to a digest. Values which
+     * are not the path of a regular file are ignored, and the size and modification time of files
+     * larger than {@link #MAX_HASHED_FILE_SIZE} are used instead of their content.
+     * 
+     * @param digest Digest.
+     * @param value Property value, can be <code>null</code>.
+     * @param root Absolute path of the {@link GeneralPropertySet#CONFIGURATION_SNAPSHOT_ROOT},
+     * <code>null</code> if none.
+     */
+    private static void updateReferencedFile(MessageDigest digest, String value, String root)
+    {
+        if (value == null || value.length() == 0 || value.indexOf('\n') != -1)
+        {
+            return;
+        }
+        File file = new File(value);
+        if (!file.isFile())
+        {
+            return;
+        }
+        if (file.length() > MAX_HASHED_FILE_SIZE)
+        {
+            updateFile(digest, value, root);
+            return;
+        }
+        try
+        {
+            update(digest, "referencedFile", relativize(file.getAbsolutePath(), root));
+            updateContent(digest, file);
+        }
+        catch (IOException e)
+        {
+            updateFile(digest, value, root);
+        }
+    }
+
+    /**
+     * Add the content of a local file to a digest.
+     * 
+     * @param digest Digest.
+     * @param file File.
+     * @throws IOException If reading the file fails.
+     */
+    private static void updateContent(MessageDigest digest, File file) throws IOException
+    {
+        InputStream is = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1)
+            {
+                digest.update(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    /**
+     * Add the path, size and modification time of a local file, or of all files in a local
+     * directory, to a digest. Files within the
+     * {@link GeneralPropertySet#CONFIGURATION_SNAPSHOT_ROOT} are added with their path relative
+     * to it and their content instead of their modification time, as copies of the same file in
+     * different roots have different modification times.
+     * 
+     * @param digest Digest.
+     * @param path File or directory path, can be <code>null</code>.
+     * @param root Absolute path of the root, <code>null</code> if none.
+     */
+    private static void updateFile(MessageDigest digest, String path, String root)
+    {
+        if (path == null)
+        {
+            update(digest, "file", null);
+            return;
+        }
+        File file = new File(path);
+        String absolutePath = file.getAbsolutePath();
+        String relativePath = relativize(absolutePath, root);
+        if (file.isDirectory())
+        {
+            update(digest, "directory", relativePath);
+            String[] children = file.list();
+            if (children != null)
+            {
+                Arrays.sort(children);
+                for (String child : children)
+                {
+                    updateFile(digest, new File(file, child).getPath(), root);
+                }
+            }
+            return;
+        }
+        if (!relativePath.equals(absolutePath) && file.isFile())
+        {
+            update(digest, "file", relativePath + "|" + file.length());
+            try
+            {
+                updateContent(digest, file);
+                return;
+            }
+            catch (IOException e)
+            {
+                // Fall back to the modification time
+            }
+        }
+        update(digest, "file", relativePath + "|" + file.length() + "|" + file.lastModified());
+    }
+}
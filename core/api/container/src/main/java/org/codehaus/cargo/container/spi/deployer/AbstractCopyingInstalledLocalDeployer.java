@@ -19,8 +19,10 @@
  */
 package org.codehaus.cargo.container.spi.deployer;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -33,6 +35,7 @@ import org.codehaus.cargo.container.deployable.DeployableType;
 import org.codehaus.cargo.container.deployable.EAR;
 import org.codehaus.cargo.container.deployable.RAR;
 import org.codehaus.cargo.container.deployable.WAR;
+import org.codehaus.cargo.container.lifecycle.LifecycleInstrumentation;
 import org.codehaus.cargo.util.CargoException;
 
 /**
@@ -149,6 +152,51 @@ public abstract class AbstractCopyingInstalledLocalDeployer extends
         this.deployedDeployables.add(deployable);
     }
 
+    /**
+     * Update some files of an expanded deployable that has already been deployed, instead of
+     * copying the whole deployable again. Files which do not exist in the deployable anymore are
+     * removed from the deployed copy.
+     * 
+     * @param deployable Expanded deployable.
+     * @param relativePaths Paths of the changed files, relative to the deployable's directory.
+     * @return <code>false</code> if the deployable has not been deployed expanded by this deployer,
+     * in which case nothing has been updated and the deployable needs to be redeployed.
+     */
+    public synchronized boolean update(Deployable deployable, Collection<String> relativePaths)
+    {
+        if (!deployable.isExpanded())
+        {
+            return false;
+        }
+        String target = getFileHandler().append(getDeployableDir(deployable),
+            getDeployableName(deployable));
+        if (!getFileHandler().isDirectory(target))
+        {
+            return false;
+        }
+
+        for (String relativePath : relativePaths)
+        {
+            String source = getFileHandler().append(deployable.getFile(), relativePath);
+            String destination = getFileHandler().append(target, relativePath);
+            if (getFileHandler().exists(source))
+            {
+                if (!getFileHandler().isDirectory(source))
+                {
+                    getFileHandler().mkdirs(getFileHandler().getParent(destination));
+                    getFileHandler().copyFile(source, destination, true);
+                }
+            }
+            else if (getFileHandler().exists(destination))
+            {
+                getFileHandler().delete(destination);
+            }
+        }
+        getLogger().info("Updated " + relativePaths.size() + " file(s) of ["
+            + deployable.getFile() + "] in [" + target + "]", this.getClass().getName());
+        return true;
+    }
+
     /**
      * Checks whether the given Deployable can actually be deployed and whether a deployable has a
      * web context path that already exist in another previously deployed Deployable.
@@ -260,6 +308,7 @@ public abstract class AbstractCopyingInstalledLocalDeployer extends
             }
 
             getFileHandler().copyFile(deployable.getFile(), target, true);
+            LifecycleInstrumentation.addBytes(new File(deployable.getFile()).length());
         }
     }
 
@@ -29,6 +29,8 @@ import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.deployable.Deployable;
 import org.codehaus.cargo.container.deployer.DeployableMonitor;
 import org.codehaus.cargo.container.deployer.Deployer;
+import org.codehaus.cargo.container.lifecycle.LifecycleInstrumentation;
+import org.codehaus.cargo.container.lifecycle.LifecycleSpan;
 import org.codehaus.cargo.util.log.LogLevel;
 import org.codehaus.cargo.util.log.LoggedObject;
 
@@ -50,74 +52,90 @@ public abstract class AbstractDeployer extends LoggedObject implements Deployer
      * @see Deployer#deploy(Deployable)
      * @param deployables Deployables to deploy.
      */
-    public void deploy(List<Deployable> deployables)
+    public void deploy(final List<Deployable> deployables)
     {
-        for (Deployable deployable : deployables)
+        runInSpan("deploy", new Runnable()
         {
-            deploy(deployable);
-        }
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void run()
+            {
+                for (Deployable deployable : deployables)
+                {
+                    deploy(deployable);
+                }
+            }
+        });
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void deploy(Deployable deployable, DeployableMonitor monitor)
+    public void deploy(final Deployable deployable, final DeployableMonitor monitor)
     {
-        try
-        {
-            deploy(deployable);
-        }
-        catch (Throwable t)
+        runInSpan("deploy", new Runnable()
         {
-            // CARGO-1100: When the deployment action has failed, log the failure and then wait for
-            // the watchdog to return. If deployment was indeed complete, the watchdog will detect
-            // it; else it will make the method fail.
-            getLogger().info("The deployment has failed: " + t.toString(),
-                this.getClass().getName());
-            if (getLogger().getLevel() == LogLevel.DEBUG)
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void run()
             {
-                Writer stackTrace = new StringWriter();
-                t.printStackTrace(new PrintWriter(stackTrace));
-                getLogger().debug(stackTrace.toString(), this.getClass().getName());
-            }
-        }
+                try
+                {
+                    deploy(deployable);
+                }
+                catch (Throwable t)
+                {
+                    // CARGO-1100: When the deployment action has failed, log the failure and
+                    // then wait for the watchdog to return. If deployment was indeed complete,
+                    // the watchdog will detect it; else it will make the method fail.
+                    logActionFailure("The deployment has failed", t);
+                }
 
-        // Wait for the Deployable to be deployed
-        DeployerWatchdog watchdog = new DeployerWatchdog(monitor);
-        watchdog.setLogger(getLogger());
-        watchdog.watchForAvailability();
+                // Wait for the Deployable to be deployed
+                DeployerWatchdog watchdog = new DeployerWatchdog(monitor);
+                watchdog.setLogger(getLogger());
+                watchdog.watchForAvailability();
+            }
+        });
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void undeploy(Deployable deployable, DeployableMonitor monitor)
+    public void undeploy(final Deployable deployable, final DeployableMonitor monitor)
     {
-        try
+        runInSpan("undeploy", new Runnable()
         {
-            undeploy(deployable);
-        }
-        catch (Throwable t)
-        {
-            // CARGO-1100: When the undeployment action has failed, log the failure and then wait
-            // for the watchdog to return. If undeployment was indeed complete, the watchdog will
-            // detect it; else it will make the method fail.
-            getLogger().info("The undeployment has failed: " + t.toString(),
-                this.getClass().getName());
-            if (getLogger().getLevel() == LogLevel.DEBUG)
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void run()
             {
-                Writer stackTrace = new StringWriter();
-                t.printStackTrace(new PrintWriter(stackTrace));
-                getLogger().debug(stackTrace.toString(), this.getClass().getName());
-            }
-        }
+                try
+                {
+                    undeploy(deployable);
+                }
+                catch (Throwable t)
+                {
+                    // CARGO-1100: When the undeployment action has failed, log the failure and
+                    // then wait for the watchdog to return. If undeployment was indeed complete,
+                    // the watchdog will detect it; else it will make the method fail.
+                    logActionFailure("The undeployment has failed", t);
+                }
 
-        // Wait for the Deployable to be undeployed
-        DeployerWatchdog watchdog = new DeployerWatchdog(monitor);
-        watchdog.setLogger(getLogger());
-        watchdog.watchForUnavailability();
+                // Wait for the Deployable to be undeployed
+                DeployerWatchdog watchdog = new DeployerWatchdog(monitor);
+                watchdog.setLogger(getLogger());
+                watchdog.watchForUnavailability();
+            }
+        });
     }
 
     /**
@@ -125,42 +143,95 @@ public abstract class AbstractDeployer extends LoggedObject implements Deployer
      * @see Deployer#redeploy(Deployable)
      * @param deployables Deployables to redeploy.
      */
-    public void redeploy(List<Deployable> deployables)
+    public void redeploy(final List<Deployable> deployables)
     {
-        for (Deployable deployable : deployables)
+        runInSpan("redeploy", new Runnable()
         {
-            redeploy(deployable);
-        }
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void run()
+            {
+                for (Deployable deployable : deployables)
+                {
+                    redeploy(deployable);
+                }
+            }
+        });
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void redeploy(Deployable deployable, DeployableMonitor monitor)
+    public void redeploy(final Deployable deployable, final DeployableMonitor monitor)
     {
+        runInSpan("redeploy", new Runnable()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void run()
+            {
+                try
+                {
+                    undeploy(deployable);
+                }
+                catch (Throwable t)
+                {
+                    logActionFailure("The undeployment phase of the redeploy action has failed",
+                        t);
+                }
+
+                // Wait for the Deployable to be undeployed
+                DeployerWatchdog watchdog = new DeployerWatchdog(monitor);
+                watchdog.setLogger(getLogger());
+                watchdog.watchForUnavailability();
+
+                deploy(deployable, monitor);
+            }
+        });
+    }
+
+    /**
+     * Runs a deployment action within a lifecycle span, recording its failure if it throws.
+     * @param name Name of the lifecycle span.
+     * @param action Deployment action to run.
+     */
+    private void runInSpan(String name, Runnable action)
+    {
+        LifecycleSpan span = LifecycleInstrumentation.begin(this, name);
         try
         {
-            undeploy(deployable);
+            action.run();
         }
-        catch (Throwable t)
+        catch (RuntimeException e)
         {
-            getLogger().info("The undeployment phase of the redeploy action has failed: "
-                + t.toString(), this.getClass().getName());
-            if (getLogger().getLevel() == LogLevel.DEBUG)
-            {
-                Writer stackTrace = new StringWriter();
-                t.printStackTrace(new PrintWriter(stackTrace));
-                getLogger().debug(stackTrace.toString(), this.getClass().getName());
-            }
+            span.setFailure(e);
+            throw e;
         }
+        finally
+        {
+            span.end();
+        }
+    }
 
-        // Wait for the Deployable to be undeployed
-        DeployerWatchdog watchdog = new DeployerWatchdog(monitor);
-        watchdog.setLogger(getLogger());
-        watchdog.watchForUnavailability();
-
-        deploy(deployable, monitor);
+    /**
+     * Logs the failure of a deployment action which the deployable monitor will then verify.
+     * @param message Message describing the failed action.
+     * @param t Failure of the action.
+     */
+    private void logActionFailure(String message, Throwable t)
+    {
+        getLogger().info(message + ": " + t.toString(), this.getClass().getName());
+        if (getLogger().getLevel() == LogLevel.DEBUG)
+        {
+            Writer stackTrace = new StringWriter();
+            t.printStackTrace(new PrintWriter(stackTrace));
+            getLogger().debug(stackTrace.toString(), this.getClass().getName());
+        }
     }
 
     /**
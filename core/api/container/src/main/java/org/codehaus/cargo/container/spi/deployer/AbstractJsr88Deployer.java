@@ -21,6 +21,11 @@ package org.codehaus.cargo.container.spi.deployer;
 
 import java.io.File;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import javax.enterprise.deploy.shared.ModuleType;
 import javax.enterprise.deploy.shared.factories.DeploymentFactoryManager;
@@ -45,10 +50,16 @@ import org.codehaus.cargo.util.DefaultFileHandler;
 import org.codehaus.cargo.util.FileHandler;
 
 /**
- * JSR-88 remote deployer.
+ * JSR-88 remote deployer. The connected deployment manager and the deployment targets are kept
+ * in a {@link Jsr88DeploymentManagerPool} session shared by all deployers with the same container
+ * configuration, until it is released using {@link #release()} or found unhealthy.
  */
 public abstract class AbstractJsr88Deployer extends AbstractRemoteDeployer
 {
+    /**
+     * Deployment factory classes already registered with the deployment factory manager.
+     */
+    private static final Set<Class<?>> REGISTERED_FACTORIES = new HashSet<Class<?>>();
 
     /**
      * The run time configuration.
@@ -87,61 +98,74 @@ public abstract class AbstractJsr88Deployer extends AbstractRemoteDeployer
     @Override
     public void deploy(Deployable deployable)
     {
-        File deployableFile;
-        File tempDirectory;
-        if (deployable.getType() == DeployableType.WAR)
+        deploy(Collections.singletonList(deployable));
+    }
+
+    /**
+     * Deploy several deployables at once: all deployables are distributed before waiting for the
+     * distribution to complete, and all distributed modules are then started in one operation.
+     * 
+     * @param deployables Deployables to deploy.
+     */
+    @Override
+    public void deploy(List<Deployable> deployables)
+    {
+        List<File> deployableFiles = new ArrayList<File>(deployables.size());
+        List<File> tempDirectories = new ArrayList<File>(deployables.size());
+        try
         {
-            String localFileName;
-            WAR war = (WAR) deployable;
-            if (war.getContext().isEmpty())
+            for (Deployable deployable : deployables)
             {
-                localFileName = "rootContext.war";
+                deployableFiles.add(prepareDeployableFile(deployable, tempDirectories));
             }
-            else
+
+            Jsr88DeploymentManagerPool.Session session = this.getSession();
+            synchronized (session)
             {
-                localFileName = war.getContext() + ".war";
+                try
+                {
+                    DeploymentManager deploymentManager = session.getDeploymentManager();
+                    Target[] targets = this.getTargets(session);
+
+                    List<ProgressObject> distributions =
+                        new ArrayList<ProgressObject>(deployableFiles.size());
+                    for (File deployableFile : deployableFiles)
+                    {
+                        distributions.add(
+                            deploymentManager.distribute(targets, deployableFile, null));
+                    }
+
+                    List<TargetModuleID> modules = new ArrayList<TargetModuleID>();
+                    for (ProgressObject progressObject : distributions)
+                    {
+                        this.waitForProgressObject(progressObject);
+                        Collections.addAll(modules, progressObject.getResultTargetModuleIDs());
+                    }
+
+                    ProgressObject progressObject = deploymentManager.start(
+                        modules.toArray(new TargetModuleID[modules.size()]));
+                    this.waitForProgressObject(progressObject);
+                }
+                catch (IllegalStateException e)
+                {
+                    Jsr88DeploymentManagerPool.release(session);
+                    throw new CargoException("Cannot communicate with the server", e);
+                }
             }
-            tempDirectory = new File(fileHandler.createUniqueTmpDirectory());
-            deployableFile = new File(tempDirectory, localFileName);
-            fileHandler.copyFile(deployable.getFile(), deployableFile.getAbsolutePath());
-            deployableFile.deleteOnExit();
-        }
-        else if (deployable.getType() == DeployableType.EAR)
-        {
-            EAR ear = (EAR) deployable;
-            String localFileName = ear.getName() + ".ear";
-            tempDirectory = new File(fileHandler.createUniqueTmpDirectory());
-            deployableFile = new File(tempDirectory, localFileName);
-            fileHandler.copyFile(deployable.getFile(), deployableFile.getAbsolutePath());
-            deployableFile.deleteOnExit();
-        }
-        else
-        {
-            deployableFile = new File(deployable.getFile());
-            tempDirectory = null;
-        }
-
-        try
-        {
-            DeploymentManager deploymentManager = this.getDeploymentManager();
-
-            ProgressObject progressObject = deploymentManager.distribute(
-                this.filterTargets(deploymentManager.getTargets()), deployableFile, null);
-            this.waitForProgressObject(progressObject);
-
-            progressObject = deploymentManager.start(progressObject.getResultTargetModuleIDs());
-            this.waitForProgressObject(progressObject);
         }
         finally
         {
-            if (tempDirectory != null)
+            for (File deployableFile : deployableFiles)
             {
-                if (!deployableFile.delete())
+                if (tempDirectories.contains(deployableFile.getParentFile())
+                    && !deployableFile.delete())
                 {
                     getLogger().warn("Cannot delete the temporary file: " + deployableFile,
                         this.getClass().getName());
                 }
-
+            }
+            for (File tempDirectory : tempDirectories)
+            {
                 if (!tempDirectory.delete())
                 {
                     getLogger().warn("Cannot delete the temporary directory: " + tempDirectory,
@@ -152,59 +176,121 @@ public abstract class AbstractJsr88Deployer extends AbstractRemoteDeployer
     }
 
     /**
-     * {@inheritDoc}
+     * Prepare the file to distribute for a deployable. WARs and EARs are copied to a temporary
+     * directory, so that the name of the file matches their context or name.
+     * 
+     * @param deployable Deployable.
+     * @param tempDirectories List to which the created temporary directory, if any, is added.
+     * @return File to distribute.
      */
-    @Override
-    public void undeploy(Deployable deployable)
+    private File prepareDeployableFile(Deployable deployable, List<File> tempDirectories)
     {
-        DeploymentManager deploymentManager = this.getDeploymentManager();
-
-        TargetModuleID[] targetModules;
-        try
+        String localFileName;
+        if (deployable.getType() == DeployableType.WAR)
         {
-            targetModules = this.findTargetModule(deploymentManager, deployable);
+            WAR war = (WAR) deployable;
+            if (war.getContext().isEmpty())
+            {
+                localFileName = "rootContext.war";
+            }
+            else
+            {
+                localFileName = war.getContext() + ".war";
+            }
         }
-        catch (TargetException e)
+        else if (deployable.getType() == DeployableType.EAR)
         {
-            throw new CargoException("Cannot communicate with the server", e);
+            EAR ear = (EAR) deployable;
+            localFileName = ear.getName() + ".ear";
+        }
+        else
+        {
+            return new File(deployable.getFile());
         }
 
-        ProgressObject progressObject = deploymentManager.stop(targetModules);
-        this.waitForProgressObject(progressObject);
-
-        progressObject = deploymentManager.undeploy(targetModules);
-        this.waitForProgressObject(progressObject);
+        File tempDirectory = new File(fileHandler.createUniqueTmpDirectory());
+        tempDirectories.add(tempDirectory);
+        File deployableFile = new File(tempDirectory, localFileName);
+        fileHandler.copyFile(deployable.getFile(), deployableFile.getAbsolutePath());
+        deployableFile.deleteOnExit();
+        return deployableFile;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void redeploy(Deployable deployable)
+    public void undeploy(Deployable deployable)
     {
-        DeploymentManager deploymentManager = this.getDeploymentManager();
-
-        TargetModuleID[] targetModules = null;
-        try
-        {
-            targetModules = this.findTargetModule(deploymentManager, deployable);
-        }
-        catch (TargetException e)
-        {
-            throw new CargoException("Cannot communicate with the server", e);
-        }
-        catch (CargoException e)
+        Jsr88DeploymentManagerPool.Session session = this.getSession();
+        synchronized (session)
         {
-            // This means that the target module cannot be found, ignore
+            try
+            {
+                DeploymentManager deploymentManager = session.getDeploymentManager();
+                TargetModuleID[] targetModules =
+                    this.findTargetModule(deploymentManager, deployable);
+
+                ProgressObject progressObject = deploymentManager.stop(targetModules);
+                this.waitForProgressObject(progressObject);
+
+                progressObject = deploymentManager.undeploy(targetModules);
+                this.waitForProgressObject(progressObject);
+            }
+            catch (TargetException e)
+            {
+                Jsr88DeploymentManagerPool.release(session);
+                throw new CargoException("Cannot communicate with the server", e);
+            }
+            catch (IllegalStateException e)
+            {
+                Jsr88DeploymentManagerPool.release(session);
+                throw new CargoException("Cannot communicate with the server", e);
+            }
         }
+    }
 
-        if (targetModules != null)
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void redeploy(Deployable deployable)
+    {
+        Jsr88DeploymentManagerPool.Session session = this.getSession();
+        synchronized (session)
         {
-            ProgressObject progressObject = deploymentManager.stop(targetModules);
-            this.waitForProgressObject(progressObject);
+            try
+            {
+                DeploymentManager deploymentManager = session.getDeploymentManager();
+                TargetModuleID[] targetModules = null;
+                try
+                {
+                    targetModules = this.findTargetModule(deploymentManager, deployable);
+                }
+                catch (CargoException e)
+                {
+                    // This means that the target module cannot be found, ignore
+                }
+
+                if (targetModules != null)
+                {
+                    ProgressObject progressObject = deploymentManager.stop(targetModules);
+                    this.waitForProgressObject(progressObject);
 
-            progressObject = deploymentManager.undeploy(targetModules);
-            this.waitForProgressObject(progressObject);
+                    progressObject = deploymentManager.undeploy(targetModules);
+                    this.waitForProgressObject(progressObject);
+                }
+            }
+            catch (TargetException e)
+            {
+                Jsr88DeploymentManagerPool.release(session);
+                throw new CargoException("Cannot communicate with the server", e);
+            }
+            catch (IllegalStateException e)
+            {
+                Jsr88DeploymentManagerPool.release(session);
+                throw new CargoException("Cannot communicate with the server", e);
+            }
         }
 
         this.deploy(deployable);
@@ -216,20 +302,27 @@ public abstract class AbstractJsr88Deployer extends AbstractRemoteDeployer
     @Override
     public void start(Deployable deployable)
     {
-        DeploymentManager deploymentManager = this.getDeploymentManager();
-
-        TargetModuleID[] targetModules = null;
-        try
-        {
-            targetModules = this.findTargetModule(deploymentManager, deployable);
-        }
-        catch (TargetException e)
+        Jsr88DeploymentManagerPool.Session session = this.getSession();
+        synchronized (session)
         {
-            throw new CargoException("Cannot communicate with the server", e);
+            try
+            {
+                DeploymentManager deploymentManager = session.getDeploymentManager();
+                ProgressObject progressObject = deploymentManager.start(
+                    this.findTargetModule(deploymentManager, deployable));
+                this.waitForProgressObject(progressObject);
+            }
+            catch (TargetException e)
+            {
+                Jsr88DeploymentManagerPool.release(session);
+                throw new CargoException("Cannot communicate with the server", e);
+            }
+            catch (IllegalStateException e)
+            {
+                Jsr88DeploymentManagerPool.release(session);
+                throw new CargoException("Cannot communicate with the server", e);
+            }
         }
-
-        ProgressObject progressObject = deploymentManager.start(targetModules);
-        this.waitForProgressObject(progressObject);
     }
 
     /**
@@ -238,20 +331,37 @@ public abstract class AbstractJsr88Deployer extends AbstractRemoteDeployer
     @Override
     public void stop(Deployable deployable)
     {
-        DeploymentManager deploymentManager = this.getDeploymentManager();
-
-        TargetModuleID[] targetModules = null;
-        try
-        {
-            targetModules = this.findTargetModule(deploymentManager, deployable);
-        }
-        catch (TargetException e)
+        Jsr88DeploymentManagerPool.Session session = this.getSession();
+        synchronized (session)
         {
-            throw new CargoException("Cannot communicate with the server", e);
+            try
+            {
+                DeploymentManager deploymentManager = session.getDeploymentManager();
+                ProgressObject progressObject = deploymentManager.stop(
+                    this.findTargetModule(deploymentManager, deployable));
+                this.waitForProgressObject(progressObject);
+            }
+            catch (TargetException e)
+            {
+                Jsr88DeploymentManagerPool.release(session);
+                throw new CargoException("Cannot communicate with the server", e);
+            }
+            catch (IllegalStateException e)
+            {
+                Jsr88DeploymentManagerPool.release(session);
+                throw new CargoException("Cannot communicate with the server", e);
+            }
         }
+    }
 
-        ProgressObject progressObject = deploymentManager.stop(targetModules);
-        this.waitForProgressObject(progressObject);
+    /**
+     * Release the JSR-88 deployment manager session of this deployer's container configuration.
+     * The next deployment operation will connect to the server again.
+     */
+    @Override
+    public void release()
+    {
+        Jsr88DeploymentManagerPool.release(this.getSessionKey());
     }
 
     /**
@@ -290,7 +400,53 @@ public abstract class AbstractJsr88Deployer extends AbstractRemoteDeployer
     }
 
     /**
-     * @return The JSR-88 deployment manager for the target server.
+     * @return Key identifying this deployer's container configuration in the
+     * {@link Jsr88DeploymentManagerPool}.
+     */
+    protected String getSessionKey()
+    {
+        return Jsr88DeploymentManagerPool.getKey(this.getDeploymentFactoryClassName(),
+            this.configuration.getProperties());
+    }
+
+    /**
+     * @return The pooled JSR-88 deployment manager session for the target server.
+     * @throws CargoException If anything fails.
+     */
+    private Jsr88DeploymentManagerPool.Session getSession() throws CargoException
+    {
+        return Jsr88DeploymentManagerPool.getSession(this.getSessionKey(),
+            new Jsr88DeploymentManagerPool.DeploymentManagerFactory()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public DeploymentManager createDeploymentManager()
+                {
+                    return AbstractJsr88Deployer.this.getDeploymentManager();
+                }
+            });
+    }
+
+    /**
+     * @param session Deployment manager session.
+     * @return Targets to deploy to, as filtered by {@link #filterTargets(Target[])}, cached in the
+     * session.
+     */
+    private Target[] getTargets(Jsr88DeploymentManagerPool.Session session)
+    {
+        Target[] targets = session.getTargets();
+        if (targets == null)
+        {
+            targets = this.filterTargets(session.getDeploymentManager().getTargets());
+            session.setTargets(targets);
+        }
+        return targets;
+    }
+
+    /**
+     * @return A newly connected JSR-88 deployment manager for the target server.
      * @throws CargoException If anything fails.
      */
     private DeploymentManager getDeploymentManager() throws CargoException
@@ -319,10 +475,20 @@ public abstract class AbstractJsr88Deployer extends AbstractRemoteDeployer
                     deploymentFactoryClassName);
             }
 
-            Constructor<?> deploymentFactoryConstructor = deploymentFactoryClass.getConstructor();
-            DeploymentFactory deploymentFactoryInstance = (DeploymentFactory)
-                deploymentFactoryConstructor.newInstance();
-            dfm.registerDeploymentFactory(deploymentFactoryInstance);
+            // The deployment factory manager keeps all factories ever registered, hence only
+            // register each factory class once
+            synchronized (REGISTERED_FACTORIES)
+            {
+                if (!REGISTERED_FACTORIES.contains(deploymentFactoryClass))
+                {
+                    Constructor<?> deploymentFactoryConstructor =
+                        deploymentFactoryClass.getConstructor();
+                    DeploymentFactory deploymentFactoryInstance = (DeploymentFactory)
+                        deploymentFactoryConstructor.newInstance();
+                    dfm.registerDeploymentFactory(deploymentFactoryInstance);
+                    REGISTERED_FACTORIES.add(deploymentFactoryClass);
+                }
+            }
         }
         catch (ClassNotFoundException e)
         {
@@ -44,4 +44,14 @@ public abstract class AbstractRemoteDeployer extends AbstractDeployer
     {
         return DeployerType.REMOTE;
     }
+
+    /**
+     * Release the resources, such as server connections, this deployer keeps between deployment
+     * operations. It should be called once no more deployment operations are expected; the next
+     * operation would otherwise connect again. This implementation does nothing.
+     */
+    public void release()
+    {
+        // Nothing to release by default
+    }
 }
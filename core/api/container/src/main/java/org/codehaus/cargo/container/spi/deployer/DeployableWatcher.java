@@ -0,0 +1,324 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.deployer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.deployable.DeployableType;
+import org.codehaus.cargo.container.deployer.Deployer;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Watches the files of deployables and pushes their changes to a running container, so that a
+ * change can be tried out without restarting the container. Deployables are polled at a fixed
+ * interval and changes are only applied once a poll finds no further change, so that a burst of
+ * changes (for example, a build writing many files) results in a single update.<br><br>
+ * Changes to the static resources of an expanded WAR deployed by an
+ * {@link AbstractCopyingInstalledLocalDeployer} are copied file by file; any other change results
+ * in the deployable being redeployed using {@link Deployer#redeploy(Deployable)}.
+ */
+public class DeployableWatcher extends LoggedObject implements Runnable
+{
+    /**
+     * Default polling interval, in milliseconds.
+     */
+    public static final long DEFAULT_INTERVAL = 1000;
+
+    /**
+     * Deployer used to push the changes.
+     */
+    private final Deployer deployer;
+
+    /**
+     * Watched deployables.
+     */
+    private final List<Deployable> deployables;
+
+    /**
+     * Polling interval, in milliseconds.
+     */
+    private final long interval;
+
+    /**
+     * Files of each deployable seen at the last poll, with their modification stamp. Paths are
+     * relative to the deployable's directory; the file of a deployable which is not a directory
+     * has an empty path.
+     */
+    private final Map<Deployable, Map<String, Long>> snapshots =
+        new HashMap<Deployable, Map<String, Long>>();
+
+    /**
+     * Changed files of each deployable which have not been applied yet.
+     */
+    private final Map<Deployable, Set<String>> pendingChanges =
+        new LinkedHashMap<Deployable, Set<String>>();
+
+    /**
+     * Polling thread, <code>null</code> when not watching.
+     */
+    private volatile Thread thread;
+
+    /**
+     * Save all attributes and take the initial snapshot of the deployables.
+     * @param deployer Deployer used to push the changes.
+     * @param deployables Deployables to watch.
+     * @param interval Polling interval, in milliseconds.
+     */
+    public DeployableWatcher(Deployer deployer, List<Deployable> deployables, long interval)
+    {
+        this.deployer = deployer;
+        this.deployables = new ArrayList<Deployable>(deployables);
+        this.interval = interval;
+        for (Deployable deployable : this.deployables)
+        {
+            this.snapshots.put(deployable, snapshot(deployable));
+        }
+    }
+
+    /**
+     * Start watching the deployables in a background thread.
+     */
+    public synchronized void start()
+    {
+        if (this.thread == null)
+        {
+            this.thread = new Thread(this, "Cargo deployable watcher");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+    }
+
+    /**
+     * Stop watching the deployables. Changes which have not been applied yet are discarded.
+     */
+    public void stop()
+    {
+        Thread watcher = this.thread;
+        this.thread = null;
+        if (watcher != null)
+        {
+            watcher.interrupt();
+        }
+    }
+
+    /**
+     * Poll the deployables until {@link #stop()} is called. {@inheritDoc}
+     */
+    @Override
+    public void run()
+    {
+        Thread current = Thread.currentThread();
+        while (this.thread == current)
+        {
+            try
+            {
+                Thread.sleep(this.interval);
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+            scan();
+        }
+    }
+
+    /**
+     * Poll the deployables once. If no deployable has changed since the previous poll, the
+     * pending changes are applied.
+     * @return Number of deployables whose changes have been applied.
+     */
+    public synchronized int scan()
+    {
+        boolean changed = false;
+        for (Deployable deployable : this.deployables)
+        {
+            Map<String, Long> current = snapshot(deployable);
+            Set<String> changes = getChanges(this.snapshots.get(deployable), current);
+            if (!changes.isEmpty())
+            {
+                this.snapshots.put(deployable, current);
+                Set<String> pending = this.pendingChanges.get(deployable);
+                if (pending == null)
+                {
+                    pending = new TreeSet<String>();
+                    this.pendingChanges.put(deployable, pending);
+                }
+                pending.addAll(changes);
+                changed = true;
+            }
+        }
+        if (changed || this.pendingChanges.isEmpty())
+        {
+            return 0;
+        }
+
+        int applied = 0;
+        for (Map.Entry<Deployable, Set<String>> pending : this.pendingChanges.entrySet())
+        {
+            try
+            {
+                apply(pending.getKey(), pending.getValue());
+                applied++;
+            }
+            catch (RuntimeException e)
+            {
+                getLogger().warn("Failed to apply the changes of [" + pending.getKey().getFile()
+                    + "]: " + e, this.getClass().getName());
+            }
+        }
+        this.pendingChanges.clear();
+        return applied;
+    }
+
+    /**
+     * Push the changes of a deployable to the container.
+     * @param deployable Changed deployable.
+     * @param changes Paths of the changed files, relative to the deployable's directory.
+     */
+    protected void apply(Deployable deployable, Set<String> changes)
+    {
+        if (this.deployer instanceof AbstractCopyingInstalledLocalDeployer
+            && !requiresRedeploy(deployable, changes))
+        {
+            AbstractCopyingInstalledLocalDeployer copyingDeployer =
+                (AbstractCopyingInstalledLocalDeployer) this.deployer;
+            if (copyingDeployer.update(deployable, changes))
+            {
+                return;
+            }
+        }
+
+        getLogger().info("Redeploying [" + deployable.getFile() + "] after " + changes.size()
+            + " change(s)", this.getClass().getName());
+        this.deployer.redeploy(deployable);
+    }
+
+    /**
+     * @param deployable Changed deployable.
+     * @param changes Paths of the changed files, relative to the deployable's directory.
+     * @return <code>false</code> if the deployable is an expanded WAR and only its static
+     * resources have changed, <code>true</code> otherwise.
+     */
+    protected boolean requiresRedeploy(Deployable deployable, Set<String> changes)
+    {
+        if (!deployable.isExpanded() || !DeployableType.WAR.equals(deployable.getType()))
+        {
+            return true;
+        }
+        for (String change : changes)
+        {
+            if (change.length() == 0 || change.startsWith("WEB-INF/")
+                || change.startsWith("META-INF/"))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param deployable Deployable.
+     * @return Files of the deployable, with their modification stamp.
+     */
+    private static Map<String, Long> snapshot(Deployable deployable)
+    {
+        Map<String, Long> snapshot = new HashMap<String, Long>();
+        File file = new File(deployable.getFile());
+        if (file.isDirectory())
+        {
+            snapshotDirectory(file, "", snapshot);
+        }
+        else if (file.isFile())
+        {
+            snapshot.put("", getStamp(file));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Add the files of a directory and its subdirectories to a snapshot.
+     * @param directory Directory.
+     * @param prefix Path of the directory, relative to the deployable's directory.
+     * @param snapshot Snapshot to add the files to.
+     */
+    private static void snapshotDirectory(File directory, String prefix,
+        Map<String, Long> snapshot)
+    {
+        File[] children = directory.listFiles();
+        if (children == null)
+        {
+            return;
+        }
+        for (File child : children)
+        {
+            String path = prefix + child.getName();
+            if (child.isDirectory())
+            {
+                snapshotDirectory(child, path + "/", snapshot);
+            }
+            else
+            {
+                snapshot.put(path, getStamp(child));
+            }
+        }
+    }
+
+    /**
+     * @param file File.
+     * @return Stamp that changes when the file is modified.
+     */
+    private static Long getStamp(File file)
+    {
+        return file.lastModified() * 31 + file.length();
+    }
+
+    /**
+     * @param previous Previous snapshot.
+     * @param current Current snapshot.
+     * @return Paths of the files added, modified or removed between both snapshots.
+     */
+    private static Set<String> getChanges(Map<String, Long> previous, Map<String, Long> current)
+    {
+        Set<String> changes = new TreeSet<String>();
+        for (Map.Entry<String, Long> file : current.entrySet())
+        {
+            if (!file.getValue().equals(previous.get(file.getKey())))
+            {
+                changes.add(file.getKey());
+            }
+        }
+        for (String path : previous.keySet())
+        {
+            if (!current.containsKey(path))
+            {
+                changes.add(path);
+            }
+        }
+        return changes;
+    }
+}
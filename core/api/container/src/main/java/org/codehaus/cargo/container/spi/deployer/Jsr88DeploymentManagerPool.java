@@ -0,0 +1,233 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.deployer;
+
+import java.util.Map;
+
+import javax.enterprise.deploy.spi.DeploymentManager;
+import javax.enterprise.deploy.spi.Target;
+
+import org.codehaus.cargo.util.CargoException;
+
+/**
+ * Pool of connected JSR-88 {@link DeploymentManager}s, with one session per container
+ * configuration. Reusing a session avoids a remote login and a target discovery for each
+ * deployment operation. Sessions that have been idle for more than
+ * {@link #HEALTH_CHECK_INTERVAL} milliseconds are checked before being reused, and replaced if
+ * the server does not answer anymore. All sessions are released when the JVM shuts down.
+ */
+public final class Jsr88DeploymentManagerPool
+{
+    /**
+     * Idle time, in milliseconds, after which a session is checked before being reused.
+     */
+    public static final long HEALTH_CHECK_INTERVAL = 30000;
+
+    /**
+     * Sessions, keyed by container configuration.
+     */
+    private static final KeyedSessionPool<Session> SESSIONS =
+        new KeyedSessionPool<Session>(HEALTH_CHECK_INTERVAL);
+
+    /**
+     * Session with a connected deployment manager. Operations using a session must synchronize
+     * on it, as deployment managers are not thread-safe.
+     */
+    public static final class Session extends KeyedSessionPool.AbstractPooledSession
+    {
+        /**
+         * Connected deployment manager.
+         */
+        private final DeploymentManager deploymentManager;
+
+        /**
+         * Targets to deploy to, <code>null</code> until first requested.
+         */
+        private Target[] targets;
+
+        /**
+         * @param key Session key.
+         * @param deploymentManager Connected deployment manager.
+         */
+        private Session(String key, DeploymentManager deploymentManager)
+        {
+            super(key);
+            this.deploymentManager = deploymentManager;
+        }
+
+        /**
+         * @return Connected deployment manager.
+         */
+        public DeploymentManager getDeploymentManager()
+        {
+            return this.deploymentManager;
+        }
+
+        /**
+         * @return Targets to deploy to, <code>null</code> if not cached yet.
+         */
+        public synchronized Target[] getTargets()
+        {
+            return this.targets;
+        }
+
+        /**
+         * @param targets Targets to deploy to.
+         */
+        public synchronized void setTargets(Target[] targets)
+        {
+            this.targets = targets;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean ping()
+        {
+            try
+            {
+                this.deploymentManager.getTargets();
+                return true;
+            }
+            catch (RuntimeException e)
+            {
+                return false;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void close()
+        {
+            try
+            {
+                this.deploymentManager.release();
+            }
+            catch (RuntimeException ignored)
+            {
+                // The connection is being closed anyway
+            }
+        }
+    }
+
+    /**
+     * Factory of connected deployment managers, called when no healthy session is pooled.
+     */
+    public interface DeploymentManagerFactory
+    {
+        /**
+         * @return Newly connected deployment manager.
+         */
+        DeploymentManager createDeploymentManager();
+    }
+
+    /**
+     * Utility class, cannot be instantiated.
+     */
+    private Jsr88DeploymentManagerPool()
+    {
+        // Nothing
+    }
+
+    /**
+     * Get the session for a container configuration, connecting a new deployment manager if
+     * there is no session yet or if the pooled one is not healthy anymore.
+     * 
+     * @param key Key identifying the container configuration.
+     * @param factory Factory to create a deployment manager with.
+     * @return Session.
+     */
+    public static Session getSession(String key, final DeploymentManagerFactory factory)
+    {
+        try
+        {
+            return SESSIONS.getSession(key, new KeyedSessionPool.SessionFactory<Session>()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public Session createSession(String sessionKey)
+                {
+                    return new Session(sessionKey, factory.createDeploymentManager());
+                }
+            });
+        }
+        catch (RuntimeException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new CargoException("Failed to create a deployment manager", e);
+        }
+    }
+
+    /**
+     * Release a session, typically because it has failed or because it will not be used anymore.
+     * 
+     * @param session Session to release.
+     */
+    public static void release(Session session)
+    {
+        SESSIONS.release(session);
+    }
+
+    /**
+     * Release the session of a container configuration, if any.
+     * 
+     * @param key Key identifying the container configuration.
+     */
+    public static void release(String key)
+    {
+        SESSIONS.release(key);
+    }
+
+    /**
+     * Release all sessions.
+     */
+    public static void releaseAll()
+    {
+        SESSIONS.releaseAll();
+    }
+
+    /**
+     * @return Number of pooled sessions.
+     */
+    public static int size()
+    {
+        return SESSIONS.size();
+    }
+
+    /**
+     * Compute the key of a container configuration.
+     * 
+     * @param deploymentFactoryClassName Class name of the JSR-88 deployment factory.
+     * @param properties Properties of the container configuration.
+     * @return Key identifying the container configuration.
+     */
+    public static String getKey(String deploymentFactoryClassName, Map<String, String> properties)
+    {
+        return KeyedSessionPool.getKey(deploymentFactoryClassName, properties);
+    }
+}
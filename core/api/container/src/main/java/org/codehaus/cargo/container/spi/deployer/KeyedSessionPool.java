@@ -0,0 +1,278 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.deployer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pool of sessions with remote servers, such as connected deployment managers or MBean server
+ * connections, with one session per key. Reusing a session avoids a remote connection and login
+ * for each deployment operation. Sessions that have been idle for longer than the health check
+ * interval are checked before being reused, and replaced if the server does not answer anymore.
+ * All sessions are released when the JVM shuts down.
+ * 
+ * @param <S> Type of the pooled sessions.
+ */
+public class KeyedSessionPool<S extends KeyedSessionPool.AbstractPooledSession>
+{
+    /**
+     * Session held by a {@link KeyedSessionPool}.
+     */
+    public abstract static class AbstractPooledSession
+    {
+        /**
+         * Session key.
+         */
+        private final String key;
+
+        /**
+         * Time the session has last been used.
+         */
+        private long lastUsed;
+
+        /**
+         * @param key Session key.
+         */
+        protected AbstractPooledSession(String key)
+        {
+            this.key = key;
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+        /**
+         * @return Session key.
+         */
+        public String getKey()
+        {
+            return this.key;
+        }
+
+        /**
+         * @param healthCheckInterval Idle time, in milliseconds, after which the session is
+         * checked.
+         * @return <code>true</code> if the server still answers, checked only if the session has
+         * been idle for longer than <code>healthCheckInterval</code>.
+         */
+        synchronized boolean isHealthy(long healthCheckInterval)
+        {
+            long now = System.currentTimeMillis();
+            if (now - this.lastUsed > healthCheckInterval && !ping())
+            {
+                return false;
+            }
+            this.lastUsed = now;
+            return true;
+        }
+
+        /**
+         * Check whether the server still answers. Called while holding the lock on the session.
+         * 
+         * @return <code>true</code> if the server still answers.
+         */
+        protected abstract boolean ping();
+
+        /**
+         * Close the session. Called while holding the lock on the session, and only once.
+         */
+        protected abstract void close();
+    }
+
+    /**
+     * Factory of sessions, called when no healthy session is pooled for a key.
+     * 
+     * @param <S> Type of the created sessions.
+     */
+    public interface SessionFactory<S>
+    {
+        /**
+         * @param key Session key.
+         * @return Newly connected session.
+         * @throws Exception If connecting fails.
+         */
+        S createSession(String key) throws Exception;
+    }
+
+    /**
+     * Sessions, keyed by the configuration they connect with.
+     */
+    private final ConcurrentMap<String, S> sessions = new ConcurrentHashMap<String, S>();
+
+    /**
+     * Locks serializing the creation of sessions, one per key, so that connecting to one server
+     * never blocks the creation of sessions for other keys.
+     */
+    private final ConcurrentMap<String, Object> creationLocks =
+        new ConcurrentHashMap<String, Object>();
+
+    /**
+     * Idle time, in milliseconds, after which a session is checked before being reused.
+     */
+    private final long healthCheckInterval;
+
+    /**
+     * Whether the shutdown hook releasing all sessions has been registered.
+     */
+    private boolean shutdownHookRegistered;
+
+    /**
+     * @param healthCheckInterval Idle time, in milliseconds, after which a session is checked
+     * before being reused.
+     */
+    public KeyedSessionPool(long healthCheckInterval)
+    {
+        this.healthCheckInterval = healthCheckInterval;
+    }
+
+    /**
+     * Get the session for a key, creating a new one if there is no session yet or if the pooled
+     * one is not healthy anymore.
+     * 
+     * @param key Session key.
+     * @param factory Factory to create the session with, only used if no healthy session is
+     * pooled.
+     * @return Session.
+     * @throws Exception If creating the session fails.
+     */
+    public S getSession(String key, SessionFactory<S> factory) throws Exception
+    {
+        S session = this.sessions.get(key);
+        if (session != null && !session.isHealthy(this.healthCheckInterval))
+        {
+            release(session);
+            session = null;
+        }
+        if (session == null)
+        {
+            Object lock = this.creationLocks.get(key);
+            if (lock == null)
+            {
+                Object newLock = new Object();
+                lock = this.creationLocks.putIfAbsent(key, newLock);
+                if (lock == null)
+                {
+                    lock = newLock;
+                }
+            }
+            synchronized (lock)
+            {
+                session = this.sessions.get(key);
+                if (session == null)
+                {
+                    registerShutdownHook();
+                    session = factory.createSession(key);
+                    this.sessions.put(key, session);
+                }
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Release a session, typically because it has failed or because it will not be used anymore.
+     * 
+     * @param session Session to release.
+     */
+    public void release(S session)
+    {
+        if (this.sessions.remove(session.getKey(), session))
+        {
+            synchronized (session)
+            {
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * Release the session with the given key, if any.
+     * 
+     * @param key Session key.
+     */
+    public void release(String key)
+    {
+        S session = this.sessions.get(key);
+        if (session != null)
+        {
+            release(session);
+        }
+    }
+
+    /**
+     * Release all sessions.
+     */
+    public void releaseAll()
+    {
+        List<S> pooledSessions = new ArrayList<S>(this.sessions.values());
+        for (S session : pooledSessions)
+        {
+            release(session);
+        }
+    }
+
+    /**
+     * @return Number of pooled sessions.
+     */
+    public int size()
+    {
+        return this.sessions.size();
+    }
+
+    /**
+     * Compute a session key.
+     * 
+     * @param type Type of the session, for example the class name of the connection factory.
+     * @param properties Properties of the configuration the session connects with.
+     * @return Key identifying the session type and the configuration.
+     */
+    public static String getKey(String type, Map<String, String> properties)
+    {
+        StringBuilder key = new StringBuilder(type);
+        key.append('\n');
+        key.append(new TreeMap<String, String>(properties));
+        return key.toString();
+    }
+
+    /**
+     * Register the shutdown hook releasing all sessions, unless already done.
+     */
+    private synchronized void registerShutdownHook()
+    {
+        if (!this.shutdownHookRegistered)
+        {
+            Runtime.getRuntime().addShutdownHook(new Thread()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void run()
+                {
+                    releaseAll();
+                }
+            });
+            this.shutdownHookRegistered = true;
+        }
+    }
+}
@@ -29,11 +29,12 @@ import org.apache.tools.ant.types.Environment;
 import org.apache.tools.ant.types.Path;
 import org.apache.tools.ant.types.RedirectorElement;
 import org.codehaus.cargo.container.internal.AntContainerExecutorThread;
+import org.codehaus.cargo.container.lifecycle.LifecycleInstrumentation;
 
 /**
  * The default JVM launcher.
  */
-class DefaultJvmLauncher implements JvmLauncher
+class DefaultJvmLauncher implements JvmLauncher, ObservableJvmLauncher
 {
 
     /**
@@ -46,6 +47,11 @@ class DefaultJvmLauncher implements JvmLauncher
      */
     private boolean spawn;
 
+    /**
+     * Listener to notify when the started JVM exits, <code>null</code> if none.
+     */
+    private JvmExitListener exitListener;
+
     /**
      * List of extra environment variables. Ant's Java task doesn't offer a getter for the
      * environment variable, forcing us to keep track of them ourselves.
@@ -342,14 +348,39 @@ class DefaultJvmLauncher implements JvmLauncher
         this.spawn = spawn;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setExitListener(JvmExitListener listener)
+    {
+        this.exitListener = listener;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void start() throws JvmLauncherException
     {
-        Thread runner = new AntContainerExecutorThread(this.java, this.spawn);
+        final JvmExitListener listener = this.spawn ? null : this.exitListener;
+        Thread runner = new AntContainerExecutorThread(this.java, this.spawn)
+        {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void run()
+            {
+                super.run();
+                if (listener != null)
+                {
+                    listener.jvmExited(DefaultJvmLauncher.this, getExitCode());
+                }
+            }
+        };
         runner.start();
+        LifecycleInstrumentation.addProcess();
     }
 
     /**
@@ -358,6 +389,7 @@ class DefaultJvmLauncher implements JvmLauncher
     @Override
     public int execute() throws JvmLauncherException
     {
+        LifecycleInstrumentation.addProcess();
         try
         {
             return this.java.executeJava();
@@ -0,0 +1,33 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.jvm;
+
+/**
+ * Listener that is triggered when a JVM started using {@link JvmLauncher#start()} exits.
+ */
+public interface JvmExitListener
+{
+    /**
+     * The JVM has exited.
+     * @param launcher the launcher which has started the JVM
+     * @param exitCode the exit code of the JVM, <code>-1</code> if not known
+     */
+    void jvmExited(JvmLauncher launcher, int exitCode);
+}
@@ -0,0 +1,37 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.jvm;
+
+/**
+ * Optional interface of {@link JvmLauncher}s which notify the exit of the JVM they have started.
+ * Kept separate from {@link JvmLauncher} so that the launchers of other
+ * {@link JvmLauncherFactory} implementations do not need to implement it; callers check for it
+ * using <code>instanceof</code>.
+ */
+public interface ObservableJvmLauncher
+{
+    /**
+     * Sets the listener to notify when the JVM launched using {@link JvmLauncher#start()} exits.
+     * Spawned JVMs are independent of the launcher, hence their exit is not notified.
+     *
+     * @param listener the listener, <code>null</code> for none.
+     */
+    void setExitListener(JvmExitListener listener);
+}
@@ -19,11 +19,17 @@
  */
 package org.codehaus.cargo.container.spi.util;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.MalformedURLException;
 import java.net.URL;
 
 import org.codehaus.cargo.container.Container;
 import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.ContainerListener;
+import org.codehaus.cargo.container.LocalContainer;
+import org.codehaus.cargo.container.ObservableContainer;
 import org.codehaus.cargo.container.State;
 import org.codehaus.cargo.container.configuration.Configuration;
 import org.codehaus.cargo.container.property.GeneralPropertySet;
@@ -41,6 +47,22 @@ public final class ContainerUtils
      */
     private static final int SLEEP = 100;
 
+    /**
+     * When we wait for a local container to be stopped, this is the time after which we check the
+     * container state again should no {@link ContainerListener} event have been received.
+     */
+    private static final int EVENT_WAIT = 5000;
+
+    /**
+     * Maximum number of lines read by {@link #readOutputTail(String)}.
+     */
+    private static final int OUTPUT_TAIL_LINES = 20;
+
+    /**
+     * Maximum number of bytes read by {@link #readOutputTail(String)}.
+     */
+    private static final int OUTPUT_TAIL_BYTES = 8192;
+
     /**
      * Ensures that this utility class cannot be instantiated.
      */
@@ -74,12 +96,21 @@ public final class ContainerUtils
     }
 
     /**
-     * Wait indefinitely till the container is stopped.
+     * Wait indefinitely till the container is stopped. Local containers implementing
+     * {@link ObservableContainer} notify the wait as soon as their state changes; other
+     * containers are polled.
      * 
      * @param container the local container
+     * @throws ContainerException if the container's server has ended with a non-zero exit code
      */
     public static void waitTillContainerIsStopped(Container container)
     {
+        if (container instanceof LocalContainer && container instanceof ObservableContainer)
+        {
+            waitTillLocalContainerIsStopped((LocalContainer) container);
+            return;
+        }
+
         while (container.getState() == State.STARTED)
         {
             try
@@ -92,4 +123,123 @@ public final class ContainerUtils
             }
         }
     }
+
+    /**
+     * Wait indefinitely till a local container is stopped, using {@link ContainerListener} events.
+     * 
+     * @param container the local container, which must implement {@link ObservableContainer}
+     * @throws ContainerException if the container's server has ended with a non-zero exit code
+     */
+    private static void waitTillLocalContainerIsStopped(LocalContainer container)
+    {
+        final Object lock = new Object();
+        final String[] failure = new String[1];
+        ContainerListener listener = new ContainerListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void stateChanged(LocalContainer container, State previousState, State state)
+            {
+                synchronized (lock)
+                {
+                    lock.notifyAll();
+                }
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void containerExited(LocalContainer container, int exitCode,
+                String outputTail)
+            {
+                if (exitCode > 0 && container.getState() == State.STARTED)
+                {
+                    synchronized (lock)
+                    {
+                        failure[0] = container.getName() + " has ended unexpectedly with exit "
+                            + "code " + exitCode + (outputTail == null ? "" : ", last lines of "
+                                + "its output:" + System.getProperty("line.separator")
+                                    + outputTail);
+                    }
+                }
+            }
+        };
+
+        ObservableContainer observable = (ObservableContainer) container;
+        observable.addContainerListener(listener);
+        try
+        {
+            synchronized (lock)
+            {
+                while (container.getState() == State.STARTED)
+                {
+                    lock.wait(EVENT_WAIT);
+                }
+                if (failure[0] != null)
+                {
+                    throw new ContainerException(failure[0]);
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            throw new CargoException("Aborting container wait.", e);
+        }
+        finally
+        {
+            observable.removeContainerListener(listener);
+        }
+    }
+
+    /**
+     * Read the last lines of a container's output.
+     * 
+     * @param output the file to which the container's output is logged, can be <code>null</code>
+     * @return the last lines of the output, <code>null</code> if it cannot be read
+     */
+    public static String readOutputTail(String output)
+    {
+        if (output == null || !new File(output).isFile())
+        {
+            return null;
+        }
+
+        try
+        {
+            RandomAccessFile file = new RandomAccessFile(output, "r");
+            try
+            {
+                long start = Math.max(0, file.length() - OUTPUT_TAIL_BYTES);
+                byte[] bytes = new byte[(int) (file.length() - start)];
+                file.seek(start);
+                file.readFully(bytes);
+
+                // The output is written by the container in the platform encoding
+                String[] lines = new String(bytes).split("\r?\n");
+                // If the output has been cut, its first line is probably partial
+                int first = Math.max(start > 0 ? 1 : 0, lines.length - OUTPUT_TAIL_LINES);
+                StringBuilder tail = new StringBuilder();
+                for (int i = first; i < lines.length; i++)
+                {
+                    if (tail.length() > 0)
+                    {
+                        tail.append(System.getProperty("line.separator"));
+                    }
+                    tail.append(lines[i]);
+                }
+                return tail.toString();
+            }
+            finally
+            {
+                file.close();
+            }
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
 }
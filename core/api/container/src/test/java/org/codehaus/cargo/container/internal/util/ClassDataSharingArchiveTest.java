@@ -0,0 +1,146 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.stub.JvmLauncherStub;
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+
+/**
+ * Unit tests for {@link ClassDataSharingArchive}.
+ */
+public class ClassDataSharingArchiveTest extends TestCase
+{
+    /**
+     * File handler.
+     */
+    private FileHandler fileHandler;
+
+    /**
+     * Temporary directory for the test.
+     */
+    private File testDirectory;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.fileHandler = new DefaultFileHandler();
+        this.testDirectory = new File(this.fileHandler.createUniqueTmpDirectory());
+        new File(this.testDirectory, "jdk/lib").mkdirs();
+        new File(this.testDirectory, "container/lib").mkdirs();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        this.fileHandler.delete(this.testDirectory.getAbsolutePath());
+        super.tearDown();
+    }
+
+    /**
+     * Test a training start followed by a start using the archive.
+     */
+    public void testTrainingThenArchive()
+    {
+        File directory = new File(this.testDirectory, "container/.cargo-cds");
+
+        ClassDataSharingArchive archive = createArchive(directory);
+        JvmLauncherStub java = new JvmLauncherStub();
+        archive.addJvmArguments(java);
+        assertTrue(archive.isTraining());
+        assertEquals("-XX:ArchiveClassesAtExit=" + archive.getArchiveFile().getAbsolutePath(),
+            java.getJvmArguments().get(0));
+        assertNull(archive.recordStartupTime(5000));
+
+        // The JVM writes the archive when it exits
+        this.fileHandler.writeTextFile(archive.getArchiveFile().getAbsolutePath(), "jsa",
+            "UTF-8");
+
+        archive = createArchive(directory);
+        java = new JvmLauncherStub();
+        archive.addJvmArguments(java);
+        assertFalse(archive.isTraining());
+        assertEquals("-XX:SharedArchiveFile=" + archive.getArchiveFile().getAbsolutePath(),
+            java.getJvmArguments().get(0));
+        assertEquals(Long.valueOf(2000), archive.recordStartupTime(3000));
+    }
+
+    /**
+     * Test that the archive is invalidated when the JDK changes.
+     */
+    public void testKeyChangesWithJdk()
+    {
+        File jdk = new File(this.testDirectory, "jdk");
+        File container = new File(this.testDirectory, "container");
+        String key = ClassDataSharingArchive.computeKey(jdk, container);
+        assertEquals(key, ClassDataSharingArchive.computeKey(jdk, container));
+
+        this.fileHandler.writeTextFile(new File(jdk, "release").getAbsolutePath(),
+            "JAVA_VERSION=\"17\"", "UTF-8");
+        assertFalse(key.equals(ClassDataSharingArchive.computeKey(jdk, container)));
+    }
+
+    /**
+     * Test that a training start only removes the outdated archives of the same JDK and
+     * container home.
+     */
+    public void testTrainingKeepsArchivesOfOtherJdks()
+    {
+        File directory = new File(this.testDirectory, "container/.cargo-cds");
+        directory.mkdirs();
+        File jdk = new File(this.testDirectory, "jdk");
+        File container = new File(this.testDirectory, "container");
+        String prefix = ClassDataSharingArchive.computePrefix(jdk, container);
+        File outdated = new File(directory, prefix + "-outdated.jsa");
+        File otherJdk = new File(directory,
+            ClassDataSharingArchive.computePrefix(new File(this.testDirectory, "other"), container)
+                + "-key.jsa");
+        this.fileHandler.writeTextFile(outdated.getAbsolutePath(), "jsa", "UTF-8");
+        this.fileHandler.writeTextFile(otherJdk.getAbsolutePath(), "jsa", "UTF-8");
+
+        ClassDataSharingArchive archive = createArchive(directory);
+        archive.addJvmArguments(new JvmLauncherStub());
+        assertTrue(archive.isTraining());
+        assertFalse(outdated.exists());
+        assertTrue(otherJdk.exists());
+    }
+
+    /**
+     * @param directory Archive directory.
+     * @return Archive for the test JDK and container.
+     */
+    private ClassDataSharingArchive createArchive(File directory)
+    {
+        return new ClassDataSharingArchive(directory,
+            new File(this.testDirectory, "jdk").getAbsolutePath(),
+            new File(this.testDirectory, "container").getAbsolutePath());
+    }
+}
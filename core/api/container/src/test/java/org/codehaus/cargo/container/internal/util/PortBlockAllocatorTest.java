@@ -0,0 +1,116 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.internal.util;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link PortBlockAllocator}.
+ */
+public class PortBlockAllocatorTest extends TestCase
+{
+    /**
+     * Registry file.
+     */
+    private File registry;
+
+    /**
+     * Ports considered in use by the test allocators.
+     */
+    private Set<Integer> usedPorts;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.registry = File.createTempFile("cargo-port-reservations-", ".properties");
+        this.usedPorts = new HashSet<Integer>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        this.registry.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Test that two allocators sharing a registry get non-overlapping blocks, and that released
+     * blocks are reused.
+     */
+    public void testNonOverlappingBlocks()
+    {
+        PortBlockAllocator first = createAllocator();
+        PortBlockAllocator second = createAllocator();
+
+        PortBlockAllocator.Reservation reservation1 =
+            first.reserve(Arrays.asList(8080, 8009), 0, 10);
+        assertEquals(0, reservation1.getOffset());
+        PortBlockAllocator.Reservation reservation2 =
+            second.reserve(Arrays.asList(8080, 8009, 8019), 0, 10);
+        assertEquals(10, reservation2.getOffset());
+        assertEquals(new HashSet<Integer>(Arrays.asList(8080, 8009, 8090, 8019, 8029)),
+            first.getReservedPorts());
+
+        first.release(reservation1);
+        first.release(reservation1);
+        assertEquals(0, second.reserve(Arrays.asList(8080), 0, 10).getOffset());
+    }
+
+    /**
+     * Test that ports in use are skipped.
+     */
+    public void testPortsInUseAreSkipped()
+    {
+        this.usedPorts.add(8080);
+        this.usedPorts.add(8090);
+        assertEquals(20,
+            createAllocator().reserve(Arrays.asList(8080), 0, 10).getOffset());
+    }
+
+    /**
+     * @return Allocator using the test registry, which considers {@link #usedPorts} in use.
+     */
+    private PortBlockAllocator createAllocator()
+    {
+        return new PortBlockAllocator(this.registry)
+        {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            protected boolean isPortFree(int port)
+            {
+                return !usedPorts.contains(port);
+            }
+        };
+    }
+}
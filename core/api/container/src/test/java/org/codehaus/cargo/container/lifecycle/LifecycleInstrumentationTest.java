@@ -0,0 +1,213 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.lifecycle;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link LifecycleInstrumentation}, {@link LifecycleReporter} and
+ * {@link LifecycleSourceFilter}.
+ */
+public class LifecycleInstrumentationTest extends TestCase
+{
+    /**
+     * Reporter registered during the test.
+     */
+    private LifecycleReporter reporter;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.reporter = new LifecycleReporter();
+        LifecycleInstrumentation.addListener(this.reporter);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        LifecycleInstrumentation.removeListener(this.reporter);
+        super.tearDown();
+    }
+
+    /**
+     * Test that nested phases are reported with their paths and that their counters are added to
+     * the enclosing phase.
+     */
+    public void testNestedPhases()
+    {
+        LifecycleSpan start = LifecycleInstrumentation.begin(this, "start");
+        LifecycleSpan phase = LifecycleInstrumentation.begin(this, "startInternal");
+        LifecycleInstrumentation.addProcess();
+        LifecycleInstrumentation.addBytes(100);
+        phase.end();
+        start.end();
+        start.end();
+
+        List<LifecyclePhase> phases = this.reporter.getPhases();
+        assertEquals(2, phases.size());
+        assertEquals("start/startInternal", phases.get(0).getPath());
+        assertEquals(1, phases.get(0).getProcesses());
+        assertEquals("start", phases.get(1).getPath());
+        assertEquals(100, phases.get(1).getBytes());
+        assertEquals(1, phases.get(1).getProcesses());
+        assertNull(phases.get(1).getFailure());
+        assertEquals("LifecycleInstrumentationTest", phases.get(1).getSourceName());
+    }
+
+    /**
+     * Test that phases which have not been ended, for example because of an exception, are
+     * ended with their enclosing phase and marked as failed.
+     */
+    public void testUnendedPhase()
+    {
+        LifecycleSpan start = LifecycleInstrumentation.begin(this, "start");
+        LifecycleInstrumentation.begin(this, "configure");
+        start.setFailure(new IllegalStateException("broken"));
+        start.end();
+
+        List<LifecyclePhase> phases = this.reporter.getPhases();
+        assertEquals(2, phases.size());
+        assertEquals("start/configure", phases.get(0).getPath());
+        assertNotNull(phases.get(0).getFailure());
+        assertEquals("java.lang.IllegalStateException: broken", phases.get(1).getFailure());
+
+        // The current thread does not have any phase in progress anymore
+        LifecycleInstrumentation.begin(this, "stop").end();
+        assertEquals("stop", this.reporter.getPhases().get(2).getPath());
+    }
+
+    /**
+     * Test the JSON and CSV reports.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testReports() throws Exception
+    {
+        LifecycleSpan span = LifecycleInstrumentation.begin(this, "deploy");
+        span.setFailure(new IllegalStateException("a \"quoted\", failure"));
+        span.end();
+
+        StringWriter json = new StringWriter();
+        this.reporter.writeJson(json);
+        assertTrue(json.toString(), json.toString().contains(
+            "\"path\": \"deploy\""));
+        assertTrue(json.toString(), json.toString().contains(
+            "\"failure\": \"java.lang.IllegalStateException: a \\\"quoted\\\", failure\""));
+
+        StringWriter csv = new StringWriter();
+        this.reporter.writeCsv(csv);
+        String[] lines = csv.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("source,path,phase,startTime,duration,bytes,processes,failure", lines[0]);
+        assertTrue(lines[1], lines[1].startsWith("LifecycleInstrumentationTest,deploy,deploy,"));
+        assertTrue(lines[1], lines[1].endsWith(
+            ",0,0,\"java.lang.IllegalStateException: a \"\"quoted\"\", failure\""));
+    }
+
+    /**
+     * Test that a source filter only forwards the phases of its sources and of its thread.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testSourceFilter() throws Exception
+    {
+        final Object source = new Object();
+        final Object otherSource = new Object();
+        LifecycleReporter filtered = new LifecycleReporter();
+        LifecycleSourceFilter filter = new LifecycleSourceFilter(filtered, Thread.currentThread());
+        filter.addSource(source);
+        LifecycleInstrumentation.addListener(filter);
+        try
+        {
+            LifecycleInstrumentation.begin(otherSource, "start").end();
+            Thread other = new Thread()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void run()
+                {
+                    LifecycleInstrumentation.begin(source, "deploy").end();
+                    LifecycleInstrumentation.begin(otherSource, "undeploy").end();
+                }
+            };
+            other.start();
+            other.join();
+        }
+        finally
+        {
+            LifecycleInstrumentation.removeListener(filter);
+        }
+
+        List<LifecyclePhase> phases = filtered.getPhases();
+        assertEquals(2, phases.size());
+        assertEquals("start", phases.get(0).getName());
+        assertEquals("deploy", phases.get(1).getName());
+        assertEquals(3, this.reporter.getPhases().size());
+    }
+
+    /**
+     * Test that a failing listener does not prevent the other listeners from being notified nor
+     * leave the ended span as the current one.
+     */
+    public void testFailingListener()
+    {
+        LifecycleListener failing = new LifecycleListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void phaseCompleted(LifecyclePhase phase)
+            {
+                throw new IllegalStateException("listener failure");
+            }
+        };
+        LifecycleInstrumentation.removeListener(this.reporter);
+        LifecycleInstrumentation.addListener(failing);
+        LifecycleInstrumentation.addListener(this.reporter);
+        try
+        {
+            LifecycleSpan start = LifecycleInstrumentation.begin(this, "start");
+            LifecycleInstrumentation.begin(this, "configure").end();
+            start.end();
+        }
+        finally
+        {
+            LifecycleInstrumentation.removeListener(failing);
+        }
+
+        LifecycleInstrumentation.begin(this, "stop").end();
+        List<LifecyclePhase> phases = this.reporter.getPhases();
+        assertEquals(3, phases.size());
+        assertEquals("start/configure", phases.get(0).getPath());
+        assertEquals("start", phases.get(1).getPath());
+        assertEquals("stop", phases.get(2).getPath());
+    }
+}
@@ -537,6 +537,22 @@ public class InstalledLocalContainerTest extends TestCase
         checkString(commandLine, "-XX:MaxPermSize=256m");
     }
 
+    /**
+     * Test reading the JVM version from the output of <code>java -version</code>.
+     */
+    public void testParseJvmVersion()
+    {
+        assertEquals("1.8.0_392",
+            AbstractInstalledLocalContainer.parseJvmVersion("java version \"1.8.0_392\""));
+        assertEquals("17.0.9", AbstractInstalledLocalContainer.parseJvmVersion(
+            "openjdk version \"17.0.9\" 2023-10-17"));
+        assertEquals("11.0.21", AbstractInstalledLocalContainer.parseJvmVersion(
+            "openjdk version \"11.0.21\" 2023-10-17 LTS"));
+        assertNull(AbstractInstalledLocalContainer.parseJvmVersion(
+            "Picked up JAVA_TOOL_OPTIONS: -Xmx1g"));
+        assertNull(AbstractInstalledLocalContainer.parseJvmVersion(null));
+    }
+
     /**
      * Check if <code>haystack</code> contains <code>needle</code>. A JUnit assertion will fail
      * otherwise.
@@ -0,0 +1,416 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.configuration;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.deployable.WAR;
+import org.codehaus.cargo.container.property.GeneralPropertySet;
+import org.codehaus.cargo.container.property.ServletPropertySet;
+import org.codehaus.cargo.container.stub.InstalledLocalContainerStub;
+import org.codehaus.cargo.container.stub.StandaloneLocalConfigurationStub;
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+
+/**
+ * Unit tests for {@link ConfigurationSnapshotCache}.
+ */
+public class ConfigurationSnapshotCacheTest extends TestCase
+{
+    /**
+     * File handler.
+     */
+    private FileHandler fileHandler;
+
+    /**
+     * Temporary directory for the test.
+     */
+    private String testDirectory;
+
+    /**
+     * Configuration.
+     */
+    private StandaloneLocalConfigurationStub configuration;
+
+    /**
+     * Container.
+     */
+    private InstalledLocalContainerStub container;
+
+    /**
+     * Snapshot cache.
+     */
+    private ConfigurationSnapshotCache cache;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.fileHandler = new DefaultFileHandler();
+        this.testDirectory = this.fileHandler.createUniqueTmpDirectory();
+
+        String home = this.fileHandler.append(this.testDirectory, "home");
+        this.fileHandler.mkdirs(home);
+        this.configuration = new StandaloneLocalConfigurationStub(home);
+        this.configuration.setProperty(ServletPropertySet.PORT, "8080");
+        this.container = new InstalledLocalContainerStub(this.configuration);
+
+        this.cache = new ConfigurationSnapshotCache(
+            this.fileHandler.append(this.testDirectory, "snapshots"), this.fileHandler);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        this.fileHandler.delete(this.testDirectory);
+        super.tearDown();
+    }
+
+    /**
+     * Test that the fingerprint only changes when the configuration inputs change.
+     */
+    public void testFingerprint()
+    {
+        String fingerprint = this.cache.computeFingerprint(this.container, this.configuration);
+        assertEquals(fingerprint,
+            this.cache.computeFingerprint(this.container, this.configuration));
+
+        this.configuration.setProperty(GeneralPropertySet.CONFIGURATION_SNAPSHOT_DIRECTORY,
+            this.testDirectory);
+        assertEquals(fingerprint,
+            this.cache.computeFingerprint(this.container, this.configuration));
+
+        this.configuration.setProperty(ServletPropertySet.PORT, "8081");
+        assertFalse(fingerprint.equals(
+            this.cache.computeFingerprint(this.container, this.configuration)));
+    }
+
+    /**
+     * Test that the fingerprint changes with the container system properties and classpaths.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testFingerprintContainerSettings() throws Exception
+    {
+        String fingerprint = this.cache.computeFingerprint(this.container, this.configuration);
+
+        Map<String, String> systemProperties = new HashMap<String, String>();
+        systemProperties.put("foo", "bar");
+        this.container.setSystemProperties(systemProperties);
+        String withSystemProperties =
+            this.cache.computeFingerprint(this.container, this.configuration);
+        assertFalse(fingerprint.equals(withSystemProperties));
+
+        String jar = this.fileHandler.append(this.testDirectory, "extra.jar");
+        this.fileHandler.writeTextFile(jar, "jar", "UTF-8");
+        this.container.setExtraClasspath(new String[] {jar});
+        String withExtraClasspath =
+            this.cache.computeFingerprint(this.container, this.configuration);
+        assertFalse(withSystemProperties.equals(withExtraClasspath));
+
+        this.fileHandler.writeTextFile(jar, "rebuilt jar", "UTF-8");
+        String withRebuiltJar = this.cache.computeFingerprint(this.container, this.configuration);
+        assertFalse(withExtraClasspath.equals(withRebuiltJar));
+
+        this.container.setExtraClasspath(null);
+        this.container.setSharedClasspath(new String[] {jar});
+        assertFalse(withRebuiltJar.equals(
+            this.cache.computeFingerprint(this.container, this.configuration)));
+    }
+
+    /**
+     * Test that the fingerprint changes with the content of files referenced by properties.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testFingerprintReferencedFile() throws Exception
+    {
+        String script = this.fileHandler.append(this.testDirectory, "script.cli");
+        this.fileHandler.writeTextFile(script, "a", "UTF-8");
+        File scriptFile = new File(script);
+        long lastModified = scriptFile.lastModified();
+        this.configuration.setProperty("cargo.test.script", script);
+        String fingerprint = this.cache.computeFingerprint(this.container, this.configuration);
+
+        // Same size and modification time, only the content changes
+        this.fileHandler.writeTextFile(script, "b", "UTF-8");
+        scriptFile.setLastModified(lastModified);
+        assertFalse(fingerprint.equals(
+            this.cache.computeFingerprint(this.container, this.configuration)));
+    }
+
+    /**
+     * Test that the fingerprint changes when the container installation changes.
+     */
+    public void testFingerprintInstallation()
+    {
+        String containerHome = this.fileHandler.append(this.testDirectory, "container");
+        this.fileHandler.mkdirs(this.fileHandler.append(containerHome, "lib"));
+        this.container.setHome(containerHome);
+        String fingerprint = this.cache.computeFingerprint(this.container, this.configuration);
+
+        new File(containerHome, "lib").setLastModified(System.currentTimeMillis() - 60000);
+        assertFalse(fingerprint.equals(
+            this.cache.computeFingerprint(this.container, this.configuration)));
+    }
+
+    /**
+     * Test that a saved snapshot restores both the home contents and the properties.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testSaveAndRestore() throws Exception
+    {
+        String fingerprint = this.cache.computeFingerprint(this.container, this.configuration);
+        assertFalse(this.cache.restore(fingerprint, this.configuration));
+
+        String file = this.fileHandler.append(this.configuration.getHome(), "conf/server.xml");
+        this.fileHandler.mkdirs(this.fileHandler.getParent(file));
+        this.fileHandler.writeTextFile(file, "<server/>", "UTF-8");
+        this.configuration.setProperty(GeneralPropertySet.RMI_PORT, "1099");
+        this.cache.save(fingerprint, this.configuration);
+
+        this.fileHandler.delete(this.configuration.getHome());
+        this.configuration.setProperty(GeneralPropertySet.RMI_PORT, null);
+
+        assertTrue(this.cache.restore(fingerprint, this.configuration));
+        assertEquals("<server/>", this.fileHandler.readTextFile(file, "UTF-8"));
+        assertEquals("1099", this.configuration.getPropertyValue(GeneralPropertySet.RMI_PORT));
+        assertEquals(1, countSnapshots(new File(this.testDirectory, "snapshots")));
+    }
+
+    /**
+     * Test that the least recently saved or restored snapshots are deleted once there are more
+     * snapshots than the maximum, and that snapshots being saved are ignored.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testPrune() throws Exception
+    {
+        File snapshots = new File(this.testDirectory, "bounded");
+        ConfigurationSnapshotCache boundedCache = new ConfigurationSnapshotCache(
+            snapshots.getAbsolutePath(), this.fileHandler, false, 2);
+        File saving = new File(snapshots, "saving.123.tmp");
+        assertTrue(saving.mkdirs());
+
+        long now = System.currentTimeMillis();
+        boundedCache.save("a", this.configuration);
+        new File(snapshots, "a/configuration.properties").setLastModified(now - 30000);
+        boundedCache.save("b", this.configuration);
+        new File(snapshots, "b/configuration.properties").setLastModified(now - 20000);
+        assertEquals(2, countSnapshots(snapshots));
+
+        assertTrue(boundedCache.restore("a", this.configuration));
+        boundedCache.save("c", this.configuration);
+
+        assertEquals(2, countSnapshots(snapshots));
+        assertTrue(new File(snapshots, "a").isDirectory());
+        assertFalse(new File(snapshots, "b").exists());
+        assertTrue(new File(snapshots, "c").isDirectory());
+        assertTrue(saving.isDirectory());
+        assertFalse(boundedCache.restore("b", this.configuration));
+    }
+
+    /**
+     * Test that the code version identifies the location of classes which have no
+     * implementation version, such as classes compiled by an IDE.
+     */
+    public void testCodeVersion()
+    {
+        String version = ConfigurationSnapshotCache.getCodeVersion(getClass());
+        assertNotNull(version);
+        assertTrue(version, version.contains(new File(getClass().getProtectionDomain()
+            .getCodeSource().getLocation().getPath()).getName()));
+        assertEquals(version, ConfigurationSnapshotCache.getCodeVersion(getClass()));
+    }
+
+    /**
+     * @param snapshots Snapshot directory.
+     * @return Number of complete snapshots in the directory.
+     */
+    private int countSnapshots(File snapshots)
+    {
+        int count = 0;
+        for (File snapshot : snapshots.listFiles())
+        {
+            if (new File(snapshot, "configuration.properties").isFile())
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Test that a relocatable snapshot is shared by configurations with different homes, and
+     * that the home path is replaced when restoring it.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testRelocatableRestore() throws Exception
+    {
+        ConfigurationSnapshotCache relocatableCache = new ConfigurationSnapshotCache(
+            this.fileHandler.append(this.testDirectory, "templates"), this.fileHandler, true);
+        String originalHome = this.fileHandler.getAbsolutePath(this.configuration.getHome());
+        String fingerprint =
+            relocatableCache.computeFingerprint(this.container, this.configuration);
+        assertFalse(fingerprint.equals(
+            this.cache.computeFingerprint(this.container, this.configuration)));
+
+        String file = this.fileHandler.append(this.configuration.getHome(), "conf/server.xml");
+        this.fileHandler.mkdirs(this.fileHandler.getParent(file));
+        this.fileHandler.writeTextFile(file, "<server base=\"" + originalHome + "/work\" backup=\""
+            + originalHome + "0/work\"/>", "UTF-8");
+        this.configuration.setProperty(GeneralPropertySet.RMI_PORT, "1099");
+        this.configuration.setProperty(GeneralPropertySet.LOGGING, originalHome + "/log");
+        relocatableCache.save(fingerprint, this.configuration);
+
+        String otherHome = this.fileHandler.append(this.testDirectory, "other");
+        StandaloneLocalConfigurationStub other = new StandaloneLocalConfigurationStub(otherHome);
+        other.setProperty(ServletPropertySet.PORT, "8080");
+        InstalledLocalContainerStub otherContainer = new InstalledLocalContainerStub(other);
+        assertEquals(fingerprint, relocatableCache.computeFingerprint(otherContainer, other));
+
+        assertTrue(relocatableCache.restore(fingerprint, other));
+        String newHome = this.fileHandler.getAbsolutePath(otherHome);
+        assertEquals("<server base=\"" + newHome + "/work\" backup=\"" + originalHome
+            + "0/work\"/>", this.fileHandler.readTextFile(
+                this.fileHandler.append(otherHome, "conf/server.xml"), "UTF-8"));
+        assertEquals("1099", other.getPropertyValue(GeneralPropertySet.RMI_PORT));
+        assertEquals(newHome + "/log", other.getPropertyValue(GeneralPropertySet.LOGGING));
+        assertNull(other.getPropertyValue("cargo.configuration.snapshot.home"));
+    }
+
+    /**
+     * Test that relocatable snapshots are shared by configurations with their own copies of the
+     * same files in different roots and with different ports, and that the root and the ports
+     * are replaced when restoring.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testRelocatableRootAndPorts() throws Exception
+    {
+        ConfigurationSnapshotCache relocatableCache = new ConfigurationSnapshotCache(
+            this.fileHandler.append(this.testDirectory, "templates"), this.fileHandler, true);
+        String originalRoot = createRoot("workspace/h1", "app", 0);
+        StandaloneLocalConfigurationStub original = createRootedConfiguration("h1", originalRoot);
+        InstalledLocalContainerStub originalContainer = new InstalledLocalContainerStub(original);
+        String fingerprint = relocatableCache.computeFingerprint(originalContainer, original);
+
+        String file = this.fileHandler.append(original.getHome(), "conf/server.xml");
+        this.fileHandler.mkdirs(this.fileHandler.getParent(file));
+        this.fileHandler.writeTextFile(file, "<server port=\"8080\" shutdown=\"18080\" war=\""
+            + originalRoot + "/app.war\"/>", "UTF-8");
+        relocatableCache.save(fingerprint, original);
+
+        String newRoot = createRoot("workspace/h2", "app", 60000);
+        StandaloneLocalConfigurationStub other = createRootedConfiguration("h2", newRoot);
+        other.setProperty(ServletPropertySet.PORT, "8081");
+        InstalledLocalContainerStub otherContainer = new InstalledLocalContainerStub(other);
+        assertEquals(fingerprint, relocatableCache.computeFingerprint(otherContainer, other));
+        assertFalse(fingerprint.equals(
+            this.cache.computeFingerprint(otherContainer, other)));
+
+        assertTrue(relocatableCache.restore(fingerprint, other));
+        assertEquals("<server port=\"8081\" shutdown=\"18080\" war=\""
+            + new File(newRoot).getAbsolutePath() + "/app.war\"/>",
+                this.fileHandler.readTextFile(
+                    this.fileHandler.append(other.getHome(), "conf/server.xml"), "UTF-8"));
+        assertEquals("8081", other.getPropertyValue(ServletPropertySet.PORT));
+        assertEquals(newRoot,
+            other.getPropertyValue(GeneralPropertySet.CONFIGURATION_SNAPSHOT_ROOT));
+
+        String changedRoot = createRoot("workspace/h3", "changed", 0);
+        StandaloneLocalConfigurationStub changed =
+            createRootedConfiguration("h3", changedRoot);
+        assertFalse(fingerprint.equals(relocatableCache.computeFingerprint(
+            new InstalledLocalContainerStub(changed), changed)));
+    }
+
+    /**
+     * @param path Root path, relative to the test directory.
+     * @param content Content of the WAR file in the root.
+     * @param age Age of the WAR file, in milliseconds.
+     * @return Root containing a WAR file.
+     */
+    private String createRoot(String path, String content, long age)
+    {
+        String root = this.fileHandler.append(this.testDirectory, path);
+        this.fileHandler.mkdirs(root);
+        String war = this.fileHandler.append(root, "app.war");
+        this.fileHandler.writeTextFile(war, content, "UTF-8");
+        new File(war).setLastModified(System.currentTimeMillis() - age);
+        return root;
+    }
+
+    /**
+     * @param home Home path, relative to the test directory.
+     * @param root Root of the configuration.
+     * @return Relocatable configuration deploying the WAR file in its root.
+     */
+    private StandaloneLocalConfigurationStub createRootedConfiguration(String home, String root)
+    {
+        StandaloneLocalConfigurationStub rootedConfiguration =
+            new StandaloneLocalConfigurationStub(this.fileHandler.append(this.testDirectory,
+                home));
+        rootedConfiguration.setProperty(ServletPropertySet.PORT, "8080");
+        rootedConfiguration.setProperty(GeneralPropertySet.CONFIGURATION_SNAPSHOT_ROOT, root);
+        rootedConfiguration.addDeployable(new WAR(this.fileHandler.append(root, "app.war")));
+        return rootedConfiguration;
+    }
+
+    /**
+     * Test that ports are replaced as whole numbers and in one pass.
+     */
+    public void testReplacePorts()
+    {
+        Map<String, String> ports = new TreeMap<String, String>();
+        ports.put("8080", "8081");
+        ports.put("8081", "8080");
+        assertEquals("port=8081 ssl=8080 other=18080 timeout=80800",
+            ConfigurationSnapshotCache.replacePorts(
+                "port=8080 ssl=8081 other=18080 timeout=80800", ports));
+        assertEquals("no ports", ConfigurationSnapshotCache.replacePorts("no ports", ports));
+    }
+
+    /**
+     * Test that paths are only replaced on path boundaries, so that sibling paths sharing the
+     * same prefix are kept.
+     */
+    public void testReplacePath()
+    {
+        assertEquals("/work/h2", ConfigurationSnapshotCache.replacePath("/work/h1", "/work/h1",
+            "/work/h2"));
+        assertEquals("base=\"/work/h2/conf\" url=\"file:///work/h2\"",
+            ConfigurationSnapshotCache.replacePath(
+                "base=\"/work/h1/conf\" url=\"file:///work/h1\"", "/work/h1", "/work/h2"));
+        assertEquals("/work/h10 /work/h1.bak /other/work/h1 /work/h2;/work/h2",
+            ConfigurationSnapshotCache.replacePath(
+                "/work/h10 /work/h1.bak /other/work/h1 /work/h1;/work/h1", "/work/h1",
+                "/work/h2"));
+        assertEquals("C:/work/h10", ConfigurationSnapshotCache.replacePath("C:/work/h10",
+            "C:/work/h1", "C:/work/h2"));
+    }
+}
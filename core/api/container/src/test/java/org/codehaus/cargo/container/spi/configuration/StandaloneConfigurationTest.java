@@ -27,12 +27,16 @@ import junit.framework.TestCase;
 import org.apache.commons.vfs.AllFileSelector;
 import org.apache.commons.vfs.FileObject;
 import org.apache.commons.vfs.VFS;
+import org.apache.tools.ant.types.FilterChain;
 import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.LocalContainer;
 import org.codehaus.cargo.container.configuration.ConfigurationCapability;
+import org.codehaus.cargo.container.lifecycle.LifecycleInstrumentation;
+import org.codehaus.cargo.container.lifecycle.LifecycleReporter;
 import org.codehaus.cargo.container.property.GeneralPropertySet;
 import org.codehaus.cargo.container.property.LoggingLevel;
 import org.codehaus.cargo.container.property.ServletPropertySet;
+import org.codehaus.cargo.container.stub.InstalledLocalContainerStub;
 import org.codehaus.cargo.util.VFSFileHandler;
 
 /**
@@ -198,4 +202,72 @@ public class StandaloneConfigurationTest extends TestCase
         assertEquals("8081", configuration.getPropertyValue(ServletPropertySet.PORT));
     }
 
+    /**
+     * Test that an invalid maximum number of configuration snapshots is reported with the
+     * property name.
+     */
+    public void testInvalidMaxSnapshots()
+    {
+        TestableAbstractStandaloneConfiguration configuration =
+            new TestableAbstractStandaloneConfiguration("ram:///cargo/testInvalidMaxSnapshots");
+        configuration.setFileHandler(new VFSFileHandler());
+        configuration.setProperty(GeneralPropertySet.CONFIGURATION_SNAPSHOT_DIRECTORY,
+            "ram:///cargo/testInvalidMaxSnapshots-snapshots");
+        configuration.setProperty(GeneralPropertySet.CONFIGURATION_SNAPSHOT_MAX, "many");
+        try
+        {
+            configuration.configure(new InstalledLocalContainerStub(configuration));
+            fail("No exception thrown");
+        }
+        catch (ContainerException expected)
+        {
+            assertTrue(expected.getMessage(), expected.getMessage().contains(
+                GeneralPropertySet.CONFIGURATION_SNAPSHOT_MAX));
+        }
+    }
+
+    /**
+     * Test that a configuration failing outside of an enclosing lifecycle phase does not leave
+     * its phases open, so that later phases of the same thread are not nested within them.
+     */
+    public void testFailedConfigureEndsPhases()
+    {
+        TestableAbstractStandaloneConfiguration configuration =
+            new TestableAbstractStandaloneConfiguration("ram:///cargo/testFailedConfigure")
+            {
+                /**
+                 * Fails. {@inheritDoc}
+                 * @param filterChain Ignored.
+                 * @param container Ignored.
+                 */
+                @Override
+                protected void configureFiles(FilterChain filterChain, LocalContainer container)
+                {
+                    throw new ContainerException("Failed to configure files");
+                }
+            };
+        configuration.setFileHandler(new VFSFileHandler());
+        try
+        {
+            configuration.configure(new InstalledLocalContainerStub(configuration));
+            fail("No exception thrown");
+        }
+        catch (ContainerException expected)
+        {
+            assertEquals("Failed to configure files", expected.getMessage());
+        }
+
+        LifecycleReporter reporter = new LifecycleReporter();
+        LifecycleInstrumentation.addListener(reporter);
+        try
+        {
+            LifecycleInstrumentation.begin(this, "after").end();
+        }
+        finally
+        {
+            LifecycleInstrumentation.removeListener(reporter);
+        }
+        assertEquals(1, reporter.getPhases().size());
+        assertEquals("after", reporter.getPhases().get(0).getPath());
+    }
 }
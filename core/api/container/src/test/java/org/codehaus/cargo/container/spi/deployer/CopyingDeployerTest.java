@@ -19,6 +19,8 @@
  */
 package org.codehaus.cargo.container.spi.deployer;
 
+import java.util.Arrays;
+
 import org.apache.commons.vfs.impl.StandardFileSystemManager;
 import org.codehaus.cargo.container.ContainerCapability;
 import org.codehaus.cargo.container.ContainerException;
@@ -258,6 +260,30 @@ public class CopyingDeployerTest extends MockObjectTestCase
         assertTrue(this.fsManager.resolveFile("ram:///webapps/context").exists());
     }
 
+    /**
+     * Test updating some files of a deployed expanded WAR.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testUpdateExpandedWar() throws Exception
+    {
+        WAR war = new WAR("ram:///some/expanded/warfile");
+        war.setFileHandler(this.fileHandler);
+        this.fsManager.resolveFile("ram:///some/expanded/warfile/old.html").createFile();
+
+        AbstractCopyingInstalledLocalDeployer deployer = new TestableCopyingDeployer(
+            createContainer(createContainerCapability(DeployableType.WAR), null));
+        assertFalse(deployer.update(war, Arrays.asList("old.html")));
+        deployer.deploy(war);
+        assertTrue(this.fsManager.resolveFile("ram:///webapps/warfile/old.html").exists());
+
+        this.fsManager.resolveFile("ram:///some/expanded/warfile/old.html").delete();
+        this.fsManager.resolveFile("ram:///some/expanded/warfile/css/new.css").createFile();
+        assertTrue(deployer.update(war, Arrays.asList("css/new.css", "old.html")));
+
+        assertFalse(this.fsManager.resolveFile("ram:///webapps/warfile/old.html").exists());
+        assertTrue(this.fsManager.resolveFile("ram:///webapps/warfile/css/new.css").exists());
+    }
+
     /**
      * Test deployment of an expanded WAR in a custom context.
      * @throws Exception If anything goes wrong.
@@ -0,0 +1,165 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.deployer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.deployable.WAR;
+import org.codehaus.cargo.container.stub.InstalledLocalDeployerStub;
+
+/**
+ * Unit tests for {@link DeployableWatcher}.
+ */
+public class DeployableWatcherTest extends TestCase
+{
+    /**
+     * Expanded WAR directory.
+     */
+    private File warDirectory;
+
+    /**
+     * Number of redeployments.
+     */
+    private int redeployments;
+
+    /**
+     * Watcher under test.
+     */
+    private DeployableWatcher watcher;
+
+    /**
+     * Expanded WAR.
+     */
+    private WAR war;
+
+    /**
+     * Creates the expanded WAR and its watcher. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        warDirectory = File.createTempFile("cargo-watched-", "");
+        warDirectory.delete();
+        new File(warDirectory, "WEB-INF").mkdirs();
+        write("index.html", "index");
+
+        war = new WAR(warDirectory.getPath());
+        watcher = new DeployableWatcher(new InstalledLocalDeployerStub(null)
+        {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void redeploy(Deployable deployable)
+            {
+                redeployments++;
+            }
+        }, Collections.<Deployable>singletonList(war), DeployableWatcher.DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Deletes the expanded WAR. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        new File(warDirectory, "WEB-INF/web.xml").delete();
+        new File(warDirectory, "WEB-INF").delete();
+        new File(warDirectory, "index.html").delete();
+        new File(warDirectory, "style.css").delete();
+        warDirectory.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Test that a burst of changes results in a single redeployment, once no more changes are
+     * seen.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testBurstOfChangesIsDebounced() throws Exception
+    {
+        assertEquals(0, watcher.scan());
+
+        write("WEB-INF/web.xml", "<web-app/>");
+        assertEquals(0, watcher.scan());
+        write("style.css", "body {}");
+        assertEquals(0, watcher.scan());
+        assertEquals(0, redeployments);
+
+        assertEquals(1, watcher.scan());
+        assertEquals(1, redeployments);
+        assertEquals(0, watcher.scan());
+        assertEquals(1, redeployments);
+    }
+
+    /**
+     * Test that removed files are seen as changes.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testRemovedFileIsChange() throws Exception
+    {
+        new File(warDirectory, "index.html").delete();
+        assertEquals(0, watcher.scan());
+        assertEquals(1, watcher.scan());
+        assertEquals(1, redeployments);
+    }
+
+    /**
+     * Test which changes require the deployable to be redeployed.
+     */
+    public void testRequiresRedeploy()
+    {
+        assertFalse(watcher.requiresRedeploy(war,
+            new TreeSet<String>(Collections.singleton("css/style.css"))));
+        assertTrue(watcher.requiresRedeploy(war,
+            new TreeSet<String>(Collections.singleton("WEB-INF/classes/Test.class"))));
+        assertTrue(watcher.requiresRedeploy(new WAR("test.war"),
+            new TreeSet<String>(Collections.singleton(""))));
+    }
+
+    /**
+     * Write a file of the expanded WAR.
+     * @param path Path of the file, relative to the expanded WAR.
+     * @param content File content.
+     * @throws IOException If anything goes wrong.
+     */
+    private void write(String path, String content) throws IOException
+    {
+        FileWriter writer = new FileWriter(new File(warDirectory, path));
+        try
+        {
+            writer.write(content);
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.deployer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.enterprise.deploy.spi.DeploymentManager;
+
+import org.jmock.Mock;
+import org.jmock.MockObjectTestCase;
+
+/**
+ * Unit tests for {@link Jsr88DeploymentManagerPool}.
+ */
+public class Jsr88DeploymentManagerPoolTest extends MockObjectTestCase
+{
+    /**
+     * Factory counting the deployment managers it creates.
+     */
+    private class CountingFactory implements Jsr88DeploymentManagerPool.DeploymentManagerFactory
+    {
+        /**
+         * Number of created deployment managers.
+         */
+        private int created;
+
+        /**
+         * Mock of the last created deployment manager.
+         */
+        private Mock mockDeploymentManager;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public DeploymentManager createDeploymentManager()
+        {
+            this.created++;
+            this.mockDeploymentManager = mock(DeploymentManager.class);
+            this.mockDeploymentManager.stubs().method("release");
+            return (DeploymentManager) this.mockDeploymentManager.proxy();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        Jsr88DeploymentManagerPool.releaseAll();
+        super.tearDown();
+    }
+
+    /**
+     * Test that the same container configuration reuses the same session.
+     */
+    public void testSessionIsReused()
+    {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("cargo.hostname", "localhost");
+        String key = Jsr88DeploymentManagerPool.getKey("factory", properties);
+
+        CountingFactory factory = new CountingFactory();
+        Jsr88DeploymentManagerPool.Session session =
+            Jsr88DeploymentManagerPool.getSession(key, factory);
+        assertSame(session, Jsr88DeploymentManagerPool.getSession(
+            Jsr88DeploymentManagerPool.getKey("factory", new HashMap<String, String>(properties)),
+                factory));
+        assertEquals(1, factory.created);
+
+        properties.put("cargo.hostname", "remote");
+        assertNotSame(session, Jsr88DeploymentManagerPool.getSession(
+            Jsr88DeploymentManagerPool.getKey("factory", properties), factory));
+        assertEquals(2, factory.created);
+    }
+
+    /**
+     * Test that a released session is removed from the pool, and that the next request
+     * creates a new session.
+     */
+    public void testReleaseSession()
+    {
+        String key = Jsr88DeploymentManagerPool.getKey("factory", new HashMap<String, String>());
+        CountingFactory factory = new CountingFactory();
+        Jsr88DeploymentManagerPool.Session session =
+            Jsr88DeploymentManagerPool.getSession(key, factory);
+
+        Jsr88DeploymentManagerPool.release(key);
+        assertEquals(0, Jsr88DeploymentManagerPool.size());
+
+        assertNotSame(session, Jsr88DeploymentManagerPool.getSession(key, factory));
+        assertEquals(2, factory.created);
+    }
+}
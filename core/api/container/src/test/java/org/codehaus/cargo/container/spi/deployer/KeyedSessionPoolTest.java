@@ -0,0 +1,248 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.deployer;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link KeyedSessionPool}.
+ */
+public class KeyedSessionPoolTest extends TestCase
+{
+    /**
+     * Session recording whether it answers and how many times it has been closed.
+     */
+    private static class TestSession extends KeyedSessionPool.AbstractPooledSession
+    {
+        /**
+         * Whether the session answers health checks.
+         */
+        private boolean healthy = true;
+
+        /**
+         * Number of times the session has been closed.
+         */
+        private int closed;
+
+        /**
+         * @param key Session key.
+         */
+        public TestSession(String key)
+        {
+            super(key);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean ping()
+        {
+            return this.healthy;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void close()
+        {
+            this.closed++;
+        }
+    }
+
+    /**
+     * Factory counting the sessions it creates.
+     */
+    private static class CountingFactory implements KeyedSessionPool.SessionFactory<TestSession>
+    {
+        /**
+         * Number of created sessions.
+         */
+        private int created;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public TestSession createSession(String key)
+        {
+            this.created++;
+            return new TestSession(key);
+        }
+    }
+
+    /**
+     * Test that sessions are reused per key, and closed once when released.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testSessionsReusedPerKey() throws Exception
+    {
+        KeyedSessionPool<TestSession> pool = new KeyedSessionPool<TestSession>(30000);
+        CountingFactory factory = new CountingFactory();
+
+        TestSession session = pool.getSession("a", factory);
+        assertSame(session, pool.getSession("a", factory));
+        assertNotSame(session, pool.getSession("b", factory));
+        assertEquals(2, factory.created);
+        assertEquals(2, pool.size());
+
+        pool.release(session);
+        pool.release(session);
+        pool.release("a");
+        assertEquals(1, session.closed);
+        assertEquals(1, pool.size());
+
+        pool.releaseAll();
+        assertEquals(0, pool.size());
+    }
+
+    /**
+     * Test that an idle session which does not answer anymore is closed and replaced.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testUnhealthySessionReplaced() throws Exception
+    {
+        KeyedSessionPool<TestSession> pool = new KeyedSessionPool<TestSession>(-1);
+        CountingFactory factory = new CountingFactory();
+
+        TestSession session = pool.getSession("a", factory);
+        assertSame(session, pool.getSession("a", factory));
+
+        session.healthy = false;
+        TestSession replacement = pool.getSession("a", factory);
+        assertNotSame(session, replacement);
+        assertEquals(1, session.closed);
+        assertEquals(0, replacement.closed);
+        assertEquals(2, factory.created);
+
+        pool.releaseAll();
+    }
+
+    /**
+     * Test that a failing factory does not leave a session in the pool.
+     */
+    public void testFactoryFailure()
+    {
+        KeyedSessionPool<TestSession> pool = new KeyedSessionPool<TestSession>(30000);
+        try
+        {
+            pool.getSession("a", new KeyedSessionPool.SessionFactory<TestSession>()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public TestSession createSession(String key) throws Exception
+                {
+                    throw new Exception("Connection refused");
+                }
+            });
+            fail("No exception thrown");
+        }
+        catch (Exception expected)
+        {
+            assertEquals("Connection refused", expected.getMessage());
+        }
+        assertEquals(0, pool.size());
+    }
+
+    /**
+     * Test that a session being created for one key does not block the creation of sessions for
+     * other keys.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testSlowCreationDoesNotBlockOtherKeys() throws Exception
+    {
+        final KeyedSessionPool<TestSession> pool = new KeyedSessionPool<TestSession>(30000);
+        final CountDownLatch connecting = new CountDownLatch(1);
+        final CountDownLatch unblock = new CountDownLatch(1);
+        Thread slow = new Thread()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void run()
+            {
+                try
+                {
+                    pool.getSession("unreachable",
+                        new KeyedSessionPool.SessionFactory<TestSession>()
+                        {
+                            /**
+                             * {@inheritDoc}
+                             */
+                            @Override
+                            public TestSession createSession(String key) throws Exception
+                            {
+                                connecting.countDown();
+                                unblock.await();
+                                return new TestSession(key);
+                            }
+                        });
+                }
+                catch (Exception e)
+                {
+                    // Ignored, checked through the pool size
+                }
+            }
+        };
+        slow.start();
+        try
+        {
+            assertTrue(connecting.await(10, TimeUnit.SECONDS));
+            CountingFactory factory = new CountingFactory();
+            assertNotNull(pool.getSession("reachable", factory));
+            assertEquals(1, factory.created);
+        }
+        finally
+        {
+            unblock.countDown();
+            slow.join();
+        }
+        assertEquals(2, pool.size());
+        pool.releaseAll();
+    }
+
+    /**
+     * Test that session keys do not depend on the order of the properties.
+     */
+    public void testKeyIgnoresPropertyOrder()
+    {
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+        properties.put("b", "2");
+        properties.put("a", "1");
+        Map<String, String> reversed = new HashMap<String, String>();
+        reversed.put("a", "1");
+        reversed.put("b", "2");
+
+        assertEquals(KeyedSessionPool.getKey("type", properties),
+            KeyedSessionPool.getKey("type", reversed));
+        assertFalse(KeyedSessionPool.getKey("type", properties).equals(
+            KeyedSessionPool.getKey("other", properties)));
+    }
+}
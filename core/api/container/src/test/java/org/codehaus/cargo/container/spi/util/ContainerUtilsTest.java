@@ -0,0 +1,270 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.spi.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.ContainerCapability;
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.ContainerType;
+import org.codehaus.cargo.container.ObservableContainer;
+import org.codehaus.cargo.container.State;
+import org.codehaus.cargo.container.spi.AbstractLocalContainer;
+import org.codehaus.cargo.container.stub.InstalledLocalContainerStub;
+
+/**
+ * Unit tests for {@link ContainerUtils}.
+ */
+public class ContainerUtilsTest extends TestCase
+{
+    /**
+     * Container output file.
+     */
+    private File output;
+
+    /**
+     * Local container whose server ends when asked to.
+     */
+    private static class ExitingLocalContainer extends AbstractLocalContainer
+    {
+        /**
+         * Create a started container.
+         */
+        public ExitingLocalContainer()
+        {
+            super(null);
+            setState(State.STARTED);
+        }
+
+        /**
+         * End the container's server after a delay, in another thread.
+         * @param exitCode Exit code of the container's JVM.
+         */
+        public void exitLater(final int exitCode)
+        {
+            Thread exiter = new Thread()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        Thread.sleep(200);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        // Exit now
+                    }
+                    containerExited(exitCode);
+                }
+            };
+            exiter.start();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void startInternal()
+        {
+            // Nothing
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void stopInternal()
+        {
+            // Nothing
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void forceStopInternal()
+        {
+            // Nothing
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getId()
+        {
+            return "exiting";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getName()
+        {
+            return "Exiting container";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ContainerCapability getCapability()
+        {
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ContainerType getType()
+        {
+            return ContainerType.INSTALLED;
+        }
+    }
+
+    /**
+     * Creates the container output file. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        output = File.createTempFile("cargo-output-", ".log");
+        FileWriter writer = new FileWriter(output);
+        try
+        {
+            for (int i = 1; i <= 30; i++)
+            {
+                writer.write("line " + i + "\n");
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Deletes the container output file. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        output.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Test reading the last lines of the container output.
+     */
+    public void testReadOutputTail()
+    {
+        String tail = ContainerUtils.readOutputTail(output.getPath());
+        assertTrue(tail, tail.startsWith("line 11"));
+        assertTrue(tail, tail.endsWith("line 30"));
+        assertNull(ContainerUtils.readOutputTail(null));
+        assertNull(ContainerUtils.readOutputTail(output.getPath() + ".missing"));
+    }
+
+    /**
+     * Test that waiting for a local container ends as soon as its server ends.
+     */
+    public void testWaitTillContainerIsStopped()
+    {
+        ExitingLocalContainer container = new ExitingLocalContainer();
+        container.exitLater(0);
+
+        long start = System.currentTimeMillis();
+        ContainerUtils.waitTillContainerIsStopped(container);
+
+        assertEquals(State.STOPPED, container.getState());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    /**
+     * Test that a local container whose server crashes is reported with the end of its output.
+     * @throws IOException If anything goes wrong.
+     */
+    public void testWaitTillContainerIsStoppedAfterCrash() throws IOException
+    {
+        ExitingLocalContainer container = new ExitingLocalContainer();
+        container.setOutput(output.getPath());
+        container.exitLater(3);
+
+        try
+        {
+            ContainerUtils.waitTillContainerIsStopped(container);
+            fail("No exception thrown");
+        }
+        catch (ContainerException expected)
+        {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("exit code 3"));
+            assertTrue(expected.getMessage(), expected.getMessage().contains("line 30"));
+        }
+        assertEquals(State.STOPPED, container.getState());
+    }
+
+    /**
+     * Test that waiting for a local container which does not publish events polls its state.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testWaitTillUnobservableContainerIsStopped() throws Exception
+    {
+        final InstalledLocalContainerStub container = new InstalledLocalContainerStub();
+        assertFalse(container instanceof ObservableContainer);
+        container.setState(State.STARTED);
+        Thread stopper = new Thread()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(200);
+                }
+                catch (InterruptedException e)
+                {
+                    // Stop now
+                }
+                container.setState(org.codehaus.cargo.container.State.STOPPED);
+            }
+        };
+        stopper.start();
+
+        ContainerUtils.waitTillContainerIsStopped(container);
+        stopper.join();
+        assertEquals(State.STOPPED, container.getState());
+    }
+}
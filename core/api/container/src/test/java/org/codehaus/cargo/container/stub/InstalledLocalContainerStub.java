@@ -54,6 +54,16 @@ public class InstalledLocalContainerStub extends AbstractLocalContainerStub
      */
     private Map<String, String> systemProperties;
 
+    /**
+     * Extra classpath.
+     */
+    private String[] extraClasspath;
+
+    /**
+     * Shared classpath.
+     */
+    private String[] sharedClasspath;
+
     /**
      * Allows creating a container with no configuration for test that do not require a
      * configuration.
@@ -105,33 +115,33 @@ public class InstalledLocalContainerStub extends AbstractLocalContainerStub
     }
 
     /**
-     * Throws a {@link RuntimeException}. {@inheritDoc}
-     * @return Nothing.
+     * {@inheritDoc}
+     * @return Extra classpath.
      */
     @Override
     public String[] getExtraClasspath()
     {
-        throw new RuntimeException("Not implemented");
+        return this.extraClasspath;
     }
 
     /**
-     * Throws a {@link RuntimeException}. {@inheritDoc}
-     * @return Nothing.
+     * {@inheritDoc}
+     * @return Shared classpath.
      */
     @Override
     public String[] getSharedClasspath()
     {
-        throw new RuntimeException("Not implemented");
+        return this.sharedClasspath;
     }
 
     /**
-     * Throws a {@link RuntimeException}. {@inheritDoc}
-     * @param classpath Ignored.
+     * {@inheritDoc}
+     * @param classpath Extra classpath to set.
      */
     @Override
     public void setExtraClasspath(String[] classpath)
     {
-        throw new RuntimeException("Not implemented");
+        this.extraClasspath = classpath;
     }
 
     /**
@@ -145,13 +155,13 @@ public class InstalledLocalContainerStub extends AbstractLocalContainerStub
     }
 
     /**
-     * Throws a {@link RuntimeException}. {@inheritDoc}
-     * @param classpath Ignored.
+     * {@inheritDoc}
+     * @param classpath Shared classpath to set.
      */
     @Override
     public void setSharedClasspath(String[] classpath)
     {
-        throw new RuntimeException("Not implemented");
+        this.sharedClasspath = classpath;
     }
 
     /**
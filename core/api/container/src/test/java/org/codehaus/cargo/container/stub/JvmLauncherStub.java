@@ -28,13 +28,15 @@ import java.util.Map;
 import java.util.Properties;
 
 import org.apache.tools.ant.util.JavaEnvUtils;
+import org.codehaus.cargo.container.spi.jvm.JvmExitListener;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncher;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncherException;
+import org.codehaus.cargo.container.spi.jvm.ObservableJvmLauncher;
 
 /**
  * A JVM launcher stub.
  */
-public class JvmLauncherStub implements JvmLauncher
+public class JvmLauncherStub implements JvmLauncher, ObservableJvmLauncher
 {
 
     /**
@@ -47,6 +49,11 @@ public class JvmLauncherStub implements JvmLauncher
      */
     private List<String> classpathEntries = new ArrayList<String>();
 
+    /**
+     * JVM arguments.
+     */
+    private List<String> jvmArguments = new ArrayList<String>();
+
     /**
      * System properties.
      */
@@ -96,6 +103,15 @@ public class JvmLauncherStub implements JvmLauncher
     @Override
     public void addJvmArguments(String... values)
     {
+        Collections.addAll(this.jvmArguments, values);
+    }
+
+    /**
+     * @return The JVM arguments added with {@link #addJvmArguments(String...)}.
+     */
+    public List<String> getJvmArguments()
+    {
+        return this.jvmArguments;
     }
 
     /**
@@ -287,6 +303,15 @@ public class JvmLauncherStub implements JvmLauncher
 
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setExitListener(JvmExitListener listener)
+    {
+
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -26,10 +26,10 @@ import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 
 import org.codehaus.cargo.util.CargoException;
 import org.jdom.Document;
@@ -41,6 +41,9 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
+ * Merge processor that merges documents two by two using an XSLT stylesheet. The stylesheet is
+ * compiled once through the {@link XsltTemplatesCache} and each thread performing a merge uses its
+ * own transformer, so merges with the same stylesheet can run in parallel.
  */
 public class DocumentMergerByXslt implements MergeProcessor
 {
@@ -50,22 +53,54 @@ public class DocumentMergerByXslt implements MergeProcessor
     private List<Document> documents = new ArrayList<Document>();
 
     /**
-     * The XSLT source to use.
+     * The compiled XSLT stylesheet.
      */
-    private StreamSource xsltSource;
+    private Templates templates;
 
     /**
-     * The lazily-compiled XSLT transformer.
+     * The XSLT transformers, one per thread.
      */
-    private Transformer transformer;
+    private ThreadLocal<Transformer> transformer = new ThreadLocal<Transformer>()
+    {
+        @Override
+        protected Transformer initialValue()
+        {
+            try
+            {
+                return templates.newTransformer();
+            }
+            catch (TransformerConfigurationException e)
+            {
+                throw new CargoException("Cannot create XSLT transformer", e);
+            }
+        }
+    };
 
     /**
      * Constructor.
-     * @param stream XML Stream for source XSLT
+     * @param stream XML Stream for source XSLT, will be fully read and closed
      */
     public DocumentMergerByXslt(InputStream stream)
     {
-        xsltSource = new StreamSource(stream);
+        this(stream, null);
+    }
+
+    /**
+     * Constructor.
+     * @param stream XML Stream for source XSLT, will be fully read and closed
+     * @param systemId System identifier of the XSLT, used both as cache key and to resolve
+     * relative references in the XSLT. Can be <code>null</code>.
+     */
+    public DocumentMergerByXslt(InputStream stream, String systemId)
+    {
+        try
+        {
+            templates = XsltTemplatesCache.getTemplates(stream, systemId);
+        }
+        catch (Exception e)
+        {
+            throw new CargoException("Cannot compile XSLT", e);
+        }
     }
 
     /**
@@ -124,17 +159,19 @@ public class DocumentMergerByXslt implements MergeProcessor
             javax.xml.transform.Source xmlSource =
                 new javax.xml.transform.dom.DOMSource(domDocument);
 
-            if (transformer == null)
-            {
-                TransformerFactory tFactory = TransformerFactory.newInstance();
-                transformer = tFactory.newTransformer(xsltSource);
-            }
-
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
 
             StreamResult xmlResult = new StreamResult(baos);
 
-            transformer.transform(xmlSource, xmlResult);
+            Transformer transformer = this.transformer.get();
+            try
+            {
+                transformer.transform(xmlSource, xmlResult);
+            }
+            finally
+            {
+                transformer.reset();
+            }
 
             // PArse it back into a JDOM document
             SAXBuilder factory = new SAXBuilder();
@@ -0,0 +1,300 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.module.merge;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * Cache of compiled XSLT stylesheets. Stylesheets are compiled once into {@link Templates}, which
+ * are thread-safe, and looked up by source identity (system identifier) and content digest, so
+ * that a stylesheet used to merge many WARs is only ever compiled once per JVM. Local files pulled
+ * in with <code>xsl:include</code> or <code>xsl:import</code> are tracked by size and
+ * modification time, and the stylesheet is recompiled when any of them changes. The cache keeps
+ * at most {@link #MAX_ENTRIES} stylesheets, evicting the least recently used one.
+ */
+public final class XsltTemplatesCache
+{
+    /**
+     * Maximum number of compiled stylesheets kept in the cache.
+     */
+    public static final int MAX_ENTRIES = 64;
+
+    /**
+     * Compiled templates, keyed by system identifier and content digest, in access order.
+     */
+    private static final Map<String, CachedTemplates> TEMPLATES =
+        new LinkedHashMap<String, CachedTemplates>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedTemplates> eldest)
+            {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+    /**
+     * Size of the buffer used to read stylesheets.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Utility class, cannot be instantiated.
+     */
+    private XsltTemplatesCache()
+    {
+        // Nothing
+    }
+
+    /**
+     * Read the stylesheet from the given stream and return its compiled form, compiling it only
+     * if no stylesheet with the same system identifier and content has been compiled before. The
+     * stream is fully read and closed.
+     *
+     * @param stream Stream to read the XSLT stylesheet from.
+     * @param systemId System identifier of the stylesheet, used to resolve relative
+     * <code>xsl:include</code> and <code>xsl:import</code> references. Can be <code>null</code>.
+     * @return Compiled stylesheet.
+     * @throws IOException If reading the stream fails.
+     * @throws TransformerConfigurationException If compiling the stylesheet fails.
+     */
+    public static Templates getTemplates(InputStream stream, String systemId)
+        throws IOException, TransformerConfigurationException
+    {
+        byte[] xslt = readFully(stream);
+        String key = (systemId == null ? "" : systemId) + '#' + digest(xslt);
+
+        CachedTemplates cached;
+        synchronized (TEMPLATES)
+        {
+            cached = TEMPLATES.get(key);
+        }
+        if (cached != null && cached.isUpToDate())
+        {
+            return cached.templates;
+        }
+
+        // Compile outside of the lock, two threads racing on the same key compile the same
+        // stylesheet and the last one wins
+        final Map<File, String> dependencies = new HashMap<File, String>();
+        TransformerFactory factory = TransformerFactory.newInstance();
+        factory.setURIResolver(new URIResolver()
+        {
+            @Override
+            public Source resolve(String href, String base)
+            {
+                File file = toFile(href, base);
+                if (file != null)
+                {
+                    dependencies.put(file, stamp(file));
+                }
+                // Let the processor perform the actual resolution
+                return null;
+            }
+        });
+        StreamSource source = new StreamSource(new ByteArrayInputStream(xslt));
+        if (systemId != null)
+        {
+            source.setSystemId(systemId);
+        }
+        cached = new CachedTemplates(factory.newTemplates(source), dependencies);
+        synchronized (TEMPLATES)
+        {
+            TEMPLATES.put(key, cached);
+        }
+        return cached.templates;
+    }
+
+    /**
+     * @return Number of compiled stylesheets currently cached.
+     */
+    public static int size()
+    {
+        synchronized (TEMPLATES)
+        {
+            return TEMPLATES.size();
+        }
+    }
+
+    /**
+     * Remove all compiled stylesheets from the cache.
+     */
+    public static void clear()
+    {
+        synchronized (TEMPLATES)
+        {
+            TEMPLATES.clear();
+        }
+    }
+
+    /**
+     * Resolve a stylesheet reference to a local file.
+     *
+     * @param href Reference, as written in the stylesheet.
+     * @param base Base URI the reference is relative to. Can be <code>null</code>.
+     * @return Referenced file, or <code>null</code> if the reference is not a local file.
+     */
+    private static File toFile(String href, String base)
+    {
+        try
+        {
+            URI uri = new URI(href);
+            if (base != null && !uri.isAbsolute())
+            {
+                uri = new URI(base).resolve(uri);
+            }
+            if ("file".equals(uri.getScheme()) && !uri.isOpaque())
+            {
+                return new File(uri);
+            }
+        }
+        catch (URISyntaxException e)
+        {
+            // Not a URI we can track
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Not a file we can track
+        }
+        return null;
+    }
+
+    /**
+     * @param file File to stamp.
+     * @return Size and modification time of the file.
+     */
+    private static String stamp(File file)
+    {
+        return file.length() + "@" + file.lastModified();
+    }
+
+    /**
+     * Read the given stream fully and close it.
+     *
+     * @param stream Stream to read.
+     * @return Contents of the stream.
+     * @throws IOException If reading fails.
+     */
+    private static byte[] readFully(InputStream stream) throws IOException
+    {
+        try
+        {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = stream.read(buffer)) != -1)
+            {
+                baos.write(buffer, 0, read);
+            }
+            return baos.toByteArray();
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    /**
+     * Compute the hexadecimal SHA-256 digest of some bytes.
+     *
+     * @param data Bytes to digest.
+     * @return Hexadecimal digest.
+     */
+    private static String digest(byte[] data)
+    {
+        MessageDigest md;
+        try
+        {
+            md = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        byte[] hash = md.digest(data);
+        StringBuilder sb = new StringBuilder(hash.length * 2);
+        for (byte b : hash)
+        {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Compiled stylesheet together with the stamps of the local files it includes or imports.
+     */
+    private static final class CachedTemplates
+    {
+        /**
+         * Compiled stylesheet.
+         */
+        private final Templates templates;
+
+        /**
+         * Size and modification time of each included or imported local file at compile time.
+         */
+        private final Map<File, String> dependencies;
+
+        /**
+         * @param templates Compiled stylesheet.
+         * @param dependencies Stamps of the included or imported local files.
+         */
+        private CachedTemplates(Templates templates, Map<File, String> dependencies)
+        {
+            this.templates = templates;
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * @return <code>true</code> if none of the included or imported files has changed.
+         */
+        private boolean isUpToDate()
+        {
+            for (Map.Entry<File, String> dependency : this.dependencies.entrySet())
+            {
+                if (!dependency.getValue().equals(stamp(dependency.getKey())))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.module.merge;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.List;
+
+import javax.xml.transform.Templates;
+
+import junit.framework.TestCase;
+
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.input.SAXBuilder;
+
+/**
+ * Unit tests for {@link DocumentMergerByXslt} and {@link XsltTemplatesCache}.
+ */
+public class DocumentMergerByXsltTest extends TestCase
+{
+    /**
+     * XSLT that concatenates the children of the left and right documents.
+     */
+    private static final String XSLT =
+        "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+            + "<xsl:template match=\"/merge\"><topnode>"
+            + "<xsl:copy-of select=\"left/topnode/*\"/><xsl:copy-of select=\"right/topnode/*\"/>"
+            + "</topnode></xsl:template></xsl:stylesheet>";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        XsltTemplatesCache.clear();
+    }
+
+    /**
+     * Test merging three documents using an XSLT.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testMergeDocuments() throws Exception
+    {
+        SAXBuilder sb = new SAXBuilder();
+        DocumentMergerByXslt merger = new DocumentMergerByXslt(toStream(XSLT));
+        merger.addMergeItem(sb.build(new StringReader("<topnode><value>8</value></topnode>")));
+        merger.addMergeItem(sb.build(new StringReader("<topnode><value>13</value></topnode>")));
+        merger.addMergeItem(sb.build(new StringReader("<topnode><value>26</value></topnode>")));
+
+        Document mergedDoc = (Document) merger.performMerge();
+
+        List<Element> list = mergedDoc.getRootElement().getChildren("value");
+        assertEquals(3, list.size());
+        assertEquals("8", list.get(0).getText());
+        assertEquals("13", list.get(1).getText());
+        assertEquals("26", list.get(2).getText());
+    }
+
+    /**
+     * Test that the same stylesheet is compiled only once.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testSameStylesheetIsCompiledOnce() throws Exception
+    {
+        Templates first = XsltTemplatesCache.getTemplates(toStream(XSLT), "file:/merge.xsl");
+        Templates second = XsltTemplatesCache.getTemplates(toStream(XSLT), "file:/merge.xsl");
+        assertSame(first, second);
+        assertEquals(1, XsltTemplatesCache.size());
+
+        new DocumentMergerByXslt(toStream(XSLT), "file:/merge.xsl");
+        assertEquals(1, XsltTemplatesCache.size());
+    }
+
+    /**
+     * Test that stylesheets with different identities or contents are compiled separately.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testDifferentStylesheetsAreCompiledSeparately() throws Exception
+    {
+        Templates first = XsltTemplatesCache.getTemplates(toStream(XSLT), "file:/merge.xsl");
+        Templates second = XsltTemplatesCache.getTemplates(toStream(XSLT), "file:/other.xsl");
+        Templates third = XsltTemplatesCache.getTemplates(
+            toStream(XSLT.replace("topnode>", "othernode>")), "file:/merge.xsl");
+        assertNotSame(first, second);
+        assertNotSame(first, third);
+        assertEquals(3, XsltTemplatesCache.size());
+    }
+
+    /**
+     * Test that the cache never holds more than {@link XsltTemplatesCache#MAX_ENTRIES} stylesheets.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCacheIsBounded() throws Exception
+    {
+        for (int i = 0; i < XsltTemplatesCache.MAX_ENTRIES + 10; i++)
+        {
+            XsltTemplatesCache.getTemplates(toStream(XSLT), "file:/merge" + i + ".xsl");
+        }
+        assertEquals(XsltTemplatesCache.MAX_ENTRIES, XsltTemplatesCache.size());
+    }
+
+    /**
+     * Test that a stylesheet is recompiled when a file it includes changes.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testChangedIncludeIsRecompiled() throws Exception
+    {
+        File directory = File.createTempFile("cargo", null);
+        directory.delete();
+        directory.mkdirs();
+        try
+        {
+            File included = new File(directory, "included.xsl");
+            File main = new File(directory, "main.xsl");
+            write(included, XSLT);
+            write(main, "<xsl:stylesheet version=\"1.0\" "
+                + "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+                + "<xsl:include href=\"included.xsl\"/></xsl:stylesheet>");
+            String systemId = main.toURI().toString();
+
+            Templates first = XsltTemplatesCache.getTemplates(new FileInputStream(main), systemId);
+            Templates second = XsltTemplatesCache.getTemplates(new FileInputStream(main), systemId);
+            assertSame(first, second);
+
+            write(included, XSLT.replace("topnode>", "othernode>"));
+            included.setLastModified(included.lastModified() - 10000);
+            Templates third = XsltTemplatesCache.getTemplates(new FileInputStream(main), systemId);
+            assertNotSame(first, third);
+            assertEquals(1, XsltTemplatesCache.size());
+        }
+        finally
+        {
+            for (File file : directory.listFiles())
+            {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    /**
+     * @param file File to write.
+     * @param content String content.
+     * @throws Exception If anything goes wrong.
+     */
+    private static void write(File file, String content) throws Exception
+    {
+        OutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(content.getBytes("UTF-8"));
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * @param content String content.
+     * @return Stream with the content.
+     * @throws Exception If anything goes wrong.
+     */
+    private static InputStream toStream(String content) throws Exception
+    {
+        return new ByteArrayInputStream(content.getBytes("UTF-8"));
+    }
+}
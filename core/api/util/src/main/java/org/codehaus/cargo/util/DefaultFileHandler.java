@@ -21,6 +21,7 @@ package org.codehaus.cargo.util;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -44,10 +45,8 @@ import java.util.Vector;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -60,6 +59,8 @@ import org.apache.tools.ant.types.FileSet;
 import org.apache.tools.ant.types.FilterChain;
 import org.apache.tools.ant.util.FileUtils;
 
+import org.codehaus.cargo.util.internal.StreamingXmlReplacer;
+import org.codehaus.cargo.util.internal.XmlService;
 import org.codehaus.cargo.util.log.LoggedObject;
 
 /**
@@ -511,20 +512,23 @@ public class DefaultFileHandler extends LoggedObject implements FileHandler
     private void replaceInXmlFile(String file, Map<XmlReplacementDetails, String> replacements)
         throws CargoException
     {
+        if (StreamingXmlReplacer.isSupported(replacements.keySet()) && exists(file)
+            && !isDirectory(file) && replaceInXmlFileStreaming(file, replacements))
+        {
+            return;
+        }
+
         XmlUtils domUtils = new XmlUtils(this);
         Document doc = domUtils.loadXmlFromFile(file);
 
         try
         {
-            XPathFactory xPathFactory = XPathFactory.newInstance();
-            XPath xPath = xPathFactory.newXPath();
-
             for (Map.Entry<XmlReplacementDetails, String> replacement : replacements.entrySet())
             {
                 String expression = replacement.getKey().getXpathExpression();
                 String attributeName = replacement.getKey().getAttributeName();
 
-                XPathExpression xPathExpr = xPath.compile(expression);
+                XPathExpression xPathExpr = XmlService.compileXPath(expression, null);
 
                 Node node = (Node) xPathExpr.evaluate(doc, XPathConstants.NODE);
 
@@ -570,6 +574,86 @@ public class DefaultFileHandler extends LoggedObject implements FileHandler
         domUtils.saveXml(doc, file);
     }
 
+    /**
+     * Replaces using a map of XML replacements in a given file, in one streaming pass and without
+     * loading the file into a DOM. All XPath expressions must be
+     * {@link StreamingXmlReplacer#isSupported(String) supported} by the streaming replacer.
+     * 
+     * @param file File to replace in.
+     * @param replacements Map containing XML replacements.
+     * @return <code>true</code> if the replacements have been applied, <code>false</code> if the
+     * file requires a DOM based replacement.
+     * @throws CargoException If anything fails, most notably if one of the replacements does not
+     * exist in the file.
+     */
+    private boolean replaceInXmlFileStreaming(String file,
+        Map<XmlReplacementDetails, String> replacements) throws CargoException
+    {
+        StreamingXmlReplacer replacer = new StreamingXmlReplacer(replacements);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+
+        InputStream is = getInputStream(file);
+        try
+        {
+            if (!replacer.replace(is, result))
+            {
+                return false;
+            }
+
+            for (XmlReplacementDetails replacement : replacer.getUnmatched())
+            {
+                String message = "Node " + replacement.getXpathExpression() + " not found in file "
+                    + file;
+
+                if (replacement.isIgnoreIfNonExisting() == Boolean.TRUE)
+                {
+                    getLogger().debug(message, this.getClass().getName());
+                }
+                else
+                {
+                    throw new CargoException(message);
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            throw new CargoException("Cannot modify XML document " + file, e);
+        }
+        finally
+        {
+            try
+            {
+                is.close();
+            }
+            catch (IOException ignored)
+            {
+                // Ignored
+            }
+        }
+
+        OutputStream os = getOutputStream(file);
+        try
+        {
+            result.writeTo(os);
+        }
+        catch (IOException e)
+        {
+            throw new CargoException("Cannot write XML file " + file, e);
+        }
+        finally
+        {
+            try
+            {
+                os.close();
+            }
+            catch (IOException ignored)
+            {
+                // Ignored
+            }
+        }
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -27,19 +27,13 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathFactory;
-import javax.xml.xpath.XPath;
 
 import org.apache.tools.ant.util.ReaderInputStream;
+import org.codehaus.cargo.util.internal.XmlService;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -47,7 +41,9 @@ import org.w3c.dom.ls.DOMImplementationLS;
 import org.w3c.dom.ls.LSSerializer;
 
 /**
- * This class offers utility methods for handling XML files.
+ * This class offers utility methods for handling XML files. Instances are cheap to create: the
+ * underlying document builders, transformers and compiled XPath expressions are provided by the
+ * {@link XmlService} and shared across instances of the same thread.
  */
 public class XmlUtils
 {
@@ -56,16 +52,6 @@ public class XmlUtils
      */
     private FileHandler fileHandler;
 
-    /**
-     * XML document builder.
-     */
-    private DocumentBuilder builder;
-
-    /**
-     * XPath.
-     */
-    private XPath xPath;
-
     /**
      * XML namespaces map.
      */
@@ -115,31 +101,6 @@ public class XmlUtils
         this.fileHandler = fileHandler;
         this.namespaceContext = new NamespaceContextImpl();
         this.namespaceAware = namespaceAware;
-        XPathFactory xPathFactory = XPathFactory.newInstance();
-        this.xPath = xPathFactory.newXPath();
-        this.xPath.setNamespaceContext(namespaceContext);
-        DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
-        domFactory.setNamespaceAware(namespaceAware);
-        // Do not load remote DTDS as remote servers sometimes become unreachable
-        try
-        {
-            domFactory.setFeature(
-                "http://apache.org/xml/features/nonvalidating/load-dtd-grammar", false);
-            domFactory.setFeature(
-                "http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-        }
-        catch (ParserConfigurationException ignored)
-        {
-            // Ignored
-        }
-        try
-        {
-            this.builder = domFactory.newDocumentBuilder();
-        }
-        catch (Exception e)
-        {
-            throw new CargoException("Cannot create XML DOM builder", e);
-        }
     }
 
     /**
@@ -168,7 +129,8 @@ public class XmlUtils
                     }
                 }
             }
-            XPathExpression xPathExpr = xPath.compile(xpathWithoutNamespace);
+            XPathExpression xPathExpr =
+                XmlService.compileXPath(xpathWithoutNamespace, namespaces);
             nodelist = (NodeList) xPathExpr.evaluate(toSearch, XPathConstants.NODESET);
         }
         catch (Exception e)
@@ -223,7 +185,7 @@ public class XmlUtils
             }
 
             is = getFileHandler().getInputStream(sourceFile);
-            Document document = this.builder.parse(is);
+            Document document = XmlService.getDocumentBuilder(namespaceAware).parse(is);
             return document;
         }
         catch (Exception e)
@@ -263,11 +225,8 @@ public class XmlUtils
         OutputStream os = null;
         try
         {
-            TransformerFactory tFactory = TransformerFactory.newInstance();
-            Transformer transformer = tFactory.newTransformer();
-
             os = getFileHandler().getOutputStream(filename);
-            transformer.transform(new DOMSource(document), new StreamResult(os));
+            XmlService.getTransformer().transform(new DOMSource(document), new StreamResult(os));
         }
         catch (Exception e)
         {
@@ -339,7 +298,7 @@ public class XmlUtils
     {
         try
         {
-            Document parsed = this.builder.parse(
+            Document parsed = XmlService.getDocumentBuilder(namespaceAware).parse(
                 new BufferedInputStream(new ReaderInputStream(new StringReader(elementToParse))));
             return parsed.getDocumentElement();
         }
@@ -356,7 +315,7 @@ public class XmlUtils
      */
     public Document createDocument()
     {
-        return builder.newDocument();
+        return XmlService.getDocumentBuilder(namespaceAware).newDocument();
     }
 
     /**
@@ -0,0 +1,602 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.Comment;
+import javax.xml.stream.events.DTD;
+import javax.xml.stream.events.EntityReference;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.ProcessingInstruction;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.codehaus.cargo.util.FileHandler.XmlReplacementDetails;
+
+/**
+ * Applies XML replacements in a single streaming pass, without loading the document into a DOM.
+ * Only simple XPath expressions are supported: absolute (<code>/a/b</code>) or descendant
+ * (<code>//a/b</code>) paths of element names, each optionally with one attribute equality
+ * predicate such as <code>[@name='http']</code>. As with
+ * {@link javax.xml.xpath.XPathConstants#NODE}, each replacement applies to the first matching
+ * element in document order.
+ */
+public class StreamingXmlReplacer
+{
+    /**
+     * Pattern for one path step: an element name with an optional attribute equality predicate.
+     */
+    private static final Pattern STEP = Pattern.compile("([A-Za-z_][\\w.\\-]*)"
+        + "(?:\\[@([A-Za-z_][\\w.\\-]*)\\s*=\\s*(?:'([^']*)'|\"([^\"]*)\")\\])?");
+
+    /**
+     * Pattern for a full supported path.
+     */
+    private static final Pattern PATH = Pattern.compile(
+        "//?" + STEP.pattern() + "(?:/" + STEP.pattern() + ")*");
+
+    /**
+     * XML input factory.
+     */
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    /**
+     * XML output factory.
+     */
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    /**
+     * Compiled replacements, in the order they have been given.
+     */
+    private List<CompiledReplacement> replacements;
+
+    /**
+     * Replacements that did not match any element during the last pass.
+     */
+    private List<XmlReplacementDetails> unmatched = new ArrayList<XmlReplacementDetails>();
+
+    /**
+     * Path of the current element: element names and their attributes.
+     */
+    private List<StartElement> path = new ArrayList<StartElement>();
+
+    /**
+     * Create the replacer.
+     *
+     * @param replacements Replacements to apply, with the replacement values.
+     * @throws IllegalArgumentException If one of the replacements is not
+     * {@link #isSupported(String) supported}.
+     */
+    public StreamingXmlReplacer(Map<XmlReplacementDetails, String> replacements)
+    {
+        this.replacements = new ArrayList<CompiledReplacement>(replacements.size());
+        for (Map.Entry<XmlReplacementDetails, String> replacement : replacements.entrySet())
+        {
+            this.replacements.add(
+                new CompiledReplacement(replacement.getKey(), replacement.getValue()));
+        }
+    }
+
+    /**
+     * @param xpathExpression XPath expression.
+     * @return <code>true</code> if the XPath expression can be handled by this class.
+     */
+    public static boolean isSupported(String xpathExpression)
+    {
+        return xpathExpression != null && PATH.matcher(xpathExpression.trim()).matches();
+    }
+
+    /**
+     * @param replacements XML replacements.
+     * @return <code>true</code> if all XML replacements can be handled by this class.
+     */
+    public static boolean isSupported(Collection<XmlReplacementDetails> replacements)
+    {
+        for (XmlReplacementDetails replacement : replacements)
+        {
+            if (!isSupported(replacement.getXpathExpression()))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy an XML document, applying all replacements on the way.
+     *
+     * @param in Stream to read the XML document from.
+     * @param out Stream to write the modified XML document to.
+     * @return <code>true</code> if the replacements could be applied; <code>false</code> if the
+     * document is such that one replacement would shadow another one (for example, replacing the
+     * text of an element which contains the target of another replacement), in which case the
+     * written output must be discarded.
+     * @throws XMLStreamException If reading or writing the XML fails.
+     */
+    public boolean replace(InputStream in, OutputStream out) throws XMLStreamException
+    {
+        unmatched.clear();
+        path.clear();
+        for (CompiledReplacement replacement : replacements)
+        {
+            replacement.matched = false;
+        }
+
+        XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(in);
+        XMLStreamWriter writer = null;
+        try
+        {
+            int skipDepth = 0;
+            while (reader.hasNext())
+            {
+                XMLEvent event = reader.nextEvent();
+
+                if (writer == null)
+                {
+                    String encoding = "UTF-8";
+                    String version = "1.0";
+                    if (event.isStartDocument())
+                    {
+                        StartDocument startDocument = (StartDocument) event;
+                        if (startDocument.encodingSet())
+                        {
+                            encoding = startDocument.getCharacterEncodingScheme();
+                        }
+                        if (startDocument.getVersion() != null)
+                        {
+                            version = startDocument.getVersion();
+                        }
+                    }
+                    writer = OUTPUT_FACTORY.createXMLStreamWriter(out, encoding);
+                    writer.writeStartDocument(encoding, version);
+                    writer.writeCharacters("\n");
+                    if (event.isStartDocument())
+                    {
+                        continue;
+                    }
+                }
+
+                if (skipDepth > 0)
+                {
+                    // Inside an element whose text is being replaced: only look for shadowed
+                    // replacements, do not write anything
+                    if (event.isStartElement())
+                    {
+                        path.add(event.asStartElement());
+                        skipDepth++;
+                        if (!findMatches().isEmpty())
+                        {
+                            return false;
+                        }
+                    }
+                    else if (event.isEndElement())
+                    {
+                        path.remove(path.size() - 1);
+                        skipDepth--;
+                        if (skipDepth == 0)
+                        {
+                            writer.writeEndElement();
+                        }
+                    }
+                    continue;
+                }
+
+                switch (event.getEventType())
+                {
+                    case XMLEvent.START_ELEMENT:
+                        StartElement startElement = event.asStartElement();
+                        path.add(startElement);
+                        List<CompiledReplacement> matches = findMatches();
+                        String text = null;
+                        boolean replaceText = false;
+                        Map<String, String> attributes = new LinkedHashMap<String, String>();
+                        for (CompiledReplacement match : matches)
+                        {
+                            match.matched = true;
+                            if (match.details.getAttributeName() == null)
+                            {
+                                replaceText = true;
+                                text = match.value;
+                            }
+                            else
+                            {
+                                attributes.put(match.details.getAttributeName(), match.value);
+                            }
+                        }
+                        boolean empty = reader.peek() != null && reader.peek().isEndElement();
+                        if (empty && !replaceText)
+                        {
+                            reader.nextEvent();
+                            path.remove(path.size() - 1);
+                            writeStartElement(writer, startElement, attributes, true);
+                        }
+                        else
+                        {
+                            writeStartElement(writer, startElement, attributes, false);
+                            if (replaceText)
+                            {
+                                if (text != null)
+                                {
+                                    writer.writeCharacters(text);
+                                }
+                                skipDepth = 1;
+                            }
+                        }
+                        break;
+
+                    case XMLEvent.END_ELEMENT:
+                        path.remove(path.size() - 1);
+                        writer.writeEndElement();
+                        break;
+
+                    case XMLEvent.CHARACTERS:
+                    case XMLEvent.SPACE:
+                        Characters characters = event.asCharacters();
+                        if (characters.isCData())
+                        {
+                            writer.writeCData(characters.getData());
+                        }
+                        else
+                        {
+                            writer.writeCharacters(characters.getData());
+                        }
+                        break;
+
+                    case XMLEvent.CDATA:
+                        writer.writeCData(event.asCharacters().getData());
+                        break;
+
+                    case XMLEvent.COMMENT:
+                        writer.writeComment(((Comment) event).getText());
+                        writePrologNewLine(writer);
+                        break;
+
+                    case XMLEvent.PROCESSING_INSTRUCTION:
+                        ProcessingInstruction pi = (ProcessingInstruction) event;
+                        if (pi.getData() == null || pi.getData().length() == 0)
+                        {
+                            writer.writeProcessingInstruction(pi.getTarget());
+                        }
+                        else
+                        {
+                            writer.writeProcessingInstruction(pi.getTarget(), pi.getData());
+                        }
+                        writePrologNewLine(writer);
+                        break;
+
+                    case XMLEvent.DTD:
+                        writer.writeDTD(((DTD) event).getDocumentTypeDeclaration());
+                        writePrologNewLine(writer);
+                        break;
+
+                    case XMLEvent.ENTITY_REFERENCE:
+                        writer.writeEntityRef(((EntityReference) event).getName());
+                        break;
+
+                    case XMLEvent.END_DOCUMENT:
+                        writer.writeEndDocument();
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+
+            if (writer != null)
+            {
+                writer.flush();
+            }
+        }
+        finally
+        {
+            reader.close();
+            if (writer != null)
+            {
+                writer.close();
+            }
+        }
+
+        for (CompiledReplacement replacement : replacements)
+        {
+            if (!replacement.matched)
+            {
+                unmatched.add(replacement.details);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Replacements that did not match any element during the last call to
+     * {@link #replace(InputStream, OutputStream)}.
+     */
+    public List<XmlReplacementDetails> getUnmatched()
+    {
+        return unmatched;
+    }
+
+    /**
+     * @return Replacements not matched yet whose path matches the current element path.
+     */
+    private List<CompiledReplacement> findMatches()
+    {
+        List<CompiledReplacement> matches = new ArrayList<CompiledReplacement>();
+        for (CompiledReplacement replacement : replacements)
+        {
+            if (!replacement.matched && replacement.matches(path))
+            {
+                matches.add(replacement);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Write a new line when outside of the root element, to keep the prolog readable.
+     *
+     * @param writer XML writer.
+     * @throws XMLStreamException If writing fails.
+     */
+    private void writePrologNewLine(XMLStreamWriter writer) throws XMLStreamException
+    {
+        if (path.isEmpty())
+        {
+            writer.writeCharacters("\n");
+        }
+    }
+
+    /**
+     * Write a start element with its namespaces and attributes.
+     *
+     * @param writer XML writer.
+     * @param element Element to write.
+     * @param replacedAttributes Attribute values to replace or add.
+     * @param empty <code>true</code> to write an empty element.
+     * @throws XMLStreamException If writing fails.
+     */
+    private static void writeStartElement(XMLStreamWriter writer, StartElement element,
+        Map<String, String> replacedAttributes, boolean empty) throws XMLStreamException
+    {
+        QName name = element.getName();
+        if (empty)
+        {
+            writer.writeEmptyElement(name.getPrefix(), name.getLocalPart(), name.getNamespaceURI());
+        }
+        else
+        {
+            writer.writeStartElement(name.getPrefix(), name.getLocalPart(), name.getNamespaceURI());
+        }
+
+        for (Iterator<?> namespaces = element.getNamespaces(); namespaces.hasNext();)
+        {
+            Namespace namespace = (Namespace) namespaces.next();
+            if (namespace.isDefaultNamespaceDeclaration())
+            {
+                writer.writeDefaultNamespace(namespace.getNamespaceURI());
+            }
+            else
+            {
+                writer.writeNamespace(namespace.getPrefix(), namespace.getNamespaceURI());
+            }
+        }
+
+        // Attributes are written sorted by name, as the DOM serializer does
+        Map<String, Attribute> sortedAttributes = new TreeMap<String, Attribute>();
+        for (Iterator<?> attributes = element.getAttributes(); attributes.hasNext();)
+        {
+            Attribute attribute = (Attribute) attributes.next();
+            sortedAttributes.put(qualifiedName(attribute.getName()), attribute);
+        }
+        for (String attributeName : replacedAttributes.keySet())
+        {
+            if (!sortedAttributes.containsKey(attributeName))
+            {
+                sortedAttributes.put(attributeName, null);
+            }
+        }
+        for (Map.Entry<String, Attribute> attribute : sortedAttributes.entrySet())
+        {
+            String value;
+            if (replacedAttributes.containsKey(attribute.getKey()))
+            {
+                value = replacedAttributes.get(attribute.getKey());
+            }
+            else
+            {
+                value = attribute.getValue().getValue();
+            }
+            QName attributeName;
+            if (attribute.getValue() == null)
+            {
+                attributeName = new QName(attribute.getKey());
+            }
+            else
+            {
+                attributeName = attribute.getValue().getName();
+            }
+            if (attributeName.getPrefix() == null || attributeName.getPrefix().length() == 0)
+            {
+                writer.writeAttribute(attributeName.getLocalPart(), value);
+            }
+            else
+            {
+                writer.writeAttribute(attributeName.getPrefix(), attributeName.getNamespaceURI(),
+                    attributeName.getLocalPart(), value);
+            }
+        }
+    }
+
+    /**
+     * @param name Qualified name.
+     * @return Name as written in the document, including the prefix if any.
+     */
+    private static String qualifiedName(QName name)
+    {
+        if (name.getPrefix() == null || name.getPrefix().length() == 0)
+        {
+            return name.getLocalPart();
+        }
+        return name.getPrefix() + ":" + name.getLocalPart();
+    }
+
+    /**
+     * @return XML input factory which never loads external DTDs or entities, as remote servers
+     * sometimes become unreachable.
+     */
+    private static XMLInputFactory createInputFactory()
+    {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setXMLResolver(new XMLResolver()
+        {
+            @Override
+            public Object resolveEntity(String publicID, String systemID, String baseURI,
+                String namespace)
+            {
+                return new ByteArrayInputStream(new byte[0]);
+            }
+        });
+        return factory;
+    }
+
+    /**
+     * XML replacement with its path compiled into steps.
+     */
+    private static class CompiledReplacement
+    {
+        /**
+         * Replacement details.
+         */
+        private XmlReplacementDetails details;
+
+        /**
+         * Replacement value.
+         */
+        private String value;
+
+        /**
+         * Whether the path is relative to the document root (<code>/a/b</code>) or may start
+         * anywhere in the document (<code>//a/b</code>).
+         */
+        private boolean absolute;
+
+        /**
+         * Element names of the steps.
+         */
+        private List<String> names = new ArrayList<String>();
+
+        /**
+         * Attribute names of the predicates, <code>null</code> for steps without predicate.
+         */
+        private List<String> attributeNames = new ArrayList<String>();
+
+        /**
+         * Attribute values of the predicates, <code>null</code> for steps without predicate.
+         */
+        private List<String> attributeValues = new ArrayList<String>();
+
+        /**
+         * Whether this replacement has already been applied.
+         */
+        private boolean matched;
+
+        /**
+         * Compile a replacement.
+         *
+         * @param details Replacement details.
+         * @param value Replacement value.
+         */
+        public CompiledReplacement(XmlReplacementDetails details, String value)
+        {
+            if (!isSupported(details.getXpathExpression()))
+            {
+                throw new IllegalArgumentException("XPath expression "
+                    + details.getXpathExpression() + " cannot be handled in streaming mode");
+            }
+            this.details = details;
+            this.value = value;
+
+            String expression = details.getXpathExpression().trim();
+            this.absolute = !expression.startsWith("//");
+            Matcher step = STEP.matcher(expression);
+            while (step.find())
+            {
+                names.add(step.group(1));
+                attributeNames.add(step.group(2));
+                attributeValues.add(step.group(3) != null ? step.group(3) : step.group(4));
+            }
+        }
+
+        /**
+         * @param elementPath Path of the current element.
+         * @return <code>true</code> if this replacement's path matches the current element.
+         */
+        public boolean matches(List<StartElement> elementPath)
+        {
+            int offset = elementPath.size() - names.size();
+            if (offset < 0 || absolute && offset != 0)
+            {
+                return false;
+            }
+            for (int i = 0; i < names.size(); i++)
+            {
+                StartElement element = elementPath.get(offset + i);
+                if (!names.get(i).equals(qualifiedName(element.getName())))
+                {
+                    return false;
+                }
+                String attributeName = attributeNames.get(i);
+                if (attributeName != null)
+                {
+                    Attribute attribute = element.getAttributeByName(new QName(attributeName));
+                    if (attribute == null || !attributeValues.get(i).equals(attribute.getValue()))
+                    {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
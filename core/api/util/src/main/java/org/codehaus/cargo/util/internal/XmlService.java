@@ -0,0 +1,285 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util.internal;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.codehaus.cargo.util.CargoException;
+import org.codehaus.cargo.util.NamespaceContextImpl;
+
+/**
+ * Thread-safe provider of XML infrastructure. The JAXP factories are created once per JVM, whereas
+ * the objects they create (document builders, transformers, XPath evaluators and compiled XPath
+ * expressions), which are not thread-safe, are kept per thread and reused across calls.
+ */
+public final class XmlService
+{
+    /**
+     * Maximum number of compiled XPath expressions kept per thread.
+     */
+    public static final int XPATH_CACHE_SIZE = 256;
+
+    /**
+     * Factory for namespace aware document builders.
+     */
+    private static final DocumentBuilderFactory NAMESPACE_AWARE_FACTORY =
+        createDocumentBuilderFactory(true);
+
+    /**
+     * Factory for document builders that are not namespace aware.
+     */
+    private static final DocumentBuilderFactory NAMESPACE_UNAWARE_FACTORY =
+        createDocumentBuilderFactory(false);
+
+    /**
+     * Transformer factory.
+     */
+    private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+
+    /**
+     * XPath factory.
+     */
+    private static final XPathFactory XPATH_FACTORY = XPathFactory.newInstance();
+
+    /**
+     * Namespace aware document builders, one per thread.
+     */
+    private static final ThreadLocal<DocumentBuilder> NAMESPACE_AWARE_BUILDER =
+        new ThreadLocal<DocumentBuilder>()
+        {
+            @Override
+            protected DocumentBuilder initialValue()
+            {
+                return newDocumentBuilder(NAMESPACE_AWARE_FACTORY);
+            }
+        };
+
+    /**
+     * Document builders that are not namespace aware, one per thread.
+     */
+    private static final ThreadLocal<DocumentBuilder> NAMESPACE_UNAWARE_BUILDER =
+        new ThreadLocal<DocumentBuilder>()
+        {
+            @Override
+            protected DocumentBuilder initialValue()
+            {
+                return newDocumentBuilder(NAMESPACE_UNAWARE_FACTORY);
+            }
+        };
+
+    /**
+     * Identity transformers, one per thread.
+     */
+    private static final ThreadLocal<Transformer> TRANSFORMER = new ThreadLocal<Transformer>()
+    {
+        @Override
+        protected Transformer initialValue()
+        {
+            synchronized (TRANSFORMER_FACTORY)
+            {
+                try
+                {
+                    return TRANSFORMER_FACTORY.newTransformer();
+                }
+                catch (Exception e)
+                {
+                    throw new CargoException("Cannot create XML transformer", e);
+                }
+            }
+        }
+    };
+
+    /**
+     * Compiled XPath expressions, one least-recently-used cache per thread.
+     */
+    private static final ThreadLocal<Map<String, XPathExpression>> XPATH_EXPRESSIONS =
+        new ThreadLocal<Map<String, XPathExpression>>()
+        {
+            @Override
+            protected Map<String, XPathExpression> initialValue()
+            {
+                return new LinkedHashMap<String, XPathExpression>(16, 0.75f, true)
+                {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest)
+                    {
+                        return size() > XPATH_CACHE_SIZE;
+                    }
+                };
+            }
+        };
+
+    /**
+     * Utility class, cannot be instantiated.
+     */
+    private XmlService()
+    {
+        // Nothing
+    }
+
+    /**
+     * Get the document builder of the current thread. The builder is reset before being returned
+     * and must not be passed to other threads.
+     *
+     * @param namespaceAware true if the document builder should be namespace aware.
+     * @return Document builder of the current thread.
+     */
+    public static DocumentBuilder getDocumentBuilder(boolean namespaceAware)
+    {
+        DocumentBuilder builder;
+        if (namespaceAware)
+        {
+            builder = NAMESPACE_AWARE_BUILDER.get();
+        }
+        else
+        {
+            builder = NAMESPACE_UNAWARE_BUILDER.get();
+        }
+        builder.reset();
+        return builder;
+    }
+
+    /**
+     * Get the identity transformer of the current thread. The transformer is reset before being
+     * returned and must not be passed to other threads.
+     *
+     * @return Identity transformer of the current thread.
+     */
+    public static Transformer getTransformer()
+    {
+        Transformer transformer = TRANSFORMER.get();
+        transformer.reset();
+        return transformer;
+    }
+
+    /**
+     * Get a compiled XPath expression, compiling it only if the current thread has not recently
+     * compiled the same expression with the same namespaces.
+     *
+     * @param xpath XPath expression.
+     * @param namespaces Namespace prefixes used in the expression, can be <code>null</code>.
+     * @return Compiled XPath expression, usable only in the current thread.
+     * @throws XPathExpressionException If the expression cannot be compiled.
+     */
+    public static XPathExpression compileXPath(String xpath, Map<String, String> namespaces)
+        throws XPathExpressionException
+    {
+        StringBuilder key = new StringBuilder(xpath);
+        if (namespaces != null && !namespaces.isEmpty())
+        {
+            key.append('\n');
+            key.append(new TreeMap<String, String>(namespaces));
+        }
+        String cacheKey = key.toString();
+
+        Map<String, XPathExpression> expressions = XPATH_EXPRESSIONS.get();
+        XPathExpression expression = expressions.get(cacheKey);
+        if (expression == null)
+        {
+            XPath xPath;
+            synchronized (XPATH_FACTORY)
+            {
+                xPath = XPATH_FACTORY.newXPath();
+            }
+            xPath.setNamespaceContext(createNamespaceContext(namespaces));
+            expression = xPath.compile(xpath);
+            expressions.put(cacheKey, expression);
+        }
+        return expression;
+    }
+
+    /**
+     * Create a namespace context that is independent from later changes to the given namespaces.
+     *
+     * @param namespaces Namespace prefixes, can be <code>null</code>.
+     * @return Namespace context.
+     */
+    private static NamespaceContext createNamespaceContext(Map<String, String> namespaces)
+    {
+        NamespaceContextImpl namespaceContext = new NamespaceContextImpl();
+        if (namespaces != null)
+        {
+            namespaceContext.setNamespaces(new HashMap<String, String>(namespaces));
+        }
+        return namespaceContext;
+    }
+
+    /**
+     * Create a document builder factory.
+     *
+     * @param namespaceAware true if the document builders should be namespace aware.
+     * @return Document builder factory.
+     */
+    private static DocumentBuilderFactory createDocumentBuilderFactory(boolean namespaceAware)
+    {
+        DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
+        domFactory.setNamespaceAware(namespaceAware);
+        // Do not load remote DTDS as remote servers sometimes become unreachable
+        try
+        {
+            domFactory.setFeature(
+                "http://apache.org/xml/features/nonvalidating/load-dtd-grammar", false);
+            domFactory.setFeature(
+                "http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        }
+        catch (ParserConfigurationException ignored)
+        {
+            // Ignored
+        }
+        return domFactory;
+    }
+
+    /**
+     * Create a document builder.
+     *
+     * @param domFactory Factory to create the document builder with.
+     * @return New document builder.
+     */
+    private static DocumentBuilder newDocumentBuilder(DocumentBuilderFactory domFactory)
+    {
+        synchronized (domFactory)
+        {
+            try
+            {
+                return domFactory.newDocumentBuilder();
+            }
+            catch (Exception e)
+            {
+                throw new CargoException("Cannot create XML DOM builder", e);
+            }
+        }
+    }
+}
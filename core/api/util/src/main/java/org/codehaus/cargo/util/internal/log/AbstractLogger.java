@@ -19,13 +19,13 @@
  */
 package org.codehaus.cargo.util.internal.log;
 
+import org.codehaus.cargo.util.log.LazyLogger;
 import org.codehaus.cargo.util.log.LogLevel;
-import org.codehaus.cargo.util.log.Logger;
 
 /**
  * Base clas for all Loggers.
  */
-public abstract class AbstractLogger implements Logger
+public abstract class AbstractLogger implements LazyLogger
 {
     /**
      * The logging level. See #LogLevel
@@ -93,6 +93,42 @@ public abstract class AbstractLogger implements Logger
         log(LogLevel.DEBUG, message, category);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void warn(String format, String category, Object... args)
+    {
+        log(LogLevel.WARN, format, category, args);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void info(String format, String category, Object... args)
+    {
+        log(LogLevel.INFO, format, category, args);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void debug(String format, String category, Object... args)
+    {
+        log(LogLevel.DEBUG, format, category, args);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled(LogLevel level)
+    {
+        return getLevel().compareTo(level) >= 0;
+    }
+
     /**
      * Common method for all severity levels. Verifies that the logging level is correct for logging
      * the current message.
@@ -103,12 +139,29 @@ public abstract class AbstractLogger implements Logger
      */
     private void log(LogLevel level, String message, String category)
     {
-        if (getLevel().compareTo(level) >= 0)
+        if (isEnabled(level))
         {
             doLog(level, message, category);
         }
     }
 
+    /**
+     * Common method for all severity levels of formatted messages. Only formats the message if
+     * the logging level is correct for logging it.
+     * 
+     * @param level the log level (aka severity) of the message
+     * @param format the format of the message to log
+     * @param category the log category
+     * @param args the arguments referenced by the format
+     */
+    private void log(LogLevel level, String format, String category, Object[] args)
+    {
+        if (isEnabled(level))
+        {
+            doLog(level, String.format(format, args), category);
+        }
+    }
+
     /**
      * Common method for all severity levels.
      * 
@@ -0,0 +1,147 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util.internal.log;
+
+import org.codehaus.cargo.util.log.LazyLogger;
+import org.codehaus.cargo.util.log.LogLevel;
+import org.codehaus.cargo.util.log.Logger;
+
+/**
+ * Adds the lazy overloads of {@link LazyLogger} to any {@link Logger}, using the wrapped logger's
+ * level to decide whether a message needs to be formatted.
+ */
+public class LazyLoggerWrapper implements LazyLogger
+{
+    /**
+     * The wrapped logger.
+     */
+    private final Logger logger;
+
+    /**
+     * @param logger the logger to wrap
+     */
+    public LazyLoggerWrapper(Logger logger)
+    {
+        this.logger = logger;
+    }
+
+    /**
+     * @param logger any logger
+     * @return <code>logger</code> itself if it already is a {@link LazyLogger}, a wrapper otherwise
+     */
+    public static LazyLogger wrap(Logger logger)
+    {
+        if (logger instanceof LazyLogger)
+        {
+            return (LazyLogger) logger;
+        }
+        return new LazyLoggerWrapper(logger);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setLevel(LogLevel level)
+    {
+        this.logger.setLevel(level);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LogLevel getLevel()
+    {
+        return this.logger.getLevel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled(LogLevel level)
+    {
+        return getLevel() == null || getLevel().compareTo(level) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void info(String message, String category)
+    {
+        this.logger.info(message, category);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void warn(String message, String category)
+    {
+        this.logger.warn(message, category);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void debug(String message, String category)
+    {
+        this.logger.debug(message, category);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void info(String format, String category, Object... args)
+    {
+        if (isEnabled(LogLevel.INFO))
+        {
+            this.logger.info(String.format(format, args), category);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void warn(String format, String category, Object... args)
+    {
+        if (isEnabled(LogLevel.WARN))
+        {
+            this.logger.warn(String.format(format, args), category);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void debug(String format, String category, Object... args)
+    {
+        if (isEnabled(LogLevel.DEBUG))
+        {
+            this.logger.debug(String.format(format, args), category);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util.internal.log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free buffer of log messages, written to by any number of threads and read by a
+ * single consumer thread. Producers claim a sequence number with a single atomic increment and
+ * publish their message in the corresponding slot; they only wait if the buffer is full, in which
+ * case logging is slowed down to the pace of the consumer instead of dropping messages.
+ */
+public class LogRingBuffer
+{
+    /**
+     * Time producers wait before checking again whether a full buffer has been drained.
+     */
+    private static final long PRODUCER_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * Message slots; an empty slot is <code>null</code>.
+     */
+    private final AtomicReferenceArray<String> slots;
+
+    /**
+     * Mask giving the slot index of a sequence number.
+     */
+    private final int mask;
+
+    /**
+     * Next sequence number to be claimed by a producer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Next sequence number to be read by the consumer.
+     */
+    private volatile long head;
+
+    /**
+     * Consumer thread, <code>null</code> until it first waits for messages.
+     */
+    private volatile Thread consumer;
+
+    /**
+     * Whether the consumer is waiting for messages.
+     */
+    private volatile boolean consumerWaiting;
+
+    /**
+     * @param capacity the number of messages the buffer can hold, rounded up to a power of two
+     */
+    public LogRingBuffer(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new AtomicReferenceArray<String>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Add a message, waiting for the consumer to make room if the buffer is full.
+     * 
+     * @param message the message to add
+     */
+    public void offer(String message)
+    {
+        long sequence = this.tail.getAndIncrement();
+        while (sequence - this.head >= this.slots.length())
+        {
+            wakeUpConsumer();
+            LockSupport.parkNanos(PRODUCER_WAIT_NANOS);
+        }
+        this.slots.set((int) sequence & this.mask, message);
+        if (this.consumerWaiting)
+        {
+            wakeUpConsumer();
+        }
+    }
+
+    /**
+     * Remove the next message. Must only be called by the consumer thread.
+     * 
+     * @return the next message, <code>null</code> if none has been published yet
+     */
+    public String poll()
+    {
+        long sequence = this.head;
+        int index = (int) sequence & this.mask;
+        String message = this.slots.get(index);
+        if (message != null)
+        {
+            this.slots.set(index, null);
+            this.head = sequence + 1;
+        }
+        return message;
+    }
+
+    /**
+     * @return <code>true</code> if no published message is waiting to be read
+     */
+    public boolean isEmpty()
+    {
+        return this.slots.get((int) this.head & this.mask) == null;
+    }
+
+    /**
+     * Wait until a message is published or until the given time has elapsed. Must only be called
+     * by the consumer thread.
+     * 
+     * @param nanos maximum time to wait, in nanoseconds
+     */
+    public void await(long nanos)
+    {
+        beginAwait();
+        try
+        {
+            if (isEmpty())
+            {
+                LockSupport.parkNanos(this, nanos);
+            }
+        }
+        finally
+        {
+            endAwait();
+        }
+    }
+
+    /**
+     * Declare that the consumer thread is about to wait, so that producers wake it up when they
+     * publish a message. A consumer reading from several buffers calls this method on all of them,
+     * then checks that they are all empty before parking. Must only be called by the consumer
+     * thread.
+     */
+    public void beginAwait()
+    {
+        this.consumer = Thread.currentThread();
+        this.consumerWaiting = true;
+    }
+
+    /**
+     * Declare that the consumer thread is not waiting anymore. Must only be called by the consumer
+     * thread.
+     */
+    public void endAwait()
+    {
+        this.consumerWaiting = false;
+    }
+
+    /**
+     * Wake up the consumer thread if it is waiting.
+     */
+    public void wakeUpConsumer()
+    {
+        Thread thread = this.consumer;
+        if (thread != null)
+        {
+            LockSupport.unpark(thread);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util.internal.log;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Thread-safe formatter of log timestamps, using the <code>HH:mm:ss.SSS</code> pattern. The
+ * formatted hours, minutes and seconds are cached, so that all messages logged within the same
+ * second only need their milliseconds to be appended.
+ */
+public class TimestampFormatter
+{
+    /**
+     * Formatted second, immutable so that it can be shared between threads.
+     */
+    private static final class FormattedSecond
+    {
+        /**
+         * Second since the epoch.
+         */
+        private final long second;
+
+        /**
+         * Formatted hours, minutes and seconds, followed by a dot.
+         */
+        private final String prefix;
+
+        /**
+         * @param second second since the epoch
+         * @param prefix formatted hours, minutes and seconds, followed by a dot
+         */
+        private FormattedSecond(long second, String prefix)
+        {
+            this.second = second;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * Date formats, one per thread as {@link SimpleDateFormat} is not thread-safe.
+     */
+    private final ThreadLocal<DateFormat> format = new ThreadLocal<DateFormat>()
+    {
+        @Override
+        protected DateFormat initialValue()
+        {
+            return new SimpleDateFormat("HH:mm:ss.");
+        }
+    };
+
+    /**
+     * Last formatted second.
+     */
+    private volatile FormattedSecond last;
+
+    /**
+     * @param millis time in milliseconds since the epoch
+     * @return formatted time
+     */
+    public String format(long millis)
+    {
+        long second = millis / 1000;
+        FormattedSecond formatted = this.last;
+        if (formatted == null || formatted.second != second)
+        {
+            formatted = new FormattedSecond(second, this.format.get().format(
+                new Date(second * 1000)));
+            this.last = formatted;
+        }
+
+        int milliseconds = (int) (millis % 1000);
+        StringBuilder result = new StringBuilder(formatted.prefix.length() + 3);
+        result.append(formatted.prefix);
+        if (milliseconds < 100)
+        {
+            result.append('0');
+        }
+        if (milliseconds < 10)
+        {
+            result.append('0');
+        }
+        result.append(milliseconds);
+        return result.toString();
+    }
+}
@@ -25,27 +25,114 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import org.codehaus.cargo.util.CargoException;
 import org.codehaus.cargo.util.internal.log.AbstractLogger;
+import org.codehaus.cargo.util.internal.log.LogRingBuffer;
+import org.codehaus.cargo.util.internal.log.TimestampFormatter;
 
 /**
- * File implementation which sends logged messages to a file.
+ * File implementation which sends logged messages to a file.<br><br>
+ * In the default, synchronous, mode every message is written and flushed by the logging thread.
+ * In the asynchronous mode, messages are handed over to a lock-free buffer and written in batches
+ * by a writer thread shared by all asynchronous file loggers, which flushes each file as soon as
+ * its buffer is drained and at least every {@link #FLUSH_INTERVAL} milliseconds; this way,
+ * threads logging concurrently (for example when orchestrating many containers) do not wait for
+ * each other's disk I/O. Asynchronous loggers should be closed using {@link #close()}, which
+ * writes all pending messages; otherwise, that is done when the JVM shuts down. Messages logged
+ * once a logger has been closed are discarded.
  */
 public class FileLogger extends AbstractLogger
 {
+    /**
+     * Maximum time, in milliseconds, a written message stays unflushed in asynchronous mode.
+     */
+    public static final long FLUSH_INTERVAL = 200;
+
+    /**
+     * Number of messages that can be waiting to be written in asynchronous mode.
+     */
+    public static final int BUFFER_CAPACITY = 8192;
+
+    /**
+     * Name of the thread writing the messages of all asynchronous file loggers.
+     */
+    public static final String WRITER_THREAD_NAME = "Cargo file logger writer";
+
+    /**
+     * Timestamp formatter shared by all file loggers.
+     */
+    private static final TimestampFormatter TIMESTAMP_FORMATTER = new TimestampFormatter();
+
+    /**
+     * Asynchronous file loggers the writer thread writes messages for.
+     */
+    private static final List<FileLogger> ASYNCHRONOUS_LOGGERS =
+        new CopyOnWriteArrayList<FileLogger>();
+
+    /**
+     * Lock guarding the start and stop of the writer thread and of the shutdown hook.
+     */
+    private static final Object WRITER_LOCK = new Object();
+
+    /**
+     * Thread writing the messages of all asynchronous file loggers, <code>null</code> when there
+     * is no asynchronous file logger.
+     */
+    private static volatile Thread writer;
+
+    /**
+     * Thread closing the asynchronous file loggers when the JVM shuts down, <code>null</code> when
+     * it is not registered.
+     */
+    private static Thread shutdownHook;
+
     /**
      * The OutputStream to log to.
      */
     private OutputStream output;
 
     /**
-     * Date format used when logging to the file.
+     * The file to log to.
+     */
+    private File file;
+
+    /**
+     * Buffer of messages to write, <code>null</code> in synchronous mode.
+     */
+    private LogRingBuffer buffer;
+
+    /**
+     * Released by the writer thread once all messages of this closed asynchronous logger have been
+     * written.
+     */
+    private CountDownLatch drained;
+
+    /**
+     * Whether messages have been written by the writer thread but not flushed yet.
      */
-    private final DateFormat format = new SimpleDateFormat("HH:mm:ss.SSS");
+    private boolean dirty;
+
+    /**
+     * Time, as given by {@link System#nanoTime()}, of the last flush by the writer thread.
+     */
+    private long lastFlush;
+
+    /**
+     * Whether the logger has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * First error encountered by the writer thread.
+     */
+    private volatile IOException writeError;
 
     /**
      * @param file the file to log to
@@ -53,6 +140,26 @@ public class FileLogger extends AbstractLogger
      */
     public FileLogger(File file, boolean append)
     {
+        this(file, append, false);
+    }
+
+    /**
+     * @param file the file to log to
+     * @param append if true the file is appended to insted of being erased
+     */
+    public FileLogger(String file, boolean append)
+    {
+        this(new File(file), append);
+    }
+
+    /**
+     * @param file the file to log to
+     * @param append if true the file is appended to insted of being erased
+     * @param asynchronous if true messages are written by a separate thread
+     */
+    public FileLogger(File file, boolean append, boolean asynchronous)
+    {
+        this.file = file;
         try
         {
             File parent = file.getParentFile();
@@ -67,15 +174,32 @@ public class FileLogger extends AbstractLogger
         {
             throw new CargoException("Failed to create file [" + file + "]", e);
         }
+
+        if (asynchronous)
+        {
+            this.buffer = new LogRingBuffer(BUFFER_CAPACITY);
+            this.drained = new CountDownLatch(1);
+            this.lastFlush = System.nanoTime();
+            register(this);
+        }
     }
 
     /**
      * @param file the file to log to
      * @param append if true the file is appended to insted of being erased
+     * @param asynchronous if true messages are written by a separate thread
      */
-    public FileLogger(String file, boolean append)
+    public FileLogger(String file, boolean append, boolean asynchronous)
     {
-        this(new File(file), append);
+        this(new File(file), append, asynchronous);
+    }
+
+    /**
+     * @return true if messages are written by a separate thread
+     */
+    public boolean isAsynchronous()
+    {
+        return this.buffer != null;
     }
 
     /**
@@ -84,20 +208,277 @@ public class FileLogger extends AbstractLogger
     @Override
     protected void doLog(LogLevel level, String message, String category)
     {
+        if (this.closed)
+        {
+            return;
+        }
+
         final String formattedCategory = category.length() > 20
             ? category.substring(category.length() - 20) : category;
 
-        final String msg = "[" + this.format.format(new Date()) + "]"
+        final String msg = "[" + TIMESTAMP_FORMATTER.format(System.currentTimeMillis()) + "]"
             + "[" + level.getLevel() + "][" + formattedCategory + "] " + message + "\n";
-        try
+
+        if (this.buffer != null)
         {
-            this.output.write(msg.getBytes());
-            this.output.flush();
+            if (this.writeError != null)
+            {
+                throw new CargoException("Failed to write log messages to file [" + this.file
+                    + "]", this.writeError);
+            }
+            this.buffer.offer(msg);
+            return;
         }
-        catch (IOException e)
+
+        synchronized (this)
+        {
+            if (this.closed)
+            {
+                return;
+            }
+            try
+            {
+                this.output.write(msg.getBytes());
+                this.output.flush();
+            }
+            catch (IOException e)
+            {
+                throw new CargoException("Failed to write log message ["
+                    + msg + "]", e);
+            }
+        }
+    }
+
+    /**
+     * Write all pending messages and close the file. In asynchronous mode, messages logged by
+     * other threads while the logger is being closed might be lost.
+     */
+    public void close()
+    {
+        synchronized (this)
+        {
+            if (this.closed)
+            {
+                return;
+            }
+            this.closed = true;
+        }
+
+        if (this.buffer != null)
+        {
+            Thread writerThread = writer;
+            if (writerThread != null)
+            {
+                LockSupport.unpark(writerThread);
+            }
+            try
+            {
+                this.drained.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            unregisterShutdownHook();
+        }
+
+        synchronized (this)
+        {
+            try
+            {
+                this.output.close();
+            }
+            catch (IOException e)
+            {
+                throw new CargoException("Failed to close log file [" + this.file + "]", e);
+            }
+        }
+    }
+
+    /**
+     * Add an asynchronous logger to the ones the writer thread writes messages for, starting the
+     * writer thread and registering the shutdown hook if needed.
+     * 
+     * @param logger the asynchronous logger
+     */
+    private static void register(FileLogger logger)
+    {
+        synchronized (WRITER_LOCK)
+        {
+            ASYNCHRONOUS_LOGGERS.add(logger);
+            if (writer == null)
+            {
+                Thread writerThread = new Thread(new Runnable()
+                {
+                    /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public void run()
+                    {
+                        writeMessages();
+                    }
+                }, WRITER_THREAD_NAME);
+                writerThread.setDaemon(true);
+                writer = writerThread;
+                writerThread.start();
+            }
+            if (shutdownHook == null)
+            {
+                shutdownHook = new Thread()
+                {
+                    /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public void run()
+                    {
+                        for (FileLogger asynchronousLogger : ASYNCHRONOUS_LOGGERS)
+                        {
+                            asynchronousLogger.close();
+                        }
+                    }
+                };
+                Runtime.getRuntime().addShutdownHook(shutdownHook);
+            }
+        }
+    }
+
+    /**
+     * Unregister the shutdown hook if no asynchronous logger is left open.
+     */
+    private static void unregisterShutdownHook()
+    {
+        synchronized (WRITER_LOCK)
+        {
+            if (shutdownHook == null || !ASYNCHRONOUS_LOGGERS.isEmpty()
+                || Thread.currentThread() == shutdownHook)
+            {
+                return;
+            }
+            try
+            {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            }
+            catch (IllegalStateException ignored)
+            {
+                // The JVM is shutting down
+            }
+            shutdownHook = null;
+        }
+    }
+
+    /**
+     * Loop of the writer thread: drains the buffers of all asynchronous loggers in batches,
+     * flushing each file whenever its buffer is empty or the flush interval has elapsed, until no
+     * asynchronous logger is left open.
+     */
+    private static void writeMessages()
+    {
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL);
+        while (true)
+        {
+            boolean written = false;
+            for (FileLogger logger : ASYNCHRONOUS_LOGGERS)
+            {
+                if (logger.drain(flushIntervalNanos))
+                {
+                    written = true;
+                }
+            }
+            if (written)
+            {
+                continue;
+            }
+
+            synchronized (WRITER_LOCK)
+            {
+                if (ASYNCHRONOUS_LOGGERS.isEmpty())
+                {
+                    writer = null;
+                    return;
+                }
+            }
+
+            List<LogRingBuffer> buffers = new ArrayList<LogRingBuffer>();
+            boolean empty = true;
+            for (FileLogger logger : ASYNCHRONOUS_LOGGERS)
+            {
+                logger.buffer.beginAwait();
+                buffers.add(logger.buffer);
+                if (!logger.buffer.isEmpty() || logger.closed)
+                {
+                    empty = false;
+                }
+            }
+            if (empty)
+            {
+                LockSupport.parkNanos(flushIntervalNanos);
+            }
+            for (LogRingBuffer buffer : buffers)
+            {
+                buffer.endAwait();
+            }
+        }
+    }
+
+    /**
+     * Write the pending messages of this asynchronous logger, flushing the file if its buffer is
+     * empty or if the flush interval has elapsed. If the logger is closed and all its messages have
+     * been written, remove it from the loggers the writer thread writes messages for. Must only be
+     * called by the writer thread.
+     * 
+     * @param flushIntervalNanos flush interval, in nanoseconds
+     * @return <code>true</code> if messages have been written
+     */
+    private boolean drain(long flushIntervalNanos)
+    {
+        boolean written = false;
+        for (int i = 0; i < BUFFER_CAPACITY; i++)
+        {
+            String message = this.buffer.poll();
+            if (message == null)
+            {
+                break;
+            }
+            written = true;
+            if (this.writeError == null)
+            {
+                try
+                {
+                    this.output.write(message.getBytes());
+                    this.dirty = true;
+                }
+                catch (IOException e)
+                {
+                    this.writeError = e;
+                }
+            }
+        }
+
+        if (this.dirty && (this.buffer.isEmpty()
+            || System.nanoTime() - this.lastFlush >= flushIntervalNanos))
+        {
+            try
+            {
+                this.output.flush();
+            }
+            catch (IOException e)
+            {
+                if (this.writeError == null)
+                {
+                    this.writeError = e;
+                }
+            }
+            this.lastFlush = System.nanoTime();
+            this.dirty = false;
+        }
+
+        if (this.closed && this.buffer.isEmpty())
         {
-            throw new CargoException("Failed to write log message ["
-                + msg + "]", e);
+            ASYNCHRONOUS_LOGGERS.remove(this);
+            this.drained.countDown();
         }
+        return written;
     }
 }
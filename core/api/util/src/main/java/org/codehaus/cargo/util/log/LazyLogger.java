@@ -0,0 +1,65 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util.log;
+
+/**
+ * Logger with overloads that only build the message if it is actually logged. The message is
+ * created by applying {@link String#format(String, Object...)} to the format and arguments, so
+ * callers no longer pay for concatenating strings (and calling <code>toString()</code> on the
+ * arguments) for messages below the logging level.
+ */
+public interface LazyLogger extends Logger
+{
+    /**
+     * @param level the log level (aka severity) of a message
+     * @return <code>true</code> if messages with the given level are logged
+     */
+    boolean isEnabled(LogLevel level);
+
+    /**
+     * Logger informational messages, formatted only if logged.
+     * 
+     * @param format the format of the message to log, see {@link java.util.Formatter}
+     * @param category the log category (usually this is the full name of the class being logged but
+     * it can be anything)
+     * @param args the arguments referenced by the format
+     */
+    void info(String format, String category, Object... args);
+
+    /**
+     * Logger warning messages, formatted only if logged.
+     * 
+     * @param format the format of the message to log, see {@link java.util.Formatter}
+     * @param category the log category (usually this is the full name of the class being logged but
+     * it can be anything)
+     * @param args the arguments referenced by the format
+     */
+    void warn(String format, String category, Object... args);
+
+    /**
+     * Logger debug messages, formatted only if logged.
+     * 
+     * @param format the format of the message to log, see {@link java.util.Formatter}
+     * @param category the log category (usually this is the full name of the class being logged but
+     * it can be anything)
+     * @param args the arguments referenced by the format
+     */
+    void debug(String format, String category, Object... args);
+}
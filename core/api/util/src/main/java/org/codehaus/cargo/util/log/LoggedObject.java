@@ -19,6 +19,8 @@
  */
 package org.codehaus.cargo.util.log;
 
+import org.codehaus.cargo.util.internal.log.LazyLoggerWrapper;
+
 /**
  * Helper class for implementing {@link Loggable} methods.
  */
@@ -46,4 +48,12 @@ public class LoggedObject implements Loggable
     {
         return this.log;
     }
+
+    /**
+     * @return the logger, with overloads that only format messages which are actually logged
+     */
+    public LazyLogger getLazyLogger()
+    {
+        return LazyLoggerWrapper.wrap(getLogger());
+    }
 }
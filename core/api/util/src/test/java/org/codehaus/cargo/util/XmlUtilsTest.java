@@ -145,4 +145,30 @@ public class XmlUtilsTest extends TestCase
         assertEquals("element", animalElement.getNodeName());
         assertEquals("cat", animalElement.getTextContent());
     }
+
+    /**
+     * Test that changing the namespaces is taken into account by later XPath evaluations, even
+     * though compiled XPath expressions are cached.
+     * @throws Exception If anything does wrong.
+     */
+    public void testSelectElementMatchingXPathAfterNamespaceChange() throws Exception
+    {
+        String string = "<base-element>"
+                + "<element xmlns=\"urn:animal\">cat</element>"
+                + "<element xmlns=\"urn:plant\">rose</element>"
+                + "</base-element>";
+        Element element = util.parseIntoElement(string);
+
+        Map<String, String> namespace = new HashMap<String, String>();
+        namespace.put("ns", "urn:animal");
+        util.setNamespaces(namespace);
+        assertEquals("cat",
+            util.selectElementMatchingXPath("//base-element/ns:element", element)
+                .getTextContent());
+
+        namespace.put("ns", "urn:plant");
+        assertEquals("rose",
+            util.selectElementMatchingXPath("//base-element/ns:element", element)
+                .getTextContent());
+    }
 }
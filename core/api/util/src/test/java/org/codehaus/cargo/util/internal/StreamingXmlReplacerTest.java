@@ -0,0 +1,167 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.util.FileHandler.XmlReplacementDetails;
+
+/**
+ * Unit tests for {@link StreamingXmlReplacer}.
+ */
+public class StreamingXmlReplacerTest extends TestCase
+{
+    /**
+     * XML test document.
+     */
+    private static final String DOCUMENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<!-- header -->\n"
+        + "<server xmlns=\"urn:jboss:domain:1.7\">\n"
+        + "  <socket-binding-group name=\"standard-sockets\">\n"
+        + "    <socket-binding name=\"ajp\" port=\"8009\"/>\n"
+        + "    <socket-binding name=\"http\" port=\"8080\"/>\n"
+        + "  </socket-binding-group>\n"
+        + "  <level name=\"INFO\">old<!-- comment --></level>\n"
+        + "</server>\n";
+
+    /**
+     * Replacements to apply.
+     */
+    private Map<XmlReplacementDetails, String> replacements;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.replacements = new LinkedHashMap<XmlReplacementDetails, String>();
+    }
+
+    /**
+     * Test which XPath expressions are supported.
+     */
+    public void testIsSupported()
+    {
+        assertTrue(StreamingXmlReplacer.isSupported("//server/socket-binding-group"));
+        assertTrue(StreamingXmlReplacer.isSupported("/server/socket-binding-group"));
+        assertTrue(StreamingXmlReplacer.isSupported(
+            "//server/socket-binding-group/socket-binding[@name='http']"));
+        assertTrue(StreamingXmlReplacer.isSupported("//resin/log[@name=\"\"]"));
+        assertFalse(StreamingXmlReplacer.isSupported("server/socket-binding-group"));
+        assertFalse(StreamingXmlReplacer.isSupported("//Server/Service/Connector[not(@protocol)]"));
+        assertFalse(StreamingXmlReplacer.isSupported(
+            "//property[@name='port' and text()='1099']/.."));
+        assertFalse(StreamingXmlReplacer.isSupported("//ns:server"));
+        assertFalse(StreamingXmlReplacer.isSupported((String) null));
+    }
+
+    /**
+     * Test attribute and text replacements in one pass.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testReplaceAttributeAndText() throws Exception
+    {
+        replacements.put(new XmlReplacementDetails(
+            "//server/socket-binding-group/socket-binding[@name='http']", "port", false), "9090");
+        replacements.put(new XmlReplacementDetails(
+            "//server/socket-binding-group/socket-binding[@name='http']", "interface", false),
+                "public");
+        replacements.put(new XmlReplacementDetails("/server/level", null, false), "DEBUG");
+
+        String result = replace();
+
+        assertTrue(result, result.contains(
+            "<socket-binding interface=\"public\" name=\"http\" port=\"9090\"/>"));
+        assertTrue(result, result.contains("<socket-binding name=\"ajp\" port=\"8009\"/>"));
+        assertTrue(result, result.contains("<level name=\"INFO\">DEBUG</level>"));
+        assertTrue(result, result.contains("<!-- header -->"));
+        assertTrue(result, result.contains("<server xmlns=\"urn:jboss:domain:1.7\">"));
+    }
+
+    /**
+     * Test that only the first matching element is replaced, as with a DOM.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testReplaceFirstMatchOnly() throws Exception
+    {
+        replacements.put(new XmlReplacementDetails(
+            "//socket-binding-group/socket-binding", "port", false), "1");
+
+        String result = replace();
+
+        assertTrue(result, result.contains("<socket-binding name=\"ajp\" port=\"1\"/>"));
+        assertTrue(result, result.contains("<socket-binding name=\"http\" port=\"8080\"/>"));
+    }
+
+    /**
+     * Test that non-matching replacements are reported.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testUnmatchedReplacement() throws Exception
+    {
+        XmlReplacementDetails absolute =
+            new XmlReplacementDetails("/socket-binding-group", "name", false);
+        replacements.put(absolute, "test");
+
+        StreamingXmlReplacer replacer = new StreamingXmlReplacer(replacements);
+        assertTrue(replacer.replace(new ByteArrayInputStream(DOCUMENT.getBytes("UTF-8")),
+            new ByteArrayOutputStream()));
+
+        assertEquals(1, replacer.getUnmatched().size());
+        assertSame(absolute, replacer.getUnmatched().get(0));
+    }
+
+    /**
+     * Test that replacing the text of an element that contains the target of another replacement
+     * is refused, so that the caller can fall back to a DOM.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testShadowedReplacement() throws Exception
+    {
+        replacements.put(new XmlReplacementDetails("//server/socket-binding-group", null, false),
+            "test");
+        replacements.put(new XmlReplacementDetails(
+            "//server/socket-binding-group/socket-binding[@name='http']", "port", false), "9090");
+
+        StreamingXmlReplacer replacer = new StreamingXmlReplacer(replacements);
+        assertFalse(replacer.replace(new ByteArrayInputStream(DOCUMENT.getBytes("UTF-8")),
+            new ByteArrayOutputStream()));
+    }
+
+    /**
+     * @return Document with the replacements applied.
+     * @throws Exception If anything goes wrong.
+     */
+    private String replace() throws Exception
+    {
+        StreamingXmlReplacer replacer = new StreamingXmlReplacer(replacements);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(replacer.replace(new ByteArrayInputStream(DOCUMENT.getBytes("UTF-8")), out));
+        assertTrue(replacer.getUnmatched().isEmpty());
+        return out.toString("UTF-8");
+    }
+}
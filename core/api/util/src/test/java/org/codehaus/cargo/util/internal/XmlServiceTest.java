@@ -0,0 +1,92 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.xpath.XPathExpression;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link XmlService}.
+ */
+public class XmlServiceTest extends TestCase
+{
+    /**
+     * Test that compiled XPath expressions are reused within a thread.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCompiledXPathIsReused() throws Exception
+    {
+        XPathExpression first = XmlService.compileXPath("//server/port", null);
+        XPathExpression second = XmlService.compileXPath("//server/port", null);
+        assertSame(first, second);
+    }
+
+    /**
+     * Test that compiled XPath expressions depend on the namespaces.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCompiledXPathDependsOnNamespaces() throws Exception
+    {
+        Map<String, String> namespaces = new HashMap<String, String>();
+        namespaces.put("ns", "urn:first");
+        XPathExpression first = XmlService.compileXPath("//ns:port", namespaces);
+        namespaces.put("ns", "urn:second");
+        XPathExpression second = XmlService.compileXPath("//ns:port", namespaces);
+        assertNotSame(first, second);
+    }
+
+    /**
+     * Test that each thread gets its own document builder and compiled XPath expressions.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testObjectsAreConfinedToThreads() throws Exception
+    {
+        final Object[] otherThread = new Object[2];
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    otherThread[0] = XmlService.getDocumentBuilder(true);
+                    otherThread[1] = XmlService.compileXPath("//server/port", null);
+                }
+                catch (Exception e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+
+        DocumentBuilder builder = XmlService.getDocumentBuilder(true);
+        assertSame(builder, XmlService.getDocumentBuilder(true));
+        assertNotSame(builder, XmlService.getDocumentBuilder(false));
+        assertNotSame(builder, otherThread[0]);
+        assertNotSame(XmlService.compileXPath("//server/port", null), otherThread[1]);
+    }
+}
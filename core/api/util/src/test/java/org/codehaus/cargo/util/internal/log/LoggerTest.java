@@ -101,4 +101,29 @@ public class LoggerTest extends TestCase
         logger.warn("test9", "category");
         assertEquals("[warn][category][test9]", logger.popMessage());
     }
+
+    /**
+     * Test that formatted messages are only formatted when logged.
+     */
+    public void testFormattedMessagesAreLazy()
+    {
+        TestableAbstractLogger logger = new TestableAbstractLogger();
+        Object failingArgument = new Object()
+        {
+            @Override
+            public String toString()
+            {
+                throw new IllegalStateException("Message should not have been formatted");
+            }
+        };
+
+        logger.setLevel(LogLevel.INFO);
+        assertFalse(logger.isEnabled(LogLevel.DEBUG));
+        logger.debug("test %s", "category", failingArgument);
+        assertNull(logger.popMessage());
+        logger.info("test%d %s", "category", 10, "info");
+        assertEquals("[info][category][test10 info]", logger.popMessage());
+        logger.warn("test%d", "category", 11);
+        assertEquals("[warn][category][test11]", logger.popMessage());
+    }
 }
@@ -0,0 +1,216 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.util.log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link FileLogger}.
+ */
+public class FileLoggerTest extends TestCase
+{
+    /**
+     * Log file.
+     */
+    private File file;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.file = File.createTempFile("cargo-filelogger", ".log");
+        this.file.deleteOnExit();
+    }
+
+    /**
+     * Test the format of logged messages.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testSynchronousLogging() throws Exception
+    {
+        FileLogger logger = new FileLogger(this.file, false);
+        assertFalse(logger.isAsynchronous());
+        logger.info("message", "org.codehaus.cargo.util.log.FileLoggerTest");
+        logger.debug("hidden", "category");
+
+        List<String> lines = readLines();
+        logger.close();
+
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0), lines.get(0).matches(
+            "\\[\\d\\d:\\d\\d:\\d\\d\\.\\d\\d\\d\\]\\[info\\]\\[l.log.FileLoggerTest\\] message"));
+    }
+
+    /**
+     * Test that messages logged concurrently in asynchronous mode are all written once the logger
+     * is closed.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testAsynchronousLogging() throws Exception
+    {
+        final FileLogger logger = new FileLogger(this.file, false, true);
+        assertTrue(logger.isAsynchronous());
+        logger.setLevel(LogLevel.DEBUG);
+
+        final int messages = FileLogger.BUFFER_CAPACITY;
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++)
+        {
+            final int thread = i;
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < messages; j++)
+                    {
+                        logger.debug("thread %d message %d", "category", thread, j);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        logger.close();
+
+        List<String> lines = readLines();
+        assertEquals(threads.length * messages, lines.size());
+        assertTrue(lines.get(0), lines.get(0).endsWith(" message 0"));
+
+        logger.info("closed", "category");
+        assertEquals(threads.length * messages, readLines().size());
+    }
+
+    /**
+     * Test that all asynchronous loggers share a single writer thread, which stops once they have
+     * all been closed.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testAsynchronousLoggersShareWriterThread() throws Exception
+    {
+        waitForWriterThreads(0);
+
+        List<FileLogger> loggers = new ArrayList<FileLogger>();
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < 3; i++)
+        {
+            File logFile = File.createTempFile("cargo-filelogger", ".log");
+            logFile.deleteOnExit();
+            files.add(logFile);
+            FileLogger logger = new FileLogger(logFile, false, true);
+            logger.info("logger " + i, "category");
+            loggers.add(logger);
+        }
+        assertEquals(1, countWriterThreads());
+
+        for (FileLogger logger : loggers)
+        {
+            logger.close();
+        }
+        for (int i = 0; i < files.size(); i++)
+        {
+            this.file = files.get(i);
+            List<String> lines = readLines();
+            assertEquals(1, lines.size());
+            assertTrue(lines.get(0), lines.get(0).endsWith(" logger " + i));
+        }
+        waitForWriterThreads(0);
+    }
+
+    /**
+     * Test that logging to a closed synchronous logger discards the message.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testLoggingAfterClose() throws Exception
+    {
+        FileLogger logger = new FileLogger(this.file, false);
+        logger.info("open", "category");
+        logger.close();
+        logger.info("closed", "category");
+        logger.close();
+
+        assertEquals(1, readLines().size());
+    }
+
+    /**
+     * Wait for the number of asynchronous logger writer threads to reach the given value.
+     * @param expected Expected number of writer threads.
+     * @throws Exception If anything goes wrong.
+     */
+    private void waitForWriterThreads(int expected) throws Exception
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (countWriterThreads() != expected && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, countWriterThreads());
+    }
+
+    /**
+     * @return Number of live asynchronous logger writer threads.
+     */
+    private int countWriterThreads()
+    {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+        {
+            if (FileLogger.WRITER_THREAD_NAME.equals(thread.getName()) && thread.isAlive())
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return Lines of the log file.
+     * @throws Exception If anything goes wrong.
+     */
+    private List<String> readLines() throws Exception
+    {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(this.file));
+        try
+        {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                lines.add(line);
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return lines;
+    }
+}
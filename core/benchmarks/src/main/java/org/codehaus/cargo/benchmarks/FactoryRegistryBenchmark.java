@@ -0,0 +1,94 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.codehaus.cargo.container.ContainerType;
+import org.codehaus.cargo.generic.ContainerFactory;
+import org.codehaus.cargo.generic.DefaultContainerCapabilityFactory;
+import org.codehaus.cargo.generic.DefaultContainerFactory;
+import org.codehaus.cargo.generic.configuration.ConfigurationFactory;
+import org.codehaus.cargo.generic.configuration.DefaultConfigurationCapabilityFactory;
+import org.codehaus.cargo.generic.configuration.DefaultConfigurationFactory;
+import org.codehaus.cargo.generic.deployable.DefaultDeployableFactory;
+import org.codehaus.cargo.generic.deployer.DefaultDeployerFactory;
+import org.codehaus.cargo.generic.packager.DefaultPackagerFactory;
+
+/**
+ * Benchmarks of the discovery of container implementations done by
+ * {@link org.codehaus.cargo.generic.AbstractFactoryRegistry} each time one of the default
+ * factories is created. The Jetty and Tomcat containers are on the classpath of the benchmarks,
+ * so that discovery finds and registers real container implementations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FactoryRegistryBenchmark
+{
+    /**
+     * Benchmark creating a {@link DefaultContainerFactory} and looking up a container in it.
+     * @return Whether the Tomcat 8.x installed container has been registered.
+     */
+    @Benchmark
+    public boolean createContainerFactory()
+    {
+        ContainerFactory factory = new DefaultContainerFactory();
+        return factory.isContainerRegistered("tomcat8x", ContainerType.INSTALLED);
+    }
+
+    /**
+     * Benchmark creating a {@link DefaultConfigurationFactory}.
+     * @return Created factory.
+     */
+    @Benchmark
+    public ConfigurationFactory createConfigurationFactory()
+    {
+        return new DefaultConfigurationFactory();
+    }
+
+    /**
+     * Benchmark creating all default factories, as done when a container is set up through the
+     * Ant tasks or the Maven plugin.
+     * @param blackhole Blackhole consuming the created factories.
+     */
+    @Benchmark
+    public void createAllFactories(Blackhole blackhole)
+    {
+        blackhole.consume(new DefaultContainerFactory());
+        blackhole.consume(new DefaultContainerCapabilityFactory());
+        blackhole.consume(new DefaultConfigurationFactory());
+        blackhole.consume(new DefaultConfigurationCapabilityFactory());
+        blackhole.consume(new DefaultDeployableFactory());
+        blackhole.consume(new DefaultDeployerFactory());
+        blackhole.consume(new DefaultPackagerFactory());
+    }
+}
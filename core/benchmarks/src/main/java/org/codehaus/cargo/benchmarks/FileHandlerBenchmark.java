@@ -0,0 +1,208 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+import org.codehaus.cargo.util.XmlReplacement;
+
+/**
+ * Benchmarks of the {@link DefaultFileHandler} operations every standalone configuration and
+ * deployer relies on: exploding WARs, copying directory trees and replacing tokens and XML values
+ * in configuration files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileHandlerBenchmark
+{
+    /**
+     * Number of entries of the WAR and of files in the directory tree.
+     */
+    @Param({ "100", "1000" })
+    private int entries;
+
+    /**
+     * Size of each entry and file, in bytes.
+     */
+    @Param({ "4096" })
+    private int entrySize;
+
+    /**
+     * File handler.
+     */
+    private FileHandler fileHandler;
+
+    /**
+     * Directory all fixtures are created in.
+     */
+    private File workDirectory;
+
+    /**
+     * WAR to explode.
+     */
+    private File war;
+
+    /**
+     * Directory tree to copy.
+     */
+    private File sourceDirectory;
+
+    /**
+     * Target of the explode and copy benchmarks.
+     */
+    private File targetDirectory;
+
+    /**
+     * Text file to replace tokens in.
+     */
+    private File textFile;
+
+    /**
+     * Original content of {@link #textFile}.
+     */
+    private String text;
+
+    /**
+     * XML file to replace values in.
+     */
+    private File xmlFile;
+
+    /**
+     * Token replacements.
+     */
+    private Map<String, String> replacements;
+
+    /**
+     * Create all fixtures.
+     * @throws IOException If a fixture cannot be created.
+     */
+    @Setup(Level.Trial)
+    public void createFixtures() throws IOException
+    {
+        this.fileHandler = new DefaultFileHandler();
+        this.workDirectory = SyntheticFixtures.createTempDirectory("cargo-filehandler");
+
+        this.war = new File(this.workDirectory, "application.war");
+        SyntheticFixtures.createWar(this.war, this.entries, this.entrySize, 10, "app");
+
+        this.sourceDirectory = new File(this.workDirectory, "source");
+        SyntheticFixtures.createDirectory(this.sourceDirectory, this.entries, this.entrySize);
+        this.targetDirectory = new File(this.workDirectory, "target");
+
+        this.textFile = new File(this.workDirectory, "configuration.txt");
+        this.text = SyntheticFixtures.createText(0, this.entries * this.entrySize / 10);
+        this.replacements = new HashMap<String, String>();
+        this.replacements.put(SyntheticFixtures.TOKEN, "replaced value");
+
+        this.xmlFile = new File(this.workDirectory, "server.xml");
+        SyntheticFixtures.writeFile(this.xmlFile,
+            SyntheticFixtures.createServerXml(this.entries / 10));
+    }
+
+    /**
+     * Restore the state the next invocation expects.
+     * @throws IOException If the text file cannot be restored.
+     */
+    @Setup(Level.Invocation)
+    public void resetFixtures() throws IOException
+    {
+        SyntheticFixtures.delete(this.targetDirectory);
+        SyntheticFixtures.writeFile(this.textFile, this.text);
+    }
+
+    /**
+     * Delete all fixtures.
+     */
+    @TearDown(Level.Trial)
+    public void deleteFixtures()
+    {
+        SyntheticFixtures.delete(this.workDirectory);
+    }
+
+    /**
+     * Benchmark {@link FileHandler#explode(String, String)}.
+     */
+    @Benchmark
+    public void explode()
+    {
+        this.fileHandler.explode(this.war.getPath(), this.targetDirectory.getPath());
+    }
+
+    /**
+     * Benchmark {@link FileHandler#copyDirectory(String, String)}.
+     */
+    @Benchmark
+    public void copyDirectory()
+    {
+        this.fileHandler.copyDirectory(this.sourceDirectory.getPath(),
+            this.targetDirectory.getPath());
+    }
+
+    /**
+     * Benchmark {@link FileHandler#replaceInFile(String, Map, String)}.
+     */
+    @Benchmark
+    public void replaceInFile()
+    {
+        this.fileHandler.replaceInFile(this.textFile.getPath(), this.replacements, "UTF-8");
+    }
+
+    /**
+     * Benchmark {@link FileHandler#replaceInXmlFile(XmlReplacement...)} with the kind of
+     * replacements a Tomcat standalone configuration does on its <code>server.xml</code>.
+     */
+    @Benchmark
+    public void replaceInXmlFile()
+    {
+        String file = this.xmlFile.getPath();
+        this.fileHandler.replaceInXmlFile(
+            new XmlReplacement(file, "//Server", "port", false, "9005"),
+            new XmlReplacement(file, "//Server/Service/Connector[@protocol='HTTP/1.1']", "port",
+                false, "9080"),
+            new XmlReplacement(file, "//Server/Service/Connector[@protocol='AJP/1.3']", "port",
+                false, "9009"),
+            new XmlReplacement(file, "//Server/Service/Engine/Host", "appBase", false, "apps"),
+            new XmlReplacement(file, "//Server/Service/Engine", "defaultHost", false, "host0"));
+    }
+}
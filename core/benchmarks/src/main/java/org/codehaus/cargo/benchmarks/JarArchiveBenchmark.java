@@ -0,0 +1,183 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.codehaus.cargo.module.DefaultJarArchive;
+import org.codehaus.cargo.module.JarArchive;
+
+/**
+ * Benchmarks of the lookups done on {@link DefaultJarArchive}, for example by deployers checking
+ * whether a WAR contains a given class. Lookups are done on an archive read from a file as well as
+ * on an archive read from a stream, which is kept in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JarArchiveBenchmark
+{
+    /**
+     * Number of entries of the archive.
+     */
+    @Param({ "100", "1000", "10000" })
+    private int entries;
+
+    /**
+     * Size of each entry, in bytes.
+     */
+    @Param({ "2048" })
+    private int entrySize;
+
+    /**
+     * Whether the archive is read from a stream, and therefore kept in memory.
+     */
+    @Param({ "false", "true" })
+    private boolean inMemory;
+
+    /**
+     * Directory all fixtures are created in.
+     */
+    private File workDirectory;
+
+    /**
+     * Archive to look up entries in.
+     */
+    private JarArchive archive;
+
+    /**
+     * Name of a class in the middle of the archive.
+     */
+    private String className;
+
+    /**
+     * Name of a resource in the middle of the archive.
+     */
+    private String resourceName;
+
+    /**
+     * Create the archive.
+     * @throws IOException If the archive cannot be created.
+     */
+    @Setup(Level.Trial)
+    public void createFixtures() throws IOException
+    {
+        this.workDirectory = SyntheticFixtures.createTempDirectory("cargo-jararchive");
+        File jar = new File(this.workDirectory, "archive.jar");
+        SyntheticFixtures.createJar(jar, this.entries, this.entrySize);
+
+        if (this.inMemory)
+        {
+            InputStream in = new FileInputStream(jar);
+            try
+            {
+                this.archive = new DefaultJarArchive(in);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        else
+        {
+            this.archive = new DefaultJarArchive(jar.getPath());
+        }
+
+        // Entries with an index multiple of four are resources, all other ones are classes
+        this.className = SyntheticFixtures.getClassName(this.entries / 8 * 4 + 1);
+        this.resourceName = SyntheticFixtures.getResourceName(this.entries / 8 * 4);
+    }
+
+    /**
+     * Delete all fixtures.
+     */
+    @TearDown(Level.Trial)
+    public void deleteFixtures()
+    {
+        SyntheticFixtures.delete(this.workDirectory);
+    }
+
+    /**
+     * Benchmark {@link JarArchive#containsClass(String)} for an existing class.
+     * @return Lookup result.
+     * @throws IOException If the archive cannot be read.
+     */
+    @Benchmark
+    public boolean containsClass() throws IOException
+    {
+        return this.archive.containsClass(this.className);
+    }
+
+    /**
+     * Benchmark {@link JarArchive#containsClass(String)} for a missing class, which reads the
+     * whole archive.
+     * @return Lookup result.
+     * @throws IOException If the archive cannot be read.
+     */
+    @Benchmark
+    public boolean containsMissingClass() throws IOException
+    {
+        return this.archive.containsClass("org.codehaus.cargo.benchmarks.Missing");
+    }
+
+    /**
+     * Benchmark {@link JarArchive#findResource(String)}.
+     * @return Path of the resource.
+     * @throws IOException If the archive cannot be read.
+     */
+    @Benchmark
+    public String findResource() throws IOException
+    {
+        return this.archive.findResource(this.resourceName);
+    }
+
+    /**
+     * Benchmark {@link JarArchive#getResources(String)}.
+     * @return Resources below <code>META-INF/resources</code>.
+     * @throws IOException If the archive cannot be read.
+     */
+    @Benchmark
+    public List<String> getResources() throws IOException
+    {
+        return this.archive.getResources("META-INF/resources");
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.codehaus.cargo.container.InstalledLocalContainer;
+import org.codehaus.cargo.container.configuration.LocalConfiguration;
+import org.codehaus.cargo.container.deployable.WAR;
+import org.codehaus.cargo.container.jetty.Jetty9xInstalledLocalContainer;
+import org.codehaus.cargo.container.jetty.Jetty9xStandaloneLocalConfiguration;
+import org.codehaus.cargo.container.tomcat.Tomcat8xInstalledLocalContainer;
+import org.codehaus.cargo.container.tomcat.Tomcat8xStandaloneLocalConfiguration;
+
+/**
+ * Benchmark of the generation of standalone configurations for the Tomcat 8.x and Jetty 9.x
+ * containers, including the deployment of WARs into the configuration. The container
+ * installations are synthetic ones, containing the files the configurations read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StandaloneConfigurationBenchmark
+{
+    /**
+     * Container id, either <code>tomcat8x</code> or <code>jetty9x</code>.
+     */
+    @Param({ "tomcat8x", "jetty9x" })
+    private String containerId;
+
+    /**
+     * Number of WARs deployed in the configuration.
+     */
+    @Param({ "0", "10" })
+    private int deployables;
+
+    /**
+     * Number of entries of each WAR.
+     */
+    @Param({ "200" })
+    private int entries;
+
+    /**
+     * Directory all fixtures are created in.
+     */
+    private File workDirectory;
+
+    /**
+     * Container installation.
+     */
+    private File containerHome;
+
+    /**
+     * WARs to deploy.
+     */
+    private File[] wars;
+
+    /**
+     * Configuration to generate.
+     */
+    private LocalConfiguration configuration;
+
+    /**
+     * Container the configuration is generated for.
+     */
+    private InstalledLocalContainer container;
+
+    /**
+     * Create the container installation and the WARs.
+     * @throws IOException If a fixture cannot be created.
+     */
+    @Setup(Level.Trial)
+    public void createFixtures() throws IOException
+    {
+        this.workDirectory = SyntheticFixtures.createTempDirectory("cargo-configuration");
+        this.containerHome = new File(this.workDirectory, "home");
+        if ("tomcat8x".equals(this.containerId))
+        {
+            SyntheticFixtures.createTomcatHome(this.containerHome);
+        }
+        else if ("jetty9x".equals(this.containerId))
+        {
+            SyntheticFixtures.createJettyHome(this.containerHome);
+        }
+        else
+        {
+            throw new IllegalArgumentException("Unsupported container [" + this.containerId
+                + "]");
+        }
+
+        this.wars = new File[this.deployables];
+        for (int i = 0; i < this.deployables; i++)
+        {
+            this.wars[i] = new File(this.workDirectory, "application" + i + ".war");
+            SyntheticFixtures.createWar(this.wars[i], this.entries, 2048, 10, "app" + i);
+        }
+    }
+
+    /**
+     * Create a new configuration and container, in an empty configuration directory.
+     */
+    @Setup(Level.Invocation)
+    public void createConfiguration()
+    {
+        File configurationHome = new File(this.workDirectory, "configuration");
+        SyntheticFixtures.delete(configurationHome);
+
+        if ("tomcat8x".equals(this.containerId))
+        {
+            this.configuration =
+                new Tomcat8xStandaloneLocalConfiguration(configurationHome.getPath());
+            this.container = new Tomcat8xInstalledLocalContainer(this.configuration);
+        }
+        else
+        {
+            this.configuration =
+                new Jetty9xStandaloneLocalConfiguration(configurationHome.getPath());
+            this.container = new Jetty9xInstalledLocalContainer(this.configuration);
+        }
+        this.container.setHome(this.containerHome.getPath());
+
+        for (File war : this.wars)
+        {
+            this.configuration.addDeployable(new WAR(war.getPath()));
+        }
+    }
+
+    /**
+     * Delete all fixtures.
+     */
+    @TearDown(Level.Trial)
+    public void deleteFixtures()
+    {
+        SyntheticFixtures.delete(this.workDirectory);
+    }
+
+    /**
+     * Benchmark {@link LocalConfiguration#configure(org.codehaus.cargo.container.LocalContainer)}.
+     */
+    @Benchmark
+    public void configure()
+    {
+        this.configuration.configure(this.container);
+    }
+}
@@ -0,0 +1,478 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generators for the synthetic archives, descriptors and container homes the benchmarks work on.
+ * All generated content is deterministic, so that results of different runs can be compared; the
+ * size of every fixture is configurable so that benchmarks can be run against small as well as
+ * very large applications.
+ */
+public final class SyntheticFixtures
+{
+    /**
+     * Number of entries per directory in generated archives and directory trees.
+     */
+    public static final int ENTRIES_PER_DIRECTORY = 50;
+
+    /**
+     * Token replaced by the {@link org.codehaus.cargo.util.FileHandler#replaceInFile} benchmark.
+     */
+    public static final String TOKEN = "@cargo.benchmark.token@";
+
+    /**
+     * Utility class.
+     */
+    private SyntheticFixtures()
+    {
+        // Nothing
+    }
+
+    /**
+     * Create an empty temporary directory.
+     * @param prefix Directory name prefix.
+     * @return Created directory.
+     * @throws IOException If the directory cannot be created.
+     */
+    public static File createTempDirectory(String prefix) throws IOException
+    {
+        File directory = File.createTempFile(prefix, "");
+        if (!directory.delete() || !directory.mkdirs())
+        {
+            throw new IOException("Cannot create temporary directory [" + directory + "]");
+        }
+        return directory;
+    }
+
+    /**
+     * Delete a file or directory, including all its children.
+     * @param file File or directory, can be non-existing.
+     */
+    public static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Create the content of an archive entry or file. Content is made of repeated text with a
+     * varying part, which compresses roughly like class files and descriptors do.
+     * @param index Index of the entry, used to vary the content.
+     * @param size Size of the content, in bytes.
+     * @return Content.
+     */
+    public static byte[] createContent(int index, int size)
+    {
+        byte[] content = new byte[size];
+        String pattern = "cargo-" + Integer.toHexString(index * 31 + 7) + " "
+            + Integer.toString(index, Character.MAX_RADIX) + "\n";
+        for (int i = 0; i < size; i++)
+        {
+            content[i] = (byte) pattern.charAt((i + index) % pattern.length());
+        }
+        return content;
+    }
+
+    /**
+     * @param index Index of a class.
+     * @return Name of the synthetic class with that index, for example
+     * <code>org.codehaus.cargo.benchmarks.p3.Class151</code>.
+     */
+    public static String getClassName(int index)
+    {
+        return "org.codehaus.cargo.benchmarks.p" + index / ENTRIES_PER_DIRECTORY + ".Class"
+            + index;
+    }
+
+    /**
+     * @param index Index of a resource.
+     * @return Name of the synthetic resource with that index, without its directory.
+     */
+    public static String getResourceName(int index)
+    {
+        return "resource" + index + ".properties";
+    }
+
+    /**
+     * Create a JAR with classes at its root and resources in <code>META-INF/resources</code>.
+     * Entries with an index multiple of four are resources, all other ones are classes.
+     * @param jar JAR file to create.
+     * @param entries Number of entries.
+     * @param entrySize Size of each entry, in bytes.
+     * @throws IOException If the JAR cannot be written.
+     */
+    public static void createJar(File jar, int entries, int entrySize) throws IOException
+    {
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar));
+        try
+        {
+            for (int i = 0; i < entries; i++)
+            {
+                String name;
+                if (i % 4 == 0)
+                {
+                    name = "META-INF/resources/r" + i / ENTRIES_PER_DIRECTORY + "/"
+                        + getResourceName(i);
+                }
+                else
+                {
+                    name = getClassName(i).replace('.', '/') + ".class";
+                }
+                putEntry(zip, name, createContent(i, entrySize));
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    /**
+     * Create a WAR with a <code>WEB-INF/web.xml</code>, classes, libraries and static resources.
+     * Half of the entries are classes, a quarter are resources and a quarter are libraries.
+     * @param war WAR file to create.
+     * @param entries Number of entries besides the <code>web.xml</code>.
+     * @param entrySize Size of each entry, in bytes.
+     * @param servlets Number of servlets declared in the <code>web.xml</code>.
+     * @param prefix Prefix of the servlet names, so that different WARs can be merged.
+     * @throws IOException If the WAR cannot be written.
+     */
+    public static void createWar(File war, int entries, int entrySize, int servlets,
+        String prefix) throws IOException
+    {
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(war));
+        try
+        {
+            putEntry(zip, "WEB-INF/web.xml", createWebXml(servlets, prefix).getBytes("UTF-8"));
+            for (int i = 0; i < entries; i++)
+            {
+                String name;
+                switch (i % 4)
+                {
+                    case 0:
+                    case 1:
+                        name = "WEB-INF/classes/" + getClassName(i).replace('.', '/') + ".class";
+                        break;
+                    case 2:
+                        name = "static/r" + i / ENTRIES_PER_DIRECTORY + "/" + prefix + i + ".css";
+                        break;
+                    default:
+                        name = "WEB-INF/lib/" + prefix + "-library-" + i + ".jar";
+                        break;
+                }
+                putEntry(zip, name, createContent(i, entrySize));
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    /**
+     * Create a container distribution, i.e. a ZIP file with a single root directory containing
+     * <code>bin</code>, <code>conf</code> and <code>lib</code> trees.
+     * @param zipFile ZIP file to create.
+     * @param root Name of the root directory.
+     * @param entries Number of entries.
+     * @param entrySize Size of each entry, in bytes.
+     * @throws IOException If the ZIP file cannot be written.
+     */
+    public static void createDistribution(File zipFile, String root, int entries, int entrySize)
+        throws IOException
+    {
+        String[] directories = {"bin", "conf", "lib", "lib", "lib", "webapps/ROOT"};
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(zipFile));
+        try
+        {
+            for (int i = 0; i < entries; i++)
+            {
+                putEntry(zip, root + "/" + directories[i % directories.length] + "/d"
+                    + i / ENTRIES_PER_DIRECTORY + "/file" + i, createContent(i, entrySize));
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    /**
+     * Create a directory tree of text files, each containing {@link #TOKEN} once.
+     * @param directory Root of the tree.
+     * @param files Number of files.
+     * @param fileSize Approximate size of each file, in bytes.
+     * @throws IOException If a file cannot be written.
+     */
+    public static void createDirectory(File directory, int files, int fileSize)
+        throws IOException
+    {
+        for (int i = 0; i < files; i++)
+        {
+            File file = new File(directory, "d" + i / ENTRIES_PER_DIRECTORY + "/file" + i + ".txt");
+            writeFile(file, createText(i, fileSize));
+        }
+    }
+
+    /**
+     * Create text containing {@link #TOKEN} once every <code>ENTRIES_PER_DIRECTORY</code> lines.
+     * @param index Index of the text, used to vary the content.
+     * @param size Approximate size of the text, in characters.
+     * @return Text.
+     */
+    public static String createText(int index, int size)
+    {
+        StringBuilder text = new StringBuilder(size + TOKEN.length());
+        text.append(TOKEN);
+        for (int line = 0; text.length() < size; line++)
+        {
+            text.append('\n');
+            text.append("line ").append(line).append(" of text ").append(index);
+            if (line % ENTRIES_PER_DIRECTORY == 0)
+            {
+                text.append(' ').append(TOKEN);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Create a <code>web.xml</code> with context parameters, filters, servlets, servlet mappings
+     * and security roles.
+     * @param servlets Number of servlets, also used for the number of other elements.
+     * @param prefix Prefix of all names in the descriptor.
+     * @return <code>web.xml</code> content.
+     */
+    public static String createWebXml(int servlets, String prefix)
+    {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<web-app xmlns=\"http://java.sun.com/xml/ns/javaee\"\n");
+        xml.append("    xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n");
+        xml.append("    xsi:schemaLocation=\"http://java.sun.com/xml/ns/javaee ");
+        xml.append("http://java.sun.com/xml/ns/javaee/web-app_2_5.xsd\" version=\"2.5\">\n");
+        for (int i = 0; i < servlets; i++)
+        {
+            xml.append("  <context-param>\n");
+            xml.append("    <param-name>").append(prefix).append(".param").append(i);
+            xml.append("</param-name>\n");
+            xml.append("    <param-value>value").append(i).append("</param-value>\n");
+            xml.append("  </context-param>\n");
+        }
+        for (int i = 0; i < servlets; i++)
+        {
+            xml.append("  <filter>\n");
+            xml.append("    <filter-name>").append(prefix).append("Filter").append(i);
+            xml.append("</filter-name>\n");
+            xml.append("    <filter-class>").append(getClassName(i)).append("Filter");
+            xml.append("</filter-class>\n");
+            xml.append("  </filter>\n");
+            xml.append("  <filter-mapping>\n");
+            xml.append("    <filter-name>").append(prefix).append("Filter").append(i);
+            xml.append("</filter-name>\n");
+            xml.append("    <url-pattern>/").append(prefix).append('/').append(i);
+            xml.append("/*</url-pattern>\n");
+            xml.append("  </filter-mapping>\n");
+        }
+        for (int i = 0; i < servlets; i++)
+        {
+            xml.append("  <servlet>\n");
+            xml.append("    <servlet-name>").append(prefix).append("Servlet").append(i);
+            xml.append("</servlet-name>\n");
+            xml.append("    <servlet-class>").append(getClassName(i)).append("</servlet-class>\n");
+            xml.append("    <init-param>\n");
+            xml.append("      <param-name>index</param-name>\n");
+            xml.append("      <param-value>").append(i).append("</param-value>\n");
+            xml.append("    </init-param>\n");
+            xml.append("  </servlet>\n");
+        }
+        for (int i = 0; i < servlets; i++)
+        {
+            xml.append("  <servlet-mapping>\n");
+            xml.append("    <servlet-name>").append(prefix).append("Servlet").append(i);
+            xml.append("</servlet-name>\n");
+            xml.append("    <url-pattern>/").append(prefix).append('/').append(i);
+            xml.append("</url-pattern>\n");
+            xml.append("  </servlet-mapping>\n");
+        }
+        xml.append("  <security-role>\n");
+        xml.append("    <role-name>").append(prefix).append("</role-name>\n");
+        xml.append("  </security-role>\n");
+        xml.append("</web-app>\n");
+        return xml.toString();
+    }
+
+    /**
+     * Create an XML descriptor shaped like a Tomcat <code>server.xml</code>, with a configurable
+     * number of connectors and hosts.
+     * @param elements Number of connectors and number of hosts.
+     * @return XML descriptor content.
+     */
+    public static String createServerXml(int elements)
+    {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<Server port=\"8005\" shutdown=\"SHUTDOWN\">\n");
+        xml.append("  <Listener");
+        xml.append(" className=\"org.apache.catalina.startup.VersionLoggerListener\"/>\n");
+        xml.append("  <Service name=\"Catalina\">\n");
+        xml.append("    <Connector port=\"8080\" protocol=\"HTTP/1.1\"");
+        xml.append(" connectionTimeout=\"20000\" redirectPort=\"8443\"/>\n");
+        xml.append("    <Connector port=\"8009\" protocol=\"AJP/1.3\" redirectPort=\"8443\"/>\n");
+        for (int i = 0; i < elements; i++)
+        {
+            xml.append("    <Connector port=\"").append(10000 + i);
+            xml.append("\" protocol=\"HTTP/1.1\" scheme=\"http\" secure=\"false\"/>\n");
+        }
+        xml.append("    <Engine name=\"Catalina\" defaultHost=\"localhost\">\n");
+        xml.append("      <Host name=\"localhost\" appBase=\"webapps\" unpackWARs=\"true\"");
+        xml.append(" autoDeploy=\"true\">\n");
+        xml.append("        <Valve className=\"org.apache.catalina.valves.AccessLogValve\"");
+        xml.append(" directory=\"logs\" prefix=\"localhost_access_log\" suffix=\".txt\"/>\n");
+        xml.append("      </Host>\n");
+        for (int i = 0; i < elements; i++)
+        {
+            xml.append("      <Host name=\"host").append(i).append("\" appBase=\"webapps");
+            xml.append(i).append("\">\n");
+            xml.append("        <Valve className=\"org.apache.catalina.valves.AccessLogValve\"");
+            xml.append(" directory=\"logs\" prefix=\"host").append(i).append("\"/>\n");
+            xml.append("      </Host>\n");
+        }
+        xml.append("    </Engine>\n");
+        xml.append("  </Service>\n");
+        xml.append("</Server>\n");
+        return xml.toString();
+    }
+
+    /**
+     * Create a Tomcat 8.x installation with all the files the standalone configuration reads.
+     * @param home Installation directory.
+     * @throws IOException If a file cannot be written.
+     */
+    public static void createTomcatHome(File home) throws IOException
+    {
+        writeFile(new File(home, "conf/server.xml"), createServerXml(0));
+        writeFile(new File(home, "conf/catalina.properties"),
+            "common.loader=\"${catalina.base}/lib\",\"${catalina.home}/lib/*.jar\"\n"
+                + "shared.loader=\n");
+        writeFile(new File(home, "conf/web.xml"), createWebXml(1, "default"));
+        writeFile(new File(home, "conf/context.xml"),
+            "<Context>\n  <WatchedResource>WEB-INF/web.xml</WatchedResource>\n</Context>\n");
+        writeFile(new File(home, "webapps/manager/WEB-INF/web.xml"),
+            createWebXml(1, "manager"));
+        writeFile(new File(home, "webapps/host-manager/WEB-INF/web.xml"),
+            createWebXml(1, "hostmanager"));
+        new File(home, "lib").mkdirs();
+        new File(home, "bin").mkdirs();
+    }
+
+    /**
+     * Create a Jetty 9.x installation with all the files the standalone configuration reads.
+     * @param home Installation directory.
+     * @throws IOException If a file cannot be written.
+     */
+    public static void createJettyHome(File home) throws IOException
+    {
+        writeFile(new File(home, "etc/jetty.xml"),
+            "<?xml version=\"1.0\"?>\n"
+                + "<Configure id=\"Server\" class=\"org.eclipse.jetty.server.Server\">\n"
+                + "  <Set name=\"stopAtShutdown\"><Property name=\"jetty.stopAtShutdown\""
+                + " default=\"true\"/></Set>\n"
+                + "</Configure>\n");
+        writeFile(new File(home, "etc/jetty-plus.xml"),
+            "<?xml version=\"1.0\"?>\n"
+                + "<Configure id=\"Server\" class=\"org.eclipse.jetty.server.Server\">\n"
+                + "</Configure>\n");
+        writeFile(new File(home, "start.d/http.ini"), "--module=http\njetty.http.port=8080\n");
+        writeFile(new File(home, "start.ini"), "--module=server\n");
+        new File(home, "lib").mkdirs();
+    }
+
+    /**
+     * Write a text file in UTF-8, creating its parent directories.
+     * @param file File to write.
+     * @param content File content.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void writeFile(File file, String content) throws IOException
+    {
+        file.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try
+        {
+            writer.write(content);
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Write a binary file, creating its parent directories.
+     * @param file File to write.
+     * @param content File content.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void writeFile(File file, byte[] content) throws IOException
+    {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(content);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Add an entry to a ZIP file.
+     * @param zip ZIP file.
+     * @param name Entry name.
+     * @param content Entry content.
+     * @throws IOException If the entry cannot be written.
+     */
+    private static void putEntry(ZipOutputStream zip, String name, byte[] content)
+        throws IOException
+    {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content);
+        zip.closeEntry();
+    }
+}
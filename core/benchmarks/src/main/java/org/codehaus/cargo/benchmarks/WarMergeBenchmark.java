@@ -0,0 +1,185 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jdom.JDOMException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.codehaus.cargo.module.webapp.DefaultWarArchive;
+import org.codehaus.cargo.module.webapp.WebXml;
+import org.codehaus.cargo.module.webapp.WebXmlIo;
+import org.codehaus.cargo.module.webapp.merge.WarArchiveMerger;
+import org.codehaus.cargo.module.webapp.merge.WebXmlMerger;
+
+/**
+ * Benchmarks of the <code>web.xml</code> and WAR merging done when building uberwars, using
+ * {@link WebXmlMerger} and
+ * {@link org.codehaus.cargo.module.webapp.merge.MergedWarArchive}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WarMergeBenchmark
+{
+    /**
+     * Number of servlets, filters and context parameters of each <code>web.xml</code>.
+     */
+    @Param({ "10", "100", "500" })
+    private int servlets;
+
+    /**
+     * Number of entries of each WAR.
+     */
+    @Param({ "500" })
+    private int entries;
+
+    /**
+     * Size of each WAR entry, in bytes.
+     */
+    @Param({ "2048" })
+    private int entrySize;
+
+    /**
+     * Directory all fixtures are created in.
+     */
+    private File workDirectory;
+
+    /**
+     * Content of the base <code>web.xml</code>.
+     */
+    private byte[] baseWebXml;
+
+    /**
+     * Content of the <code>web.xml</code> merged into the base one.
+     */
+    private byte[] mergedWebXml;
+
+    /**
+     * WARs to merge.
+     */
+    private File[] wars;
+
+    /**
+     * Merged WAR.
+     */
+    private File mergedWar;
+
+    /**
+     * Parsed base <code>web.xml</code>, which the merge modifies.
+     */
+    private WebXml base;
+
+    /**
+     * Parsed <code>web.xml</code> merged into the base one.
+     */
+    private WebXml merged;
+
+    /**
+     * Create the descriptors and WARs.
+     * @throws IOException If a fixture cannot be created.
+     */
+    @Setup(Level.Trial)
+    public void createFixtures() throws IOException
+    {
+        this.workDirectory = SyntheticFixtures.createTempDirectory("cargo-merge");
+        this.baseWebXml = SyntheticFixtures.createWebXml(this.servlets, "base").getBytes("UTF-8");
+        this.mergedWebXml =
+            SyntheticFixtures.createWebXml(this.servlets, "merged").getBytes("UTF-8");
+
+        this.wars = new File[] {new File(this.workDirectory, "base.war"),
+            new File(this.workDirectory, "merged.war")};
+        SyntheticFixtures.createWar(this.wars[0], this.entries, this.entrySize, this.servlets,
+            "base");
+        SyntheticFixtures.createWar(this.wars[1], this.entries, this.entrySize, this.servlets,
+            "merged");
+        this.mergedWar = new File(this.workDirectory, "uber.war");
+    }
+
+    /**
+     * Parse the descriptors again, since merging modifies the base descriptor.
+     * @throws IOException If a descriptor cannot be read.
+     * @throws JDOMException If a descriptor cannot be parsed.
+     */
+    @Setup(Level.Invocation)
+    public void parseDescriptors() throws IOException, JDOMException
+    {
+        this.base = WebXmlIo.parseWebXml(new ByteArrayInputStream(this.baseWebXml), null);
+        this.merged = WebXmlIo.parseWebXml(new ByteArrayInputStream(this.mergedWebXml), null);
+        this.mergedWar.delete();
+    }
+
+    /**
+     * Delete all fixtures.
+     */
+    @TearDown(Level.Trial)
+    public void deleteFixtures()
+    {
+        SyntheticFixtures.delete(this.workDirectory);
+    }
+
+    /**
+     * Benchmark {@link WebXmlMerger#merge(org.codehaus.cargo.module.Descriptor)}.
+     * @return Merged <code>web.xml</code>.
+     */
+    @Benchmark
+    public WebXml mergeWebXml()
+    {
+        WebXmlMerger merger = new WebXmlMerger(this.base);
+        merger.merge(this.merged);
+        return merger.getResult();
+    }
+
+    /**
+     * Benchmark merging two WARs with a {@link WarArchiveMerger} and storing the result, including
+     * the merge of their <code>web.xml</code>s and <code>WEB-INF/lib</code> contents.
+     * @throws IOException If a WAR cannot be read or written.
+     * @throws JDOMException If a <code>web.xml</code> cannot be parsed.
+     */
+    @Benchmark
+    public void mergeWars() throws IOException, JDOMException
+    {
+        WarArchiveMerger merger = new WarArchiveMerger();
+        for (File war : this.wars)
+        {
+            merger.addMergeItem(new DefaultWarArchive(war.getPath()));
+        }
+        merger.performMerge(this.mergedWar);
+    }
+}
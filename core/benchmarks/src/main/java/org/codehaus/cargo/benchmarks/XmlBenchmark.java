@@ -0,0 +1,198 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import org.codehaus.cargo.util.XmlUtils;
+import org.codehaus.cargo.util.internal.XmlService;
+
+/**
+ * Benchmarks of {@link XmlUtils} and of the JAXP objects {@link XmlService} shares between
+ * calls. The <code>jaxp</code> benchmarks create new factories, builders and XPath objects for
+ * each operation, as {@link XmlUtils} used to; comparing them with the <code>xmlService</code>
+ * benchmarks shows what sharing these objects saves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class XmlBenchmark
+{
+    /**
+     * XPath expression evaluated by the benchmarks.
+     */
+    private static final String XPATH = "//Server/Service/Engine/Host[@name='localhost']";
+
+    /**
+     * Number of connectors and hosts of the XML document.
+     */
+    @Param({ "10", "1000" })
+    private int elements;
+
+    /**
+     * Directory all fixtures are created in.
+     */
+    private File workDirectory;
+
+    /**
+     * XML document, as a file.
+     */
+    private File xmlFile;
+
+    /**
+     * XML document, in memory.
+     */
+    private byte[] xml;
+
+    /**
+     * Parsed XML document.
+     */
+    private Document document;
+
+    /**
+     * Create the XML document.
+     * @throws IOException If the document cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void createFixtures() throws IOException
+    {
+        this.workDirectory = SyntheticFixtures.createTempDirectory("cargo-xml");
+        String content = SyntheticFixtures.createServerXml(this.elements);
+        this.xml = content.getBytes("UTF-8");
+        this.xmlFile = new File(this.workDirectory, "server.xml");
+        SyntheticFixtures.writeFile(this.xmlFile, content);
+        this.document = new XmlUtils().loadXmlFromFile(this.xmlFile.getPath());
+    }
+
+    /**
+     * Delete all fixtures.
+     */
+    @TearDown(Level.Trial)
+    public void deleteFixtures()
+    {
+        SyntheticFixtures.delete(this.workDirectory);
+    }
+
+    /**
+     * Benchmark {@link XmlUtils#loadXmlFromFile(String)} with a new {@link XmlUtils}, as most
+     * configurations create one per file.
+     * @return Parsed document.
+     */
+    @Benchmark
+    public Document loadXmlFromFile()
+    {
+        return new XmlUtils().loadXmlFromFile(this.xmlFile.getPath());
+    }
+
+    /**
+     * Benchmark {@link XmlUtils#selectElementsMatchingXPath(String, Element)}.
+     * @return Matching elements.
+     */
+    @Benchmark
+    public List<Element> selectElementsMatchingXPath()
+    {
+        return new XmlUtils().selectElementsMatchingXPath(XPATH,
+            this.document.getDocumentElement());
+    }
+
+    /**
+     * Benchmark {@link XmlUtils#saveXml(Document, String)}.
+     */
+    @Benchmark
+    public void saveXml()
+    {
+        new XmlUtils().saveXml(this.document, this.xmlFile.getPath());
+    }
+
+    /**
+     * Benchmark parsing the document with a new JAXP factory and builder.
+     * @return Parsed document.
+     * @throws Exception If the document cannot be parsed.
+     */
+    @Benchmark
+    public Document jaxpParse() throws Exception
+    {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(
+            new ByteArrayInputStream(this.xml));
+    }
+
+    /**
+     * Benchmark parsing the document with the builder shared by {@link XmlService}.
+     * @return Parsed document.
+     * @throws Exception If the document cannot be parsed.
+     */
+    @Benchmark
+    public Document xmlServiceParse() throws Exception
+    {
+        return XmlService.getDocumentBuilder(false).parse(new ByteArrayInputStream(this.xml));
+    }
+
+    /**
+     * Benchmark evaluating the XPath expression with a new JAXP factory and XPath object.
+     * @return Matching nodes.
+     * @throws Exception If the expression cannot be evaluated.
+     */
+    @Benchmark
+    public NodeList jaxpXPath() throws Exception
+    {
+        return (NodeList) XPathFactory.newInstance().newXPath().compile(XPATH).evaluate(
+            this.document, XPathConstants.NODESET);
+    }
+
+    /**
+     * Benchmark evaluating the XPath expression compiled and cached by {@link XmlService}.
+     * @return Matching nodes.
+     * @throws Exception If the expression cannot be evaluated.
+     */
+    @Benchmark
+    public NodeList xmlServiceXPath() throws Exception
+    {
+        return (NodeList) XmlService.compileXPath(XPATH, null).evaluate(this.document,
+            XPathConstants.NODESET);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.codehaus.cargo.container.installer.ZipURLInstaller;
+
+/**
+ * Benchmark of the unpacking done by {@link ZipURLInstaller}. The container distribution is
+ * placed in the download directory beforehand, so that only unpacking and registering the
+ * installation are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ZipURLInstallerBenchmark
+{
+    /**
+     * Number of entries of the container distribution.
+     */
+    @Param({ "1000", "5000" })
+    private int entries;
+
+    /**
+     * Size of each entry, in bytes.
+     */
+    @Param({ "8192" })
+    private int entrySize;
+
+    /**
+     * Directory all fixtures are created in.
+     */
+    private File workDirectory;
+
+    /**
+     * Installer to benchmark.
+     */
+    private ZipURLInstaller installer;
+
+    /**
+     * Create the container distribution.
+     * @throws IOException If the distribution cannot be created.
+     */
+    @Setup(Level.Trial)
+    public void createFixtures() throws IOException
+    {
+        this.workDirectory = SyntheticFixtures.createTempDirectory("cargo-installer");
+        File downloadDirectory = new File(this.workDirectory, "downloads");
+        downloadDirectory.mkdirs();
+        File distribution = new File(downloadDirectory, "container-1.0.zip");
+        SyntheticFixtures.createDistribution(distribution, "container-1.0", this.entries,
+            this.entrySize);
+
+        this.installer = new ZipURLInstaller(distribution.toURI().toURL(),
+            downloadDirectory.getPath(), new File(this.workDirectory, "installs").getPath());
+    }
+
+    /**
+     * Remove the previous installation, so that every invocation unpacks the distribution.
+     */
+    @Setup(Level.Invocation)
+    public void deleteInstallation()
+    {
+        SyntheticFixtures.delete(new File(this.installer.getExtractDir()));
+    }
+
+    /**
+     * Delete all fixtures.
+     */
+    @TearDown(Level.Trial)
+    public void deleteFixtures()
+    {
+        SyntheticFixtures.delete(this.workDirectory);
+    }
+
+    /**
+     * Benchmark {@link ZipURLInstaller#install()}.
+     * @return Installed container home.
+     */
+    @Benchmark
+    public String install()
+    {
+        this.installer.install();
+        return this.installer.getHome();
+    }
+}
@@ -0,0 +1,4 @@
+package org.codehaus.cargo.benchmarks.generated;
+public class FactoryRegistryBenchmark_jmhType extends FactoryRegistryBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.codehaus.cargo.benchmarks.generated;
+public class FileHandlerBenchmark_jmhType extends FileHandlerBenchmark_jmhType_B3 {
+}
+
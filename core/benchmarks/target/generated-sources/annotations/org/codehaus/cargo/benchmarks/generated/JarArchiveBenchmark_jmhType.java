@@ -0,0 +1,4 @@
+package org.codehaus.cargo.benchmarks.generated;
+public class JarArchiveBenchmark_jmhType extends JarArchiveBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.codehaus.cargo.benchmarks.generated;
+public class StandaloneConfigurationBenchmark_jmhType extends StandaloneConfigurationBenchmark_jmhType_B3 {
+}
+
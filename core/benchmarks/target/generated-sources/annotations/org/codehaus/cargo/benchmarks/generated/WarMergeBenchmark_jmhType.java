@@ -0,0 +1,4 @@
+package org.codehaus.cargo.benchmarks.generated;
+public class WarMergeBenchmark_jmhType extends WarMergeBenchmark_jmhType_B3 {
+}
+
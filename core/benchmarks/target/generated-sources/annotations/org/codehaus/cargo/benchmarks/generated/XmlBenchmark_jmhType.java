@@ -0,0 +1,4 @@
+package org.codehaus.cargo.benchmarks.generated;
+public class XmlBenchmark_jmhType extends XmlBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.codehaus.cargo.benchmarks.generated;
+public class ZipURLInstallerBenchmark_jmhType extends ZipURLInstallerBenchmark_jmhType_B3 {
+}
+
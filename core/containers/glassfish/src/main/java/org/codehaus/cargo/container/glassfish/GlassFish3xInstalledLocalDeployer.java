@@ -69,6 +69,15 @@ public class GlassFish3xInstalledLocalDeployer extends AbstractGlassFishInstalle
         super(localContainer);
     }
 
+    /**
+     * {@inheritDoc}. GlassFish 3.x and later support <code>asadmin multimode</code>.
+     */
+    @Override
+    protected boolean isBatchSupported()
+    {
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -76,7 +85,6 @@ public class GlassFish3xInstalledLocalDeployer extends AbstractGlassFishInstalle
     protected void doDeploy(Deployable deployable, boolean overwrite)
     {
         List<String> args = new ArrayList<String>();
-        this.addConnectOptions(args);
 
         args.add("deploy");
 
@@ -106,8 +114,7 @@ public class GlassFish3xInstalledLocalDeployer extends AbstractGlassFishInstalle
         this.addDeploymentArguments(args);
         args.add(new File(deployable.getFile()).getAbsolutePath());
 
-        // The return value is checked by GlassFish3xAsAdmin.invokeAsAdmin
-        this.getLocalContainer().invokeAsAdmin(false, args);
+        this.invokeAsAdminCommand(args);
     }
 
     /**
@@ -117,7 +124,6 @@ public class GlassFish3xInstalledLocalDeployer extends AbstractGlassFishInstalle
     public void undeploy(Deployable deployable)
     {
         List<String> args = new ArrayList<String>();
-        this.addConnectOptions(args);
 
         args.add("undeploy");
 
@@ -126,8 +132,7 @@ public class GlassFish3xInstalledLocalDeployer extends AbstractGlassFishInstalle
         // not too sure how asadmin determines 'name'
         args.add(this.cutExtension(this.getFileHandler().getName(deployable.getFile())));
 
-        // The return value is checked by GlassFish3xAsAdmin.invokeAsAdmin
-        this.getLocalContainer().invokeAsAdmin(false, args);
+        this.invokeAsAdminCommand(args);
     }
 
     /**
@@ -167,7 +172,6 @@ public class GlassFish3xInstalledLocalDeployer extends AbstractGlassFishInstalle
         String dataSourceId = "cargo-datasource-" + dataSource.getId();
 
         List<String> args = new ArrayList<String>();
-        this.addConnectOptions(args);
         args.add("create-jdbc-connection-pool");
         args.add("--restype");
         args.add(dataSource.getConnectionType());
@@ -188,18 +192,15 @@ public class GlassFish3xInstalledLocalDeployer extends AbstractGlassFishInstalle
         args.add(dataSourcePropertyString.toString());
         args.add(dataSourceId);
 
-        // The return value is checked by GlassFish3xAsAdmin.invokeAsAdmin
-        this.getLocalContainer().invokeAsAdmin(false, args);
+        this.invokeAsAdminCommand(args);
 
         args.clear();
-        this.addConnectOptions(args);
         args.add("create-jdbc-resource");
         args.add("--connectionpoolid");
         args.add(dataSourceId);
         args.add(dataSource.getJndiLocation());
 
-        // The return value is checked by GlassFish3xAsAdmin.invokeAsAdmin
-        this.getLocalContainer().invokeAsAdmin(false, args);
+        this.invokeAsAdminCommand(args);
     }
 
     /**
@@ -211,20 +212,16 @@ public class GlassFish3xInstalledLocalDeployer extends AbstractGlassFishInstalle
         List<String> args = new ArrayList<String>();
 
         args.clear();
-        this.addConnectOptions(args);
         args.add("delete-jdbc-resource");
         args.add(jdbcName);
 
-        // The return value is checked by GlassFish3xAsAdmin.invokeAsAdmin
-        this.getLocalContainer().invokeAsAdmin(false, args);
+        this.invokeAsAdminCommand(args);
 
         args.clear();
-        this.addConnectOptions(args);
         args.add("delete-jdbc-connection-pool");
         args.add(poolName);
 
-        // The return value is checked by GlassFish3xAsAdmin.invokeAsAdmin
-        this.getLocalContainer().invokeAsAdmin(false, args);
+        this.invokeAsAdminCommand(args);
     }
 
     /**
@@ -238,18 +235,16 @@ public class GlassFish3xInstalledLocalDeployer extends AbstractGlassFishInstalle
         if (JMS_RESOURCE_TYPES.contains(resource.getType()))
         {
             List<String> args = new ArrayList<String>();
-            this.addConnectOptions(args);
             args.add("create-jms-resource");
             args.add("--restype");
             args.add(resource.getType());
             args.add(resource.getName());
 
-            this.getLocalContainer().invokeAsAdmin(false, args);
+            this.invokeAsAdminCommand(args);
         }        
         else if (ConfigurationEntryType.MAIL_SESSION.equals(resource.getType()))
         {
             List<String> args = new ArrayList<String>();
-            this.addConnectOptions(args);
             args.add("create-javamail-resource");
             args.add("--mailhost");
             args.add(resource.getParameter("mail.smtp.host"));
@@ -271,7 +266,7 @@ public class GlassFish3xInstalledLocalDeployer extends AbstractGlassFishInstalle
             }
             args.add(propertyBuilder.toString());
             args.add(resource.getName());
-            this.getLocalContainer().invokeAsAdmin(false, args);
+            this.invokeAsAdminCommand(args);
         }
         else
         {
@@ -287,7 +282,6 @@ public class GlassFish3xInstalledLocalDeployer extends AbstractGlassFishInstalle
             "sac/sacServerName"
             */
             List<String> args = new ArrayList<String>();
-            this.addConnectOptions(args);
             args.add("create-custom-resource");
             args.add("--enabled=true");
             args.add("--restype");
@@ -308,7 +302,7 @@ public class GlassFish3xInstalledLocalDeployer extends AbstractGlassFishInstalle
             args.add(propertyBuilder.toString());
 
             args.add(resource.getName());
-            this.getLocalContainer().invokeAsAdmin(false, args);
+            this.invokeAsAdminCommand(args);
         }
     }
 
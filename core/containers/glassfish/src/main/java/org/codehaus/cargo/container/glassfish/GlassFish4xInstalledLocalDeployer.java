@@ -53,11 +53,14 @@ public class GlassFish4xInstalledLocalDeployer extends GlassFish3xInstalledLocal
     }
     
     /**
-     * {@inheritDoc}
+     * {@inheritDoc}. The user password is given to asadmin using a dedicated password file,
+     * the command is therefore never batched with other commands.
      */
     @Override
     public void createFileUser(final User user)
     {
+        this.flushBatch();
+
         try
         {
             List<String> args = new ArrayList<String>();
@@ -150,11 +153,10 @@ public class GlassFish4xInstalledLocalDeployer extends GlassFish3xInstalledLocal
     public void activateDefaultPrincipalToRoleMapping()
     {
         List<String> args = new ArrayList<String>();
-        this.addConnectOptions(args);
         args.add("set");
         args.add("configs.config.server-config.security-service."
                 + "activate-default-principal-to-role-mapping=true");
-        this.getLocalContainer().invokeAsAdmin(false, args);
+        this.invokeAsAdminCommand(args);
     }
 
 }
@@ -105,6 +105,15 @@ public interface GlassFishPropertySet
      */
     String DEBUG_MODE = "cargo.glassfish.domain.debug";
 
+    /**
+     * Whether to execute the asadmin commands that deploy datasources, resources and deployables
+     * when starting the container in one <code>asadmin multimode</code> session. Set to
+     * <code>false</code> to invoke asadmin once per command. Defaults to <code>true</code>.
+     *
+     * GlassFish 3 and later only.
+     */
+    String ASADMIN_BATCH = "cargo.glassfish.asadmin.batch";
+
     /**
      * Prefix for extra arguments for "asadmin deploy"
      */
@@ -19,9 +19,11 @@
  */
 package org.codehaus.cargo.container.glassfish.internal;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.codehaus.cargo.container.configuration.LocalConfiguration;
@@ -96,6 +98,78 @@ public abstract class AbstractGlassFishInstalledLocalContainer
         return asadmin.invokeAsAdmin(async, java, args);
     }
 
+    /**
+     * Invokes asadmin once in <code>multimode</code> to execute a batch of commands.
+     * 
+     * @param programOptions Program options, such as the connection options, applied to all
+     * commands.
+     * @param batch Commands to execute.
+     * @return Command lines of the commands that have failed, empty if all have succeeded.
+     */
+    public List<String> invokeAsAdmin(List<String> programOptions, AsAdminBatch batch)
+    {
+        File commandFile = null;
+        File outputFile = null;
+        try
+        {
+            commandFile = File.createTempFile("cargo-asadmin-", ".txt");
+            outputFile = File.createTempFile("cargo-asadmin-", ".log");
+            batch.writeCommandFile(commandFile);
+
+            List<String> args = new ArrayList<String>(programOptions);
+            args.add("multimode");
+            args.add("--file");
+            args.add(commandFile.getAbsolutePath());
+            args.add("--printprompt=false");
+
+            JvmLauncher java = createJvmLauncher(false);
+            java.setOutputFile(outputFile);
+            java.setAppendOutput(false);
+
+            CargoException exitFailure = null;
+            try
+            {
+                invokeAsAdmin(false, java, args.toArray(new String[args.size()]));
+            }
+            catch (CargoException e)
+            {
+                // The result of each command is checked below
+                exitFailure = e;
+            }
+
+            String output = getFileHandler().readTextFile(outputFile.getAbsolutePath(), "UTF-8");
+            List<String> failedCommands = batch.getFailedCommands(output);
+            if (failedCommands.isEmpty())
+            {
+                if (exitFailure != null)
+                {
+                    throw exitFailure;
+                }
+                getLogger().debug(output, this.getClass().getName());
+            }
+            else
+            {
+                getLogger().info(output, this.getClass().getName());
+            }
+            return failedCommands;
+        }
+        catch (IOException e)
+        {
+            throw new CargoException("Cannot execute the asadmin commands", e);
+        }
+        finally
+        {
+            if (commandFile != null)
+            {
+                commandFile.delete();
+            }
+            if (outputFile != null)
+            {
+                outputFile.delete();
+            }
+        }
+    }
+
     /**
      * Returns the asadmin for the GlassFish server.
      * 
@@ -155,6 +229,16 @@ public abstract class AbstractGlassFishInstalledLocalContainer
         }
     }
 
+    /**
+     * <code>asadmin start-domain</code> returns once the domain runs in its own process.
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isStartJvmMonitored()
+    {
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -209,6 +293,8 @@ public abstract class AbstractGlassFishInstalledLocalContainer
 
         try
         {
+            deployer.beginBatch();
+
             if (Boolean.valueOf(this.getConfiguration().getPropertyValue(
                 GlassFishPropertySet.REMOVE_DEFAULT_DATASOURCE)).booleanValue())
             {
@@ -247,9 +333,13 @@ public abstract class AbstractGlassFishInstalledLocalContainer
             {
                 deployer.redeploy(deployable);
             }
+
+            deployer.endBatch();
         }
         catch (Throwable t)
         {
+            deployer.discardBatch();
+
             StringBuilder sb = new StringBuilder();
             sb.append("At least one GlassFish deployment has failed: ");
             sb.append(t.toString());
@@ -19,7 +19,10 @@
  */
 package org.codehaus.cargo.container.glassfish.internal;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.codehaus.cargo.container.InstalledLocalContainer;
 import org.codehaus.cargo.container.configuration.LocalConfiguration;
@@ -34,6 +37,7 @@ import org.codehaus.cargo.container.property.RemotePropertySet;
 import org.codehaus.cargo.container.property.User;
 import org.codehaus.cargo.container.spi.deployer.AbstractLocalDeployer;
 import org.codehaus.cargo.container.spi.deployer.DeployerWatchdog;
+import org.codehaus.cargo.util.CargoException;
 
 /**
  * GlassFish installed local deployer, which uses the GlassFish asadmin to deploy and undeploy
@@ -42,6 +46,18 @@ import org.codehaus.cargo.container.spi.deployer.DeployerWatchdog;
 public abstract class AbstractGlassFishInstalledLocalDeployer extends AbstractLocalDeployer
 {
 
+    /**
+     * Pending asadmin commands while in batch mode, <code>null</code> otherwise.
+     */
+    private AsAdminBatch batch;
+
+    /**
+     * Deployable monitors to check once the pending asadmin commands have been executed, mapped
+     * to whether the deployable is expected to be available; <code>null</code> when not in batch
+     * mode.
+     */
+    private Map<DeployableMonitor, Boolean> pendingMonitors;
+
     /**
      * Calls parent constructor, which saves the container.
      * 
@@ -100,17 +116,79 @@ public abstract class AbstractGlassFishInstalledLocalDeployer extends AbstractLo
     }
 
     /**
-     * {@inheritDoc}
+     * {@inheritDoc}. In batch mode, the deployable is only monitored once the pending asadmin
+     * commands have been executed.
+     */
+    @Override
+    public void deploy(Deployable deployable, DeployableMonitor monitor)
+    {
+        if (this.batch == null)
+        {
+            super.deploy(deployable, monitor);
+        }
+        else
+        {
+            this.deploy(deployable);
+            this.pendingMonitors.put(monitor, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * {@inheritDoc}. In batch mode, the deployable is only monitored once the pending asadmin
+     * commands have been executed.
+     */
+    @Override
+    public void undeploy(Deployable deployable, DeployableMonitor monitor)
+    {
+        if (this.batch == null)
+        {
+            super.undeploy(deployable, monitor);
+        }
+        else
+        {
+            this.undeploy(deployable);
+            this.pendingMonitors.put(monitor, Boolean.FALSE);
+        }
+    }
+
+    /**
+     * {@inheritDoc}. In batch mode, the deployable is only monitored once the pending asadmin
+     * commands have been executed.
      */
     @Override
     public void redeploy(Deployable deployable, DeployableMonitor monitor)
     {
         this.redeploy(deployable);
 
-        // Wait for the Deployable to be redeployed
+        if (this.batch == null)
+        {
+            // Wait for the Deployable to be redeployed
+            watch(monitor, true);
+        }
+        else
+        {
+            this.pendingMonitors.put(monitor, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Wait for a deployable to become available or unavailable.
+     * 
+     * @param monitor Monitor of the deployable.
+     * @param available Whether to wait for the deployable to become available.
+     */
+    private void watch(DeployableMonitor monitor, boolean available)
+    {
         DeployerWatchdog watchdog = new DeployerWatchdog(monitor);
         watchdog.setLogger(getLogger());
-        watchdog.watchForAvailability();
+        if (available)
+        {
+            watchdog.watchForAvailability();
+        }
+        else
+        {
+            watchdog.watchForUnavailability();
+        }
     }
 
     /**
@@ -181,6 +259,133 @@ public abstract class AbstractGlassFishInstalledLocalDeployer extends AbstractLo
         }
     }
 
+    /**
+     * Enters batch mode, if supported by the GlassFish version and not disabled using
+     * {@link GlassFishPropertySet#ASADMIN_BATCH}. In batch mode, the asadmin commands of the
+     * deployer are not executed immediately but collected, and then executed in one asadmin
+     * session by {@link #flushBatch()} or {@link #endBatch()}. Deployable monitors are only
+     * checked by {@link #endBatch()}, once all commands have been executed.
+     */
+    public void beginBatch()
+    {
+        if (isBatchSupported() && !Boolean.FALSE.toString().equalsIgnoreCase(
+            this.getConfiguration().getPropertyValue(GlassFishPropertySet.ASADMIN_BATCH)))
+        {
+            this.batch = new AsAdminBatch();
+            this.pendingMonitors = new LinkedHashMap<DeployableMonitor, Boolean>();
+        }
+    }
+
+    /**
+     * Executes the pending asadmin commands, if in batch mode.
+     * 
+     * @throws CargoException If any of the commands has failed.
+     */
+    public void flushBatch() throws CargoException
+    {
+        if (this.batch == null || this.batch.isEmpty())
+        {
+            return;
+        }
+
+        getLogger().debug("Executing " + this.batch.getCommands().size()
+            + " asadmin commands in one session", this.getClass().getName());
+        List<String> programOptions = new ArrayList<String>();
+        this.addConnectOptions(programOptions);
+        try
+        {
+            List<String> failedCommands =
+                this.getLocalContainer().invokeAsAdmin(programOptions, this.batch);
+            if (!failedCommands.isEmpty())
+            {
+                throw new CargoException("GlassFish admin commands failed: " + failedCommands);
+            }
+        }
+        finally
+        {
+            this.batch.clear();
+        }
+    }
+
+    /**
+     * Executes the pending asadmin commands and leaves batch mode, then waits for the deployables
+     * monitored during the batch to become available or unavailable.
+     * 
+     * @throws CargoException If any of the commands has failed.
+     */
+    public void endBatch() throws CargoException
+    {
+        Map<DeployableMonitor, Boolean> monitors = this.pendingMonitors;
+        try
+        {
+            flushBatch();
+        }
+        finally
+        {
+            this.batch = null;
+            this.pendingMonitors = null;
+        }
+
+        if (monitors != null)
+        {
+            for (Map.Entry<DeployableMonitor, Boolean> monitor : monitors.entrySet())
+            {
+                watch(monitor.getKey(), monitor.getValue().booleanValue());
+            }
+        }
+    }
+
+    /**
+     * Leaves batch mode without executing the pending asadmin commands, for example because
+     * preparing the batch has failed.
+     */
+    public void discardBatch()
+    {
+        if (this.batch != null && !this.batch.isEmpty())
+        {
+            getLogger().debug("Discarding " + this.batch.getCommands().size()
+                + " pending asadmin commands", this.getClass().getName());
+        }
+        this.batch = null;
+        this.pendingMonitors = null;
+    }
+
+    /**
+     * @return Whether this deployer can execute its asadmin commands in batch mode. Default is
+     * <code>false</code>.
+     */
+    protected boolean isBatchSupported()
+    {
+        return false;
+    }
+
+    /**
+     * Invokes an asadmin command, or adds it to the pending commands if in batch mode.
+     * 
+     * @param args Command name and arguments, without the connection options which are added by
+     * this method.
+     */
+    protected void invokeAsAdminCommand(List<String> args)
+    {
+        if (this.batch != null && AsAdminBatch.canBatch(args))
+        {
+            this.batch.addCommand(args);
+        }
+        else
+        {
+            // Commands that cannot be written to a multimode file are executed immediately,
+            // after the commands pending before them
+            flushBatch();
+
+            List<String> fullArgs = new ArrayList<String>(args.size() + 10);
+            this.addConnectOptions(fullArgs);
+            fullArgs.addAll(args);
+
+            // The return value is checked by GlassFish3xAsAdmin.invokeAsAdmin
+            this.getLocalContainer().invokeAsAdmin(false, fullArgs);
+        }
+    }
+
     /**
      * Adds connection options.
      * 
@@ -0,0 +1,208 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.glassfish.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Batch of asadmin commands, executed in one <code>asadmin multimode</code> session instead of
+ * one asadmin JVM per command. The commands do not contain any program option, such as the
+ * connection options: these are given once to <code>multimode</code> and apply to all commands.
+ */
+public class AsAdminBatch
+{
+    /**
+     * Pattern of the line asadmin prints once a command has been executed.
+     */
+    private static final Pattern RESULT_PATTERN =
+        Pattern.compile("^Command (\\S+) (executed successfully|failed)");
+
+    /**
+     * Commands, in execution order.
+     */
+    private final List<List<String>> commands = new ArrayList<List<String>>();
+
+    /**
+     * Add a command to the batch.
+     * 
+     * @param args Command name and arguments, without program options.
+     */
+    public void addCommand(List<String> args)
+    {
+        this.commands.add(new ArrayList<String>(args));
+    }
+
+    /**
+     * @return Commands, in execution order.
+     */
+    public List<List<String>> getCommands()
+    {
+        return this.commands;
+    }
+
+    /**
+     * @return Whether the batch has no command.
+     */
+    public boolean isEmpty()
+    {
+        return this.commands.isEmpty();
+    }
+
+    /**
+     * Remove all commands from the batch.
+     */
+    public void clear()
+    {
+        this.commands.clear();
+    }
+
+    /**
+     * Write the commands to a file, in the format read by <code>asadmin multimode --file</code>.
+     * 
+     * @param file File to write.
+     * @throws IOException If writing fails.
+     */
+    public void writeCommandFile(File file) throws IOException
+    {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try
+        {
+            for (List<String> command : this.commands)
+            {
+                writer.write(toCommandLine(command));
+                writer.write('\n');
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Check the output of <code>asadmin multimode</code> for the result of each command.
+     * 
+     * @param output Output of asadmin.
+     * @return Command lines of the commands that have failed or for which asadmin did not report
+     * any result, empty if all commands have been executed successfully.
+     */
+    public List<String> getFailedCommands(String output)
+    {
+        List<String> failed = new ArrayList<String>();
+        int index = 0;
+        BufferedReader reader = new BufferedReader(new StringReader(output));
+        try
+        {
+            for (String line = reader.readLine(); line != null && index < this.commands.size();
+                line = reader.readLine())
+            {
+                Matcher matcher = RESULT_PATTERN.matcher(line.trim());
+                if (matcher.find() && matcher.group(1).equals(this.commands.get(index).get(0)))
+                {
+                    if ("failed".equals(matcher.group(2)))
+                    {
+                        failed.add(toCommandLine(this.commands.get(index)));
+                    }
+                    index++;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Cannot read from a string", e);
+        }
+        for (; index < this.commands.size(); index++)
+        {
+            failed.add(toCommandLine(this.commands.get(index)));
+        }
+        return failed;
+    }
+
+    /**
+     * Check whether a command can be written as one line of a multimode file, i.e. whether none
+     * of its arguments contains a line break or both a single and a double quote.
+     * 
+     * @param command Command name and arguments.
+     * @return <code>true</code> if the command can be added to a batch.
+     */
+    public static boolean canBatch(List<String> command)
+    {
+        for (String arg : command)
+        {
+            if (arg.indexOf('\n') != -1 || arg.indexOf('\r') != -1
+                || (arg.indexOf('"') != -1 && arg.indexOf('\'') != -1))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Format a command as one line of a multimode file. Arguments that are empty or contain
+     * whitespace or quotes are enclosed in double quotes, or in single quotes if they contain
+     * double quotes. Backslashes are written unchanged: asadmin commands give them their own
+     * meaning, for example to escape the <code>:</code> and <code>=</code> characters in
+     * <code>--property</code> values, exactly as when the arguments are given on the command line.
+     * 
+     * @param command Command name and arguments, which must be accepted by
+     * {@link #canBatch(List)}.
+     * @return Command line.
+     */
+    public static String toCommandLine(List<String> command)
+    {
+        StringBuilder line = new StringBuilder();
+        for (String arg : command)
+        {
+            if (line.length() > 0)
+            {
+                line.append(' ');
+            }
+            boolean quote = arg.isEmpty();
+            for (int i = 0; i < arg.length() && !quote; i++)
+            {
+                char c = arg.charAt(i);
+                quote = Character.isWhitespace(c) || c == '"' || c == '\'';
+            }
+            if (quote)
+            {
+                char quoteChar = arg.indexOf('"') == -1 ? '"' : '\'';
+                line.append(quoteChar);
+                line.append(arg);
+                line.append(quoteChar);
+            }
+            else
+            {
+                line.append(arg);
+            }
+        }
+        return line.toString();
+    }
+}
@@ -40,5 +40,6 @@ public class GlassFish3xStandaloneLocalConfigurationCapability extends
         this.propertySupportMap.put(ResourcePropertySet.RESOURCE, Boolean.TRUE);
         this.propertySupportMap.put(GlassFishPropertySet.DEBUGGER_PORT, Boolean.TRUE);
         this.propertySupportMap.put(GlassFishPropertySet.OSGI_SHELL_PORT, Boolean.TRUE);
+        this.propertySupportMap.put(GlassFishPropertySet.ASADMIN_BATCH, Boolean.TRUE);
     }
 }
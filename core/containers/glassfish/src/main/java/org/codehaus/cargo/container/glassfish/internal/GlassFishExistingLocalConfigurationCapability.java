@@ -43,5 +43,6 @@ public class GlassFishExistingLocalConfigurationCapability extends
         this.propertySupportMap.put(GlassFishPropertySet.ADMIN_PORT, Boolean.TRUE);
         this.propertySupportMap.put(GlassFishPropertySet.DOMAIN_NAME, Boolean.TRUE);
         this.propertySupportMap.put(GlassFishPropertySet.DEBUG_MODE, Boolean.TRUE);
+        this.propertySupportMap.put(GlassFishPropertySet.ASADMIN_BATCH, Boolean.TRUE);
     }
 }
@@ -0,0 +1,138 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.glassfish.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link AsAdminBatch}.
+ */
+public class AsAdminBatchTest extends TestCase
+{
+    /**
+     * Test that simple arguments are written unquoted.
+     */
+    public void testToCommandLineSimpleArguments()
+    {
+        assertEquals("deploy --force=true /tmp/app.war", AsAdminBatch.toCommandLine(
+            Arrays.asList("deploy", "--force=true", "/tmp/app.war")));
+    }
+
+    /**
+     * Test that arguments with spaces or quotes, and empty arguments, are quoted.
+     */
+    public void testToCommandLineQuotedArguments()
+    {
+        assertEquals("deploy \"/tmp/my app.war\" \"\"", AsAdminBatch.toCommandLine(
+            Arrays.asList("deploy", "/tmp/my app.war", "")));
+        assertEquals("create-file-user --groups 'a\"b'", AsAdminBatch.toCommandLine(
+            Arrays.asList("create-file-user", "--groups", "a\"b")));
+        assertEquals("create-file-user --groups \"it's\"", AsAdminBatch.toCommandLine(
+            Arrays.asList("create-file-user", "--groups", "it's")));
+    }
+
+    /**
+     * Test that backslashes, in particular the escapes of <code>--property</code> values, are
+     * written unchanged.
+     */
+    public void testToCommandLineKeepsBackslashes()
+    {
+        assertEquals("create-jdbc-connection-pool --property url=jdbc\\:derby\\://localhost/db"
+            + ":path=C\\\\dir pool", AsAdminBatch.toCommandLine(Arrays.asList(
+                "create-jdbc-connection-pool", "--property",
+                    "url=jdbc\\:derby\\://localhost/db:path=C\\\\dir", "pool")));
+        assertEquals("create-jdbc-connection-pool --property \"description=a b\\:c\" pool",
+            AsAdminBatch.toCommandLine(Arrays.asList("create-jdbc-connection-pool",
+                "--property", "description=a b\\:c", "pool")));
+    }
+
+    /**
+     * Test which commands can be written to a multimode file.
+     */
+    public void testCanBatch()
+    {
+        assertTrue(AsAdminBatch.canBatch(Arrays.asList("deploy", "a\"b", "it's")));
+        assertFalse(AsAdminBatch.canBatch(Arrays.asList("deploy", "a\"b'c")));
+        assertFalse(AsAdminBatch.canBatch(Arrays.asList("deploy", "a\nb")));
+    }
+
+    /**
+     * Test that no command is reported as failed if all have been executed successfully, even
+     * with other output between the result lines.
+     */
+    public void testGetFailedCommandsAllSuccessful()
+    {
+        AsAdminBatch batch = createBatch();
+        String output = "Application deployed with name app.\n"
+            + "Command deploy executed successfully.\n"
+            + "  Command create-file-user executed successfully.\n";
+        assertEquals(new ArrayList<String>(), batch.getFailedCommands(output));
+    }
+
+    /**
+     * Test that failed commands are reported.
+     */
+    public void testGetFailedCommandsFailure()
+    {
+        AsAdminBatch batch = createBatch();
+        String output = "Command deploy failed.\n"
+            + "Command create-file-user executed successfully.\n";
+        assertEquals(Arrays.asList("deploy /tmp/app.war"), batch.getFailedCommands(output));
+    }
+
+    /**
+     * Test that commands for which asadmin did not report any result are reported as failed.
+     */
+    public void testGetFailedCommandsMissingResult()
+    {
+        AsAdminBatch batch = createBatch();
+        assertEquals(Arrays.asList("create-file-user john"),
+            batch.getFailedCommands("Command deploy executed successfully.\n"));
+        assertEquals(Arrays.asList("deploy /tmp/app.war", "create-file-user john"),
+            batch.getFailedCommands(""));
+    }
+
+    /**
+     * Test that result lines of other commands are not taken as the result of the expected
+     * command, and that commands after a missing result are reported as failed.
+     */
+    public void testGetFailedCommandsMismatchedResult()
+    {
+        AsAdminBatch batch = createBatch();
+        String output = "Command create-file-user executed successfully.\n"
+            + "Command undeploy executed successfully.\n";
+        assertEquals(Arrays.asList("deploy /tmp/app.war", "create-file-user john"),
+            batch.getFailedCommands(output));
+    }
+
+    /**
+     * @return Batch with a deploy and a create-file-user command.
+     */
+    private AsAdminBatch createBatch()
+    {
+        AsAdminBatch batch = new AsAdminBatch();
+        batch.addCommand(Arrays.asList("deploy", "/tmp/app.war"));
+        batch.addCommand(Arrays.asList("create-file-user", "john"));
+        return batch;
+    }
+}
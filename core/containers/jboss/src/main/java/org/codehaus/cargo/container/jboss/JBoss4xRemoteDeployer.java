@@ -230,6 +230,10 @@ public class JBoss4xRemoteDeployer extends AbstractRemoteDeployer
             {
                 throw new CargoException("Application server didn't request the file");
             }
+            getLazyLogger().debug("The CARGO embedded HTTP server sent %d bytes in %d requests, "
+                + "at %d bytes per second", this.getClass().getName(),
+                this.fileServer.getBytesServed(), this.fileServer.getCallCount(),
+                this.fileServer.getThroughput());
         }
         catch (ContainerException e)
         {
@@ -65,6 +65,17 @@ public interface ISimpleHttpFileServer
      */
     int getCallCount();
 
+    /**
+     * @return the number of file bytes sent to clients.
+     */
+    long getBytesServed();
+
+    /**
+     * @return the average throughput, in bytes per second, while at least one client was being
+     * served; <code>0</code> if nothing has been served yet.
+     */
+    long getThroughput();
+
     /**
      * @return exception, if any occured.
      */
@@ -19,18 +19,22 @@
  */
 package org.codehaus.cargo.container.jboss.internal;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
 import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.net.SocketException;
 import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
 import org.codehaus.cargo.container.deployable.Deployable;
 import org.codehaus.cargo.container.deployable.DeployableType;
@@ -40,11 +44,25 @@ import org.codehaus.cargo.util.FileHandler;
 import org.codehaus.cargo.util.log.Logger;
 
 /**
- * Implementation of a Web server that serves one file.
+ * Implementation of a Web server that serves one file. The server is non-blocking: one thread
+ * serves any number of concurrent clients, for example all nodes of a cluster fetching the same
+ * deployable at once. Local files are sent with {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)}, which avoids copying them through the Java heap, and
+ * single byte range requests are supported so that interrupted downloads can be resumed.
  */
 public class SimpleHttpFileServer implements Runnable, ISimpleHttpFileServer
 {
 
+    /**
+     * Maximum size of an HTTP request header.
+     */
+    private static final int MAX_REQUEST_SIZE = 8192;
+
+    /**
+     * Maximum number of bytes sent in one write when the file is not a local file.
+     */
+    private static final int STREAM_BUFFER_SIZE = 65536;
+
     /**
      * Logger instance.
      */
@@ -71,25 +89,125 @@ public class SimpleHttpFileServer implements Runnable, ISimpleHttpFileServer
     protected String remotePath;
 
     /**
-     * TCP socket.
+     * Non-blocking server socket channel.
      */
-    protected ServerSocket serverSocket;
+    protected ServerSocketChannel serverChannel;
+
+    /**
+     * Selector used to multiplex all client connections.
+     */
+    protected Selector selector;
 
     /**
      * Call count.
      */
-    protected int callCount;
+    protected volatile int callCount;
+
+    /**
+     * Number of file bytes sent to clients.
+     */
+    protected volatile long bytesServed;
+
+    /**
+     * Time, in nanoseconds, spent serving the file to at least one client.
+     */
+    protected volatile long servingTime;
 
     /**
      * Has stop been called?
      */
-    protected boolean stopped;
+    protected volatile boolean stopped;
 
     /**
      * Last exception.
      */
     protected Throwable lastException;
 
+    /**
+     * Number of responses being sent.
+     */
+    private int activeResponses;
+
+    /**
+     * Time, in nanoseconds, at which the server started serving the current active responses.
+     */
+    private long servingSince;
+
+    /**
+     * State of a client connection.
+     */
+    private final class Connection
+    {
+        /**
+         * Request header read so far.
+         */
+        private final ByteBuffer request = ByteBuffer.allocate(MAX_REQUEST_SIZE);
+
+        /**
+         * Response header, <code>null</code> until the request has been read.
+         */
+        private ByteBuffer responseHeader;
+
+        /**
+         * File channel to transfer the body from, if the file is a local file.
+         */
+        private FileChannel file;
+
+        /**
+         * Stream channel to copy the body from, if the file is not a local file.
+         */
+        private ReadableByteChannel stream;
+
+        /**
+         * Buffer for copying the body from {@link #stream}.
+         */
+        private ByteBuffer streamBuffer;
+
+        /**
+         * Position of the next body byte to send.
+         */
+        private long position;
+
+        /**
+         * Position after the last body byte to send.
+         */
+        private long end;
+
+        /**
+         * Whether the response counts as a successful call.
+         */
+        private boolean successful;
+
+        /**
+         * Whether the response is counted in {@link SimpleHttpFileServer#activeResponses}.
+         */
+        private boolean active;
+
+        /**
+         * Close all resources of the connection.
+         */
+        private void closeBody()
+        {
+            try
+            {
+                if (this.file != null)
+                {
+                    this.file.close();
+                }
+                if (this.stream != null)
+                {
+                    this.stream.close();
+                }
+            }
+            catch (IOException ignored)
+            {
+                // Nothing can be done
+            }
+            this.file = null;
+            this.stream = null;
+        }
+    }
+
     /**
      * create the simple http file server.
      */
@@ -152,8 +270,12 @@ public class SimpleHttpFileServer implements Runnable, ISimpleHttpFileServer
 
         try
         {
-            this.serverSocket = new ServerSocket(listenSocket.getPort(), 0,
-                listenSocket.getAddress());
+            this.serverChannel = ServerSocketChannel.open();
+            this.serverChannel.socket().setReuseAddress(true);
+            this.serverChannel.socket().bind(listenSocket);
+            this.serverChannel.configureBlocking(false);
+            this.selector = Selector.open();
+            this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
         }
         catch (IOException e)
         {
@@ -184,6 +306,30 @@ public class SimpleHttpFileServer implements Runnable, ISimpleHttpFileServer
         return this.callCount;
     }
 
+    /**
+     * @return the number of file bytes sent to clients.
+     */
+    @Override
+    public long getBytesServed()
+    {
+        return this.bytesServed;
+    }
+
+    /**
+     * @return the average throughput, in bytes per second, while at least one client was being
+     * served; <code>0</code> if nothing has been served yet.
+     */
+    @Override
+    public long getThroughput()
+    {
+        long time = this.servingTime;
+        if (time <= 0)
+        {
+            return 0;
+        }
+        return (long) (this.bytesServed * 1000000000.0 / time);
+    }
+
     /**
      * @return exception, if any occured.
      */
@@ -204,7 +350,7 @@ public class SimpleHttpFileServer implements Runnable, ISimpleHttpFileServer
             throw new CargoException("Please call setLogger first!");
         }
 
-        if (this.serverSocket == null)
+        if (this.serverChannel == null)
         {
             throw new CargoException("Please call setListeningParameters first!");
         }
@@ -225,7 +371,8 @@ public class SimpleHttpFileServer implements Runnable, ISimpleHttpFileServer
 
         try
         {
-            this.serverSocket.close();
+            this.selector.wakeup();
+            this.serverChannel.close();
         }
         catch (IOException e)
         {
@@ -256,6 +403,21 @@ public class SimpleHttpFileServer implements Runnable, ISimpleHttpFileServer
                 }
             }
         }
+        finally
+        {
+            for (SelectionKey key : this.selector.keys())
+            {
+                close(key);
+            }
+            try
+            {
+                this.selector.close();
+            }
+            catch (IOException ignored)
+            {
+                // Nothing can be done
+            }
+        }
     }
 
     /**
@@ -264,117 +426,365 @@ public class SimpleHttpFileServer implements Runnable, ISimpleHttpFileServer
      */
     private void runAndThrow() throws Throwable
     {
-        final String expectedGetRequest = "GET " + this.remotePath;
+        this.logger.debug("Waiting for connections on " + this.serverChannel.socket(),
+            this.getClass().getName());
 
         while (!this.stopped)
         {
-            Socket socket = null;
+            this.selector.select();
 
-            try
+            for (SelectionKey key : this.selector.selectedKeys())
             {
-                this.logger.debug("Waiting for connection on socket " + this.serverSocket,
-                    this.getClass().getName());
+                try
+                {
+                    if (!key.isValid())
+                    {
+                        continue;
+                    }
+                    if (key.isAcceptable())
+                    {
+                        accept();
+                    }
+                    else if (key.isReadable())
+                    {
+                        read(key);
+                    }
+                    else if (key.isWritable())
+                    {
+                        write(key);
+                    }
+                }
+                catch (IOException e)
+                {
+                    // A client going away must not stop the server, else it would result in the
+                    // CARGO-859 (JBoss timing out with big files)
+                    this.logger.debug("Error handling request: " + e, this.getClass().getName());
+                    close(key);
+                }
+            }
+            this.selector.selectedKeys().clear();
+        }
+    }
 
-                // wait for a connection
-                socket = this.serverSocket.accept();
+    /**
+     * Accept a new client connection.
+     * @throws IOException If accepting fails.
+     */
+    private void accept() throws IOException
+    {
+        SocketChannel channel = this.serverChannel.accept();
+        if (channel != null)
+        {
+            this.logger.debug("Handling request on socket " + channel.socket(),
+                this.getClass().getName());
+            channel.configureBlocking(false);
+            channel.register(this.selector, SelectionKey.OP_READ, new Connection());
+        }
+    }
 
-                this.logger.debug("Handling request on socket " + socket,
-                    this.getClass().getName());
+    /**
+     * Read the request of a client, and prepare the response once the request is complete.
+     * @param key Selection key of the client.
+     * @throws IOException If reading fails.
+     */
+    private void read(SelectionKey key) throws IOException
+    {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+
+        int read = channel.read(connection.request);
+        if (read == -1 && connection.request.position() == 0)
+        {
+            close(key);
+            return;
+        }
+        String request = new String(connection.request.array(), 0,
+            connection.request.position(), "ISO-8859-1");
+        int headerEnd = request.indexOf("\r\n\r\n");
+        if (headerEnd == -1)
+        {
+            headerEnd = request.indexOf("\n\n");
+        }
+        if (headerEnd == -1 && read != -1 && connection.request.hasRemaining())
+        {
+            // Wait for the rest of the request
+            return;
+        }
+        if (headerEnd != -1)
+        {
+            request = request.substring(0, headerEnd);
+        }
+
+        prepareResponse(connection, request);
+        key.interestOps(SelectionKey.OP_WRITE);
+        if (connection.successful)
+        {
+            if (this.activeResponses == 0)
+            {
+                this.servingSince = System.nanoTime();
+            }
+            this.activeResponses++;
+            connection.active = true;
+        }
+    }
 
-                boolean error = false;
-                BufferedReader in = new BufferedReader(new InputStreamReader(
-                    socket.getInputStream()));
+    /**
+     * Prepare the response to a request.
+     * @param connection Client connection.
+     * @param request Request line and headers.
+     * @throws IOException If the file cannot be opened.
+     */
+    private void prepareResponse(Connection connection, String request) throws IOException
+    {
+        String[] lines = request.split("\\r?\\n");
+        this.logger.debug("Got HTTP request line " + lines[0], this.getClass().getName());
+
+        String[] requestLine = lines[0].split(" ");
+        boolean head = "HEAD".equals(requestLine[0]);
+        if (requestLine.length < 2 || !"GET".equals(requestLine[0]) && !head
+            || !isServedPath(requestLine[1]))
+        {
+            connection.responseHeader = createHeader("404 NOTFOUND", null);
+            return;
+        }
 
-                String line = in.readLine();
-                if (line == null)
+        long size = this.fileHandler.getSize(this.filePath);
+        long start = 0;
+        long end = size;
+        String status = "200 OK";
+        String range = getHeader(lines, "Range");
+        if (range != null && range.startsWith("bytes=") && range.indexOf(',') == -1)
+        {
+            String spec = range.substring("bytes=".length()).trim();
+            int dash = spec.indexOf('-');
+            try
+            {
+                if (dash == 0)
                 {
-                    line = "";
+                    start = Math.max(0, size - Long.parseLong(spec.substring(1)));
                 }
-                if (!line.startsWith(expectedGetRequest))
+                else if (dash > 0)
                 {
-                    error = true;
+                    start = Long.parseLong(spec.substring(0, dash));
+                    if (dash < spec.length() - 1)
+                    {
+                        end = Math.min(size, Long.parseLong(spec.substring(dash + 1)) + 1);
+                    }
                 }
-                while (!"".equals(line))
+                if (dash == -1 || start >= size || start >= end)
                 {
-                    line = in.readLine();
+                    connection.responseHeader = createHeader("416 Requested Range Not Satisfiable",
+                        "Content-Range: bytes */" + size);
+                    return;
                 }
+                status = "206 Partial Content";
+            }
+            catch (NumberFormatException e)
+            {
+                // Invalid ranges are ignored, and the whole file is sent
+                start = 0;
+                end = size;
+            }
+        }
 
-                this.logger.debug("Got HTTP request line " + line, this.getClass().getName());
+        StringBuilder headers = new StringBuilder();
+        headers.append("Content-Type: application/octet-stream\r\n");
+        headers.append("Accept-Ranges: bytes\r\n");
+        headers.append("Content-Length: ");
+        headers.append(end - start);
+        if (status.startsWith("206"))
+        {
+            headers.append("\r\nContent-Range: bytes ");
+            headers.append(start);
+            headers.append('-');
+            headers.append(end - 1);
+            headers.append('/');
+            headers.append(size);
+        }
+        connection.responseHeader = createHeader(status, headers.toString());
+        connection.successful = true;
 
-                OutputStream out = socket.getOutputStream();
-                if (error)
-                {
-                    StringBuilder answer = new StringBuilder();
-                    answer.append("HTTP/1.0 404 NOTFOUND");
-                    answer.append("\r\n");
-                    answer.append("Connection: close");
-                    answer.append("\r\n");
-                    answer.append("\r\n");
-
-                    out.write(answer.toString().getBytes("US-ASCII"));
-                    out.flush();
-                }
-                else
-                {
-                    StringBuilder answer = new StringBuilder();
-                    answer.append("HTTP/1.0 200 OK");
-                    answer.append("\r\n");
-                    answer.append("Connection: close");
-                    answer.append("\r\n");
-                    answer.append("Content-Type: application/octet-stream");
-                    answer.append("\r\n");
-                    answer.append("Content-Length: ");
-                    answer.append(Long.toString(this.fileHandler.getSize(this.filePath)));
-                    answer.append("\r\n");
-                    answer.append("\r\n");
-
-                    out.write(answer.toString().getBytes("US-ASCII"));
-                    out.flush();
-
-                    byte[] fileBytes = new byte[socket.getSendBufferSize()];
-
-                    InputStream file = this.fileHandler.getInputStream(this.filePath);
-                    try
-                    {
-                        int read;
-                        while ((read = file.read(fileBytes)) > 0)
-                        {
-                            out.write(fileBytes, 0, read);
-                            out.flush();
-                        }
-                    }
-                    finally
-                    {
-                        file.close();
-                        file = null;
-                    }
+        if (!head)
+        {
+            connection.position = start;
+            connection.end = end;
+            File file = new File(this.filePath);
+            if (file.isFile())
+            {
+                connection.file = new RandomAccessFile(file, "r").getChannel();
+            }
+            else
+            {
+                connection.stream = Channels.newChannel(
+                    this.fileHandler.getInputStream(this.filePath));
+                connection.streamBuffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+                skip(connection, start);
+            }
+        }
+    }
 
-                    this.callCount++;
-                }
+    /**
+     * Send as much of the response to a client as the socket accepts.
+     * @param key Selection key of the client.
+     * @throws IOException If writing fails.
+     */
+    private void write(SelectionKey key) throws IOException
+    {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
 
-                this.logger.debug("Finished responding to HTTP request line " + line,
-                    this.getClass().getName());
+        if (connection.responseHeader.hasRemaining())
+        {
+            channel.write(connection.responseHeader);
+            if (connection.responseHeader.hasRemaining())
+            {
+                return;
+            }
+        }
 
-                out.flush();
-                out.close();
-                out = null;
-                in.close();
-                in = null;
+        long sent = 0;
+        if (connection.file != null && connection.position < connection.end)
+        {
+            sent = connection.file.transferTo(connection.position,
+                connection.end - connection.position, channel);
+        }
+        else if (connection.stream != null && connection.position < connection.end)
+        {
+            ByteBuffer buffer = connection.streamBuffer;
+            if (buffer.position() == 0)
+            {
+                buffer.limit((int) Math.min(buffer.capacity(),
+                    connection.end - connection.position));
+                if (connection.stream.read(buffer) == -1)
+                {
+                    throw new IOException("Unexpected end of file " + this.filePath);
+                }
+            }
+            buffer.flip();
+            sent = channel.write(buffer);
+            buffer.compact();
+        }
+        connection.position += sent;
+        this.bytesServed += sent;
+
+        if (connection.position >= connection.end)
+        {
+            if (connection.successful)
+            {
+                this.callCount++;
             }
-            catch (SocketException ignored)
+            this.logger.debug("Finished responding to HTTP request on socket "
+                + channel.socket(), this.getClass().getName());
+            close(key);
+        }
+    }
+
+    /**
+     * Skip the beginning of a stream, for range requests on files which are not local files.
+     * @param connection Client connection.
+     * @param bytes Number of bytes to skip.
+     * @throws IOException If reading fails.
+     */
+    private void skip(Connection connection, long bytes) throws IOException
+    {
+        long skipped = 0;
+        while (skipped < bytes)
+        {
+            connection.streamBuffer.clear();
+            connection.streamBuffer.limit((int) Math.min(connection.streamBuffer.capacity(),
+                bytes - skipped));
+            int read = connection.stream.read(connection.streamBuffer);
+            if (read == -1)
             {
-                // Ignored exception. Not ignoring will break the while loop, end the sending
-                // thread and result in the CARGO-859 (JBoss timing out with big files)
+                throw new IOException("Unexpected end of file " + this.filePath);
             }
-            finally
+            skipped += read;
+        }
+        connection.streamBuffer.clear();
+    }
+
+    /**
+     * Close a client connection, or the server channel.
+     * @param key Selection key of the connection.
+     */
+    private void close(SelectionKey key)
+    {
+        Connection connection = (Connection) key.attachment();
+        if (connection != null)
+        {
+            connection.closeBody();
+            if (connection.active)
             {
-                if (socket != null)
+                connection.active = false;
+                this.activeResponses--;
+                if (this.activeResponses == 0)
                 {
-                    socket.close();
-                    socket = null;
+                    this.servingTime += System.nanoTime() - this.servingSince;
                 }
             }
         }
+        key.cancel();
+        try
+        {
+            key.channel().close();
+        }
+        catch (IOException ignored)
+        {
+            // Nothing can be done
+        }
+    }
+
+    /**
+     * @param target Request target.
+     * @return Whether the request target is the served file.
+     * @throws UnsupportedEncodingException If UTF-8 is not supported.
+     */
+    private boolean isServedPath(String target) throws UnsupportedEncodingException
+    {
+        return target.startsWith(this.remotePath)
+            || URLDecoder.decode(target, "UTF-8").startsWith(this.remotePath);
+    }
+
+    /**
+     * @param lines Request line and headers.
+     * @param name Header name.
+     * @return Value of the header, <code>null</code> if absent.
+     */
+    private static String getHeader(String[] lines, String name)
+    {
+        for (int i = 1; i < lines.length; i++)
+        {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0 && lines[i].substring(0, colon).trim().equalsIgnoreCase(name))
+            {
+                return lines[i].substring(colon + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param status Status code and reason.
+     * @param headers Additional headers, separated by CRLF, can be <code>null</code>.
+     * @return Response header.
+     * @throws UnsupportedEncodingException If US-ASCII is not supported.
+     */
+    private static ByteBuffer createHeader(String status, String headers)
+        throws UnsupportedEncodingException
+    {
+        StringBuilder answer = new StringBuilder();
+        answer.append("HTTP/1.0 ");
+        answer.append(status);
+        answer.append("\r\n");
+        answer.append("Connection: close");
+        answer.append("\r\n");
+        if (headers != null)
+        {
+            answer.append(headers);
+            answer.append("\r\n");
+        }
+        answer.append("\r\n");
+        return ByteBuffer.wrap(answer.toString().getBytes("US-ASCII"));
     }
 
     /**
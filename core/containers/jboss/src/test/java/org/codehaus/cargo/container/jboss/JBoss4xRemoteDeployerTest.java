@@ -79,6 +79,8 @@ public class JBoss4xRemoteDeployerTest extends MockObjectTestCase
             new URL(mockURL)));
         mockHttpFileServer.stubs().method("getCallCount").will(returnValue(0));
         mockHttpFileServer.stubs().method("getCallCount").after("start").will(returnValue(1));
+        mockHttpFileServer.stubs().method("getBytesServed").will(returnValue(1024L));
+        mockHttpFileServer.stubs().method("getThroughput").will(returnValue(1024L));
         mockHttpFileServer.stubs().method("stop").after("start");
 
         Mock mockConnection = mock(HttpURLConnection.class);
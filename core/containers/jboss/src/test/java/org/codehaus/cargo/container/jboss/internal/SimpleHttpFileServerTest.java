@@ -0,0 +1,216 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.jboss.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.deployable.EAR;
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.log.NullLogger;
+
+/**
+ * Unit tests for {@link SimpleHttpFileServer}.
+ */
+public class SimpleHttpFileServerTest extends TestCase
+{
+    /**
+     * Size of the served file.
+     */
+    private static final int FILE_SIZE = 300000;
+
+    /**
+     * Served file.
+     */
+    private File file;
+
+    /**
+     * Server being tested.
+     */
+    private SimpleHttpFileServer server;
+
+    /**
+     * Base URL of the server.
+     */
+    private String baseURL;
+
+    /**
+     * Creates the served file and starts the server. {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        this.file = File.createTempFile("cargo-", ".ear");
+        OutputStream out = new FileOutputStream(this.file);
+        try
+        {
+            for (int i = 0; i < FILE_SIZE; i++)
+            {
+                out.write(i % 251);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        this.server = new SimpleHttpFileServer();
+        this.server.setLogger(new NullLogger());
+        this.server.setFile(new DefaultFileHandler(), new EAR(this.file.getAbsolutePath()));
+        this.server.setListeningParameters(new InetSocketAddress("localhost", 0), "localhost");
+        this.server.start();
+        this.baseURL = "http://localhost:" + this.server.serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stops the server and deletes the served file. {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        this.server.stop();
+        this.file.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Test serving the whole file to several concurrent clients.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testConcurrentDownloads() throws Exception
+    {
+        final String url = this.baseURL + "/" + this.file.getName();
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        List<Thread> clients = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++)
+        {
+            Thread client = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        byte[] content = download(url, null, HttpURLConnection.HTTP_OK);
+                        assertEquals(FILE_SIZE, content.length);
+                        assertEquals((FILE_SIZE - 1) % 251, content[FILE_SIZE - 1] & 0xFF);
+                    }
+                    catch (Throwable t)
+                    {
+                        synchronized (failures)
+                        {
+                            failures.add(t);
+                        }
+                    }
+                }
+            };
+            client.start();
+            clients.add(client);
+        }
+        for (Thread client : clients)
+        {
+            client.join();
+        }
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(4, this.server.getCallCount());
+        assertEquals(4L * FILE_SIZE, this.server.getBytesServed());
+        assertTrue(this.server.getThroughput() > 0);
+    }
+
+    /**
+     * Test a range request.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testRangeRequest() throws Exception
+    {
+        byte[] content = download(this.baseURL + "/" + this.file.getName(), "bytes=1000-1009",
+            HttpURLConnection.HTTP_PARTIAL);
+        assertEquals(10, content.length);
+        assertEquals(1000 % 251, content[0] & 0xFF);
+
+        content = download(this.baseURL + "/" + this.file.getName(), "bytes=-5",
+            HttpURLConnection.HTTP_PARTIAL);
+        assertEquals(5, content.length);
+        assertEquals((FILE_SIZE - 5) % 251, content[0] & 0xFF);
+    }
+
+    /**
+     * Test that other paths are not served.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testNotFound() throws Exception
+    {
+        download(this.baseURL + "/other.ear", null, HttpURLConnection.HTTP_NOT_FOUND);
+        assertEquals(0, this.server.getCallCount());
+    }
+
+    /**
+     * Download a URL.
+     * @param url URL to download.
+     * @param range Value of the <code>Range</code> header, <code>null</code> for none.
+     * @param expectedStatus Expected HTTP status.
+     * @return Downloaded content, empty if the status is not a success.
+     * @throws IOException If anything goes wrong.
+     */
+    private static byte[] download(String url, String range, int expectedStatus)
+        throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (range != null)
+        {
+            connection.setRequestProperty("Range", range);
+        }
+        assertEquals(expectedStatus, connection.getResponseCode());
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        if (expectedStatus < HttpURLConnection.HTTP_BAD_REQUEST)
+        {
+            InputStream in = connection.getInputStream();
+            try
+            {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1)
+                {
+                    content.write(buffer, 0, read);
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        connection.disconnect();
+        return content.toByteArray();
+    }
+}
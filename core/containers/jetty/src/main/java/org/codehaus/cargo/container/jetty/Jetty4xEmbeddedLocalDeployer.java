@@ -42,6 +42,17 @@ public class Jetty4xEmbeddedLocalDeployer extends AbstractJettyEmbeddedLocalDepl
         super(container);
     }
 
+    /**
+     * {@inheritDoc}. Jetty 4.x and 5.x add webapps to the server itself, which is not meant to
+     * be modified concurrently.
+     * @return <code>false</code>
+     */
+    @Override
+    protected boolean isParallelDeploymentSupported()
+    {
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -41,6 +41,17 @@ public class Jetty5xEmbeddedLocalDeployer extends AbstractJettyEmbeddedLocalDepl
         super(container);
     }
 
+    /**
+     * {@inheritDoc}. Jetty 4.x and 5.x add webapps to the server itself, which is not meant to
+     * be modified concurrently.
+     * @return <code>false</code>
+     */
+    @Override
+    protected boolean isParallelDeploymentSupported()
+    {
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -115,7 +126,7 @@ public class Jetty5xEmbeddedLocalDeployer extends AbstractJettyEmbeddedLocalDepl
         stop(deployable);
         try
         {
-            Object webapp = getDeployedWebAppContext(deployable);
+            Object webapp = getDeployedWebApp(deployable);
             webapp.getClass().getMethod("destroy").invoke(webapp);
         }
         catch (Exception e)
@@ -132,7 +143,7 @@ public class Jetty5xEmbeddedLocalDeployer extends AbstractJettyEmbeddedLocalDepl
     {
         try
         {
-            Object webapp = getDeployedWebAppContext(deployable);
+            Object webapp = getDeployedWebApp(deployable);
             webapp.getClass().getMethod("start").invoke(webapp);
         }
         catch (Exception e)
@@ -149,7 +160,7 @@ public class Jetty5xEmbeddedLocalDeployer extends AbstractJettyEmbeddedLocalDepl
     {
         try
         {
-            Object webapp = getDeployedWebAppContext(deployable);
+            Object webapp = getDeployedWebApp(deployable);
             webapp.getClass().getMethod("stop").invoke(webapp);
         }
         catch (Exception e)
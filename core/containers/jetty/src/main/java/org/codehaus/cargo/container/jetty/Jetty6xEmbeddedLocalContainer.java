@@ -112,14 +112,14 @@ public class Jetty6xEmbeddedLocalContainer extends AbstractJettyEmbeddedLocalCon
      */
     public void setDefaultRealm(Object webapp) throws Exception
     {
-        Class userRealmClass = getClassLoader().loadClass("org.mortbay.jetty.security.UserRealm");
+        Class userRealmClass = loadClass("org.mortbay.jetty.security.UserRealm");
 
         if (this.defaultRealm != null)
         {
             Object securityHandler =
-                webapp.getClass().getMethod("getSecurityHandler", new Class[] {}).invoke(webapp,
+                getMethod(webapp.getClass(), "getSecurityHandler", new Class[] {}).invoke(webapp,
                     new Object[] {});
-            securityHandler.getClass().getMethod("setUserRealm", new Class[] {userRealmClass})
+            getMethod(securityHandler.getClass(), "setUserRealm", new Class[] {userRealmClass})
                 .invoke(securityHandler, new Object[] {this.defaultRealm});
         }
     }
@@ -155,7 +155,7 @@ public class Jetty6xEmbeddedLocalContainer extends AbstractJettyEmbeddedLocalCon
         // selectConnector.setPort(new
         // Integer(getConfiguration().getPropertyValue(ServletPropertySet.PORT)));
         Class selectConnectorClass =
-            getClassLoader().loadClass("org.mortbay.jetty.nio.SelectChannelConnector");
+            loadClass("org.mortbay.jetty.nio.SelectChannelConnector");
         Object connector = selectConnectorClass.newInstance();
         selectConnectorClass.getMethod("setPort", new Class[] {int.class}).invoke(
             connector,
@@ -163,11 +163,11 @@ public class Jetty6xEmbeddedLocalContainer extends AbstractJettyEmbeddedLocalCon
                 .getPropertyValue(ServletPropertySet.PORT))});
 
         // server.addConnector(selectConnector);
-        Class connectorClass = getClassLoader().loadClass("org.mortbay.jetty.Connector");
+        Class connectorClass = loadClass("org.mortbay.jetty.Connector");
         Object connectorArray =
             Array.newInstance(connectorClass, 1);
         Array.set(connectorArray, 0, connector);
-        getServer().getClass().getMethod("addConnector", new Class[] {connectorClass}).invoke(
+        getMethod(getServer().getClass(), "addConnector", new Class[] {connectorClass}).invoke(
             getServer(), new Object[] {connector});
     }
 
@@ -189,30 +189,30 @@ public class Jetty6xEmbeddedLocalContainer extends AbstractJettyEmbeddedLocalCon
         // handlers.setHandlers(new Handler[]{contextHandlers, new DefaultHandler(), new
         // RequestLogHandler()});
         // server.setHandler(handlers);
-        handlerClass = getClassLoader().loadClass("org.mortbay.jetty.Handler");
+        handlerClass = loadClass("org.mortbay.jetty.Handler");
         handlers =
-            getClassLoader().loadClass("org.mortbay.jetty.handler.HandlerCollection")
+            loadClass("org.mortbay.jetty.handler.HandlerCollection")
                 .newInstance();
         contextHandlers =
-            getClassLoader().loadClass("org.mortbay.jetty.handler.ContextHandlerCollection")
+            loadClass("org.mortbay.jetty.handler.ContextHandlerCollection")
                 .newInstance();
         Object defaultHandler =
-            getClassLoader().loadClass("org.mortbay.jetty.handler.DefaultHandler").newInstance();
+            loadClass("org.mortbay.jetty.handler.DefaultHandler").newInstance();
         Object handlerArray = Array.newInstance(handlerClass, 2);
         Array.set(handlerArray, 0, contextHandlers);
         Array.set(handlerArray, 1, defaultHandler);
-        handlers.getClass().getMethod("setHandlers", new Class[] {handlerArray.getClass()})
+        getMethod(handlers.getClass(), "setHandlers", new Class[] {handlerArray.getClass()})
             .invoke(handlers, new Object[] {handlerArray});
-        getServer().getClass().getMethod("setHandler", new Class[] {handlerClass}).invoke(
+        getMethod(getServer().getClass(), "setHandler", new Class[] {handlerClass}).invoke(
             getServer(), new Object[] {handlers});
 
         // Method to add a webappcontext to jetty
         addHandlerMethod =
-            contextHandlers.getClass().getMethod("addHandler", new Class[] {handlerClass});
+            getMethod(contextHandlers.getClass(), "addHandler", new Class[] {handlerClass});
 
         // Method to remove a webappcontext from jetty
         removeHandlerMethod =
-            contextHandlers.getClass().getMethod("removeHandler", new Class[] {handlerClass});
+            getMethod(contextHandlers.getClass(), "removeHandler", new Class[] {handlerClass});
     }
 
     /**
@@ -256,15 +256,15 @@ public class Jetty6xEmbeddedLocalContainer extends AbstractJettyEmbeddedLocalCon
     public Object createHandler(Deployable deployable) throws Exception
     {
         Object handler =
-            getClassLoader().loadClass("org.mortbay.jetty.webapp.WebAppContext").newInstance();
+            loadClass("org.mortbay.jetty.webapp.WebAppContext").newInstance();
 
-        handler.getClass().getMethod("setContextPath", new Class[] {String.class}).invoke(
+        getMethod(handler.getClass(), "setContextPath", new Class[] {String.class}).invoke(
             handler, new Object[] {"/" + ((WAR) deployable).getContext()});
-        handler.getClass().getMethod("setWar", new Class[] {String.class}).invoke(handler,
+        getMethod(handler.getClass(), "setWar", new Class[] {String.class}).invoke(handler,
             new Object[] {deployable.getFile()});
-        handler.getClass().getMethod("setDefaultsDescriptor", String.class).invoke(handler,
+        getMethod(handler.getClass(), "setDefaultsDescriptor", String.class).invoke(handler,
             getFileHandler().append(getConfiguration().getHome(), "etc/webdefault.xml"));
-        handler.getClass().getMethod("setExtraClasspath", String.class)
+        getMethod(handler.getClass(), "setExtraClasspath", String.class)
             .invoke(handler, JettyUtils.getExtraClasspath((WAR) deployable, false));
 
         setDefaultRealm(handler);
@@ -284,10 +284,10 @@ public class Jetty6xEmbeddedLocalContainer extends AbstractJettyEmbeddedLocalCon
     public Object createHandler(String contextPath, String war) throws Exception
     {
         Object handler =
-            getClassLoader().loadClass("org.mortbay.jetty.webapp.WebAppContext").newInstance();
-        handler.getClass().getMethod("setContextPath", new Class[] {String.class}).invoke(
+            loadClass("org.mortbay.jetty.webapp.WebAppContext").newInstance();
+        getMethod(handler.getClass(), "setContextPath", new Class[] {String.class}).invoke(
             handler, new Object[] {contextPath});
-        handler.getClass().getMethod("setWar", new Class[] {String.class}).invoke(handler,
+        getMethod(handler.getClass(), "setWar", new Class[] {String.class}).invoke(handler,
             new Object[] {war});
 
         setDefaultRealm(handler);
@@ -308,8 +308,13 @@ public class Jetty6xEmbeddedLocalContainer extends AbstractJettyEmbeddedLocalCon
         {
             throw new ContainerException("No Jetty instance to deploy to");
         }
-        addHandlerMethod.invoke(contextHandlers, new Object[] {handler});
-        Method m = getServer().getClass().getMethod("isStarted", new Class[] {});
+        // Handlers can be added by parallel deployments, whereas Jetty only makes the handler
+        // collection itself safe for concurrent requests
+        synchronized (contextHandlers)
+        {
+            addHandlerMethod.invoke(contextHandlers, new Object[] {handler});
+        }
+        Method m = getMethod(getServer().getClass(), "isStarted", new Class[] {});
         if (((Boolean) m.invoke(getServer(), null)).booleanValue())
         {
             handlerClass.getMethod("start", new Class[] {}).invoke(handler, null);
@@ -333,7 +338,10 @@ public class Jetty6xEmbeddedLocalContainer extends AbstractJettyEmbeddedLocalCon
         {
             throw new ContainerException("No Jetty instance to deploy to");
         }
-        removeHandlerMethod.invoke(contextHandlers, new Object[] {handler});
+        synchronized (contextHandlers)
+        {
+            removeHandlerMethod.invoke(contextHandlers, new Object[] {handler});
+        }
     }
 
     /**
@@ -350,37 +358,37 @@ public class Jetty6xEmbeddedLocalContainer extends AbstractJettyEmbeddedLocalCon
         if (!getConfiguration().getUsers().isEmpty())
         {
             Class realmClass =
-                getClassLoader().loadClass("org.mortbay.jetty.security.HashUserRealm");
+                loadClass("org.mortbay.jetty.security.HashUserRealm");
             this.defaultRealm =
                 realmClass.getConstructor(new Class[] {String.class}).newInstance(new Object[] {
                     getConfiguration().getPropertyValue(JettyPropertySet.REALM_NAME)});
 
             for (User user : getConfiguration().getUsers())
             {
-                this.defaultRealm.getClass().getMethod("put",
+                getMethod(this.defaultRealm.getClass(), "put",
                     new Class[] {Object.class, Object.class}).invoke(this.defaultRealm,
                         new Object[] {user.getName(), user.getPassword()});
 
                 for (String role : user.getRoles())
                 {
-                    this.defaultRealm.getClass().getMethod("addUserToRole",
+                    getMethod(this.defaultRealm.getClass(), "addUserToRole",
                         new Class[] {String.class, String.class}).invoke(this.defaultRealm,
                             new Object[] {user.getName(), role});
                 }
             }
 
             Object userRealmsArray =
-                Array.newInstance(getClassLoader().loadClass(
+                Array.newInstance(loadClass(
                     "org.mortbay.jetty.security.UserRealm"), 1);
             Array.set(userRealmsArray, 0, this.defaultRealm);
 
             // Add newly created realm to server
-            getServer().getClass().getMethod("setUserRealms",
+            getMethod(getServer().getClass(), "setUserRealms",
                 new Class[] {userRealmsArray.getClass()}).invoke(getServer(),
                     new Object[] {userRealmsArray});
 
             Object[] realmlist =
-                (Object[]) getServer().getClass().getMethod("getUserRealms", new Class[] {})
+                (Object[]) getMethod(getServer().getClass(), "getUserRealms", new Class[] {})
                     .invoke(getServer(), new Object[] {});
             getLogger().info(
                 "Added " + (realmlist == null ? "0" : String.valueOf(realmlist.length))
@@ -398,7 +406,7 @@ public class Jetty6xEmbeddedLocalContainer extends AbstractJettyEmbeddedLocalCon
         {
             super.createServerObject();
 
-            this.server.getClass().getMethod("setStopAtShutdown", new Class[] {boolean.class})
+            getMethod(this.server.getClass(), "setStopAtShutdown", new Class[] {boolean.class})
                 .invoke(this.server, new Object[] {Boolean.TRUE});
         }
     }
@@ -408,6 +416,7 @@ public class Jetty6xEmbeddedLocalContainer extends AbstractJettyEmbeddedLocalCon
      */
     protected void startJetty()
     {
+        addServerStoppedListener();
         JettyExecutorThread jettyRunner = new JettyExecutorThread(getServer(), true);
         jettyRunner.setLogger(getLogger());
         jettyRunner.start();
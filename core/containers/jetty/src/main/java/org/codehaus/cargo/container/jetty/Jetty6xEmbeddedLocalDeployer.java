@@ -123,7 +123,7 @@ public class Jetty6xEmbeddedLocalDeployer extends AbstractJettyEmbeddedLocalDepl
     {
         stop(deployable);
         Jetty6xEmbeddedLocalContainer container = (Jetty6xEmbeddedLocalContainer) getContainer();
-        Object deployedWebAppContext = getDeployedWebAppContext(deployable);
+        Object deployedWebAppContext = getDeployedWebApp(deployable);
 
         try
         {
@@ -143,7 +143,7 @@ public class Jetty6xEmbeddedLocalDeployer extends AbstractJettyEmbeddedLocalDepl
     {
         try
         {
-            Object deployedWebAppContext = getDeployedWebAppContext(deployable);
+            Object deployedWebAppContext = getDeployedWebApp(deployable);
             webAppContextClass.getMethod("start", null).invoke(deployedWebAppContext, null);
         }
         catch (Exception e)
@@ -160,7 +160,7 @@ public class Jetty6xEmbeddedLocalDeployer extends AbstractJettyEmbeddedLocalDepl
     {
         try
         {
-            Object deployedWebAppContext = getDeployedWebAppContext(deployable);
+            Object deployedWebAppContext = getDeployedWebApp(deployable);
             webAppContextClass.getMethod("stop", null).invoke(deployedWebAppContext, null);
         }
         catch (Exception e)
@@ -76,9 +76,9 @@ public class Jetty7xEmbeddedLocalContainer extends Jetty6xEmbeddedLocalContainer
         if (this.defaultRealm != null)
         {
             Object securityHandler =
-                webapp.getClass().getMethod("getSecurityHandler", new Class[] {}).invoke(webapp,
+                getMethod(webapp.getClass(), "getSecurityHandler", new Class[] {}).invoke(webapp,
                     new Object[] {});
-            securityHandler.getClass().getMethod("setLoginService", new Class[] {userRealmClass})
+            getMethod(securityHandler.getClass(), "setLoginService", new Class[] {userRealmClass})
                 .invoke(securityHandler, new Object[] {this.defaultRealm});
         }
     }
@@ -95,7 +95,7 @@ public class Jetty7xEmbeddedLocalContainer extends Jetty6xEmbeddedLocalContainer
         // selectConnector.setPort(new
         // Integer(getConfiguration().getPropertyValue(ServletPropertySet.PORT)));
         Class selectConnectorClass =
-            getClassLoader().loadClass("org.eclipse.jetty.server.nio.SelectChannelConnector");
+            loadClass("org.eclipse.jetty.server.nio.SelectChannelConnector");
         Object connector = selectConnectorClass.newInstance();
         selectConnectorClass.getMethod("setPort", new Class[] {int.class}).invoke(
             connector,
@@ -103,10 +103,10 @@ public class Jetty7xEmbeddedLocalContainer extends Jetty6xEmbeddedLocalContainer
                 .getPropertyValue(ServletPropertySet.PORT))});
 
         // server.addConnector(selectConnector);
-        Class connectorClass = getClassLoader().loadClass("org.eclipse.jetty.server.Connector");
+        Class connectorClass = loadClass("org.eclipse.jetty.server.Connector");
         Object connectorArray = Array.newInstance(connectorClass, 1);
         Array.set(connectorArray, 0, connector);
-        getServer().getClass().getMethod("addConnector", new Class[] {connectorClass})
+        getMethod(getServer().getClass(), "addConnector", new Class[] {connectorClass})
             .invoke(getServer(), new Object[] {connector});
     }
 
@@ -123,31 +123,31 @@ public class Jetty7xEmbeddedLocalContainer extends Jetty6xEmbeddedLocalContainer
         // handlers.setHandlers(new Handler[]{contextHandlers, new DefaultHandler(), new
         // RequestLogHandler()});
         // server.setHandler(handlers);
-        handlerClass = getClassLoader().loadClass("org.eclipse.jetty.server.Handler");
+        handlerClass = loadClass("org.eclipse.jetty.server.Handler");
         handlers =
-            getClassLoader().loadClass("org.eclipse.jetty.server.handler.HandlerCollection")
+            loadClass("org.eclipse.jetty.server.handler.HandlerCollection")
                 .newInstance();
         contextHandlers =
-            getClassLoader().loadClass(
+            loadClass(
                 "org.eclipse.jetty.server.handler.ContextHandlerCollection").newInstance();
         Object defaultHandler =
-            getClassLoader().loadClass("org.eclipse.jetty.server.handler.DefaultHandler")
+            loadClass("org.eclipse.jetty.server.handler.DefaultHandler")
                 .newInstance();
         Object handlerArray = Array.newInstance(handlerClass, 2);
         Array.set(handlerArray, 0, contextHandlers);
         Array.set(handlerArray, 1, defaultHandler);
-        handlers.getClass().getMethod("setHandlers", new Class[] {handlerArray.getClass()})
+        getMethod(handlers.getClass(), "setHandlers", new Class[] {handlerArray.getClass()})
             .invoke(handlers, new Object[] {handlerArray});
-        getServer().getClass().getMethod("setHandler", new Class[] {handlerClass})
+        getMethod(getServer().getClass(), "setHandler", new Class[] {handlerClass})
             .invoke(getServer(), new Object[] {handlers});
 
         // Method to add a webappcontext to jetty
         addHandlerMethod =
-            contextHandlers.getClass().getMethod("addHandler", new Class[] {handlerClass});
+            getMethod(contextHandlers.getClass(), "addHandler", new Class[] {handlerClass});
 
         // Method to remove a webappcontext from jetty
         removeHandlerMethod =
-            contextHandlers.getClass().getMethod("removeHandler", new Class[] {handlerClass});
+            getMethod(contextHandlers.getClass(), "removeHandler", new Class[] {handlerClass});
     }
 
     /**
@@ -157,15 +157,15 @@ public class Jetty7xEmbeddedLocalContainer extends Jetty6xEmbeddedLocalContainer
     public Object createHandler(Deployable deployable) throws Exception
     {
         Object handler =
-            getClassLoader().loadClass("org.eclipse.jetty.webapp.WebAppContext").newInstance();
+            loadClass("org.eclipse.jetty.webapp.WebAppContext").newInstance();
 
-        handler.getClass().getMethod("setContextPath", new Class[] {String.class}).invoke(
+        getMethod(handler.getClass(), "setContextPath", new Class[] {String.class}).invoke(
             handler, new Object[] {"/" + ((WAR) deployable).getContext()});
-        handler.getClass().getMethod("setWar", new Class[] {String.class}).invoke(handler,
+        getMethod(handler.getClass(), "setWar", new Class[] {String.class}).invoke(handler,
             new Object[] {deployable.getFile()});
-        handler.getClass().getMethod("setDefaultsDescriptor", String.class).invoke(handler,
+        getMethod(handler.getClass(), "setDefaultsDescriptor", String.class).invoke(handler,
             getFileHandler().append(getConfiguration().getHome(), "etc/webdefault.xml"));
-        handler.getClass().getMethod("setExtraClasspath", String.class)
+        getMethod(handler.getClass(), "setExtraClasspath", String.class)
             .invoke(handler, JettyUtils.getExtraClasspath((WAR) deployable, false));
 
         setDefaultRealm(handler);
@@ -180,10 +180,10 @@ public class Jetty7xEmbeddedLocalContainer extends Jetty6xEmbeddedLocalContainer
     public Object createHandler(String contextPath, String war) throws Exception
     {
         Object handler =
-            getClassLoader().loadClass("org.eclipse.jetty.webapp.WebAppContext").newInstance();
-        handler.getClass().getMethod("setContextPath", new Class[] {String.class}).invoke(
+            loadClass("org.eclipse.jetty.webapp.WebAppContext").newInstance();
+        getMethod(handler.getClass(), "setContextPath", new Class[] {String.class}).invoke(
             handler, new Object[] {contextPath});
-        handler.getClass().getMethod("setWar", new Class[] {String.class}).invoke(handler,
+        getMethod(handler.getClass(), "setWar", new Class[] {String.class}).invoke(handler,
             new Object[] {war});
 
         setDefaultRealm(handler);
@@ -200,7 +200,7 @@ public class Jetty7xEmbeddedLocalContainer extends Jetty6xEmbeddedLocalContainer
         if (getConfiguration().getUsers() != null && !getConfiguration().getUsers().isEmpty())
         {
             Class realmClass =
-                getClassLoader().loadClass("org.eclipse.jetty.security.HashLoginService");
+                loadClass("org.eclipse.jetty.security.HashLoginService");
 
             Class credentialClass;
             try
@@ -250,7 +250,7 @@ public class Jetty7xEmbeddedLocalContainer extends Jetty6xEmbeddedLocalContainer
             }
 
             Object userRealmsArray =
-                Array.newInstance(getClassLoader().loadClass(
+                Array.newInstance(loadClass(
                     "org.eclipse.jetty.security.LoginService"), 1);
             Array.set(userRealmsArray, 0, this.defaultRealm);
         }
@@ -266,7 +266,7 @@ public class Jetty7xEmbeddedLocalContainer extends Jetty6xEmbeddedLocalContainer
         {
             try
             {
-                this.server = getClassLoader().loadClass("org.eclipse.jetty.server.Server")
+                this.server = loadClass("org.eclipse.jetty.server.Server")
                     .newInstance();
             }
             catch (Exception e)
@@ -274,7 +274,7 @@ public class Jetty7xEmbeddedLocalContainer extends Jetty6xEmbeddedLocalContainer
                 throw new ContainerException("Failed to create Jetty Server instance", e);
             }
 
-            this.server.getClass().getMethod("setStopAtShutdown", new Class[] {boolean.class})
+            getMethod(this.server.getClass(), "setStopAtShutdown", new Class[] {boolean.class})
                 .invoke(this.server, new Object[] {Boolean.TRUE});
         }
     }
@@ -86,7 +86,7 @@ public class Jetty8xEmbeddedLocalContainer extends Jetty7xEmbeddedLocalContainer
      */
     private Method setAttributeMethod() throws NoSuchMethodException
     {
-        return getServer().getClass().getMethod("setAttribute",
+        return getMethod(getServer().getClass(), "setAttribute",
             new Class[] {String.class, Object.class});
     }
 
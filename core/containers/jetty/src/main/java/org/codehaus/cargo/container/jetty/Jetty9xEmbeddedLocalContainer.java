@@ -69,7 +69,7 @@ public class Jetty9xEmbeddedLocalContainer extends Jetty8xEmbeddedLocalContainer
         // serverConnector.setPort(new
         // Integer(getConfiguration().getPropertyValue(ServletPropertySet.PORT)));
         Class selectConnectorClass =
-            getClassLoader().loadClass("org.eclipse.jetty.server.ServerConnector");
+            loadClass("org.eclipse.jetty.server.ServerConnector");
         Object connector = selectConnectorClass.getConstructor(
             new Class[] {this.server.getClass()}).newInstance(new Object[] {this.server});
         selectConnectorClass.getMethod("setPort", new Class[] {int.class}).invoke(
@@ -78,10 +78,10 @@ public class Jetty9xEmbeddedLocalContainer extends Jetty8xEmbeddedLocalContainer
                 .getPropertyValue(ServletPropertySet.PORT))});
 
         // server.addConnector(selectConnector);
-        Class connectorClass = getClassLoader().loadClass("org.eclipse.jetty.server.Connector");
+        Class connectorClass = loadClass("org.eclipse.jetty.server.Connector");
         Object connectorArray = Array.newInstance(connectorClass, 1);
         Array.set(connectorArray, 0, connector);
-        getServer().getClass().getMethod("addConnector", new Class[] {connectorClass})
+        getMethod(getServer().getClass(), "addConnector", new Class[] {connectorClass})
             .invoke(getServer(), new Object[] {connector});
     }
 
@@ -96,7 +96,7 @@ public class Jetty9xEmbeddedLocalContainer extends Jetty8xEmbeddedLocalContainer
             super.createServerObject();
 
             Class webAppContextClass =
-                getClassLoader().loadClass("org.eclipse.jetty.webapp.WebAppContext");
+                loadClass("org.eclipse.jetty.webapp.WebAppContext");
 
             if (webAppContextClass.getPackage().getImplementationVersion() != null
                 && (webAppContextClass.getPackage().getImplementationVersion().startsWith("9.3.")
@@ -113,7 +113,7 @@ public class Jetty9xEmbeddedLocalContainer extends Jetty8xEmbeddedLocalContainer
                 dftServerClassesList.addAll(Arrays.asList(dftServerClasses));
                 dftServerClasses = new String[dftServerClassesList.size()];
                 dftServerClasses = dftServerClassesList.toArray(dftServerClasses);
-                server.getClass().getMethod("setAttribute",
+                getMethod(server.getClass(), "setAttribute",
                     new Class[] {String.class, Object.class}).invoke(server, new Object[] {
                         "org.eclipse.jetty.webapp.serverClasses", dftServerClasses});
 
@@ -125,7 +125,7 @@ public class Jetty9xEmbeddedLocalContainer extends Jetty8xEmbeddedLocalContainer
                 dftSystemClassesList.add("org.eclipse.jetty.cdi.websocket.");
                 dftSystemClasses = new String[dftSystemClassesList.size()];
                 dftSystemClasses = dftSystemClassesList.toArray(dftSystemClasses);
-                server.getClass().getMethod("setAttribute",
+                getMethod(server.getClass(), "setAttribute",
                     new Class[] {String.class, Object.class}).invoke(server, new Object[] {
                         "org.eclipse.jetty.webapp.systemClasses", dftSystemClasses});
             }
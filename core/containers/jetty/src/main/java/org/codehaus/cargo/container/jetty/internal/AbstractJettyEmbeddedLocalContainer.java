@@ -19,13 +19,18 @@
  */
 package org.codehaus.cargo.container.jetty.internal;
 
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.codehaus.cargo.container.ContainerCapability;
 import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.configuration.LocalConfiguration;
 import org.codehaus.cargo.container.internal.ServletContainerCapability;
+import org.codehaus.cargo.container.internal.util.ClassLoaderHandles;
 import org.codehaus.cargo.container.spi.AbstractEmbeddedLocalContainer;
 import org.codehaus.cargo.util.CargoException;
 
@@ -51,6 +56,18 @@ public abstract class AbstractJettyEmbeddedLocalContainer
      */
     private String version;
 
+    /**
+     * Server object to which the server stopped listener has been added.
+     */
+    private Object listenedServer;
+
+    /**
+     * Map of context paths to the webapps deployed on this container. For the Jetty API, we need
+     * the deployed webapp object in order to call the API to remove it.
+     */
+    private final ConcurrentMap<String, Object> deployedWebApps =
+        new ConcurrentHashMap<String, Object>();
+
     /**
      * {@inheritDoc}
      * @see AbstractEmbeddedLocalContainer#AbstractEmbeddedLocalContainer(org.codehaus.cargo.container.configuration.LocalConfiguration)
@@ -84,7 +101,7 @@ public abstract class AbstractJettyEmbeddedLocalContainer
                 Method isStarted;
                 try
                 {
-                    isStarted = getServer().getClass().getMethod("isStarted", null);
+                    isStarted = getMethod(getServer().getClass(), "isStarted");
                 }
                 catch (NoSuchMethodException e)
                 {
@@ -118,6 +135,139 @@ public abstract class AbstractJettyEmbeddedLocalContainer
         }
     }
 
+    /**
+     * Load a Jetty class from the container's classloader. Classes are cached per classloader, so
+     * that containers sharing the same classloader only load them once.
+     * @param name Class name.
+     * @return Loaded class.
+     * @throws ClassNotFoundException If the class cannot be found.
+     */
+    protected Class loadClass(String name) throws ClassNotFoundException
+    {
+        return ClassLoaderHandles.getInstance(getClassLoader()).loadClass(name);
+    }
+
+    /**
+     * Look up a public method of a Jetty class. Methods are cached per classloader, so that
+     * containers sharing the same classloader only look them up once.
+     * @param clazz Class declaring or inheriting the method.
+     * @param name Method name.
+     * @param parameterTypes Parameter types.
+     * @return Method.
+     * @throws NoSuchMethodException If the method cannot be found.
+     */
+    protected Method getMethod(Class clazz, String name, Class... parameterTypes)
+        throws NoSuchMethodException
+    {
+        return ClassLoaderHandles.getInstance(getClassLoader()).getMethod(clazz, name,
+            parameterTypes);
+    }
+
+    /**
+     * @param context Context path of the webapp.
+     * @return Webapp object deployed on this container with the given context path,
+     * <code>null</code> if none.
+     */
+    public Object getDeployedWebApp(String context)
+    {
+        return this.deployedWebApps.get(context);
+    }
+
+    /**
+     * Register a webapp deployed on this container.
+     * @param context Context path of the webapp.
+     * @param webapp Jetty webapp object.
+     * @return Webapp object previously registered with the same context path, <code>null</code>
+     * if none.
+     */
+    public Object putDeployedWebApp(String context, Object webapp)
+    {
+        return this.deployedWebApps.put(context, webapp);
+    }
+
+    /**
+     * Unregister a webapp deployed on this container.
+     * @param context Context path of the webapp.
+     * @return Webapp object registered with the context path, <code>null</code> if none.
+     */
+    public Object removeDeployedWebApp(String context)
+    {
+        return this.deployedWebApps.remove(context);
+    }
+
+    /**
+     * Add a lifecycle listener to the Jetty server, so that this container gets notified when the
+     * server stops, including when it stops without having been asked to. The listener is only
+     * added once per server object; Jetty versions whose server does not accept lifecycle
+     * listeners are not monitored.
+     */
+    protected synchronized void addServerStoppedListener()
+    {
+        if (this.server == null || this.server == this.listenedServer)
+        {
+            return;
+        }
+
+        Method addLifeCycleListener = null;
+        for (Method method : this.server.getClass().getMethods())
+        {
+            if ("addLifeCycleListener".equals(method.getName())
+                && method.getParameterTypes().length == 1
+                && method.getParameterTypes()[0].isInterface())
+            {
+                addLifeCycleListener = method;
+                break;
+            }
+        }
+        if (addLifeCycleListener == null)
+        {
+            getLogger().debug("Jetty server does not accept lifecycle listeners",
+                this.getClass().getName());
+            return;
+        }
+
+        Class<?> listenerType = addLifeCycleListener.getParameterTypes()[0];
+        Object listener = Proxy.newProxyInstance(listenerType.getClassLoader(),
+            new Class[] {listenerType}, new InvocationHandler()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    String name = method.getName();
+                    if ("lifeCycleStopped".equals(name))
+                    {
+                        containerExited(-1);
+                    }
+                    else if ("equals".equals(name))
+                    {
+                        return proxy == args[0];
+                    }
+                    else if ("hashCode".equals(name))
+                    {
+                        return System.identityHashCode(proxy);
+                    }
+                    else if ("toString".equals(name))
+                    {
+                        return "Cargo server stopped listener";
+                    }
+                    return null;
+                }
+            });
+        try
+        {
+            addLifeCycleListener.invoke(this.server, listener);
+            this.listenedServer = this.server;
+        }
+        catch (Exception e)
+        {
+            getLogger().debug("Cannot add lifecycle listener to the Jetty server: " + e,
+                this.getClass().getName());
+        }
+    }
+
     /**
      * Create a Jetty Server Object.
      * @exception Exception in case of error
@@ -128,7 +278,7 @@ public abstract class AbstractJettyEmbeddedLocalContainer
         {
             try
             {
-                this.server = getClassLoader().loadClass("org.mortbay.jetty.Server").newInstance();
+                this.server = loadClass("org.mortbay.jetty.Server").newInstance();
             }
             catch (Exception e)
             {
@@ -19,13 +19,25 @@
  */
 package org.codehaus.cargo.container.jetty.internal;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.EmbeddedLocalContainer;
 import org.codehaus.cargo.container.deployable.Deployable;
 import org.codehaus.cargo.container.deployable.WAR;
 import org.codehaus.cargo.container.deployer.DeployerType;
+import org.codehaus.cargo.container.lifecycle.LifecycleInstrumentation;
+import org.codehaus.cargo.container.lifecycle.LifecycleSpan;
 import org.codehaus.cargo.container.spi.deployer.AbstractEmbeddedLocalDeployer;
 
 /**
@@ -34,10 +46,11 @@ import org.codehaus.cargo.container.spi.deployer.AbstractEmbeddedLocalDeployer;
 public abstract class AbstractJettyEmbeddedLocalDeployer extends AbstractEmbeddedLocalDeployer
 {
     /**
-     * Map of context paths to webapps. For the Jetty API, we need the deployed webapp object in
-     * order to call the API to remove it.
+     * Map of context paths to the webapps deployed by all embedded Jetty containers of the JVM,
+     * only kept for the deprecated static accessors.
      */
-    private static final Map<String, Object> DEPLOYED_WEBAPP_MAP = new HashMap<String, Object>();
+    private static final ConcurrentMap<String, Object> LEGACY_DEPLOYED_WEBAPP_MAP =
+        new ConcurrentHashMap<String, Object>();
 
     /**
      * List of virtual hostnames with which to associate webapps deployed with this deployer.
@@ -89,7 +102,7 @@ public abstract class AbstractJettyEmbeddedLocalDeployer extends AbstractEmbedde
     public void deploy(Deployable deployable)
     {
         Object o = deployWebApp(deployable);
-        addDeployedWebAppContext(getContext(deployable), o);
+        putDeployedWebApp(getContext(deployable), o);
     }
 
     /**
@@ -99,7 +112,182 @@ public abstract class AbstractJettyEmbeddedLocalDeployer extends AbstractEmbedde
     public void undeploy(Deployable deployable)
     {
         undeployWebApp(deployable);
-        removeDeployedWebAppContext(getContext(deployable));
+        removeDeployedWebApp(getContext(deployable));
+    }
+
+    /**
+     * {@inheritDoc}. If the Jetty version supports it and the webapps have distinct context
+     * paths, the webapps are deployed in parallel.
+     */
+    @Override
+    public void deploy(List<Deployable> deployables)
+    {
+        if (!isParallel(deployables))
+        {
+            super.deploy(deployables);
+            return;
+        }
+
+        LifecycleSpan span = LifecycleInstrumentation.begin(this, "deploy");
+        try
+        {
+            execute(deployables, true);
+        }
+        catch (RuntimeException e)
+        {
+            span.setFailure(e);
+            throw e;
+        }
+        finally
+        {
+            span.end();
+        }
+    }
+
+    /**
+     * Undeploy several webapps. If the Jetty version supports it and the webapps have distinct
+     * context paths, the webapps are undeployed in parallel.
+     * @param deployables the webapps to undeploy
+     */
+    public void undeploy(List<Deployable> deployables)
+    {
+        if (!isParallel(deployables))
+        {
+            for (Deployable deployable : deployables)
+            {
+                undeploy(deployable);
+            }
+            return;
+        }
+
+        LifecycleSpan span = LifecycleInstrumentation.begin(this, "undeploy");
+        try
+        {
+            execute(deployables, false);
+        }
+        catch (RuntimeException e)
+        {
+            span.setFailure(e);
+            throw e;
+        }
+        finally
+        {
+            span.end();
+        }
+    }
+
+    /**
+     * Whether webapps can be deployed and undeployed in parallel. Jetty versions which do not
+     * deploy webapps through a handler collection only support sequential deployments.
+     * @return <code>true</code>
+     */
+    protected boolean isParallelDeploymentSupported()
+    {
+        return true;
+    }
+
+    /**
+     * @param deployables the webapps to deploy or undeploy
+     * @return <code>true</code> if the webapps can be deployed or undeployed in parallel
+     */
+    private boolean isParallel(List<Deployable> deployables)
+    {
+        if (deployables.size() < 2 || !isParallelDeploymentSupported())
+        {
+            return false;
+        }
+
+        Set<String> contexts = new HashSet<String>();
+        for (Deployable deployable : deployables)
+        {
+            if (!(deployable instanceof WAR) || !contexts.add(getContext(deployable)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Deploy or undeploy webapps in parallel, waiting for all of them to be done.
+     * @param deployables the webapps to deploy or undeploy
+     * @param deploy <code>true</code> to deploy, <code>false</code> to undeploy
+     */
+    private void execute(List<Deployable> deployables, final boolean deploy)
+    {
+        int threads = Math.min(deployables.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threads, 2));
+        try
+        {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>(deployables.size());
+            for (final Deployable deployable : deployables)
+            {
+                futures.add(executor.submit(new Callable<Object>()
+                {
+                    /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public Object call()
+                    {
+                        if (deploy)
+                        {
+                            deploy(deployable);
+                        }
+                        else
+                        {
+                            undeploy(deployable);
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            RuntimeException failure = null;
+            for (Future<Object> future : futures)
+            {
+                RuntimeException exception = getFailure(future);
+                if (failure == null)
+                {
+                    failure = exception;
+                }
+            }
+            if (failure != null)
+            {
+                throw failure;
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Wait for a parallel deployment or undeployment to be done.
+     * @param future the deployment or undeployment
+     * @return its failure, <code>null</code> if it succeeded
+     */
+    private RuntimeException getFailure(Future<Object> future)
+    {
+        try
+        {
+            future.get();
+            return null;
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+            {
+                return (RuntimeException) e.getCause();
+            }
+            return new ContainerException("Failed to deploy webapps in parallel", e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return new ContainerException("Interrupted while deploying webapps in parallel", e);
+        }
     }
 
     /**
@@ -189,45 +377,94 @@ public abstract class AbstractJettyEmbeddedLocalDeployer extends AbstractEmbedde
     }
 
     /**
-     * Get the deployable that matches the context path.
+     * Get the webapp deployed on the container that matches the context path of a deployable.
      * 
      * @param deployable the deployable object
      * @return the webapp object
      */
-    protected static Object getDeployedWebAppContext(Deployable deployable)
+    protected Object getDeployedWebApp(Deployable deployable)
     {
-        synchronized (DEPLOYED_WEBAPP_MAP)
-        {
-            return DEPLOYED_WEBAPP_MAP.get(getContext(deployable));
-        }
+        return getJettyContainer().getDeployedWebApp(getContext(deployable));
     }
 
     /**
-     * Add a new entry to the context path:deployable map.
+     * Add a new entry to the context path:deployable map of the container.
      * @param context the contextpath for the webapp
      * @param deployedWebApp the jetty webapp object
      */
-    protected static void addDeployedWebAppContext(String context, Object deployedWebApp)
+    protected void putDeployedWebApp(String context, Object deployedWebApp)
     {
-        synchronized (DEPLOYED_WEBAPP_MAP)
+        getJettyContainer().putDeployedWebApp(context, deployedWebApp);
+        if (deployedWebApp != null)
         {
-            DEPLOYED_WEBAPP_MAP.put(context, deployedWebApp);
+            LEGACY_DEPLOYED_WEBAPP_MAP.put(context, deployedWebApp);
         }
     }
 
     /**
-     * Take a map entry away using the key.
+     * Take a map entry of the container away using the key.
      * 
      * @param context the context path
      */
-    protected static void removeDeployedWebAppContext(String context)
+    protected void removeDeployedWebApp(String context)
     {
-        synchronized (DEPLOYED_WEBAPP_MAP)
+        Object deployedWebApp = getJettyContainer().removeDeployedWebApp(context);
+        if (deployedWebApp != null)
         {
-            DEPLOYED_WEBAPP_MAP.remove(context);
+            LEGACY_DEPLOYED_WEBAPP_MAP.remove(context, deployedWebApp);
         }
     }
 
+    /**
+     * Get the webapp deployed on any embedded Jetty container of the JVM that matches the context
+     * path of a deployable.
+     * 
+     * @param deployable the deployable object
+     * @return the webapp object, the last deployed one if several containers have deployed a
+     * webapp with the same context path
+     * @deprecated Use {@link #getDeployedWebApp(Deployable)}, which only looks at the container of
+     * the deployer.
+     */
+    @Deprecated
+    protected static Object getDeployedWebAppContext(Deployable deployable)
+    {
+        return LEGACY_DEPLOYED_WEBAPP_MAP.get(getContext(deployable));
+    }
+
+    /**
+     * Add a new entry to the context path:deployable map shared by all containers.
+     * @param context the contextpath for the webapp
+     * @param deployedWebApp the jetty webapp object
+     * @deprecated Use {@link #putDeployedWebApp(String, Object)}, which registers the webapp with
+     * the container of the deployer.
+     */
+    @Deprecated
+    protected static void addDeployedWebAppContext(String context, Object deployedWebApp)
+    {
+        LEGACY_DEPLOYED_WEBAPP_MAP.put(context, deployedWebApp);
+    }
+
+    /**
+     * Take a map entry shared by all containers away using the key.
+     * 
+     * @param context the context path
+     * @deprecated Use {@link #removeDeployedWebApp(String)}, which unregisters the webapp from the
+     * container of the deployer.
+     */
+    @Deprecated
+    protected static void removeDeployedWebAppContext(String context)
+    {
+        LEGACY_DEPLOYED_WEBAPP_MAP.remove(context);
+    }
+
+    /**
+     * @return the Jetty container webapps are deployed to
+     */
+    private AbstractJettyEmbeddedLocalContainer getJettyContainer()
+    {
+        return (AbstractJettyEmbeddedLocalContainer) getContainer();
+    }
+
     /**
      * Get the context path for the webapp.
      * 
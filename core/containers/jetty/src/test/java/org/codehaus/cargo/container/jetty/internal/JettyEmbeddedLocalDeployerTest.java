@@ -0,0 +1,247 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.jetty.internal;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.EmbeddedLocalContainer;
+import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.deployable.WAR;
+import org.codehaus.cargo.container.jetty.Jetty9xEmbeddedLocalContainer;
+import org.codehaus.cargo.container.jetty.Jetty9xEmbeddedStandaloneLocalConfiguration;
+
+/**
+ * Unit tests for {@link AbstractJettyEmbeddedLocalDeployer}.
+ */
+public class JettyEmbeddedLocalDeployerTest extends TestCase
+{
+    /**
+     * Deployer which does not use Jetty, waiting on a barrier while deploying or undeploying so
+     * that concurrent deployments can be detected.
+     */
+    private static class TestDeployer extends AbstractJettyEmbeddedLocalDeployer
+    {
+        /**
+         * Barrier all deployments and undeployments wait on, <code>null</code> to not wait.
+         */
+        private CyclicBarrier barrier;
+
+        /**
+         * Time to wait on the barrier, in milliseconds.
+         */
+        private long timeout = 10000;
+
+        /**
+         * Context path of the webapp whose deployment fails, <code>null</code> if none.
+         */
+        private String failingContext;
+
+        /**
+         * @param container Container webapps are deployed to.
+         */
+        public TestDeployer(EmbeddedLocalContainer container)
+        {
+            super(container);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object deployWebApp(Deployable deployable)
+        {
+            await();
+            if (getContext(deployable).equals(this.failingContext))
+            {
+                throw new ContainerException("Failed to deploy " + getContext(deployable));
+            }
+            return new Object();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void undeployWebApp(Deployable deployable)
+        {
+            await();
+        }
+
+        /**
+         * Wait for the other deployments or undeployments to reach the barrier.
+         */
+        private void await()
+        {
+            if (this.barrier == null)
+            {
+                return;
+            }
+            try
+            {
+                this.barrier.await(this.timeout, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                throw new ContainerException("Interrupted", e);
+            }
+            catch (BrokenBarrierException e)
+            {
+                throw new ContainerException("Broken barrier", e);
+            }
+            catch (TimeoutException e)
+            {
+                throw new ContainerException("Webapps have not been deployed in parallel", e);
+            }
+        }
+    }
+
+    /**
+     * Configuration directory of the containers.
+     */
+    private File configurationDir;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.configurationDir = new File("target/jetty9x-embedded").getAbsoluteFile();
+        this.configurationDir.mkdirs();
+    }
+
+    /**
+     * Create a deployer for a new embedded Jetty container.
+     * @return Deployer.
+     */
+    private TestDeployer createDeployer()
+    {
+        return new TestDeployer(new Jetty9xEmbeddedLocalContainer(
+            new Jetty9xEmbeddedStandaloneLocalConfiguration(this.configurationDir.getPath())));
+    }
+
+    /**
+     * Test that each container only sees the webapps deployed on it.
+     */
+    public void testWebAppsScopedToContainer()
+    {
+        TestDeployer deployer1 = createDeployer();
+        TestDeployer deployer2 = createDeployer();
+        WAR war = new WAR("app.war");
+
+        deployer1.deploy(war);
+        deployer2.deploy(war);
+        Object webApp1 = deployer1.getDeployedWebApp(war);
+        Object webApp2 = deployer2.getDeployedWebApp(war);
+        assertNotNull(webApp1);
+        assertNotNull(webApp2);
+        assertNotSame(webApp1, webApp2);
+        assertSame(webApp2, AbstractJettyEmbeddedLocalDeployer.getDeployedWebAppContext(war));
+
+        deployer1.undeploy(war);
+        assertNull(deployer1.getDeployedWebApp(war));
+        assertSame(webApp2, deployer2.getDeployedWebApp(war));
+        assertSame(webApp2, AbstractJettyEmbeddedLocalDeployer.getDeployedWebAppContext(war));
+
+        deployer2.undeploy(war);
+        assertNull(deployer2.getDeployedWebApp(war));
+        assertNull(AbstractJettyEmbeddedLocalDeployer.getDeployedWebAppContext(war));
+    }
+
+    /**
+     * Test that webapps with distinct context paths are deployed and undeployed in parallel.
+     */
+    public void testParallelDeployment()
+    {
+        TestDeployer deployer = createDeployer();
+        List<Deployable> wars = Arrays.<Deployable>asList(new WAR("app1.war"),
+            new WAR("app2.war"));
+        deployer.barrier = new CyclicBarrier(wars.size());
+
+        deployer.deploy(wars);
+        for (Deployable war : wars)
+        {
+            assertNotNull(deployer.getDeployedWebApp(war));
+        }
+
+        deployer.undeploy(wars);
+        for (Deployable war : wars)
+        {
+            assertNull(deployer.getDeployedWebApp(war));
+        }
+    }
+
+    /**
+     * Test that the failure of a parallel deployment is reported once all deployments are done.
+     */
+    public void testParallelDeploymentFailure()
+    {
+        TestDeployer deployer = createDeployer();
+        WAR war1 = new WAR("app1.war");
+        WAR war2 = new WAR("app2.war");
+        deployer.barrier = new CyclicBarrier(2);
+        deployer.failingContext = "/app2";
+
+        try
+        {
+            deployer.deploy(Arrays.<Deployable>asList(war1, war2));
+            fail("No exception thrown");
+        }
+        catch (ContainerException expected)
+        {
+            assertEquals("Failed to deploy /app2", expected.getMessage());
+        }
+        assertNotNull(deployer.getDeployedWebApp(war1));
+        assertNull(deployer.getDeployedWebApp(war2));
+    }
+
+    /**
+     * Test that webapps with the same context path are deployed sequentially.
+     */
+    public void testSameContextDeployedSequentially()
+    {
+        TestDeployer deployer = createDeployer();
+        WAR war1 = new WAR("app.war");
+        WAR war2 = new WAR("other/app.war");
+        // Parallel deployments would wait on each other and succeed
+        deployer.barrier = new CyclicBarrier(2);
+        deployer.timeout = 500;
+
+        try
+        {
+            deployer.deploy(Arrays.<Deployable>asList(war1, war2));
+            fail("No exception thrown");
+        }
+        catch (ContainerException expected)
+        {
+            assertEquals("Webapps have not been deployed in parallel", expected.getMessage());
+        }
+    }
+}
@@ -54,6 +54,16 @@ public class Jonas5xInstalledLocalContainer extends AbstractJonasInstalledLocalC
         super(configuration);
     }
 
+    /**
+     * <code>ClientAdmin -start</code> returns once the server runs in its own process.
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isStartJvmMonitored()
+    {
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -45,6 +45,18 @@ import org.codehaus.cargo.container.jonas.JonasPropertySet;
  */
 public abstract class AbstractJonas5xRemoteDeployer extends AbstractJonasRemoteDeployer
 {
+    /**
+     * Name under which the name of the "development" attribute is cached in pooled sessions.
+     */
+    private static final String DEVELOPMENT_ATTRIBUTE_NAME =
+        "depmonitor.developmentAttributeName";
+
+    /**
+     * Development mode of the depmonitor service before the current batch, <code>null</code>
+     * outside of batches.
+     */
+    private Boolean development;
+
     /**
      * Constructor.
      * 
@@ -137,57 +149,68 @@ public abstract class AbstractJonas5xRemoteDeployer extends AbstractJonasRemoteD
     }
 
     /**
-     * {@inheritDoc}
+     * {@inheritDoc}. If deploying to a server, the development mode of the depmonitor service is
+     * disabled for the whole batch.
      */
     @Override
-    public void deploy(Deployable deployable)
+    protected void beginBatch(MBeanServerConnectionPool.Session session,
+        RemoteDeployerConfig config) throws Exception
     {
-        RemoteDeployerConfig config = getConfig();
         if (config.getClusterName() == null)
         {
-            MBeanServerConnectionFactory factory = null;
-            try
-            {
-                factory = getMBeanServerConnectionFactory();
-                MBeanServerConnection mbsc = factory.getServerConnection(configuration);
+            MBeanServerConnection mbsc = session.getConnection();
 
-                ObjectName depmonitorServiceMBeanName = getDepmonitorServiceMBeanName(
-                    config.getDomainName());
-
-                String developmentName = getDeploymentAttributeName(depmonitorServiceMBeanName,
-                    mbsc);
-
-                Boolean development = (Boolean) mbsc.getAttribute(depmonitorServiceMBeanName,
-                    developmentName);
-
-                mbsc.setAttribute(depmonitorServiceMBeanName, new Attribute(developmentName,
-                    Boolean.FALSE));
+            ObjectName depmonitorServiceMBeanName = getDepmonitorServiceMBeanName(
+                config.getDomainName());
 
+            String developmentName = (String) session.getCachedValue(DEVELOPMENT_ATTRIBUTE_NAME);
+            if (developmentName == null)
+            {
                 try
                 {
-                    super.deploy(deployable);
+                    developmentName = getDeploymentAttributeName(depmonitorServiceMBeanName,
+                        mbsc);
                 }
-                finally
+                catch (Exception e)
                 {
-                    mbsc.setAttribute(depmonitorServiceMBeanName, new Attribute(developmentName,
-                        development));
+                    throw e;
                 }
-            }
-            catch (Throwable t)
-            {
-                if (t instanceof ContainerException)
+                catch (Throwable t)
                 {
-                    throw (ContainerException) t;
+                    throw new ContainerException("Cannot read the development mode", t);
                 }
+                session.putCachedValue(DEVELOPMENT_ATTRIBUTE_NAME, developmentName);
+            }
+
+            this.development = (Boolean) mbsc.getAttribute(depmonitorServiceMBeanName,
+                developmentName);
 
-                throw new ContainerException("Deployment error", t);
+            mbsc.setAttribute(depmonitorServiceMBeanName, new Attribute(developmentName,
+                Boolean.FALSE));
+        }
+    }
+
+    /**
+     * {@inheritDoc}. The development mode of the depmonitor service is restored.
+     */
+    @Override
+    protected void endBatch(MBeanServerConnectionPool.Session session,
+        RemoteDeployerConfig config) throws Exception
+    {
+        if (this.development != null)
+        {
+            try
+            {
+                ObjectName depmonitorServiceMBeanName = getDepmonitorServiceMBeanName(
+                    config.getDomainName());
+                String developmentName =
+                    (String) session.getCachedValue(DEVELOPMENT_ATTRIBUTE_NAME);
+                session.getConnection().setAttribute(depmonitorServiceMBeanName,
+                    new Attribute(developmentName, this.development));
             }
             finally
             {
-                if (factory != null)
-                {
-                    factory.destroy();
-                }
+                this.development = null;
             }
         }
     }
@@ -196,78 +219,49 @@ public abstract class AbstractJonas5xRemoteDeployer extends AbstractJonasRemoteD
      * {@inheritDoc}
      */
     @Override
-    public void undeploy(Deployable deployable)
+    protected void deploy(Deployable deployable, MBeanServerConnectionPool.Session session,
+        RemoteDeployerConfig config) throws Exception
     {
-        RemoteDeployerConfig config = getConfig();
         if (config.getClusterName() == null)
         {
-            MBeanServerConnectionFactory factory = null;
-            try
-            {
-                factory = getMBeanServerConnectionFactory();
-                MBeanServerConnection mbsc = factory.getServerConnection(configuration);
-
-                ObjectName depmonitorServiceMBeanName = getDepmonitorServiceMBeanName(
-                    config.getDomainName());
-
-                String developmentName = getDeploymentAttributeName(depmonitorServiceMBeanName,
-                    mbsc);
+            super.deploy(deployable, session, config);
+        }
+    }
 
-                Boolean development = (Boolean) mbsc.getAttribute(depmonitorServiceMBeanName,
-                    developmentName);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void undeploy(Deployable deployable, MBeanServerConnectionPool.Session session,
+        RemoteDeployerConfig config) throws Exception
+    {
+        if (config.getClusterName() == null)
+        {
+            super.undeploy(deployable, session, config);
 
-                mbsc.setAttribute(depmonitorServiceMBeanName, new Attribute(developmentName,
-                    Boolean.FALSE));
+            if (this.development != null && this.development)
+            {
+                String remoteFileName = findRemoteFileName(deployable,
+                    config.getDeployableIdentifier(), true);
 
-                try
+                if (remoteFileName != null)
                 {
-                    super.undeploy(deployable);
+                    getLogger().info(
+                        "The target JOnAS server is running in development mode. "
+                            + "CARGO will now delete the undeployed module.",
+                        this.getClass().getName());
 
-                    if (development)
-                    {
-                        String remoteFileName = findRemoteFileName(deployable,
-                            config.getDeployableIdentifier(), true);
+                    ObjectName serverMBeanName = getServerMBeanName(config.getDomainName(),
+                        config.getServerName());
 
-                        if (remoteFileName != null)
+                    session.getConnection().invoke(serverMBeanName, "removeModuleFile",
+                        new Object[]
                         {
-                            getLogger().info(
-                                "The target JOnAS server is running in development mode. "
-                                    + "CARGO will now delete the undeployed module.",
-                                this.getClass().getName());
-
-                            ObjectName serverMBeanName = getServerMBeanName(config.getDomainName(),
-                                config.getServerName());
-
-                            mbsc.invoke(serverMBeanName, "removeModuleFile", new Object[]
-                            {
-                                remoteFileName
-                            }, new String[]
-                            {
-                                String.class.getName()
-                            });
-                        }
-                    }
-                }
-                finally
-                {
-                    mbsc.setAttribute(depmonitorServiceMBeanName, new Attribute(developmentName,
-                        development));
-                }
-            }
-            catch (Throwable t)
-            {
-                if (t instanceof ContainerException)
-                {
-                    throw (ContainerException) t;
-                }
-
-                throw new ContainerException("Deployment error: " + t.getMessage(), t);
-            }
-            finally
-            {
-                if (factory != null)
-                {
-                    factory.destroy();
+                            remoteFileName
+                        }, new String[]
+                        {
+                            String.class.getName()
+                        });
                 }
             }
         }
@@ -288,7 +282,7 @@ public abstract class AbstractJonas5xRemoteDeployer extends AbstractJonasRemoteD
             throw new MalformedObjectNameException("Empty domain name provided");
         }
 
-        return new ObjectName(domainName + ":type=service,name=depmonitor");
+        return getObjectName(domainName + ":type=service,name=depmonitor");
     }
 
     /**
@@ -413,14 +407,14 @@ public abstract class AbstractJonas5xRemoteDeployer extends AbstractJonasRemoteD
         String result = null;
         if (askFromServer)
         {
-            MBeanServerConnectionFactory factory = null;
+            String message = "Failed looking for deployable" + deployable;
+            MBeanServerConnectionPool.Session session = getSession(message);
             try
             {
                 // Only look for deployables in JONAS_BASE/deploy
                 String lookForFile = "/deploy/" + localFileName;
 
-                factory = getMBeanServerConnectionFactory();
-                MBeanServerConnection mbsc = factory.getServerConnection(configuration);
+                MBeanServerConnection mbsc = session.getConnection();
                 RemoteDeployerConfig config = getConfig();
 
                 ObjectName serverMBeanName = getServerMBeanName(config.getDomainName(), config
@@ -432,7 +426,7 @@ public abstract class AbstractJonas5xRemoteDeployer extends AbstractJonasRemoteD
                 remoteFiles.addAll((List<String>)
                     mbsc.getAttribute(serverMBeanName, "deployableFiles"));
 
-                ObjectName deploymentPlanMBean = new ObjectName(
+                ObjectName deploymentPlanMBean = getObjectName(
                     config.getDomainName() + ":type=deployment,name=deploymentPlan");
                 if (!mbsc.queryMBeans(deploymentPlanMBean, null).isEmpty())
                 {
@@ -497,14 +491,7 @@ public abstract class AbstractJonas5xRemoteDeployer extends AbstractJonasRemoteD
             }
             catch (Exception ex)
             {
-                throw new ContainerException("Failed looking for deployable" + deployable, ex);
-            }
-            finally
-            {
-                if (factory != null)
-                {
-                    factory.destroy();
-                }
+                throw handleException(session, message, ex);
             }
         }
         else
@@ -26,6 +26,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.management.InstanceNotFoundException;
 import javax.management.MBeanException;
@@ -50,6 +55,12 @@ import org.codehaus.cargo.util.FileHandler;
  */
 public abstract class AbstractJonasRemoteDeployer extends AbstractRemoteDeployer
 {
+    /**
+     * MBean names, cached by their string representation.
+     */
+    private static final ConcurrentMap<String, ObjectName> OBJECT_NAMES =
+        new ConcurrentHashMap<String, ObjectName>();
+
     /**
      * The run time configuration.
      */
@@ -243,159 +254,408 @@ public abstract class AbstractJonasRemoteDeployer extends AbstractRemoteDeployer
     @Override
     public void deploy(Deployable deployable)
     {
-        if (deployable.getType() == DeployableType.WAR)
+        deploy(Collections.singletonList(deployable));
+    }
+
+    /**
+     * {@inheritDoc}. All deployables are deployed in one batch, over one pooled connection.
+     */
+    @Override
+    public void deploy(List<Deployable> deployables)
+    {
+        List<Deployable> supported = getSupportedDeployables(deployables);
+        if (supported.isEmpty())
         {
-            WAR war = (WAR) deployable;
-            if (war.isExpanded())
-            {
-                getLogger().warn("Remote deployer does not support expanded WAR deployment",
-                    this.getClass().getName());
-                return;
-            }
+            return;
         }
+
         RemoteDeployerConfig config = getConfig();
-        MBeanServerConnectionFactory factory = null;
-        try
+        MBeanServerConnectionPool.Session session = getSession("Deployment error");
+        synchronized (session)
         {
-            factory = getMBeanServerConnectionFactory();
-            MBeanServerConnection mbsc = factory.getServerConnection(configuration);
+            try
+            {
+                beginBatch(session, config);
+                try
+                {
+                    for (Deployable deployable : supported)
+                    {
+                        deploy(deployable, session, config);
+                    }
+                }
+                finally
+                {
+                    endBatch(session, config);
+                }
+            }
+            catch (Exception ex)
+            {
+                throw handleException(session, "Deployment error", ex);
+            }
+        }
+    }
 
-            ObjectName serverMBeanName = getServerMBeanName(config.getDomainName(), config
-                .getServerName());
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void undeploy(Deployable deployable)
+    {
+        undeploy(Collections.singletonList(deployable));
+    }
 
-            String filePathOnServer = uploadDeployableOnServer(deployable, mbsc, serverMBeanName,
-                config);
+    /**
+     * Undeploy several deployables in one batch, over one pooled connection.
+     * 
+     * @param deployables Deployables to undeploy.
+     */
+    public void undeploy(List<Deployable> deployables)
+    {
+        if (deployables.isEmpty())
+        {
+            return;
+        }
 
-            if (config.getClusterName() == null)
+        RemoteDeployerConfig config = getConfig();
+        MBeanServerConnectionPool.Session session = getSession("Undeployment error");
+        synchronized (session)
+        {
+            try
             {
-                String operationName = getOperationName(ActionType.DEPLOY, deployable.getType(),
-                    TargetType.SERVER);
-                getLogger().debug("Calling deployment operation " + operationName
-                     + " on server with argument " + filePathOnServer, getClass().getName());
-                mbsc.invoke(serverMBeanName, operationName, new Object[]
+                beginBatch(session, config);
+                try
                 {
-                    filePathOnServer
-                }, new String[]
+                    for (Deployable deployable : deployables)
+                    {
+                        undeploy(deployable, session, config);
+                    }
+                }
+                finally
                 {
-                    String.class.getName()
-                });
+                    endBatch(session, config);
+                }
             }
-            else
+            catch (Exception ex)
             {
-                String operationName = getOperationName(ActionType.UPLOAD_DEPLOY,
-                    deployable.getType(), TargetType.DOMAIN);
-                getLogger().debug("Calling deployment operation " + operationName
-                     + " on domain master with argument " + filePathOnServer, getClass().getName());
-                ObjectName domainMBeanName = getDomainMBeanName(config.getDomainName());
-                String[] serverNames = (String[]) mbsc.invoke(domainMBeanName, "getServerNames",
-                    new Object[]
-                    {
-                        config.getClusterName()
-                    }, new String[]
-                    {
-                        String.class.getName()
-                    });
-                mbsc.invoke(domainMBeanName, operationName, new Object[]
-                {
-                    serverNames, filePathOnServer, Boolean.TRUE
-                }, new String[]
-                {
-                    String[].class.getName(), String.class.getName(), boolean.class.getName()
-                });
+                throw handleException(session, "Undeployment error: " + ex.getMessage(), ex);
             }
         }
-        catch (Exception ex)
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void redeploy(Deployable deployable)
+    {
+        redeploy(Collections.singletonList(deployable));
+    }
+
+    /**
+     * {@inheritDoc}. All deployables are undeployed and deployed again in one batch, over one
+     * pooled connection.
+     */
+    @Override
+    public void redeploy(List<Deployable> deployables)
+    {
+        List<Deployable> supported = getSupportedDeployables(deployables);
+        if (supported.isEmpty())
         {
-            throw new ContainerException("Deployment error", ex);
+            return;
         }
-        finally
+
+        RemoteDeployerConfig config = getConfig();
+        MBeanServerConnectionPool.Session session = getSession("Deployment error");
+        synchronized (session)
         {
-            if (factory != null)
+            try
+            {
+                beginBatch(session, config);
+                try
+                {
+                    for (Deployable deployable : supported)
+                    {
+                        undeployBeforeRedeploy(deployable, session, config);
+                    }
+                    for (Deployable deployable : supported)
+                    {
+                        deploy(deployable, session, config);
+                    }
+                }
+                finally
+                {
+                    endBatch(session, config);
+                }
+            }
+            catch (Exception ex)
             {
-                factory.destroy();
+                throw handleException(session, "Deployment error", ex);
             }
         }
     }
 
     /**
-     * Returns the operation name for the given deployable and action type.
+     * Release the pooled connection used by this deployer, for example once no more deployments
+     * are expected. The next operation will connect again.
+     */
+    @Override
+    public void release()
+    {
+        MBeanServerConnectionPool.release(MBeanServerConnectionPool.getKey(
+            getMBeanServerConnectionFactory(), configuration));
+    }
+
+    /**
+     * Prepare a batch of deployment operations, before the first operation. Subclasses can for
+     * example change server settings once for all operations.
      * 
-     * @param actionType Action type.
-     * @param deployableType Deployable type.
-     * @param targetType Target type.
+     * @param session Pooled session, locked by the calling thread.
+     * @param config Deployer configuration.
+     * @throws Exception If anything fails.
+     */
+    protected void beginBatch(MBeanServerConnectionPool.Session session,
+        RemoteDeployerConfig config) throws Exception
+    {
+        // Nothing by default
+    }
+
+    /**
+     * Complete a batch of deployment operations, after the last operation, even if an operation
+     * has failed.
      * 
-     * @return Operation name.
+     * @param session Pooled session, locked by the calling thread.
+     * @param config Deployer configuration.
+     * @throws Exception If anything fails.
      */
-    protected abstract String getOperationName(ActionType actionType,
-        DeployableType deployableType, TargetType targetType);
+    protected void endBatch(MBeanServerConnectionPool.Session session,
+        RemoteDeployerConfig config) throws Exception
+    {
+        // Nothing by default
+    }
 
     /**
-     * {@inheritDoc}
+     * Deploy one deployable of a batch.
+     * 
+     * @param deployable Deployable to deploy.
+     * @param session Pooled session, locked by the calling thread.
+     * @param config Deployer configuration.
+     * @throws Exception If anything fails.
      */
-    @Override
-    public void undeploy(Deployable deployable)
+    protected void deploy(Deployable deployable, MBeanServerConnectionPool.Session session,
+        RemoteDeployerConfig config) throws Exception
     {
-        RemoteDeployerConfig config = getConfig();
-        MBeanServerConnectionFactory factory = null;
-        try
-        {
-            factory = getMBeanServerConnectionFactory();
-            MBeanServerConnection mbsc = factory.getServerConnection(configuration);
+        MBeanServerConnection mbsc = session.getConnection();
 
-            String remoteFileName = getRemoteFileName(deployable, config.getDeployableIdentifier(),
-                true);
+        ObjectName serverMBeanName = getServerMBeanName(config.getDomainName(), config
+            .getServerName());
 
-            if (config.getClusterName() == null)
+        String filePathOnServer = uploadDeployableOnServer(deployable, mbsc, serverMBeanName,
+            config);
+
+        if (config.getClusterName() == null)
+        {
+            String operationName = getOperationName(ActionType.DEPLOY, deployable.getType(),
+                TargetType.SERVER);
+            getLogger().debug("Calling deployment operation " + operationName
+                 + " on server with argument " + filePathOnServer, getClass().getName());
+            mbsc.invoke(serverMBeanName, operationName, new Object[]
+            {
+                filePathOnServer
+            }, new String[]
             {
-                ObjectName serverMBeanName = getServerMBeanName(config.getDomainName(), config
-                    .getServerName());
-
-                String operationName = getOperationName(ActionType.UNDEPLOY, deployable.getType(),
-                    TargetType.SERVER);
-                getLogger().debug("Calling undeployment operation " + operationName
-                     + " on server with argument " + remoteFileName, getClass().getName());
-                mbsc.invoke(serverMBeanName, operationName, new Object[]
+                String.class.getName()
+            });
+        }
+        else
+        {
+            String operationName = getOperationName(ActionType.UPLOAD_DEPLOY,
+                deployable.getType(), TargetType.DOMAIN);
+            getLogger().debug("Calling deployment operation " + operationName
+                 + " on domain master with argument " + filePathOnServer, getClass().getName());
+            ObjectName domainMBeanName = getDomainMBeanName(config.getDomainName());
+            String[] serverNames = (String[]) mbsc.invoke(domainMBeanName, "getServerNames",
+                new Object[]
                 {
-                    remoteFileName
+                    config.getClusterName()
                 }, new String[]
                 {
                     String.class.getName()
                 });
+            mbsc.invoke(domainMBeanName, operationName, new Object[]
+            {
+                serverNames, filePathOnServer, Boolean.TRUE
+            }, new String[]
+            {
+                String[].class.getName(), String.class.getName(), boolean.class.getName()
+            });
+        }
+    }
+
+    /**
+     * Undeploy one deployable of a batch.
+     * 
+     * @param deployable Deployable to undeploy.
+     * @param session Pooled session, locked by the calling thread.
+     * @param config Deployer configuration.
+     * @throws Exception If anything fails.
+     */
+    protected void undeploy(Deployable deployable, MBeanServerConnectionPool.Session session,
+        RemoteDeployerConfig config) throws Exception
+    {
+        MBeanServerConnection mbsc = session.getConnection();
+
+        String remoteFileName = getRemoteFileName(deployable, config.getDeployableIdentifier(),
+            true);
+
+        if (config.getClusterName() == null)
+        {
+            ObjectName serverMBeanName = getServerMBeanName(config.getDomainName(), config
+                .getServerName());
+
+            String operationName = getOperationName(ActionType.UNDEPLOY, deployable.getType(),
+                TargetType.SERVER);
+            getLogger().debug("Calling undeployment operation " + operationName
+                 + " on server with argument " + remoteFileName, getClass().getName());
+            mbsc.invoke(serverMBeanName, operationName, new Object[]
+            {
+                remoteFileName
+            }, new String[]
+            {
+                String.class.getName()
+            });
+
+            // See bug CARGO-620
+            getLogger().debug("Calling garbage collector on server", getClass().getName());
+            mbsc.invoke(serverMBeanName, "runGC", null, null);
+        }
+        else
+        {
+            String operationName = getOperationName(ActionType.UNDEPLOY, deployable.getType(),
+                TargetType.DOMAIN);
+            getLogger().debug("Calling undeployment operation " + operationName
+                 + " on domain master with argument " + remoteFileName, getClass().getName());
+            ObjectName domainMBeanName = getDomainMBeanName(config.getDomainName());
+            String[] serverNames = (String[]) mbsc.getAttribute(domainMBeanName, "serverNames");
+            mbsc.invoke(domainMBeanName, operationName, new Object[]
+            {
+                serverNames, remoteFileName
+            }, new String[]
+            {
+                String[].class.getName(), String.class.getName()
+            });
+        }
+    }
+
+    /**
+     * Undeploy one deployable of a redeploy batch. Failures are only logged, unless the
+     * connection itself has failed.
+     * 
+     * @param deployable Deployable to undeploy.
+     * @param session Pooled session, locked by the calling thread.
+     * @param config Deployer configuration.
+     * @throws IOException If the connection has failed.
+     */
+    private void undeployBeforeRedeploy(Deployable deployable,
+        MBeanServerConnectionPool.Session session, RemoteDeployerConfig config)
+        throws IOException
+    {
+        try
+        {
+            undeploy(deployable, session, config);
+        }
+        catch (IOException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            getLogger().info("The undeployment phase of the redeploy action has failed: "
+                + e.toString(), this.getClass().getName());
+        }
+    }
 
-                // See bug CARGO-620
-                getLogger().debug("Calling garbage collector on server", getClass().getName());
-                mbsc.invoke(serverMBeanName, "runGC", null, null);
+    /**
+     * Filter out the deployables that cannot be deployed remotely, such as expanded WARs.
+     * 
+     * @param deployables Deployables.
+     * @return Deployables that can be deployed remotely.
+     */
+    private List<Deployable> getSupportedDeployables(List<Deployable> deployables)
+    {
+        List<Deployable> supported = new ArrayList<Deployable>(deployables.size());
+        for (Deployable deployable : deployables)
+        {
+            if (deployable.getType() == DeployableType.WAR && ((WAR) deployable).isExpanded())
+            {
+                getLogger().warn("Remote deployer does not support expanded WAR deployment",
+                    this.getClass().getName());
             }
             else
             {
-                String operationName = getOperationName(ActionType.UNDEPLOY, deployable.getType(),
-                    TargetType.DOMAIN);
-                getLogger().debug("Calling undeployment operation " + operationName
-                     + " on domain master with argument " + remoteFileName, getClass().getName());
-                ObjectName domainMBeanName = getDomainMBeanName(config.getDomainName());
-                String[] serverNames = (String[]) mbsc.getAttribute(domainMBeanName, "serverNames");
-                mbsc.invoke(domainMBeanName, operationName, new Object[]
-                {
-                    serverNames, remoteFileName
-                }, new String[]
-                {
-                    String[].class.getName(), String.class.getName()
-                });
+                supported.add(deployable);
             }
         }
+        return supported;
+    }
+
+    /**
+     * Get the pooled session of this deployer, connecting if needed.
+     * 
+     * @param message Message of the exception thrown if connecting fails.
+     * @return Pooled session.
+     */
+    protected MBeanServerConnectionPool.Session getSession(String message)
+    {
+        try
+        {
+            return MBeanServerConnectionPool.getSession(getMBeanServerConnectionFactory(),
+                configuration);
+        }
         catch (Exception ex)
         {
-            throw new ContainerException("Undeployment error: " + ex.getMessage(), ex);
+            throw new ContainerException(message, ex);
         }
-        finally
+    }
+
+    /**
+     * Handle an exception thrown by a batch of operations. If the connection itself has failed,
+     * the session is released so that the next operation reconnects.
+     * 
+     * @param session Pooled session.
+     * @param message Message of the returned exception.
+     * @param ex Exception thrown by the operations.
+     * @return Exception to throw.
+     */
+    protected ContainerException handleException(MBeanServerConnectionPool.Session session,
+        String message, Exception ex)
+    {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause())
         {
-            if (factory != null)
+            if (cause instanceof IOException)
             {
-                factory.destroy();
+                MBeanServerConnectionPool.release(session);
+                break;
             }
         }
+        if (ex instanceof ContainerException)
+        {
+            return (ContainerException) ex;
+        }
+        return new ContainerException(message, ex);
     }
 
+    /**
+     * Returns the operation name for the given deployable and action type.
+     * 
+     * @param actionType Action type.
+     * @param deployableType Deployable type.
+     * @param targetType Target type.
+     * 
+     * @return Operation name.
+     */
+    protected abstract String getOperationName(ActionType actionType,
+        DeployableType deployableType, TargetType targetType);
+
     /**
      * Get the remote file name.
      * 
@@ -428,7 +688,7 @@ public abstract class AbstractJonasRemoteDeployer extends AbstractRemoteDeployer
             throw new MalformedObjectNameException("Empty server name provided");
         }
 
-        return new ObjectName(domainName + ":j2eeType=J2EEServer,name=" + serverName);
+        return getObjectName(domainName + ":j2eeType=J2EEServer,name=" + serverName);
     }
 
     /**
@@ -445,7 +705,25 @@ public abstract class AbstractJonasRemoteDeployer extends AbstractRemoteDeployer
             throw new MalformedObjectNameException("Empty domain name provided");
         }
 
-        return new ObjectName(domainName + ":j2eeType=J2EEDomain,name=" + domainName);
+        return getObjectName(domainName + ":j2eeType=J2EEDomain,name=" + domainName);
+    }
+
+    /**
+     * Get an MBean name, parsing it only the first time it is requested.
+     * 
+     * @param name String representation of the MBean name.
+     * @return the MBean Name
+     * @throws MalformedObjectNameException throwing when object name is wrong
+     */
+    protected static ObjectName getObjectName(String name) throws MalformedObjectNameException
+    {
+        ObjectName objectName = OBJECT_NAMES.get(name);
+        if (objectName == null)
+        {
+            objectName = new ObjectName(name);
+            OBJECT_NAMES.put(name, objectName);
+        }
+        return objectName;
     }
 
     /**
@@ -0,0 +1,241 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.jonas.internal;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.MBeanServerConnection;
+
+import org.codehaus.cargo.container.configuration.RuntimeConfiguration;
+import org.codehaus.cargo.container.spi.deployer.KeyedSessionPool;
+
+/**
+ * Pool of MBean server connections to remote JOnAS servers, with one session per connection
+ * factory and runtime configuration. Reusing a session avoids a JMX (or MEJB) connection and
+ * login for each deployment operation, and lets the deployers cache values read from the server.
+ * Sessions that have been idle for more than {@link #HEALTH_CHECK_INTERVAL} milliseconds are
+ * checked before being reused, and transparently reconnected if the server does not answer
+ * anymore. All sessions are released when the JVM shuts down.
+ */
+public final class MBeanServerConnectionPool
+{
+    /**
+     * Idle time, in milliseconds, after which a session is checked before being reused.
+     */
+    public static final long HEALTH_CHECK_INTERVAL = 30000;
+
+    /**
+     * Sessions, keyed by connection factory and runtime configuration.
+     */
+    private static final KeyedSessionPool<Session> SESSIONS =
+        new KeyedSessionPool<Session>(HEALTH_CHECK_INTERVAL);
+
+    /**
+     * Session with a connected MBean server. Series of operations that must not be interleaved
+     * with other operations, such as a batch of deployments, must synchronize on the session.
+     */
+    public static final class Session extends KeyedSessionPool.AbstractPooledSession
+    {
+        /**
+         * Factory the connection has been created with, destroyed when the session is released.
+         */
+        private final MBeanServerConnectionFactory factory;
+
+        /**
+         * Connection to the MBean server.
+         */
+        private final MBeanServerConnection connection;
+
+        /**
+         * Values read from the server and cached for the lifetime of the session.
+         */
+        private final ConcurrentMap<String, Object> cachedValues =
+            new ConcurrentHashMap<String, Object>();
+
+        /**
+         * @param key Session key.
+         * @param factory Factory the connection has been created with.
+         * @param connection Connection to the MBean server.
+         */
+        private Session(String key, MBeanServerConnectionFactory factory,
+            MBeanServerConnection connection)
+        {
+            super(key);
+            this.factory = factory;
+            this.connection = connection;
+        }
+
+        /**
+         * @return Connection to the MBean server.
+         */
+        public MBeanServerConnection getConnection()
+        {
+            return this.connection;
+        }
+
+        /**
+         * @param name Name of the cached value.
+         * @return Value cached with {@link #putCachedValue(String, Object)}, <code>null</code> if
+         * none.
+         */
+        public Object getCachedValue(String name)
+        {
+            return this.cachedValues.get(name);
+        }
+
+        /**
+         * Cache a value read from the server, for example an attribute name that depends on the
+         * server version.
+         * @param name Name of the cached value.
+         * @param value Value to cache.
+         */
+        public void putCachedValue(String name, Object value)
+        {
+            this.cachedValues.put(name, value);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean ping()
+        {
+            try
+            {
+                this.connection.getMBeanCount();
+                return true;
+            }
+            catch (IOException e)
+            {
+                return false;
+            }
+            catch (RuntimeException e)
+            {
+                return false;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void close()
+        {
+            this.factory.destroy();
+        }
+    }
+
+    /**
+     * Utility class, cannot be instantiated.
+     */
+    private MBeanServerConnectionPool()
+    {
+        // Nothing
+    }
+
+    /**
+     * Get the session for a runtime configuration, connecting to the MBean server if there is no
+     * session yet or if the pooled one is not healthy anymore.
+     * 
+     * @param factory Factory to connect with, only used if no healthy session is pooled.
+     * @param configuration Runtime configuration.
+     * @return Session.
+     * @throws Exception If connecting fails.
+     */
+    public static Session getSession(final MBeanServerConnectionFactory factory,
+        final RuntimeConfiguration configuration) throws Exception
+    {
+        return SESSIONS.getSession(getKey(factory, configuration),
+            new KeyedSessionPool.SessionFactory<Session>()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public Session createSession(String key) throws Exception
+                {
+                    MBeanServerConnection connection;
+                    try
+                    {
+                        connection = factory.getServerConnection(configuration);
+                    }
+                    catch (Exception e)
+                    {
+                        factory.destroy();
+                        throw e;
+                    }
+                    return new Session(key, factory, connection);
+                }
+            });
+    }
+
+    /**
+     * Release a session, typically because its connection has failed or because it will not be
+     * used anymore.
+     * 
+     * @param session Session to release.
+     */
+    public static void release(Session session)
+    {
+        SESSIONS.release(session);
+    }
+
+    /**
+     * Release the session with the given key, if any.
+     * 
+     * @param key Key identifying the connection factory type and the runtime configuration.
+     */
+    public static void release(String key)
+    {
+        SESSIONS.release(key);
+    }
+
+    /**
+     * Release all sessions.
+     */
+    public static void releaseAll()
+    {
+        SESSIONS.releaseAll();
+    }
+
+    /**
+     * @return Number of pooled sessions.
+     */
+    public static int size()
+    {
+        return SESSIONS.size();
+    }
+
+    /**
+     * Compute the key of a session.
+     * 
+     * @param factory Connection factory.
+     * @param configuration Runtime configuration.
+     * @return Key identifying the connection factory type and the runtime configuration.
+     */
+    public static String getKey(MBeanServerConnectionFactory factory,
+        RuntimeConfiguration configuration)
+    {
+        return KeyedSessionPool.getKey(factory.getClass().getName(),
+            configuration.getProperties());
+    }
+}
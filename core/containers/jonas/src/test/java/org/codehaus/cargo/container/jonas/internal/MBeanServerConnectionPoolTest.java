@@ -0,0 +1,143 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.jonas.internal;
+
+import java.io.IOException;
+
+import javax.management.MBeanServerConnection;
+
+import org.codehaus.cargo.container.configuration.RuntimeConfiguration;
+import org.codehaus.cargo.container.jonas.Jonas5xRuntimeConfiguration;
+import org.codehaus.cargo.container.property.GeneralPropertySet;
+import org.jmock.Mock;
+import org.jmock.MockObjectTestCase;
+
+/**
+ * Unit tests for {@link MBeanServerConnectionPool}.
+ */
+public class MBeanServerConnectionPoolTest extends MockObjectTestCase
+{
+    /**
+     * Runtime configuration.
+     */
+    private RuntimeConfiguration configuration;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        MBeanServerConnectionPool.releaseAll();
+        this.configuration = new Jonas5xRuntimeConfiguration();
+        this.configuration.setProperty(GeneralPropertySet.HOSTNAME, "remotehost");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        MBeanServerConnectionPool.releaseAll();
+        super.tearDown();
+    }
+
+    /**
+     * Test that a session is reused for the same configuration, and that its factory is
+     * destroyed when it is released.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testSessionReused() throws Exception
+    {
+        Mock mockFactory = createMockFactory();
+        MBeanServerConnectionFactory factory = (MBeanServerConnectionFactory) mockFactory.proxy();
+
+        MBeanServerConnectionPool.Session session =
+            MBeanServerConnectionPool.getSession(factory, this.configuration);
+        assertSame(session, MBeanServerConnectionPool.getSession(factory, this.configuration));
+        assertEquals(1, MBeanServerConnectionPool.size());
+
+        session.putCachedValue("test", "value");
+        assertEquals("value", MBeanServerConnectionPool.getSession(factory, this.configuration)
+            .getCachedValue("test"));
+
+        mockFactory.expects(once()).method("destroy");
+        MBeanServerConnectionPool.release(session);
+        assertEquals(0, MBeanServerConnectionPool.size());
+    }
+
+    /**
+     * Test that different configurations get different sessions.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testSessionPerConfiguration() throws Exception
+    {
+        MBeanServerConnectionFactory factory =
+            (MBeanServerConnectionFactory) createMockFactory().proxy();
+
+        MBeanServerConnectionPool.Session session =
+            MBeanServerConnectionPool.getSession(factory, this.configuration);
+
+        RuntimeConfiguration other = new Jonas5xRuntimeConfiguration();
+        other.setProperty(GeneralPropertySet.HOSTNAME, "otherhost");
+        MBeanServerConnectionFactory otherFactory =
+            (MBeanServerConnectionFactory) createMockFactory().proxy();
+        assertNotSame(session, MBeanServerConnectionPool.getSession(otherFactory, other));
+        assertEquals(2, MBeanServerConnectionPool.size());
+    }
+
+    /**
+     * Test that a failing connection does not leave a session in the pool.
+     */
+    public void testConnectionFailure()
+    {
+        Mock mockFactory = mock(MBeanServerConnectionFactory.class);
+        mockFactory.stubs().method("getServerConnection").will(
+            throwException(new IOException("Connection refused")));
+        mockFactory.expects(once()).method("destroy");
+
+        try
+        {
+            MBeanServerConnectionPool.getSession(
+                (MBeanServerConnectionFactory) mockFactory.proxy(), this.configuration);
+            fail("No exception thrown");
+        }
+        catch (Exception expected)
+        {
+            assertEquals("Connection refused", expected.getMessage());
+        }
+        assertEquals(0, MBeanServerConnectionPool.size());
+    }
+
+    /**
+     * @return Mock connection factory, returning a mock connection.
+     */
+    private Mock createMockFactory()
+    {
+        Mock mockConnection = mock(MBeanServerConnection.class);
+        Mock mockFactory = mock(MBeanServerConnectionFactory.class);
+        mockFactory.expects(once()).method("getServerConnection").will(
+            returnValue(mockConnection.proxy()));
+        mockFactory.stubs().method("destroy");
+        return mockFactory;
+    }
+}
@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.InstalledLocalContainer;
 import org.codehaus.cargo.container.LocalContainer;
 import org.codehaus.cargo.container.deployable.Deployable;
@@ -82,32 +83,36 @@ public class LibertyInstalledLocalDeployer extends AbstractCopyingInstalledLocal
     @Override
     protected void doDeploy(String deployableDir, Deployable app)
     {
-        super.doDeploy(deployableDir, app);
+        boolean loose = app.getType() == DeployableType.WAR && Boolean.parseBoolean(
+            getContainer().getConfiguration().getPropertyValue(
+                LibertyPropertySet.LOOSE_APPLICATIONS));
+        if (!loose)
+        {
+            super.doDeploy(deployableDir, app);
+        }
         if (app.getType() == DeployableType.WAR)
         {
-            LibertyInstall install = new LibertyInstall(
-                (AbstractInstalledLocalContainer) getContainer());
-
-            File serverDir = install.getServerDir(null);
-            File configOverrides = new File(serverDir, "configDropins/overrides");
-            configOverrides.mkdirs();
-
-            String fileName = getDeployableName(app);
-            File appXML = new File(configOverrides,
-                "cargo-app-" + fileName.replaceAll("/", "_") + ".xml");
+            File appXML = getApplicationConfigFile(app);
+            appXML.getParentFile().mkdirs();
             try
             {
+                String location = getDeployableName(app);
+                if (loose)
+                {
+                    location = deployLoose(deployableDir, app);
+                }
+
                 PrintStream writer = ServerConfigUtils.open(appXML);
 
                 String ctxRoot = getContextRoot(app);
 
                 writer.print("  <webApplication location=\"");
-                writer.print(fileName);
+                writer.print(ServerConfigUtils.escapeXml(location));
                 writer.print('\"');
                 if (ctxRoot != null)
                 {
                     writer.print(" contextRoot=\"");
-                    writer.print(ctxRoot);
+                    writer.print(ServerConfigUtils.escapeXml(ctxRoot));
                     writer.print('\"');
                 }
                 writer.println('>');
@@ -120,11 +125,111 @@ public class LibertyInstalledLocalDeployer extends AbstractCopyingInstalledLocal
             }
             catch (IOException ioe)
             {
-                // TODO work out what to do here.
+                throw new ContainerException("Failed to deploy [" + app.getFile() + "]", ioe);
             }
         }
     }
 
+    /**
+     * Undeploy an application: remove the deployed file or directory, the loose application XML
+     * file of expanded WARs deployed as loose applications and the server configuration of WARs.
+     *
+     * @param deployable the application to undeploy
+     */
+    @Override
+    public void undeploy(Deployable deployable)
+    {
+        String deployableDir = getDeployableDir(deployable);
+        String deployableName = getDeployableName(deployable);
+        getLogger().info("Undeploying [" + deployable.getFile() + "] from [" + deployableDir
+            + "]...", this.getClass().getName());
+
+        String target = getFileHandler().append(deployableDir, deployableName);
+        if (getFileHandler().exists(target))
+        {
+            getFileHandler().delete(target);
+        }
+        if (deployable.getType() == DeployableType.WAR)
+        {
+            File looseXML = new File(deployableDir, getLooseXmlName(deployable));
+            if (looseXML.exists() && !looseXML.delete())
+            {
+                throw new ContainerException("Failed to delete [" + looseXML + "]");
+            }
+            File appXML = getApplicationConfigFile(deployable);
+            if (appXML.exists() && !appXML.delete())
+            {
+                throw new ContainerException("Failed to delete [" + appXML + "]");
+            }
+        }
+    }
+
+    /**
+     * Get the server configuration file describing a WAR, in the configuration overrides
+     * directory of the server.
+     *
+     * @param app the WAR
+     * @return the server configuration file of the WAR
+     */
+    private File getApplicationConfigFile(Deployable app)
+    {
+        LibertyInstall install = new LibertyInstall(
+            (AbstractInstalledLocalContainer) getContainer());
+
+        File serverDir = install.getServerDir(null);
+        File configOverrides = new File(serverDir, "configDropins/overrides");
+        return new File(configOverrides,
+            "cargo-app-" + getDeployableName(app).replaceAll("/", "_") + ".xml");
+    }
+
+    /**
+     * @param app the WAR
+     * @return the name of the loose application XML file describing the WAR when expanded
+     */
+    private String getLooseXmlName(Deployable app)
+    {
+        return getDeployableName(app).replaceAll("/", "_") + ".war.xml";
+    }
+
+    /**
+     * Deploy a WAR as a loose application. A packed WAR is referenced where it is, whereas an
+     * expanded WAR is described by a loose application XML file pointing at its directory, so
+     * that none of them is copied.
+     *
+     * @param deployableDir the directory where loose application XML files are written
+     * @param app the WAR being deployed
+     * @return the location of the application to use in the server configuration
+     * @throws IOException if the loose application XML file cannot be written
+     */
+    private String deployLoose(String deployableDir, Deployable app) throws IOException
+    {
+        File source = new File(app.getFile()).getAbsoluteFile();
+        getLogger().info("Deploying [" + source + "] as a loose application",
+            this.getClass().getName());
+
+        if (!app.isExpanded())
+        {
+            return source.getPath();
+        }
+
+        File looseXML = new File(deployableDir, getLooseXmlName(app));
+        looseXML.getParentFile().mkdirs();
+        PrintStream writer = new PrintStream(looseXML, "UTF-8");
+        try
+        {
+            writer.println("<archive>");
+            writer.print("  <dir targetInArchive=\"/\" sourceOnDisk=\"");
+            writer.print(ServerConfigUtils.escapeXml(source.getPath()));
+            writer.println("\"/>");
+            writer.println("</archive>");
+        }
+        finally
+        {
+            writer.close();
+        }
+        return looseXML.getName();
+    }
+
     /**
      * Write the role to group mapping as group - role 1-1
      *
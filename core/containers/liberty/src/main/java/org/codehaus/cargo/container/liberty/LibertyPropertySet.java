@@ -0,0 +1,35 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.liberty;
+
+/**
+ * Gathers all WebSphere Liberty properties.
+ */
+public interface LibertyPropertySet
+{
+    /**
+     * Whether WAR deployables should be deployed as loose applications, in which case they are
+     * neither copied to the server's <code>apps</code> directory nor archived: packed WARs are
+     * referenced where they are and expanded WARs are described by a loose application XML file
+     * pointing at their directory. Liberty then monitors the original files for changes. Default
+     * value is <code>false</code>.
+     */
+    String LOOSE_APPLICATIONS = "cargo.liberty.looseApplications";
+}
@@ -64,6 +64,8 @@ public class LibertyStandaloneLocalConfiguration extends AbstractStandaloneLocal
     public LibertyStandaloneLocalConfiguration(String dir)
     {
         super(dir);
+
+        setProperty(LibertyPropertySet.LOOSE_APPLICATIONS, "false");
     }
 
     /**
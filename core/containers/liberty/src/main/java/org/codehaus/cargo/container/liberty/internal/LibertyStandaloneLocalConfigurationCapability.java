@@ -21,6 +21,7 @@
  */
 package org.codehaus.cargo.container.liberty.internal;
 
+import org.codehaus.cargo.container.liberty.LibertyPropertySet;
 import org.codehaus.cargo.container.property.DatasourcePropertySet;
 import org.codehaus.cargo.container.property.GeneralPropertySet;
 import org.codehaus.cargo.container.spi.configuration.AbstractStandaloneLocalConfigurationCapability;
@@ -40,6 +41,7 @@ public class LibertyStandaloneLocalConfigurationCapability
         super();
         this.propertySupportMap.put(DatasourcePropertySet.DATASOURCE, Boolean.TRUE);
         this.propertySupportMap.put(GeneralPropertySet.RUNTIME_ARGS, Boolean.FALSE);
+        this.propertySupportMap.put(LibertyPropertySet.LOOSE_APPLICATIONS, Boolean.TRUE);
     }
 
 }
@@ -66,6 +66,43 @@ public final class ServerConfigUtils
         writer.close();
     }
 
+    /**
+     * Escape a value so that it can be written in an XML attribute.
+     *
+     * @param value the value to escape
+     * @return the escaped value
+     */
+    public static String escapeXml(String value)
+    {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            switch (c)
+            {
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                case '\'':
+                    sb.append("&apos;");
+                    break;
+                default:
+                    sb.append(c);
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
     /**
      * Write a library.
      *
@@ -0,0 +1,154 @@
+/* 
+* Copyright 2016 IBM Corp.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+ */
+package org.codehaus.cargo.container.liberty;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.deployable.WAR;
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+
+/**
+ * Unit tests for the {@link LibertyInstalledLocalDeployer} class.
+ */
+public class LibertyInstalledLocalDeployerTest extends TestCase
+{
+    /**
+     * File handler.
+     */
+    private FileHandler fileHandler;
+
+    /**
+     * Directory holding the applications to deploy, with a character to escape in XML.
+     */
+    private File sourceDir;
+
+    /**
+     * Directory of the default Liberty server.
+     */
+    private File serverDir;
+
+    /**
+     * Deployer being tested.
+     */
+    private LibertyInstalledLocalDeployer deployer;
+
+    /**
+     * Creates a loose applications configuration and its deployer. {@inheritDoc}
+     * @throws Exception If anything goes wrong.
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        File baseDir = new File("target/liberty-deployer-test").getAbsoluteFile();
+        this.fileHandler = new DefaultFileHandler();
+        if (this.fileHandler.exists(baseDir.getPath()))
+        {
+            this.fileHandler.delete(baseDir.getPath());
+        }
+        this.sourceDir = new File(baseDir, "apps & libs");
+        this.sourceDir.mkdirs();
+
+        LibertyStandaloneLocalConfiguration configuration =
+            new LibertyStandaloneLocalConfiguration(new File(baseDir, "usr").getPath());
+        configuration.setProperty(LibertyPropertySet.LOOSE_APPLICATIONS, "true");
+        LibertyInstalledLocalContainer container =
+            new LibertyInstalledLocalContainer(configuration);
+        container.setHome(new File(baseDir, "wlp").getPath());
+
+        this.serverDir = new File(baseDir, "usr/servers/defaultServer");
+        new File(this.serverDir, "apps").mkdirs();
+        this.deployer = new LibertyInstalledLocalDeployer(container);
+    }
+
+    /**
+     * Test that a packed WAR deployed as a loose application is referenced where it is, with its
+     * location escaped in the server configuration, and that undeploying it removes the server
+     * configuration.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testDeployPackedLooseWar() throws Exception
+    {
+        File warFile = new File(this.sourceDir, "packed.war");
+        this.fileHandler.writeTextFile(warFile.getPath(), "not a real archive", "UTF-8");
+        WAR war = new WAR(warFile.getPath());
+
+        this.deployer.deploy(war);
+
+        assertFalse(new File(this.serverDir, "apps/packed.war").exists());
+        File appXML = new File(this.serverDir, "configDropins/overrides/cargo-app-packed.war.xml");
+        String config = this.fileHandler.readTextFile(appXML.getPath(), "UTF-8");
+        assertContains(config, "<webApplication location=\""
+            + warFile.getPath().replace("&", "&amp;") + "\" contextRoot=\"packed\">");
+        assertFalse(config.contains("apps & libs"));
+
+        this.deployer.undeploy(war);
+        assertFalse(appXML.exists());
+    }
+
+    /**
+     * Test that an expanded WAR deployed as a loose application is described by a loose
+     * application XML file pointing at its directory, with the path escaped, and that
+     * undeploying it removes both XML files.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testDeployExpandedLooseWar() throws Exception
+    {
+        File warDir = new File(this.sourceDir, "expanded");
+        this.fileHandler.writeTextFile(new File(warDir, "index.html").getPath(), "Hello",
+            "UTF-8");
+        WAR war = new WAR(warDir.getPath());
+
+        this.deployer.deploy(war);
+
+        File looseXML = new File(this.serverDir, "apps/expanded.war.xml");
+        String archive = this.fileHandler.readTextFile(looseXML.getPath(), "UTF-8");
+        assertContains(archive, "<dir targetInArchive=\"/\" sourceOnDisk=\""
+            + warDir.getPath().replace("&", "&amp;") + "\"/>");
+        assertFalse(new File(this.serverDir, "apps/expanded").exists());
+
+        File appXML = new File(this.serverDir, "configDropins/overrides/cargo-app-expanded.xml");
+        String config = this.fileHandler.readTextFile(appXML.getPath(), "UTF-8");
+        assertContains(config,
+            "<webApplication location=\"expanded.war.xml\" contextRoot=\"expanded\">");
+
+        this.deployer.undeploy(war);
+        assertFalse(looseXML.exists());
+        assertFalse(appXML.exists());
+        assertTrue(warDir.isDirectory());
+    }
+
+    /**
+     * Tests if a string contains another.
+     * @param haystack String to look in.
+     * @param needle String to look for.
+     */
+    private void assertContains(String haystack, String needle)
+    {
+        assertTrue("[" + haystack + "] does not contain [" + needle + "]",
+            haystack.contains(needle));
+    }
+}
@@ -76,11 +76,7 @@ public class TomcatEmbeddedLocalDeployer extends AbstractLocalDeployer
         String docBase;
         if (!war.isExpanded())
         {
-            String webappsDirectory = getFileHandler().append(
-                container.getConfiguration().getHome(),
-                    container.getConfiguration().getPropertyValue(
-                        TomcatPropertySet.WEBAPPS_DIRECTORY));
-            docBase = getFileHandler().append(webappsDirectory, war.getContext());
+            docBase = getExplodedDocBase(war);
             getFileHandler().explode(war.getFile(), docBase);
         }
         else
@@ -151,10 +147,32 @@ public class TomcatEmbeddedLocalDeployer extends AbstractLocalDeployer
         }
         if (context != null)
         {
+            WAR war = (WAR) deployable;
+            if (!war.isExpanded())
+            {
+                // The context runs from the WAR exploded at deployment time, explode it again so
+                // that the reloaded context uses the new WAR
+                String docBase = getExplodedDocBase(war);
+                getFileHandler().delete(docBase);
+                getFileHandler().explode(war.getFile(), docBase);
+            }
             context.reload();
         }
     }
 
+    /**
+     * @param war WAR which is not expanded.
+     * @return Directory to which the WAR is exploded for deployment.
+     */
+    private String getExplodedDocBase(WAR war)
+    {
+        String webappsDirectory = getFileHandler().append(
+            container.getConfiguration().getHome(),
+                container.getConfiguration().getPropertyValue(
+                    TomcatPropertySet.WEBAPPS_DIRECTORY));
+        return getFileHandler().append(webappsDirectory, war.getContext());
+    }
+
     /**
      * {@inheritDoc}
      */
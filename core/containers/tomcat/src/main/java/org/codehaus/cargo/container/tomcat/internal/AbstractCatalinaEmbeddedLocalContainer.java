@@ -103,7 +103,7 @@ public abstract class AbstractCatalinaEmbeddedLocalContainer extends AbstractEmb
     @Override
     protected void doStart() throws Exception
     {
-        TomcatEmbedded wrapper = new TomcatEmbedded(getClassLoader());
+        TomcatEmbedded wrapper = TomcatEmbedded.getInstance(getClassLoader());
 
         // Tomcat will resolve relative path against CATALINA_BASE, so make it absolute here.
         File home = new File(getConfiguration().getHome()).getAbsoluteFile();
@@ -119,6 +119,7 @@ public abstract class AbstractCatalinaEmbeddedLocalContainer extends AbstractEmb
                 "Programming error: attributes connector or host not set after prepareController");
         }
 
+        addServerStoppedListener();
         controller.start();
 
         // We don't want Tomcat to deploy WARs by itself, else we cannot undeploy them.
@@ -161,6 +162,34 @@ public abstract class AbstractCatalinaEmbeddedLocalContainer extends AbstractEmb
         }
     }
 
+    /**
+     * Add a lifecycle listener to the Tomcat server, so that this container gets notified when
+     * the server stops, including when it stops without having been asked to. Tomcat versions
+     * whose server does not accept lifecycle listeners are not monitored.
+     */
+    private void addServerStoppedListener()
+    {
+        try
+        {
+            controller.addStoppedListener(new Runnable()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void run()
+                {
+                    containerExited(-1);
+                }
+            });
+        }
+        catch (Exception e)
+        {
+            getLogger().debug("Cannot add lifecycle listener to the Tomcat server: " + e,
+                this.getClass().getName());
+        }
+    }
+
     /**
      * Embedded Tomcat's start method is synchronous, so no need for waiting when starting.
      * {@inheritDoc}
@@ -21,13 +21,16 @@ package org.codehaus.cargo.container.tomcat.internal;
 
 import java.io.File;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.internal.util.ClassLoaderHandles;
 
 /**
  * Wrapper classes around Tomcat embedded API to hide reflection.
@@ -164,7 +167,10 @@ public final class TomcatEmbedded
      * 
      * @param classLoader the class loader used to load Tomcat classes. Can be null.
      * @throws Exception if an error happens when creating the Tomcat objects by reflection
+     * @deprecated Use {@link #getInstance(ClassLoader)}, which shares the reflection access
+     * between all embedded containers using the same class loader.
      */
+    @Deprecated
     public TomcatEmbedded(ClassLoader classLoader) throws Exception
     {
         this.classLoader = classLoader;
@@ -188,6 +194,41 @@ public final class TomcatEmbedded
         }
     }
 
+    /**
+     * Get the reflection access to Tomcat for a given class loader. As the preloaded classes and
+     * methods do not hold any state, they are shared by all embedded containers that use the same
+     * class loader.
+     * 
+     * @param classLoader the class loader used to load Tomcat classes. Can be null.
+     * @return reflection access to Tomcat.
+     * @throws Exception if an error happens when creating the Tomcat objects by reflection
+     */
+    public static TomcatEmbedded getInstance(ClassLoader classLoader) throws Exception
+    {
+        if (classLoader == null)
+        {
+            return new TomcatEmbedded(null);
+        }
+
+        ClassLoaderHandles handles = ClassLoaderHandles.getInstance(classLoader);
+        TomcatEmbedded wrapper =
+            (TomcatEmbedded) handles.getWrapper(TomcatEmbedded.class.getName());
+        if (wrapper == null)
+        {
+            wrapper = (TomcatEmbedded) handles.putWrapper(TomcatEmbedded.class.getName(),
+                new TomcatEmbedded(classLoader));
+        }
+        return wrapper;
+    }
+
+    /**
+     * @return the class loader used to load Tomcat classes, <code>null</code> if none.
+     */
+    public ClassLoader getClassLoader()
+    {
+        return this.classLoader;
+    }
+
     /**
      * Preload the methods we'll need from the <code>org.apache.catalina.Engine</code> class.
      * 
@@ -674,6 +715,68 @@ public final class TomcatEmbedded
             invoke(embeddedStop);
         }
 
+        /**
+         * Adds a listener notified once the server has stopped, including when it stops without
+         * having been asked to.
+         * 
+         * @param stoppedListener run once the server has stopped.
+         * @throws Exception if the server does not accept lifecycle listeners.
+         */
+        public void addStoppedListener(final Runnable stoppedListener) throws Exception
+        {
+            ClassLoader tomcatClassLoader = core.getClass().getClassLoader();
+            Class lifecycle = Class.forName("org.apache.catalina.Lifecycle", true,
+                tomcatClassLoader);
+            Class lifecycleListener = Class.forName("org.apache.catalina.LifecycleListener",
+                true, tomcatClassLoader);
+            final Object afterStopEvent = lifecycle.getField("AFTER_STOP_EVENT").get(null);
+
+            Object target = core;
+            if (!lifecycle.isInstance(target))
+            {
+                // Tomcat 8.x and newer, whose server is the lifecycle component
+                target = core.getClass().getMethod("getServer", new Class[0]).invoke(core);
+            }
+
+            Object listener = Proxy.newProxyInstance(tomcatClassLoader,
+                new Class[] {lifecycleListener}, new InvocationHandler()
+                {
+                    /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                        throws Exception
+                    {
+                        String name = method.getName();
+                        if ("lifecycleEvent".equals(name))
+                        {
+                            Object type = args[0].getClass().getMethod("getType", new Class[0])
+                                .invoke(args[0]);
+                            if (afterStopEvent.equals(type))
+                            {
+                                stoppedListener.run();
+                            }
+                        }
+                        else if ("equals".equals(name))
+                        {
+                            return proxy == args[0];
+                        }
+                        else if ("hashCode".equals(name))
+                        {
+                            return System.identityHashCode(proxy);
+                        }
+                        else if ("toString".equals(name))
+                        {
+                            return "Cargo server stopped listener";
+                        }
+                        return null;
+                    }
+                });
+            lifecycle.getMethod("addLifecycleListener", new Class[] {lifecycleListener})
+                .invoke(target, listener);
+        }
+
         /**
          * Adds a new {@link Engine}.
          * 
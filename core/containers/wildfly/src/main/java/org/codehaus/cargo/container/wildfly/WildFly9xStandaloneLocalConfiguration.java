@@ -20,7 +20,6 @@
 package org.codehaus.cargo.container.wildfly;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -142,19 +141,19 @@ public class WildFly9xStandaloneLocalConfiguration
             }
         }
 
-        container.executeScript(configurationScript);
-
         // Execute CLI scripts
+        List<String> scriptPaths = new ArrayList<String>();
         for (Map.Entry<String, String> property : getProperties().entrySet())
         {
             String propertyName = property.getKey();
             if (propertyName.startsWith(WildFlyPropertySet.CLI_OFFLINE_SCRIPT))
             {
-                String scriptPath = property.getValue();
-                container.executeScriptFiles(Arrays.asList(scriptPath));
+                scriptPaths.add(property.getValue());
             }
         }
 
+        container.executeScripts(configurationScript, scriptPaths);
+
         // deploy deployments
         JBoss7xInstalledLocalDeployer deployer = new JBoss7xInstalledLocalDeployer(container);
         deployer.deploy(getDeployables());
@@ -45,4 +45,14 @@ public interface WildFlyPropertySet extends JBossPropertySet
      *              "target/test-classes/wildfly/wildfly10/jms-journal.cli")<br>
      */
     String CLI_EMBEDDED_SCRIPT = "cargo.wildfly.script.cli.embedded";
+
+    /**
+     * Whether the CLI scripts run by the standalone local configuration are executed in the
+     * current JVM, using the <code>bin/client/jboss-cli-client.jar</code> of the WildFly
+     * installation, instead of in a new JVM for each script. Default value is
+     * <code>false</code>.<br>
+     * As the CLI session alters the system properties of the current JVM, CLI sessions are run
+     * one at a time. If the CLI cannot be loaded, the scripts are executed in a new JVM.
+     */
+    String CLI_IN_PROCESS = "cargo.wildfly.script.cli.inprocess";
 }
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.jar.JarFile;
@@ -36,9 +37,12 @@ import org.codehaus.cargo.container.configuration.script.ScriptCommand;
 import org.codehaus.cargo.container.jboss.JBossPropertySet;
 import org.codehaus.cargo.container.jboss.internal.JBoss7xContainerCapability;
 import org.codehaus.cargo.container.property.GeneralPropertySet;
+import org.codehaus.cargo.container.property.SSHPropertySet;
 import org.codehaus.cargo.container.spi.AbstractInstalledLocalContainer;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncher;
+import org.codehaus.cargo.container.wildfly.WildFlyPropertySet;
 import org.codehaus.cargo.container.wildfly.internal.configuration.factory.WildFlyCliConfigurationFactory;
+import org.codehaus.cargo.container.wildfly.internal.util.WildFlyCliExecutor;
 import org.codehaus.cargo.util.CargoException;
 
 /**
@@ -114,19 +118,32 @@ public abstract class AbstractWildFlyInstalledLocalContainer extends AbstractIns
     }
 
     /**
-     * Set the properties on the JVM launcher.<br><br>
-     * CARGO-1111: To allow JBoss 7.x and onwards to be accessed from remote machines,
-     * the system property <code>jboss.bind.address</code> must be set.
+     * Set the properties on the JVM launcher.
      * @param java JVM launcher to set the properties on.
      */
     protected void setProperties(JvmLauncher java)
     {
-        java.setSystemProperty("org.jboss.boot.log.file",
-            getConfiguration().getHome() + "/log/boot.log");
+        java.setEnvironmentVariable("JBOSS_HOME", getHome());
+        for (Map.Entry<String, String> property : getServerProperties().entrySet())
+        {
+            java.setSystemProperty(property.getKey(), property.getValue());
+        }
+    }
+
+    /**
+     * Get the system properties defining the directories of the server.<br><br>
+     * CARGO-1111: To allow JBoss 7.x and onwards to be accessed from remote machines,
+     * the system property <code>jboss.bind.address</code> must be set.
+     * @return System properties of the server.
+     */
+    protected Map<String, String> getServerProperties()
+    {
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+        properties.put("org.jboss.boot.log.file", getConfiguration().getHome() + "/log/boot.log");
 
         try
         {
-            java.setSystemProperty("logging.configuration",
+            properties.put("logging.configuration",
                 new File(getConfiguration().getHome() + "/configuration/logging.properties")
                     .toURI().toURL().toString());
         }
@@ -135,18 +152,17 @@ public abstract class AbstractWildFlyInstalledLocalContainer extends AbstractIns
             throw new CargoException("Cannot create logging file URL." , e);
         }
 
-        java.setEnvironmentVariable("JBOSS_HOME", getHome());
-        java.setSystemProperty("jboss.home.dir", getHome());
-        java.setSystemProperty("jboss.server.base.dir", getConfiguration().getHome());
-        java.setSystemProperty("jboss.server.config.dir", getConfiguration().getHome()
+        properties.put("jboss.home.dir", getHome());
+        properties.put("jboss.server.base.dir", getConfiguration().getHome());
+        properties.put("jboss.server.config.dir", getConfiguration().getHome()
                 + File.separator + "configuration");
-        java.setSystemProperty("jboss.server.data.dir", getConfiguration().getHome()
+        properties.put("jboss.server.data.dir", getConfiguration().getHome()
                 + File.separator + "data");
-        java.setSystemProperty("jboss.server.log.dir", getConfiguration().getHome()
+        properties.put("jboss.server.log.dir", getConfiguration().getHome()
                 + File.separator + "log");
-        java.setSystemProperty("jboss.server.temp.dir", getConfiguration().getHome()
+        properties.put("jboss.server.temp.dir", getConfiguration().getHome()
                 + File.separator + "tmp");
-        java.setSystemProperty("jboss.server.deploy.dir", getConfiguration().getHome()
+        properties.put("jboss.server.deploy.dir", getConfiguration().getHome()
                 + File.separator + "content");
 
         final Map<String, String> systemProperties = getSystemProperties();
@@ -158,8 +174,9 @@ public abstract class AbstractWildFlyInstalledLocalContainer extends AbstractIns
                 hostname = "0.0.0.0";
             }
 
-            java.setSystemProperty("jboss.bind.address", hostname);
+            properties.put("jboss.bind.address", hostname);
         }
+        return properties;
     }
 
     /**
@@ -186,17 +203,7 @@ public abstract class AbstractWildFlyInstalledLocalContainer extends AbstractIns
     @Override
     public void executeScript(List<ScriptCommand> configurationScript)
     {
-        String newLine = System.getProperty("line.separator");
-        StringBuffer buffer = new StringBuffer();
-
-        for (ScriptCommand configuration : configurationScript)
-        {
-            buffer.append(configuration.readScript());
-            buffer.append(newLine);
-        }
-
-        getLogger().debug("Sending CLI script: " + newLine + buffer.toString(),
-            this.getClass().getName());
+        String script = buildScript(configurationScript);
 
         try
         {
@@ -204,7 +211,7 @@ public abstract class AbstractWildFlyInstalledLocalContainer extends AbstractIns
             // executor
             File tempFile = File.createTempFile("wildfly-", ".cli");
             tempFile.deleteOnExit();
-            getFileHandler().writeTextFile(tempFile.getAbsolutePath(), buffer.toString(), null);
+            getFileHandler().writeTextFile(tempFile.getAbsolutePath(), script, null);
 
             executeScriptFiles(Arrays.asList(tempFile.getAbsolutePath()));
         }
@@ -214,6 +221,144 @@ public abstract class AbstractWildFlyInstalledLocalContainer extends AbstractIns
         }
     }
 
+    /**
+     * Executes the CLI configuration script and then CLI script files. If
+     * {@link WildFlyPropertySet#CLI_IN_PROCESS} is enabled, all of them run in a single CLI
+     * session in the current JVM; otherwise, or if the CLI cannot be loaded or fails before having
+     * completed any command after <code>embed-server</code>, each of them is run by a new CLI JVM.
+     *
+     * @param configurationScript Script containing CLI configuration to be executed.
+     * @param scriptFilePaths List of file paths containing CLI scripts.
+     */
+    public void executeScripts(List<ScriptCommand> configurationScript,
+        List<String> scriptFilePaths)
+    {
+        WildFlyCliExecutor executor = openCliExecutor();
+        if (executor != null)
+        {
+            try
+            {
+                executeScripts(executor, configurationScript, scriptFilePaths);
+                return;
+            }
+            catch (RuntimeException e)
+            {
+                if (executor.hasCompletedCommands())
+                {
+                    throw e;
+                }
+                getLogger().warn("The WildFly CLI has failed in process, it will run in a "
+                    + "separate JVM: " + e, this.getClass().getName());
+            }
+            finally
+            {
+                executor.close();
+            }
+        }
+
+        executeScript(configurationScript);
+        executeScriptFiles(scriptFilePaths);
+    }
+
+    /**
+     * Executes the CLI configuration script and then CLI script files in an in-process CLI
+     * session.
+     *
+     * @param executor Open CLI executor.
+     * @param configurationScript Script containing CLI configuration to be executed.
+     * @param scriptFilePaths List of file paths containing CLI scripts.
+     */
+    private void executeScripts(WildFlyCliExecutor executor,
+        List<ScriptCommand> configurationScript, List<String> scriptFilePaths)
+    {
+        executor.execute(buildScript(configurationScript));
+
+        for (String scriptFilePath : scriptFilePaths)
+        {
+            if (isMissingScriptFile(scriptFilePath))
+            {
+                getLogger().warn(String.format("Script file %s doesn't exists.",
+                    scriptFilePath), this.getClass().getName());
+            }
+            else
+            {
+                executor.executeFile(scriptFilePath);
+            }
+        }
+    }
+
+    /**
+     * Open an in-process CLI executor, if enabled using {@link WildFlyPropertySet#CLI_IN_PROCESS}
+     * and supported by the WildFly installation.
+     *
+     * @return Open CLI executor, <code>null</code> if the CLI has to run in a separate JVM.
+     */
+    protected WildFlyCliExecutor openCliExecutor()
+    {
+        if (!Boolean.parseBoolean(getConfiguration().getPropertyValue(
+            WildFlyPropertySet.CLI_IN_PROCESS))
+            || getConfiguration().getPropertyValue(SSHPropertySet.HOST) != null)
+        {
+            return null;
+        }
+        if (!WildFlyCliExecutor.isAvailable(getHome()))
+        {
+            getLogger().warn("The WildFly installation has no " + WildFlyCliExecutor.CLI_CLIENT_JAR
+                + ", the CLI will run in a separate JVM", this.getClass().getName());
+            return null;
+        }
+
+        Map<String, String> properties = new LinkedHashMap<String, String>(getSystemProperties());
+        properties.putAll(getServerProperties());
+        WildFlyCliExecutor executor = new WildFlyCliExecutor(getHome(), properties);
+        executor.setLogger(getLogger());
+        executor.setFileHandler(getFileHandler());
+        try
+        {
+            executor.open();
+            return executor;
+        }
+        catch (CargoException e)
+        {
+            getLogger().warn("Cannot run the WildFly CLI in process, it will run in a separate "
+                + "JVM: " + e.getCause(), this.getClass().getName());
+            return null;
+        }
+    }
+
+    /**
+     * Concatenate the commands of a CLI script.
+     *
+     * @param configurationScript Script containing CLI configuration.
+     * @return CLI script.
+     */
+    private String buildScript(List<ScriptCommand> configurationScript)
+    {
+        String newLine = System.getProperty("line.separator");
+        StringBuilder buffer = new StringBuilder();
+
+        for (ScriptCommand configuration : configurationScript)
+        {
+            buffer.append(configuration.readScript());
+            buffer.append(newLine);
+        }
+
+        getLogger().debug("Sending CLI script: " + newLine + buffer.toString(),
+            this.getClass().getName());
+
+        return buffer.toString();
+    }
+
+    /**
+     * @param scriptFilePath Path of a CLI script file.
+     * @return <code>true</code> if the path is absolute and no file exists at that path.
+     */
+    private boolean isMissingScriptFile(String scriptFilePath)
+    {
+        File scriptFile = new File(scriptFilePath);
+        return scriptFile.isAbsolute() && !scriptFile.exists();
+    }
+
     /**
      * Executes CLI scripts.
      *
@@ -226,7 +371,7 @@ public abstract class AbstractWildFlyInstalledLocalContainer extends AbstractIns
         {
             File scriptFile = new File(scriptFilePath);
 
-            if (scriptFile.isAbsolute() && !scriptFile.exists())
+            if (isMissingScriptFile(scriptFilePath))
             {
                 getLogger().warn(String.format("Script file %s doesn't exists.", scriptFilePath),
                         this.getClass().getName());
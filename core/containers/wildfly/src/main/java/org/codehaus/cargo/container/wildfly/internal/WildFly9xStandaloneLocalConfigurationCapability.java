@@ -41,5 +41,6 @@ public class WildFly9xStandaloneLocalConfigurationCapability
         this.propertySupportMap.put(ResourcePropertySet.RESOURCE, Boolean.TRUE);
         this.propertySupportMap.put(WildFlyPropertySet.CLI_OFFLINE_SCRIPT, Boolean.TRUE);
         this.propertySupportMap.put(WildFlyPropertySet.CLI_EMBEDDED_SCRIPT, Boolean.TRUE);
+        this.propertySupportMap.put(WildFlyPropertySet.CLI_IN_PROCESS, Boolean.TRUE);
     }
 }
@@ -0,0 +1,624 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.wildfly.internal.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.container.internal.util.ClassLoaderHandles;
+import org.codehaus.cargo.util.CargoException;
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+import org.codehaus.cargo.util.log.LoggedObject;
+
+/**
+ * Executes WildFly CLI commands in the current JVM, using the <code>jboss-cli-client</code> JAR of
+ * a WildFly installation loaded in an isolated classloader. The classloader is cached, so that
+ * later configurations of the same installation do not load the CLI classes again.<br><br>
+ * All commands given to an executor, from the generated configuration script as well as from
+ * user scripts, run in a single CLI session: an <code>embed-server</code> command identical to
+ * the one of the running embedded server is skipped and <code>stop-embedded-server</code>
+ * commands are deferred until the executor is closed. As the embedded server reads its
+ * directories from system properties, only one executor can be open at a time in a JVM.<br><br>
+ * Multi-line <code>if</code> / <code>end-if</code>, <code>try</code> / <code>end-try</code>,
+ * <code>for</code> / <code>done</code> and <code>batch</code> / <code>run-batch</code> blocks are
+ * kept together and sent line by line to the same CLI session.
+ */
+public final class WildFlyCliExecutor extends LoggedObject
+{
+    /**
+     * Path of the CLI client JAR, relative to the WildFly home.
+     */
+    public static final String CLI_CLIENT_JAR = "bin/client/jboss-cli-client.jar";
+
+    /**
+     * Scripting API class of the WildFly CLI.
+     */
+    private static final String CLI_CLASS = "org.jboss.as.cli.scriptsupport.CLI";
+
+    /**
+     * Command context interface of the WildFly CLI.
+     */
+    private static final String COMMAND_CONTEXT_CLASS = "org.jboss.as.cli.CommandContext";
+
+    /**
+     * Command starting an embedded server.
+     */
+    private static final String EMBED_SERVER = "embed-server";
+
+    /**
+     * Command stopping the embedded server.
+     */
+    private static final String STOP_EMBEDDED_SERVER = "stop-embedded-server";
+
+    /**
+     * Commands opening a multi-line block.
+     */
+    private static final List<String> BLOCK_STARTS = Arrays.asList("if", "try", "for", "batch");
+
+    /**
+     * Commands closing a multi-line block.
+     */
+    private static final List<String> BLOCK_ENDS =
+        Arrays.asList("end-if", "end-try", "done", "run-batch", "discard-batch");
+
+    /**
+     * CLI classloaders, keyed by CLI client JAR path. Each entry is a pair of the version of the
+     * JAR (its size and modification time) and of the classloader.
+     */
+    private static final Map<String, Object[]> CLASSLOADERS = new HashMap<String, Object[]>();
+
+    /**
+     * Classloaders of CLI client JARs which have since been modified, closed once no executor is
+     * open.
+     */
+    private static final List<ClassLoader> STALE_CLASSLOADERS = new ArrayList<ClassLoader>();
+
+    /**
+     * Lock held while an executor is open, since system properties are JVM-wide.
+     */
+    private static final ReentrantLock SESSION_LOCK = new ReentrantLock();
+
+    /**
+     * Classloader of the CLI classes.
+     */
+    private final ClassLoader classLoader;
+
+    /**
+     * Name of the scripting API class of the CLI.
+     */
+    private final String cliClassName;
+
+    /**
+     * System properties set while the executor is open.
+     */
+    private final Map<String, String> systemProperties;
+
+    /**
+     * Values the system properties had before the executor has been opened.
+     */
+    private final Map<String, String> previousSystemProperties =
+        new LinkedHashMap<String, String>();
+
+    /**
+     * File handler used to read script files.
+     */
+    private FileHandler fileHandler = new DefaultFileHandler();
+
+    /**
+     * CLI instance, <code>null</code> when the executor is not open.
+     */
+    private Object cli;
+
+    /**
+     * <code>embed-server</code> command of the running embedded server, <code>null</code> if none.
+     */
+    private String embedCommand;
+
+    /**
+     * Whether a command other than <code>embed-server</code> has completed in the session.
+     */
+    private boolean commandsCompleted;
+
+    /**
+     * Create an executor for a WildFly installation.
+     * @param home WildFly home.
+     * @param systemProperties System properties to set while the executor is open, for example
+     * <code>jboss.home.dir</code> and <code>jboss.server.base.dir</code>.
+     */
+    public WildFlyCliExecutor(String home, Map<String, String> systemProperties)
+    {
+        this(getClassLoader(home), CLI_CLASS, systemProperties);
+    }
+
+    /**
+     * Create an executor using the CLI classes of a given classloader.
+     * @param classLoader Classloader of the CLI classes.
+     * @param cliClassName Name of the scripting API class of the CLI, which has a static
+     * <code>newInstance</code> method.
+     * @param systemProperties System properties to set while the executor is open.
+     */
+    WildFlyCliExecutor(ClassLoader classLoader, String cliClassName,
+        Map<String, String> systemProperties)
+    {
+        this.classLoader = classLoader;
+        this.cliClassName = cliClassName;
+        this.systemProperties = systemProperties;
+    }
+
+    /**
+     * @param home WildFly home.
+     * @return <code>true</code> if the WildFly installation has a CLI client JAR.
+     */
+    public static boolean isAvailable(String home)
+    {
+        return new File(home, CLI_CLIENT_JAR).isFile();
+    }
+
+    /**
+     * Get the classloader of the CLI classes of a WildFly installation, creating it unless the
+     * same CLI client JAR has already been loaded. The classloader only sees the CLI client JAR,
+     * the JBoss Modules JAR the embedded server is started with and the JDK classes. If the CLI
+     * client JAR has been modified since it has been loaded, the previous classloader gets closed
+     * by the next executor opened.
+     * @param home WildFly home.
+     * @return Classloader of the CLI classes.
+     */
+    static ClassLoader getClassLoader(String home)
+    {
+        File cliClientJar = new File(home, CLI_CLIENT_JAR);
+        String key = cliClientJar.getAbsolutePath();
+        String version = cliClientJar.length() + "|" + cliClientJar.lastModified();
+        synchronized (CLASSLOADERS)
+        {
+            Object[] entry = CLASSLOADERS.get(key);
+            if (entry != null && !version.equals(entry[0]))
+            {
+                STALE_CLASSLOADERS.add((ClassLoader) entry[1]);
+                entry = null;
+            }
+            ClassLoader classLoader;
+            if (entry != null)
+            {
+                classLoader = (ClassLoader) entry[1];
+            }
+            else
+            {
+                List<URL> urls = new ArrayList<URL>(2);
+                try
+                {
+                    urls.add(cliClientJar.toURI().toURL());
+                    File jbossModules = new File(home, "jboss-modules.jar");
+                    if (jbossModules.isFile())
+                    {
+                        urls.add(jbossModules.toURI().toURL());
+                    }
+                }
+                catch (MalformedURLException e)
+                {
+                    throw new CargoException("Invalid CLI client JAR " + cliClientJar, e);
+                }
+                classLoader = new URLClassLoader(urls.toArray(new URL[urls.size()]),
+                    ClassLoader.getSystemClassLoader().getParent());
+                CLASSLOADERS.put(key, new Object[] {version, classLoader});
+            }
+            return classLoader;
+        }
+    }
+
+    /**
+     * Close all cached CLI classloaders, releasing the CLI client JARs they keep open, for example
+     * before deleting a WildFly installation. Waits for the open executor, if any, to be closed;
+     * later executors load the CLI classes again.
+     */
+    public static void closeClassLoaders()
+    {
+        SESSION_LOCK.lock();
+        try
+        {
+            synchronized (CLASSLOADERS)
+            {
+                for (Object[] entry : CLASSLOADERS.values())
+                {
+                    STALE_CLASSLOADERS.add((ClassLoader) entry[1]);
+                }
+                CLASSLOADERS.clear();
+            }
+            closeStaleClassLoaders();
+        }
+        finally
+        {
+            SESSION_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Close the classloaders of modified CLI client JARs. Must be called with the session lock
+     * held, so that no executor uses them.
+     */
+    private static void closeStaleClassLoaders()
+    {
+        List<ClassLoader> classLoaders;
+        synchronized (CLASSLOADERS)
+        {
+            classLoaders = new ArrayList<ClassLoader>(STALE_CLASSLOADERS);
+            STALE_CLASSLOADERS.clear();
+        }
+        for (ClassLoader classLoader : classLoaders)
+        {
+            // URLClassLoader is only Closeable as of Java 7
+            if (classLoader instanceof Closeable)
+            {
+                try
+                {
+                    ((Closeable) classLoader).close();
+                }
+                catch (IOException e)
+                {
+                    // Ignored, the JAR files get closed when the classloader is collected
+                }
+            }
+        }
+    }
+
+    /**
+     * Split a CLI script into commands. Empty lines and comments are skipped and lines ending
+     * with a backslash are joined with the next line. The lines of a multi-line block, such as
+     * <code>if</code> / <code>end-if</code> or <code>batch</code> / <code>run-batch</code>, are
+     * kept together in a single command, one line per block line.
+     * @param script CLI script.
+     * @return Commands of the script.
+     */
+    static List<String> parseCommands(String script)
+    {
+        List<String> commands = new ArrayList<String>();
+        StringBuilder command = new StringBuilder();
+        StringBuilder block = new StringBuilder();
+        int depth = 0;
+        for (String line : script.split("\r?\n|\r"))
+        {
+            String trimmed = line.trim();
+            if (command.length() == 0 && (trimmed.length() == 0 || trimmed.startsWith("#")))
+            {
+                continue;
+            }
+            if (trimmed.endsWith("\\"))
+            {
+                command.append(trimmed.substring(0, trimmed.length() - 1));
+                continue;
+            }
+            command.append(trimmed);
+            String complete = command.toString().trim();
+            command.setLength(0);
+
+            String name = complete.split("[\\s(]", 2)[0];
+            if (BLOCK_STARTS.contains(name))
+            {
+                depth++;
+            }
+            else if (depth == 0)
+            {
+                commands.add(complete);
+                continue;
+            }
+            else if (BLOCK_ENDS.contains(name))
+            {
+                depth--;
+            }
+
+            if (block.length() > 0)
+            {
+                block.append('\n');
+            }
+            block.append(complete);
+            if (depth == 0)
+            {
+                commands.add(block.toString());
+                block.setLength(0);
+            }
+        }
+        if (command.length() > 0)
+        {
+            if (block.length() > 0)
+            {
+                block.append('\n');
+            }
+            block.append(command.toString().trim());
+        }
+        if (block.length() > 0)
+        {
+            // Unterminated block, which the CLI will report
+            commands.add(block.toString());
+        }
+        return commands;
+    }
+
+    /**
+     * @param fileHandler File handler used to read script files.
+     */
+    public void setFileHandler(FileHandler fileHandler)
+    {
+        this.fileHandler = fileHandler;
+    }
+
+    /**
+     * Open the CLI session, waiting for any other executor of the JVM to be closed first.
+     * @throws CargoException If the CLI cannot be loaded, in which case the executor is closed.
+     */
+    public void open()
+    {
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        SESSION_LOCK.lock();
+        try
+        {
+            // Within the try block, so that the session lock is released if anything fails
+            closeStaleClassLoaders();
+            for (Map.Entry<String, String> property : this.systemProperties.entrySet())
+            {
+                this.previousSystemProperties.put(property.getKey(),
+                    System.getProperty(property.getKey()));
+                System.setProperty(property.getKey(), property.getValue());
+            }
+
+            thread.setContextClassLoader(this.classLoader);
+            ClassLoaderHandles handles = ClassLoaderHandles.getInstance(this.classLoader);
+            Class<?> cliClass = handles.loadClass(this.cliClassName);
+            this.cli = handles.getMethod(cliClass, "newInstance").invoke(null);
+        }
+        catch (Throwable t)
+        {
+            restore();
+            throw new CargoException("Cannot load the WildFly CLI", t);
+        }
+        finally
+        {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    /**
+     * Execute all commands of a CLI script.
+     * @param script CLI script.
+     * @throws ContainerException If a command fails.
+     */
+    public void execute(String script)
+    {
+        for (String command : parseCommands(script))
+        {
+            executeCommand(command);
+        }
+    }
+
+    /**
+     * Execute all commands of a CLI script file.
+     * @param scriptFilePath Path of the CLI script file.
+     * @throws ContainerException If a command fails.
+     */
+    public void executeFile(String scriptFilePath)
+    {
+        getLogger().debug("Executing CLI script file " + scriptFilePath + " in process",
+            this.getClass().getName());
+        execute(this.fileHandler.readTextFile(scriptFilePath, "UTF-8"));
+    }
+
+    /**
+     * Execute a CLI command in the session, reusing the running embedded server if the command
+     * starts an identical one and deferring the stop of the embedded server.
+     * @param command CLI command.
+     * @throws ContainerException If the command fails.
+     */
+    public void executeCommand(String command)
+    {
+        if (this.cli == null)
+        {
+            throw new IllegalStateException("The CLI executor is not open");
+        }
+
+        if (command.startsWith(STOP_EMBEDDED_SERVER))
+        {
+            getLogger().debug("Deferring [" + command + "] until the CLI session ends",
+                this.getClass().getName());
+            return;
+        }
+        if (command.startsWith(EMBED_SERVER) && this.embedCommand != null)
+        {
+            if (this.embedCommand.equals(command))
+            {
+                getLogger().debug("Reusing the embedded server started with [" + command + "]",
+                    this.getClass().getName());
+                return;
+            }
+            invoke(STOP_EMBEDDED_SERVER);
+            this.embedCommand = null;
+        }
+
+        invoke(command);
+        if (command.startsWith(EMBED_SERVER))
+        {
+            this.embedCommand = command;
+        }
+        else
+        {
+            this.commandsCompleted = true;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if a command other than <code>embed-server</code> has completed
+     * in the session. Until then, the server configuration is unchanged and a failed session can
+     * be run again by a separate CLI JVM.
+     */
+    public boolean hasCompletedCommands()
+    {
+        return this.commandsCompleted;
+    }
+
+    /**
+     * Close the CLI session, stopping the embedded server if any and restoring the system
+     * properties. Closing an executor which is not open does nothing.
+     */
+    public void close()
+    {
+        if (this.cli == null)
+        {
+            return;
+        }
+
+        try
+        {
+            if (this.embedCommand != null)
+            {
+                invoke(STOP_EMBEDDED_SERVER);
+            }
+            terminateSession();
+        }
+        finally
+        {
+            this.cli = null;
+            this.embedCommand = null;
+            this.commandsCompleted = false;
+            restore();
+        }
+    }
+
+    /**
+     * Invoke a command on the CLI and check its outcome. The lines of a multi-line block are
+     * invoked one after the other.
+     * @param command CLI command.
+     * @throws ContainerException If the command fails.
+     */
+    private void invoke(String command)
+    {
+        for (String line : command.split("\n"))
+        {
+            invokeLine(line);
+        }
+    }
+
+    /**
+     * Invoke a single line on the CLI and check its outcome.
+     * @param command CLI command line.
+     * @throws ContainerException If the command fails.
+     */
+    private void invokeLine(String command)
+    {
+        getLogger().debug("Executing CLI command in process: " + command,
+            this.getClass().getName());
+
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(this.classLoader);
+        try
+        {
+            ClassLoaderHandles handles = ClassLoaderHandles.getInstance(this.classLoader);
+            Object result = handles.getMethod(this.cli.getClass(), "cmd", String.class)
+                .invoke(this.cli, command);
+            Object success = result == null ? null
+                : handles.getMethod(result.getClass(), "isSuccess").invoke(result);
+            if (Boolean.FALSE.equals(success))
+            {
+                Object response =
+                    handles.getMethod(result.getClass(), "getResponse").invoke(result);
+                throw new ContainerException("Failure when invoking CLI command [" + command
+                    + "]: " + response);
+            }
+        }
+        catch (InvocationTargetException e)
+        {
+            throw new ContainerException("Failure when invoking CLI command [" + command + "]",
+                e.getTargetException());
+        }
+        catch (NoSuchMethodException e)
+        {
+            throw new ContainerException("Unsupported WildFly CLI version", e);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new ContainerException("Unsupported WildFly CLI version", e);
+        }
+        finally
+        {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    /**
+     * Terminate the session of the CLI command context, if the CLI provides one.
+     */
+    private void terminateSession()
+    {
+        try
+        {
+            ClassLoaderHandles handles = ClassLoaderHandles.getInstance(this.classLoader);
+            Object commandContext =
+                handles.getMethod(this.cli.getClass(), "getCommandContext").invoke(this.cli);
+            if (commandContext != null)
+            {
+                Class<?> commandContextClass = handles.loadClass(COMMAND_CONTEXT_CLASS);
+                handles.getMethod(commandContextClass, "terminateSession").invoke(commandContext);
+            }
+        }
+        catch (Exception e)
+        {
+            getLogger().debug("Cannot terminate the CLI session: " + e,
+                this.getClass().getName());
+        }
+    }
+
+    /**
+     * Restore the system properties and release the session lock.
+     */
+    private void restore()
+    {
+        try
+        {
+            for (Map.Entry<String, String> property : this.previousSystemProperties.entrySet())
+            {
+                if (property.getValue() == null)
+                {
+                    System.clearProperty(property.getKey());
+                }
+                else
+                {
+                    System.setProperty(property.getKey(), property.getValue());
+                }
+            }
+            this.previousSystemProperties.clear();
+        }
+        finally
+        {
+            SESSION_LOCK.unlock();
+        }
+    }
+}
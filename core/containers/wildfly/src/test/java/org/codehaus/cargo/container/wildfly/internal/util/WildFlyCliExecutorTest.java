@@ -0,0 +1,349 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.container.wildfly.internal.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.ContainerException;
+import org.codehaus.cargo.util.CargoException;
+
+/**
+ * Unit tests for {@link WildFlyCliExecutor}.
+ */
+public class WildFlyCliExecutorTest extends TestCase
+{
+    /**
+     * System property set while the executor is open.
+     */
+    private static final String PROPERTY = "cargo.test.wildfly.cli";
+
+    /**
+     * Executor under test.
+     */
+    private WildFlyCliExecutor executor;
+
+    /**
+     * Fake CLI scripting API, recording the commands it receives.
+     */
+    public static final class FakeCli
+    {
+        /**
+         * Commands received by all fake CLI instances.
+         */
+        private static final List<String> COMMANDS = new ArrayList<String>();
+
+        /**
+         * @return New fake CLI.
+         */
+        public static FakeCli newInstance()
+        {
+            COMMANDS.clear();
+            return new FakeCli();
+        }
+
+        /**
+         * @param command CLI command.
+         * @return Result, failed for commands starting with <code>fail</code>.
+         */
+        public FakeResult cmd(String command)
+        {
+            COMMANDS.add(command + " " + System.getProperty(PROPERTY));
+            return new FakeResult(!command.startsWith("fail"));
+        }
+
+        /**
+         * @return <code>null</code>, no command context.
+         */
+        public Object getCommandContext()
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Fake CLI command result.
+     */
+    public static final class FakeResult
+    {
+        /**
+         * Whether the command succeeded.
+         */
+        private final boolean success;
+
+        /**
+         * @param success Whether the command succeeded.
+         */
+        private FakeResult(boolean success)
+        {
+            this.success = success;
+        }
+
+        /**
+         * @return Whether the command succeeded.
+         */
+        public boolean isSuccess()
+        {
+            return success;
+        }
+
+        /**
+         * @return Response of the command.
+         */
+        public String getResponse()
+        {
+            return "{\"outcome\" => \"failed\"}";
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        System.clearProperty(PROPERTY);
+        executor = new WildFlyCliExecutor(getClass().getClassLoader(), FakeCli.class.getName(),
+            Collections.singletonMap(PROPERTY, "value"));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        executor.close();
+        super.tearDown();
+    }
+
+    /**
+     * Test splitting CLI scripts into commands.
+     */
+    public void testParseCommands()
+    {
+        assertEquals(Arrays.asList("embed-server --server-config=standalone.xml",
+            "/subsystem=logging:write-attribute(name=level, value=DEBUG)", "batch"),
+            WildFlyCliExecutor.parseCommands("# comment\n\nembed-server"
+                + " --server-config=standalone.xml\r\n/subsystem=logging:write-attribute(\\\n"
+                + "name=level, value=DEBUG)\n  batch  \n"));
+    }
+
+    /**
+     * Test that multi-line blocks are kept together, including nested blocks.
+     */
+    public void testParseBlocks()
+    {
+        assertEquals(Arrays.asList("embed-server",
+            "if (outcome != success) of /subsystem=foo:read-resource\n"
+                + "/subsystem=foo:add\nelse\n/subsystem=foo:remove\nend-if",
+            "try\nbatch\n/a=b:add\n/c=d:add\nrun-batch\ncatch\n"
+                + "/subsystem=logging:write-attribute(name=level, value=DEBUG)\nend-try",
+            ":reload"),
+            WildFlyCliExecutor.parseCommands("embed-server\n"
+                + "if (outcome != success) of /subsystem=foo:read-resource\n"
+                + "  /subsystem=foo:add\n  # comment\nelse\n  /subsystem=foo:remove\nend-if\n"
+                + "try\n  batch\n  /a=b:add\n\n  /c=d:add\n  run-batch\ncatch\n"
+                + "  /subsystem=logging:write-attribute(\\\nname=level, value=DEBUG)\n"
+                + "end-try\n:reload\n"));
+    }
+
+    /**
+     * Test that the lines of a block are sent one by one to the same session.
+     */
+    public void testExecuteBlock()
+    {
+        executor.open();
+        executor.execute("batch\n/a=b:add\nrun-batch");
+
+        assertEquals(Arrays.asList("batch value", "/a=b:add value", "run-batch value"),
+            FakeCli.COMMANDS);
+    }
+
+    /**
+     * Test that the executor tells whether commands other than <code>embed-server</code> have
+     * completed, which decides whether a failed session can run again in a separate JVM.
+     */
+    public void testCompletedCommands()
+    {
+        executor.open();
+        executor.execute("embed-server --server-config=standalone.xml");
+        assertFalse(executor.hasCompletedCommands());
+        try
+        {
+            executor.execute("fail");
+            fail("No exception thrown");
+        }
+        catch (ContainerException expected)
+        {
+            assertFalse(executor.hasCompletedCommands());
+        }
+        executor.execute(":read-resource");
+        assertTrue(executor.hasCompletedCommands());
+        executor.close();
+        assertFalse(executor.hasCompletedCommands());
+    }
+
+    /**
+     * Test that CLI classloaders are cached per CLI client JAR, and replaced once the JAR gets
+     * modified or the classloaders get closed.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testClassLoaders() throws Exception
+    {
+        File home = File.createTempFile("wildfly-", ".home");
+        assertTrue(home.delete());
+        File jar = new File(home, WildFlyCliExecutor.CLI_CLIENT_JAR);
+        assertTrue(jar.getParentFile().mkdirs());
+        try
+        {
+            writeJar(jar, 1);
+            ClassLoader classLoader = WildFlyCliExecutor.getClassLoader(home.getPath());
+            assertSame(classLoader, WildFlyCliExecutor.getClassLoader(home.getPath()));
+
+            writeJar(jar, 2);
+            ClassLoader modified = WildFlyCliExecutor.getClassLoader(home.getPath());
+            assertNotSame(classLoader, modified);
+
+            WildFlyCliExecutor.closeClassLoaders();
+            assertNotSame(modified, WildFlyCliExecutor.getClassLoader(home.getPath()));
+        }
+        finally
+        {
+            WildFlyCliExecutor.closeClassLoaders();
+            assertTrue(jar.delete());
+            assertTrue(jar.getParentFile().delete());
+            assertTrue(jar.getParentFile().getParentFile().delete());
+            assertTrue(home.delete());
+        }
+    }
+
+    /**
+     * Write a fake CLI client JAR.
+     * @param jar JAR file.
+     * @param size Size of the JAR.
+     * @throws Exception If anything goes wrong.
+     */
+    private static void writeJar(File jar, int size) throws Exception
+    {
+        OutputStream out = new FileOutputStream(jar);
+        try
+        {
+            out.write(new byte[size]);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Test that all scripts run in a single session with a single embedded server, and that the
+     * system properties are restored once the session ends.
+     */
+    public void testSingleEmbeddedServer()
+    {
+        executor.open();
+        executor.execute("embed-server --server-config=standalone.xml\n:reload\n"
+            + "stop-embedded-server");
+        executor.execute("embed-server --server-config=standalone.xml\n:read-resource");
+        executor.close();
+
+        assertEquals(Arrays.asList("embed-server --server-config=standalone.xml value",
+            ":reload value", ":read-resource value", "stop-embedded-server value"),
+            FakeCli.COMMANDS);
+        assertNull(System.getProperty(PROPERTY));
+    }
+
+    /**
+     * Test that a different embedded server is only started after stopping the running one.
+     */
+    public void testDifferentEmbeddedServer()
+    {
+        executor.open();
+        executor.execute("embed-server --server-config=standalone.xml");
+        executor.execute("embed-server --server-config=standalone-full.xml");
+
+        assertEquals(Arrays.asList("embed-server --server-config=standalone.xml value",
+            "stop-embedded-server value", "embed-server --server-config=standalone-full.xml value"),
+            FakeCli.COMMANDS);
+    }
+
+    /**
+     * Test that failed commands are reported.
+     */
+    public void testFailedCommand()
+    {
+        executor.open();
+        try
+        {
+            executor.execute("fail");
+            fail("No exception thrown");
+        }
+        catch (ContainerException expected)
+        {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("failed"));
+        }
+    }
+
+    /**
+     * Test that an executor which fails to open releases the session lock, so that other
+     * executors of the JVM can still be opened.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testFailedOpenReleasesLock() throws Exception
+    {
+        WildFlyCliExecutor invalid = new WildFlyCliExecutor(getClass().getClassLoader(),
+            FakeCli.class.getName(), Collections.singletonMap("", "value"));
+        try
+        {
+            invalid.open();
+            fail("No exception thrown");
+        }
+        catch (CargoException expected)
+        {
+            assertTrue(expected.getCause() instanceof IllegalArgumentException);
+        }
+
+        Thread other = new Thread()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void run()
+            {
+                executor.open();
+                executor.close();
+            }
+        };
+        other.start();
+        other.join(10000);
+        assertFalse("The session lock has not been released", other.isAlive());
+    }
+}
@@ -50,6 +50,7 @@ import org.codehaus.cargo.container.deployable.Deployable;
 import org.codehaus.cargo.container.deployer.DeployableMonitor;
 import org.codehaus.cargo.container.deployer.Deployer;
 import org.codehaus.cargo.container.installer.ZipURLInstaller;
+import org.codehaus.cargo.container.spi.deployer.AbstractRemoteDeployer;
 import org.codehaus.cargo.container.spi.deployer.DeployerWatchdog;
 import org.codehaus.cargo.container.spi.util.ContainerUtils;
 import org.codehaus.cargo.generic.ContainerFactory;
@@ -753,55 +754,66 @@ public class CargoTask extends Task
             Deployer deployer = deployerFactory.createDeployer(getContainer());
             deployer.setLogger(getLogger());
 
-            for (DeployableElement deployableElement : getConfiguration().getDeployables())
+            try
             {
-                if (ACTION_UNDEPLOY.equalsIgnoreCase(getAction())
-                    && deployableElement.getFile() == null)
-                {
-                    // CARGO-1173: The "file" attribute is optional for the undeploy action
-                    deployableElement.setFile(".");
-                }
-
-                Deployable deployable = deployableElement.createDeployable(getContainerId());
-                DeployableMonitor deployableMonitor = deployableElement.createDeployableMonitor();
-
-                if (ACTION_DEPLOY.equalsIgnoreCase(getAction()))
+                for (DeployableElement deployableElement : getConfiguration().getDeployables())
                 {
-                    if (deployableMonitor == null)
-                    {
-                        deployer.deploy(deployable);
-                    }
-                    else
+                    if (ACTION_UNDEPLOY.equalsIgnoreCase(getAction())
+                        && deployableElement.getFile() == null)
                     {
-                        deployer.deploy(deployable, deployableMonitor);
+                        // CARGO-1173: The "file" attribute is optional for the undeploy action
+                        deployableElement.setFile(".");
                     }
-                }
-                else if (ACTION_UNDEPLOY.equalsIgnoreCase(getAction()))
-                {
-                    if (deployableMonitor == null)
+
+                    Deployable deployable = deployableElement.createDeployable(getContainerId());
+                    DeployableMonitor deployableMonitor =
+                        deployableElement.createDeployableMonitor();
+
+                    if (ACTION_DEPLOY.equalsIgnoreCase(getAction()))
                     {
-                        deployer.undeploy(deployable);
+                        if (deployableMonitor == null)
+                        {
+                            deployer.deploy(deployable);
+                        }
+                        else
+                        {
+                            deployer.deploy(deployable, deployableMonitor);
+                        }
                     }
-                    else
+                    else if (ACTION_UNDEPLOY.equalsIgnoreCase(getAction()))
                     {
-                        deployer.undeploy(deployable, deployableMonitor);
+                        if (deployableMonitor == null)
+                        {
+                            deployer.undeploy(deployable);
+                        }
+                        else
+                        {
+                            deployer.undeploy(deployable, deployableMonitor);
+                        }
                     }
-                }
-                else if (ACTION_REDEPLOY.equalsIgnoreCase(getAction()))
-                {
-                    if (deployableMonitor == null)
+                    else if (ACTION_REDEPLOY.equalsIgnoreCase(getAction()))
                     {
-                        deployer.redeploy(deployable);
+                        if (deployableMonitor == null)
+                        {
+                            deployer.redeploy(deployable);
+                        }
+                        else
+                        {
+                            deployer.redeploy(deployable, deployableMonitor);
+                        }
                     }
                     else
                     {
-                        deployer.redeploy(deployable, deployableMonitor);
+                        throw new BuildException("Unknown action [" + getAction()
+                            + "] for deployer");
                     }
                 }
-                else
+            }
+            finally
+            {
+                if (deployer instanceof AbstractRemoteDeployer)
                 {
-                    throw new BuildException("Unknown action [" + getAction()
-                        + "] for deployer");
+                    ((AbstractRemoteDeployer) deployer).release();
                 }
             }
         }
@@ -0,0 +1,401 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.daemon;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.cargo.container.State;
+
+/**
+ * Restarts the stopped containers of the handles which have autostart enabled. Containers are
+ * started in parallel by a bounded pool of workers, so that one slow container does not delay the
+ * others, and only while the host has enough free physical memory.<br><br>
+ * A container which fails to start, or which stops again shortly after having been started, is
+ * retried with an exponential backoff; a small random jitter prevents containers that failed
+ * together from being retried all at the same time.
+ */
+public class AutostartScheduler
+{
+    /**
+     * System property with the maximum number of containers started at the same time, defaults
+     * to the number of processors.
+     */
+    public static final String THREADS_PROPERTY = "cargo.daemon.autostart.threads";
+
+    /**
+     * System property with the free physical memory, in megabytes, below which no container is
+     * started, defaults to <code>0</code> (no limit).
+     */
+    public static final String MIN_FREE_MEMORY_PROPERTY = "cargo.daemon.autostart.minFreeMemory";
+
+    /**
+     * Delay before the first retry of a container, in milliseconds.
+     */
+    public static final long INITIAL_BACKOFF = 20000;
+
+    /**
+     * Maximum delay between two retries of a container, in milliseconds.
+     */
+    public static final long MAX_BACKOFF = 900000;
+
+    /**
+     * Time after which a started container is considered stable, in milliseconds. A container
+     * which stops earlier is handled as a failed start.
+     */
+    public static final long STABLE_TIME = 300000;
+
+    /**
+     * Starts the container of a handle.
+     */
+    public interface Starter
+    {
+        /**
+         * Start the container of a handle.
+         * @param handle Handle.
+         * @throws Throwable If starting fails.
+         */
+        void start(Handle handle) throws Throwable;
+    }
+
+    /**
+     * Autostart bookkeeping of a handle.
+     */
+    private static final class AutostartState
+    {
+        /**
+         * Whether a start is queued or running.
+         */
+        private boolean scheduled;
+
+        /**
+         * Number of failures since the container last ran stably.
+         */
+        private int failures;
+
+        /**
+         * Time before which the container is not started.
+         */
+        private long nextAttempt;
+
+        /**
+         * Time the container has last been started, <code>0</code> once it has been checked.
+         */
+        private long lastStart;
+    }
+
+    /**
+     * Starts the containers.
+     */
+    private final Starter starter;
+
+    /**
+     * Workers starting the containers.
+     */
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * Free physical memory below which no container is started, in bytes.
+     */
+    private final long minFreeMemory;
+
+    /**
+     * Autostart bookkeeping, keyed by handle identifier.
+     */
+    private final ConcurrentMap<String, AutostartState> states =
+        new ConcurrentHashMap<String, AutostartState>();
+
+    /**
+     * Jitter source.
+     */
+    private final Random random = new Random();
+
+    /**
+     * Create a scheduler with the limits given by {@link #THREADS_PROPERTY} and
+     * {@link #MIN_FREE_MEMORY_PROPERTY}.
+     * @param starter Starts the containers.
+     */
+    public AutostartScheduler(Starter starter)
+    {
+        this(starter, Integer.getInteger(THREADS_PROPERTY,
+            Runtime.getRuntime().availableProcessors()).intValue(),
+                Long.getLong(MIN_FREE_MEMORY_PROPERTY, 0L).longValue() * 1024 * 1024);
+    }
+
+    /**
+     * Save all attributes.
+     * @param starter Starts the containers.
+     * @param threads Maximum number of containers started at the same time.
+     * @param minFreeMemory Free physical memory below which no container is started, in bytes.
+     */
+    public AutostartScheduler(Starter starter, int threads, long minFreeMemory)
+    {
+        this.starter = starter;
+        this.minFreeMemory = minFreeMemory;
+        int poolSize = Math.max(1, threads);
+        final AtomicInteger counter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable,
+                        "Cargo daemon autostart " + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queue the start of all stopped containers that have autostart enabled, unless they are
+     * already being started or waiting for their next retry.
+     * @param handles Handle database.
+     * @return Number of queued starts.
+     */
+    public int schedule(HandleDatabase handles)
+    {
+        return schedule(handles, System.currentTimeMillis());
+    }
+
+    /**
+     * Queue the start of all stopped containers that have autostart enabled, unless they are
+     * already being started or waiting for their next retry at a given time.
+     * @param handles Handle database.
+     * @param now Current time.
+     * @return Number of queued starts.
+     */
+    int schedule(HandleDatabase handles, long now)
+    {
+        int queued = 0;
+        for (Map.Entry<String, Handle> entry : handles.entrySet())
+        {
+            final Handle handle = entry.getValue();
+            if (handle == null || !isStartable(handle))
+            {
+                continue;
+            }
+
+            final AutostartState state = getState(entry.getKey());
+            synchronized (state)
+            {
+                if (state.scheduled || now < state.nextAttempt)
+                {
+                    continue;
+                }
+                if (state.lastStart != 0)
+                {
+                    long uptime = now - state.lastStart;
+                    state.lastStart = 0;
+                    if (uptime < STABLE_TIME)
+                    {
+                        fail(handle, state, "Container stopped " + uptime / 1000
+                            + " seconds after having been started", now);
+                        continue;
+                    }
+                    state.failures = 0;
+                }
+                state.scheduled = true;
+            }
+
+            this.workers.execute(new Runnable()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void run()
+                {
+                    start(handle, state);
+                }
+            });
+            queued++;
+        }
+        return queued;
+    }
+
+    /**
+     * Forget the autostart bookkeeping of a handle, for example once it has been deleted.
+     * @param handleId Handle identifier.
+     */
+    public void forget(String handleId)
+    {
+        this.states.remove(handleId);
+    }
+
+    /**
+     * @return Number of container starts waiting for a worker.
+     */
+    public int getQueueSize()
+    {
+        return this.workers.getQueue().size();
+    }
+
+    /**
+     * @return Number of containers being started.
+     */
+    public int getActiveCount()
+    {
+        return this.workers.getActiveCount();
+    }
+
+    /**
+     * Stop the workers. Starts which are running are completed, without waiting for them, and
+     * queued ones are discarded.
+     */
+    public void shutdown()
+    {
+        this.workers.shutdown();
+        this.workers.getQueue().clear();
+    }
+
+    /**
+     * Start the container of a handle, on a worker.
+     * @param handle Handle.
+     * @param state Autostart bookkeeping of the handle.
+     */
+    private void start(Handle handle, AutostartState state)
+    {
+        try
+        {
+            if (getFreeMemory() < this.minFreeMemory)
+            {
+                synchronized (state)
+                {
+                    state.nextAttempt = System.currentTimeMillis() + INITIAL_BACKOFF;
+                }
+                return;
+            }
+
+            synchronized (handle)
+            {
+                // The container might have been started or stopped by a request meanwhile
+                if (!isStartable(handle))
+                {
+                    return;
+                }
+                this.starter.start(handle);
+                handle.incrementRestartCount();
+            }
+            synchronized (state)
+            {
+                state.lastStart = System.currentTimeMillis();
+            }
+        }
+        catch (Throwable t)
+        {
+            synchronized (state)
+            {
+                fail(handle, state, t.toString(), System.currentTimeMillis());
+            }
+        }
+        finally
+        {
+            synchronized (state)
+            {
+                state.scheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Record a failure and compute the time of the next retry. Must be called while holding the
+     * lock of <code>state</code>.
+     * @param handle Handle.
+     * @param state Autostart bookkeeping of the handle.
+     * @param reason Failure reason.
+     * @param now Current time.
+     */
+    private void fail(Handle handle, AutostartState state, String reason, long now)
+    {
+        state.failures++;
+        long backoff = INITIAL_BACKOFF << Math.min(state.failures - 1, 16);
+        backoff = Math.min(backoff, MAX_BACKOFF);
+        double jitter = 0.8 + 0.4 * this.random.nextDouble();
+        state.nextAttempt = now + (long) (backoff * jitter);
+        handle.setLastAutostartFailure(reason);
+    }
+
+    /**
+     * @param handleId Handle identifier.
+     * @return Autostart bookkeeping of the handle, created if needed.
+     */
+    private AutostartState getState(String handleId)
+    {
+        AutostartState state = this.states.get(handleId);
+        if (state == null)
+        {
+            state = new AutostartState();
+            AutostartState existing = this.states.putIfAbsent(handleId, state);
+            if (existing != null)
+            {
+                state = existing;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * @param handle Handle.
+     * @return <code>true</code> if the container of the handle should be started.
+     */
+    private static boolean isStartable(Handle handle)
+    {
+        return handle.isAutostart() && handle.getContainerStatus() == State.STOPPED
+            && !handle.isForceStop();
+    }
+
+    /**
+     * @return Free physical memory of the host in bytes, {@link Long#MAX_VALUE} if the JVM does
+     * not tell.
+     */
+    private static long getFreeMemory()
+    {
+        try
+        {
+            Class<?> osBean = Class.forName("com.sun.management.OperatingSystemMXBean");
+            Object os = ManagementFactory.getOperatingSystemMXBean();
+            if (osBean.isInstance(os))
+            {
+                Method method = osBean.getMethod("getFreePhysicalMemorySize");
+                return ((Number) method.invoke(os)).longValue();
+            }
+        }
+        catch (Exception ignored)
+        {
+            // Not available on this JVM
+        }
+        return Long.MAX_VALUE;
+    }
+}
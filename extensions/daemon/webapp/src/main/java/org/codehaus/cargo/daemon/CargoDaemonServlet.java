@@ -33,6 +33,7 @@ import java.util.Map;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletConfig;
@@ -44,7 +45,6 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.codehaus.cargo.container.ContainerType;
 import org.codehaus.cargo.container.InstalledLocalContainer;
-import org.codehaus.cargo.container.State;
 import org.codehaus.cargo.container.configuration.ConfigurationType;
 import org.codehaus.cargo.container.configuration.FileConfig;
 import org.codehaus.cargo.container.configuration.LocalConfiguration;
@@ -54,8 +54,13 @@ import org.codehaus.cargo.container.deployable.DeployableType;
 import org.codehaus.cargo.container.deployable.WAR;
 import org.codehaus.cargo.container.installer.Installer;
 import org.codehaus.cargo.container.installer.ZipURLInstaller;
+import org.codehaus.cargo.container.lifecycle.LifecycleInstrumentation;
+import org.codehaus.cargo.container.lifecycle.LifecycleReporter;
+import org.codehaus.cargo.container.property.GeneralPropertySet;
 import org.codehaus.cargo.daemon.file.FileManager;
+import org.codehaus.cargo.daemon.file.LogTailer;
 import org.codehaus.cargo.daemon.jvm.DaemonJvmLauncherFactory;
+import org.codehaus.cargo.daemon.metrics.DaemonMetrics;
 import org.codehaus.cargo.daemon.properties.PropertyTable;
 import org.codehaus.cargo.daemon.request.StartRequest;
 import org.codehaus.cargo.generic.ContainerFactory;
@@ -79,6 +84,16 @@ import org.json.simple.JSONValue;
 public class CargoDaemonServlet extends HttpServlet implements Runnable
 {
 
+    /**
+     * System property enabling workspace templates when set to <code>true</code>.
+     */
+    static final String TEMPLATES_PROPERTY = "cargo.daemon.templates";
+
+    /**
+     * The maximum number of workspace templates kept.
+     */
+    static final int MAX_TEMPLATES = 32;
+
     /**
      * The periodic amount of milliseconds between checking if containers are still alive.
      */
@@ -115,6 +130,52 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
      */
     private static final DeployableFactory DEPLOYABLE_FACTORY = new DefaultDeployableFactory();
 
+    /**
+     * Maximum number of lifecycle phases kept for the lifecycle report.
+     */
+    private static final int LIFECYCLE_REPORT_SIZE = 1000;
+
+    /**
+     * The amount of milliseconds after which a keepalive is sent to log stream viewers if the log
+     * has not grown.
+     */
+    private static final int LOG_STREAM_KEEPALIVE = 15000;
+
+    /**
+     * The amount of milliseconds after which a log stream ends if the log has not grown, so that
+     * forgotten viewers do not hold a servlet thread forever.
+     */
+    private static final int LOG_STREAM_IDLE_TIMEOUT = 10 * 60 * 1000;
+
+    /**
+     * The amount of milliseconds browsers wait before reconnecting to a log stream which has
+     * ended because the log has not grown.
+     */
+    private static final int LOG_STREAM_IDLE_RETRY = 60 * 1000;
+
+    /**
+     * System property with the maximum number of concurrent log stream viewers, each of which
+     * holds a servlet thread, defaults to {@link #DEFAULT_LOG_STREAMS}. Log pages opened beyond
+     * this limit fall back to polling the log.
+     */
+    public static final String LOG_STREAMS_PROPERTY = "cargo.daemon.logStreams";
+
+    /**
+     * Default maximum number of concurrent log stream viewers.
+     */
+    private static final int DEFAULT_LOG_STREAMS = 16;
+
+    /**
+     * Maximum number of concurrent log stream viewers.
+     */
+    private final int maxLogStreams =
+        Integer.getInteger(LOG_STREAMS_PROPERTY, DEFAULT_LOG_STREAMS).intValue();
+
+    /**
+     * Permits of the concurrent log stream viewers.
+     */
+    private final Semaphore logStreams = new Semaphore(maxLogStreams);
+
     /**
      * File manager for the daemon.
      */
@@ -130,6 +191,36 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
      */
     private ScheduledThreadPoolExecutor scheduledExecutor = new ScheduledThreadPoolExecutor(1);
 
+    /**
+     * Starts the containers that have autostart enabled.
+     */
+    private final AutostartScheduler autostartScheduler =
+        new AutostartScheduler(new AutostartScheduler.Starter()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void start(Handle handle) throws Throwable
+            {
+                StartRequest startRequest = new StartRequest();
+                startRequest.setParameters(handle.getProperties());
+                startContainer(startRequest);
+            }
+        });
+
+    /**
+     * Collects the latest lifecycle phases of the containers managed by the daemon.
+     */
+    private final LifecycleReporter lifecycleReporter =
+        new LifecycleReporter(LIFECYCLE_REPORT_SIZE);
+
+    /**
+     * Metrics of the daemon and of the containers it manages.
+     */
+    private final DaemonMetrics metrics =
+        new DaemonMetrics(autostartScheduler, scheduledExecutor);
+
     /**
      * Default index page.
      */
@@ -195,6 +286,8 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
     public void init(ServletConfig config) throws ServletException
     {
         super.init(config);
+        LifecycleInstrumentation.addListener(lifecycleReporter);
+        LifecycleInstrumentation.addListener(metrics);
 
         // Try loading the handle database files
         try
@@ -215,6 +308,17 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
     public void destroy()
     {
         scheduledExecutor.shutdown();
+        autostartScheduler.shutdown();
+        try
+        {
+            fileManager.closeHandleDatabase();
+        }
+        catch (IOException e)
+        {
+            getServletContext().log("Cannot close the handle database", e);
+        }
+        LifecycleInstrumentation.removeListener(lifecycleReporter);
+        LifecycleInstrumentation.removeListener(metrics);
         super.destroy();
     }
 
@@ -256,6 +360,11 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
                 {
                     // Use case: Create new / replace existing handleId with provided configuration
                     startRequest = new StartRequest().parse(request);
+                    if (startRequest.getUploadBytes() >= 0)
+                    {
+                        metrics.recordUpload(startRequest.getUploadBytes(),
+                            startRequest.getUploadDuration());
+                    }
                     startRequest.setSave(true);
                 }
 
@@ -295,12 +404,18 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
                         if (delete)
                         {
                             handles.remove(handleId);
-                            fileManager.saveHandleDatabase(handles);
+                            fileManager.saveHandle(handles, handleId);
+                            autostartScheduler.forget(handleId);
+                            metrics.forget(handleId);
                         }
 
                         if (container != null)
                         {
                             container.stop();
+                            if (delete)
+                            {
+                                closeLogger(container);
+                            }
                         }
 
                         handle.setForceStop(true);
@@ -341,7 +456,14 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
                     logFilePath = handle.getContainerLogPath();
                 }
                 
-                long filesize = fileManager.getFileSize(logFilePath);
+                LogTailer tailer = null;
+                long filesize = 0;
+                if (logFilePath != null && !logFilePath.isEmpty())
+                {
+                    tailer = fileManager.getLogTailer(logFilePath);
+                    tailer.refresh();
+                    filesize = tailer.getLength();
+                }
 
                 response.setContentType("text/plain");
                 response.setCharacterEncoding("UTF-8");
@@ -385,7 +507,17 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
                         pos = offset;
                     }
                     
-                    fileManager.copy(logFilePath, outputStream, pos, filesize - pos);
+                    byte[] content = tailer.read(pos);
+                    if (content == null)
+                    {
+                        // Not in the shared buffer anymore, read it from the log file
+                        fileManager.copy(logFilePath, outputStream, pos, filesize - pos);
+                    }
+                    else
+                    {
+                        outputStream.write(content);
+                        outputStream.flush();
+                    }
                 }
                 
                 if (offset == null) 
@@ -399,6 +531,10 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
                 response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.toString());
             }
         }
+        else if ("streamlog".equals(servletPath))
+        {
+            streamLog(request, response);
+        }
         else if ("installed".equals(servletPath))
         {
             String file = request.getParameter("file");
@@ -418,6 +554,34 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
             response.setContentType("text/plain");
             response.getWriter().println(JSONValue.toJSONString(getHandleDetails()));
         }
+        else if ("getLifecycleReport".equals(servletPath))
+        {
+            response.setCharacterEncoding("UTF-8");
+            if ("csv".equals(request.getParameter("format")))
+            {
+                response.setContentType("text/csv");
+                lifecycleReporter.writeCsv(response.getWriter());
+            }
+            else
+            {
+                response.setContentType("application/json");
+                lifecycleReporter.writeJson(response.getWriter());
+            }
+        }
+        else if ("getMetrics".equals(servletPath))
+        {
+            response.setCharacterEncoding("UTF-8");
+            if ("prometheus".equals(request.getParameter("format")))
+            {
+                response.setContentType("text/plain; version=0.0.4");
+                metrics.writePrometheus(response.getWriter(), handles);
+            }
+            else
+            {
+                response.setContentType("application/json");
+                metrics.writeJson(response.getWriter(), handles);
+            }
+        }
         else if ("index.html".equals(servletPath))
         {
             try
@@ -515,6 +679,7 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
             }
 
             configuration.getProperties().putAll(configurationProperties);
+            setupWorkspaceTemplate(configuration, fileManager, handleId);
 
             if (configuration instanceof StandaloneLocalConfiguration)
             {
@@ -554,7 +719,10 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
 
             additionalClasspath = setupAdditionalClasspath(additionalClasspath, handleId);
 
-            container.setJvmLauncherFactory(new DaemonJvmLauncherFactory(additionalClasspath));
+            DaemonJvmLauncherFactory launcherFactory =
+                new DaemonJvmLauncherFactory(additionalClasspath);
+            container.setJvmLauncherFactory(launcherFactory);
+            metrics.register(handleId, container, launcherFactory);
 
             if (timeout != null && !timeout.isEmpty())
             {
@@ -569,7 +737,9 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
                 containerLogFile = "cargo.log";
             }
             containerLogFile = fileManager.getLogFile(handleId, containerLogFile);
-            Logger logger = new FileLogger(containerLogFile, containerAppend);
+            // Many containers can be started and stopped concurrently by the daemon, so make sure
+            // their logging does not serialise on each other's file I/O
+            Logger logger = new FileLogger(containerLogFile, containerAppend, true);
 
             if (containerLogLevel != null && !containerLogLevel.isEmpty())
             {
@@ -631,7 +801,7 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
                 handle.setAutostart("on".equals(autostart) || "true".equals(autostart));
                 handle.addProperties(request.getParameters());
 
-                fileManager.saveHandleDatabase(handles);
+                fileManager.saveHandle(handles, handleId);
             }
 
             if (previousContainer != null)
@@ -647,6 +817,10 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
                 {
                     // Ignored
                 }
+                finally
+                {
+                    closeLogger(previousContainer);
+                }
             }
 
             try
@@ -670,6 +844,56 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
         }
     }
 
+    /**
+     * Clone the configuration home from a workspace template, if templates are enabled with the
+     * <code>cargo.daemon.templates</code> system property and the request does not choose its
+     * own snapshot directory. Templates are keyed by container, install and configuration, but
+     * not by configuration home, workspace directory or ports: the deployables and files
+     * uploaded to the workspace directory of the handle are keyed by their path within it and
+     * their content. The first handle creates the template and the next similar ones copy it,
+     * so that they skip creating the configuration. The least recently used templates beyond
+     * {@link #MAX_TEMPLATES} are deleted by the snapshot cache.
+     * 
+     * @param configuration Configuration of the container.
+     * @param fileManager File manager of the daemon.
+     * @param handleId Handle of the container.
+     */
+    static void setupWorkspaceTemplate(LocalConfiguration configuration,
+        FileManager fileManager, String handleId)
+    {
+        if (!Boolean.getBoolean(TEMPLATES_PROPERTY)
+            || configuration.getPropertyValue(
+                GeneralPropertySet.CONFIGURATION_SNAPSHOT_DIRECTORY) != null)
+        {
+            return;
+        }
+
+        configuration.setProperty(GeneralPropertySet.CONFIGURATION_SNAPSHOT_DIRECTORY,
+            fileManager.getTemplateDirectory());
+        configuration.setProperty(GeneralPropertySet.CONFIGURATION_SNAPSHOT_RELOCATABLE,
+            "true");
+        configuration.setProperty(GeneralPropertySet.CONFIGURATION_SNAPSHOT_ROOT,
+            fileManager.getWorkspaceDirectory(handleId));
+        if (configuration.getPropertyValue(GeneralPropertySet.CONFIGURATION_SNAPSHOT_MAX) == null)
+        {
+            configuration.setProperty(GeneralPropertySet.CONFIGURATION_SNAPSHOT_MAX,
+                String.valueOf(MAX_TEMPLATES));
+        }
+    }
+
+    /**
+     * Close the file logger of a container, which is not used anymore.
+     * 
+     * @param container Container.
+     */
+    private void closeLogger(InstalledLocalContainer container)
+    {
+        if (container.getLogger() instanceof FileLogger)
+        {
+            ((FileLogger) container.getLogger()).close();
+        }
+    }
+
     /**
      * Setup additional classpath.
      * 
@@ -984,41 +1208,174 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
     }
 
     /**
-     * Background task to autostart containers if they are stopped.
+     * Streams the output or Cargo log of a container to a viewer, until the viewer disconnects.
+     * 
+     * @param request The servlet request
+     * @param response The servlet response
+     * @throws IOException if the error cannot be sent
      */
-    @Override
-    public void run()
+    private void streamLog(HttpServletRequest request, HttpServletResponse response)
+        throws IOException
     {
-        for (Map.Entry<String, Handle> entry : this.handles.entrySet())
+        try
         {
-            Handle handle = entry.getValue();
+            String handleId = request.getParameter("handleId");
+            Handle handle = handles.get(handleId);
 
             if (handle == null)
             {
+                throw new CargoDaemonException("Handle id " + handleId + " not found.");
+            }
+
+            String logFilePath;
+            if ("cargo".equals(request.getParameter("log")))
+            {
+                logFilePath = handle.getContainerLogPath();
+            }
+            else
+            {
+                logFilePath = handle.getContainerOutputPath();
+            }
+
+            // Browsers reconnecting to the stream resume from the last received event
+            Long offset = getLong(request.getHeader("Last-Event-ID"));
+            if (offset == null)
+            {
+                offset = getLong(request.getParameter("offset"));
+            }
+
+            if (!logStreams.tryAcquire())
+            {
+                response.setHeader("Retry-After", String.valueOf(LOG_STREAM_IDLE_RETRY / 1000));
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                    "Too many log viewers, at most " + maxLogStreams + " are allowed.");
+                return;
+            }
+            try
+            {
+                streamLogEvents(fileManager.getLogTailer(logFilePath), offset, response);
+            }
+            finally
+            {
+                logStreams.release();
+            }
+        }
+        catch (IOException e)
+        {
+            // The viewer has disconnected
+        }
+        catch (Throwable e)
+        {
+            getServletContext().log("Cannot stream log for server", e);
+            if (!response.isCommitted())
+            {
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                    e.toString());
+            }
+        }
+    }
+
+    /**
+     * Streams a log to a viewer as server-sent events, until the viewer disconnects or the log
+     * has not grown for {@link #LOG_STREAM_IDLE_TIMEOUT}; in the latter case, the viewer is asked
+     * to reconnect after {@link #LOG_STREAM_IDLE_RETRY}. Each event contains complete lines of
+     * the log and has the position in the log after these lines as id. All viewers of a log are
+     * served from the same log tailer.
+     * 
+     * @param tailer The log tailer
+     * @param offset The position in the log to start from, <code>null</code> to start from the
+     * oldest buffered position
+     * @param response The servlet response
+     * @throws IOException if the viewer has disconnected or the log cannot be read
+     * @throws InterruptedException if interrupted while waiting for the log to grow
+     */
+    private void streamLogEvents(LogTailer tailer, Long offset, HttpServletResponse response)
+        throws IOException, InterruptedException
+    {
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        ServletOutputStream outputStream = response.getOutputStream();
+
+        tailer.refresh();
+        long pos;
+        if (offset == null)
+        {
+            pos = tailer.getStart();
+        }
+        else
+        {
+            pos = offset;
+        }
+
+        long lastContent = System.currentTimeMillis();
+        while (true)
+        {
+            byte[] content = tailer.read(pos);
+            if (content == null)
+            {
+                // The viewer is behind the shared buffer or the log has been truncated
+                pos = tailer.getStart();
                 continue;
             }
+            long length = pos + content.length;
 
-            synchronized (handle) 
+            int lineEnd = content.length;
+            while (lineEnd > 0 && content[lineEnd - 1] != '\n')
             {
-                if (handle.isAutostart() && handle.getContainerStatus() == State.STOPPED
-                    && !handle.isForceStop())
-                {
-                    StartRequest startRequest = new StartRequest();
+                lineEnd--;
+            }
+            if (lineEnd == 0 && content.length >= LogTailer.CAPACITY)
+            {
+                // Single line filling the whole buffer, send it as is
+                lineEnd = content.length;
+            }
 
-                    startRequest.setParameters(handle.getProperties());
-                    try
-                    {
-                        startContainer(startRequest);
-                    }
-                    catch (Throwable e)
-                    {
-                        // Ignore
-                    }
+            if (lineEnd > 0)
+            {
+                pos += lineEnd;
+                outputStream.print("id: " + pos + "\n");
+                String lines = new String(content, 0, lineEnd, "UTF-8");
+                for (String line : lines.split("\r?\n"))
+                {
+                    outputStream.write(("data: " + line + "\n").getBytes("UTF-8"));
                 }
+                outputStream.print("\n");
+                outputStream.flush();
+            }
+
+            if (tailer.await(length, LOG_STREAM_KEEPALIVE))
+            {
+                lastContent = System.currentTimeMillis();
+            }
+            else if (System.currentTimeMillis() - lastContent >= LOG_STREAM_IDLE_TIMEOUT)
+            {
+                outputStream.print("retry: " + LOG_STREAM_IDLE_RETRY + "\n\n");
+                outputStream.flush();
+                return;
+            }
+            else
+            {
+                // Also lets the servlet container notice disconnected viewers
+                outputStream.print(": keepalive\n\n");
+                outputStream.flush();
             }
         }
     }
-    
+
+    /**
+     * Background task to autostart containers if they are stopped. The containers are started
+     * by the {@link AutostartScheduler} workers, so that this task never blocks.
+     */
+    @Override
+    public void run()
+    {
+        if (this.handles != null)
+        {
+            metrics.sampleLogs(this.handles);
+            autostartScheduler.schedule(this.handles);
+        }
+    }
 
     /**
      * Prints the log page header to the servlet output stream.
@@ -1046,7 +1403,9 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
     }
     
     /**
-     * Prints the log page footer to the servlet output stream.
+     * Prints the log page footer to the servlet output stream. The footer follows the log through
+     * the server-sent events of <code>streamlog</code>, and polls the page instead in browsers
+     * without server-sent events or when the daemon refuses the stream.
      * 
      * @param outputStream The output stream
      * @param handleId The handle id
@@ -1108,27 +1467,32 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
                 + "            document.body.scrollTop = currentHeight;\n" 
                 + "         scrollDiv.scrollTop = currentHeight;\n" 
                 + "      }\n"
-                + "      var xmlHttpRequest = 0;\n"
-                + "      if (window.XMLHttpRequest) {\n"
-                + "        xmlHttpRequest = new XMLHttpRequest();\n"
-                + "      } else if (window.ActiveXObject) {\n"
-                + "        xmlHttpRequest = new ActiveXObject(\"Microsoft.XMLHTTP\");\n"
+                + "      function appendLog(text, escaped) {\n"
+                + "         var pre = document.createElement('pre');\n"
+                + "         var doscroll = shouldAutoscroll(logText);\n"
+                + "         if (escaped)\n"
+                + "            pre.innerHTML = text;\n"
+                + "         else\n"
+                + "            pre.appendChild(document.createTextNode(text));\n"
+                + "         logText.appendChild(pre);\n"
+                + "         if (doscroll) scrollToBottom(logText);\n"
                 + "      }\n"
-                + "      if (xmlHttpRequest)\n"
-                + "      {\n"
+                + "      // Polls the log, for browsers without server-sent events or when the\n"
+                + "      // daemon has no log stream left\n"
+                + "      function pollLog() {\n"
+                + "        var xmlHttpRequest = 0;\n"
+                + "        if (window.XMLHttpRequest) {\n"
+                + "          xmlHttpRequest = new XMLHttpRequest();\n"
+                + "        } else if (window.ActiveXObject) {\n"
+                + "          xmlHttpRequest = new ActiveXObject(\"Microsoft.XMLHTTP\");\n"
+                + "        }\n"
+                + "        if (!xmlHttpRequest) return;\n"
                 + "        xmlHttpRequest.onreadystatechange = function()\n"
                 + "        {\n"
                 + "          if (xmlHttpRequest.readyState==4 && xmlHttpRequest.status==200)\n"
                 + "          {\n"
                 + "            var response = xmlHttpRequest.responseText;\n"
-                + "            if (response.length != 0)\n"
-                + "            {\n"
-                + "               var pre = document.createElement('pre');\n"
-                + "               var doscroll = shouldAutoscroll(logText);\n"
-                + "               pre.innerHTML = response;\n"
-                + "               logText.appendChild(pre);\n"
-                + "               if (doscroll) scrollToBottom(logText);\n"
-                + "            }\n"
+                + "            if (response.length != 0) appendLog(response, true);\n"
                 + "            offset = parseInt(xmlHttpRequest.getResponseHeader"
                 + "('X-Text-Size'));\n"
                 + "          }\n"
@@ -1144,6 +1508,32 @@ public class CargoDaemonServlet extends HttpServlet implements Runnable
                 + "          xmlHttpRequest.send();\n"
                 + "        }, 1000);\n"
                 + "      }\n"
+                + "      if (window.EventSource)\n"
+                + "      {\n"
+                + "        // Reconnections resume from the Last-Event-ID sent by the browser\n"
+                + "        var eventSource = new EventSource(\"./streamlog?handleId=\" "
+                + "+ encodeURIComponent(handleId) + \"&offset=\" + offset"
+                + ("viewcargolog".equals(pageId) ? " + \"&log=cargo\"" : "") + ");\n"
+                + "        eventSource.onmessage = function(event)\n"
+                + "        {\n"
+                + "          appendLog(event.data, false);\n"
+                + "          offset = parseInt(event.lastEventId);\n"
+                + "        }\n"
+                + "        eventSource.onerror = function()\n"
+                + "        {\n"
+                + "          // Closed rather than reconnecting when the daemon has refused the\n"
+                + "          // stream, for example with a 503 once all log streams are in use\n"
+                + "          if (eventSource.readyState == 2)\n"
+                + "          {\n"
+                + "            eventSource.close();\n"
+                + "            pollLog();\n"
+                + "          }\n"
+                + "        }\n"
+                + "      }\n"
+                + "      else\n"
+                + "      {\n"
+                + "        pollLog();\n"
+                + "      }\n"
                 + "//]]>\n"
                 + "    </script>\n"
                 + "  </body>\n"
@@ -73,6 +73,16 @@ public class Handle
      */
     private PropertyTable properties = new PropertyTable();
 
+    /**
+     * Number of times the container has been restarted by autostart.
+     */
+    private volatile int restartCount;
+
+    /**
+     * Reason of the last autostart failure, <code>null</code> if none.
+     */
+    private volatile String lastAutostartFailure;
+
 
     /**
      * @return the handle identifier
@@ -223,6 +233,38 @@ public class Handle
         this.forceStop = forceStop;
     }
 
+    /**
+     * @return the number of times the container has been restarted by autostart.
+     */
+    public int getRestartCount()
+    {
+        return restartCount;
+    }
+
+    /**
+     * Count a restart of the container by autostart.
+     */
+    public synchronized void incrementRestartCount()
+    {
+        restartCount++;
+    }
+
+    /**
+     * @return the reason of the last autostart failure, <code>null</code> if none.
+     */
+    public String getLastAutostartFailure()
+    {
+        return lastAutostartFailure;
+    }
+
+    /**
+     * @param lastAutostartFailure the reason of the last autostart failure.
+     */
+    public void setLastAutostartFailure(String lastAutostartFailure)
+    {
+        this.lastAutostartFailure = lastAutostartFailure;
+    }
+
     /**
      * @return the status of the container.
      */
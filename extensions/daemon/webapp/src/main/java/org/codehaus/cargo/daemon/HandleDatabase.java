@@ -58,18 +58,33 @@ public class HandleDatabase
             String handleId = (String) property.getKey();
             String value = (String) property.getValue();
 
-            PropertyTable handleProperties = new PropertyTable();
-            JSONObject jsonObject = (JSONObject) JSONValue.parse(value);
-            if (jsonObject != null)
+            restore(handleId, (JSONObject) JSONValue.parse(value));
+        }
+    }
+
+    /**
+     * Restores a handle from its stored properties, replacing any handle with the same id.
+     * 
+     * @param handleId The handle id.
+     * @param properties The stored handle properties, can be <code>null</code>.
+     */
+    public void restore(String handleId, Map<?, ?> properties)
+    {
+        PropertyTable handleProperties = new PropertyTable();
+        if (properties != null)
+        {
+            for (Map.Entry<?, ?> property : properties.entrySet())
             {
-                handleProperties.putAll(jsonObject);
+                Object value = property.getValue();
+                handleProperties.put(String.valueOf(property.getKey()),
+                    value == null ? null : value.toString());
             }
-
-            Handle handle = new Handle();
-            handle.setId(handleId);
-            handle.setProperties(handleProperties);
-            handles.put(handleId, handle);
         }
+
+        Handle handle = new Handle();
+        handle.setId(handleId);
+        handle.setProperties(handleProperties);
+        handles.put(handleId, handle);
     }
 
     /**
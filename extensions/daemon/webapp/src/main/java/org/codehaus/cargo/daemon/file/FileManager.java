@@ -24,7 +24,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Iterator;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.codehaus.cargo.daemon.HandleDatabase;
 import org.codehaus.cargo.util.DefaultFileHandler;
@@ -41,6 +44,11 @@ public class FileManager
      */
     private static final int REFRESH_TIME = 500;
 
+    /**
+     * The time after which a log tailer which has not been accessed is discarded.
+     */
+    private static final int TAILER_IDLE_TIME = 60000;
+
     /**
      * The cargo home directory.
      */
@@ -66,6 +74,11 @@ public class FileManager
      */
     private String logDirectory;
 
+    /**
+     * The workspace template directory.
+     */
+    private String templateDirectory;
+
     /**
      * The configuration record file.
      */
@@ -76,6 +89,17 @@ public class FileManager
      */
     private final FileHandler fileHandler = new DefaultFileHandler();
 
+    /**
+     * The journaled storage of the handle database.
+     */
+    private HandleJournal handleJournal;
+
+    /**
+     * The log tailers, keyed by log file path.
+     */
+    private final ConcurrentMap<String, LogTailer> logTailers =
+        new ConcurrentHashMap<String, LogTailer>();
+
     /**
      * Get the cargo home directory.
      * 
@@ -160,33 +184,73 @@ public class FileManager
     }
 
     /**
-     * @return The handle database loaded from disk.
-     * @throws IOException if error occurs
+     * Gets the file path of the handle journal file. The handle journal file records the changes
+     * made to the handle database since its last save.
+     * 
+     * @return the file path to handle journal file
      */
-    public HandleDatabase loadHandleDatabase() throws IOException
+    public String getHandleJournalFile()
     {
-        String file = getHandleDatabaseFile();
-        HandleDatabase database = new HandleDatabase();
+        return fileHandler.append(getCargoHomeDirectory(), "handle.journal");
+    }
 
-        if (fileHandler.exists(file))
+    /**
+     * @return The journaled storage of the handle database.
+     */
+    private synchronized HandleJournal getHandleJournal()
+    {
+        if (handleJournal == null)
         {
-            database.load(fileHandler.getInputStream(file));
+            handleJournal = new HandleJournal(new File(getHandleDatabaseFile()),
+                new File(getHandleJournalFile()));
         }
+        return handleJournal;
+    }
 
-        return database;
+    /**
+     * @return The handle database loaded from disk.
+     * @throws IOException if error occurs
+     */
+    public HandleDatabase loadHandleDatabase() throws IOException
+    {
+        return getHandleJournal().load();
     }
 
     /**
-     * Save handle database to disk.
+     * Save the whole handle database to disk.
      * 
      * @param database The handle database to save.
      * @throws IOException if error occurs.
      */
     public void saveHandleDatabase(HandleDatabase database) throws IOException
     {
-        String file = getHandleDatabaseFile();
+        getHandleJournal().compact(database);
+    }
 
-        database.store(fileHandler.getOutputStream(file));
+    /**
+     * Close the files of the handle database, once no more changes are expected.
+     * 
+     * @throws IOException if error occurs.
+     */
+    public synchronized void closeHandleDatabase() throws IOException
+    {
+        if (handleJournal != null)
+        {
+            handleJournal.close();
+        }
+    }
+
+    /**
+     * Save the changes of a single handle to disk, i.e. its properties if it is in the handle
+     * database and its removal otherwise.
+     * 
+     * @param database The handle database.
+     * @param handleId The handle id.
+     * @throws IOException if error occurs.
+     */
+    public void saveHandle(HandleDatabase database, String handleId) throws IOException
+    {
+        getHandleJournal().record(database, handleId);
     }
 
     /**
@@ -252,6 +316,22 @@ public class FileManager
         return logDirectory;
     }
 
+    /**
+     * Get the workspace template directory, in which prepared configuration homes are kept so
+     * that handles with the same container, install and configuration are cloned from them.
+     * 
+     * @return the workspace template directory
+     */
+    public String getTemplateDirectory()
+    {
+        if (templateDirectory == null)
+        {
+            templateDirectory = fileHandler.append(getCargoHomeDirectory(), "templates");
+        }
+
+        return templateDirectory;
+    }
+
     /**
      * Get the log directory for a container.
      * 
@@ -441,6 +521,37 @@ public class FileManager
         return fileHandler.getSize(filePath);
     }
 
+    /**
+     * Gets the tailer of a log file, shared by all viewers of that log file. Tailers which have
+     * not been accessed for a while are discarded.
+     * 
+     * @param filePath The log file
+     * @return The log tailer
+     */
+    public LogTailer getLogTailer(String filePath)
+    {
+        long idleLimit = System.currentTimeMillis() - TAILER_IDLE_TIME;
+        for (Iterator<LogTailer> it = logTailers.values().iterator(); it.hasNext();)
+        {
+            if (it.next().getLastAccess() < idleLimit)
+            {
+                it.remove();
+            }
+        }
+
+        LogTailer tailer = logTailers.get(filePath);
+        if (tailer == null)
+        {
+            tailer = new LogTailer(new File(filePath), REFRESH_TIME);
+            LogTailer existing = logTailers.putIfAbsent(filePath, tailer);
+            if (existing != null)
+            {
+                tailer = existing;
+            }
+        }
+        return tailer;
+    }
+
     /**
      * Copies the given file to the output stream continously, i.e. not stop when end of file is
      * reached, but rather wait for additional data to be appended to the file.
@@ -0,0 +1,355 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.daemon.file;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.codehaus.cargo.daemon.Handle;
+import org.codehaus.cargo.daemon.HandleDatabase;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+/**
+ * Journaled storage of the handle database. The database is stored as a snapshot, followed by
+ * an append-only journal with one record per handle change; storing a change therefore costs the
+ * size of that handle only. The journal is synced to disk before a change is acknowledged, with
+ * concurrent changes sharing the same sync, and is compacted into a new snapshot once it has grown
+ * large enough.<br><br>
+ * Recovery is crash-safe: each journal record contains the complete state of its handle, so that
+ * replaying records which are already part of the snapshot is harmless, and a record torn by a
+ * crash while being written is skipped.<br><br>
+ * The state of a handle is captured, and snapshots are stored, while holding the lock on the
+ * handle database object; code changing several handles at once can hold that lock so that
+ * snapshots never contain a partial change. Locks are always acquired in the order: handle
+ * database, sync lock, journal.
+ */
+public class HandleJournal
+{
+    /**
+     * Number of journal records after which the journal is compacted into a new snapshot.
+     */
+    public static final int COMPACTION_THRESHOLD = 1000;
+
+    /**
+     * Journal record key for the handle id.
+     */
+    private static final String KEY_ID = "id";
+
+    /**
+     * Journal record key for the handle properties, absent when the handle has been removed.
+     */
+    private static final String KEY_PROPERTIES = "properties";
+
+    /**
+     * Snapshot file.
+     */
+    private final File snapshotFile;
+
+    /**
+     * Journal file.
+     */
+    private final File journalFile;
+
+    /**
+     * Lock held while syncing the journal, always acquired before the lock on this object.
+     */
+    private final Object syncLock = new Object();
+
+    /**
+     * Journal output stream, <code>null</code> until the first record is written.
+     */
+    private FileOutputStream journal;
+
+    /**
+     * Number of records in the journal.
+     */
+    private int records;
+
+    /**
+     * Sequence number of the last record written.
+     */
+    private long appended;
+
+    /**
+     * Sequence number of the last record synced to disk.
+     */
+    private long synced;
+
+    /**
+     * Creates the journaled storage.
+     * 
+     * @param snapshotFile The snapshot file
+     * @param journalFile The journal file
+     */
+    public HandleJournal(File snapshotFile, File journalFile)
+    {
+        this.snapshotFile = snapshotFile;
+        this.journalFile = journalFile;
+    }
+
+    /**
+     * Loads the handle database from the snapshot and the journal, and then compacts the journal
+     * so that the database starts with a fresh journal.
+     * 
+     * @return The handle database
+     * @throws IOException if error occurs
+     */
+    public HandleDatabase load() throws IOException
+    {
+        HandleDatabase database = new HandleDatabase();
+
+        File snapshot = snapshotFile;
+        if (!snapshot.isFile())
+        {
+            // A crash happened while replacing the snapshot
+            snapshot = getTemporarySnapshotFile();
+        }
+        if (snapshot.isFile())
+        {
+            InputStream in = new FileInputStream(snapshot);
+            try
+            {
+                database.load(in);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+
+        if (journalFile.isFile())
+        {
+            BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(journalFile), "UTF-8"));
+            try
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    Object record = JSONValue.parse(line);
+                    if (record instanceof JSONObject)
+                    {
+                        replay(database, (JSONObject) record);
+                    }
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+
+        compact(database);
+        return database;
+    }
+
+    /**
+     * Records the current state of a handle: its properties if the handle is in the database,
+     * its removal otherwise. Returns once the record is on disk.
+     * 
+     * @param database The handle database
+     * @param handleId The handle id
+     * @throws IOException if error occurs
+     */
+    public void record(HandleDatabase database, String handleId) throws IOException
+    {
+        long sequence;
+        boolean compact;
+        // Capture and append the state under the database lock, so that records of the same
+        // handle are appended in the order of its changes and never interleave with a snapshot
+        synchronized (database)
+        {
+            Map<String, Object> record = new LinkedHashMap<String, Object>();
+            record.put(KEY_ID, handleId);
+            Handle handle = database.get(handleId);
+            if (handle != null)
+            {
+                record.put(KEY_PROPERTIES, new HashMap<String, String>(handle.getProperties()));
+            }
+            byte[] line = (JSONValue.toJSONString(record) + "\n").getBytes("UTF-8");
+
+            synchronized (this)
+            {
+                if (journal == null)
+                {
+                    journalFile.getParentFile().mkdirs();
+                    journal = new FileOutputStream(journalFile, true);
+                }
+                journal.write(line);
+                sequence = ++appended;
+                compact = ++records >= COMPACTION_THRESHOLD;
+            }
+        }
+
+        if (compact)
+        {
+            compact(database);
+        }
+        else
+        {
+            sync(sequence);
+        }
+    }
+
+    /**
+     * Writes a new snapshot of the database and empties the journal.
+     * 
+     * @param database The handle database
+     * @throws IOException if error occurs
+     */
+    public void compact(HandleDatabase database) throws IOException
+    {
+        synchronized (database)
+        {
+            synchronized (syncLock)
+            {
+                synchronized (this)
+                {
+                    snapshotFile.getParentFile().mkdirs();
+                    File temporarySnapshot = getTemporarySnapshotFile();
+                    FileOutputStream out = new FileOutputStream(temporarySnapshot);
+                    try
+                    {
+                        database.store(out);
+                        out.getFD().sync();
+                    }
+                    finally
+                    {
+                        out.close();
+                    }
+                    if (!temporarySnapshot.renameTo(snapshotFile))
+                    {
+                        snapshotFile.delete();
+                        if (!temporarySnapshot.renameTo(snapshotFile))
+                        {
+                            throw new IOException("Cannot replace handle database snapshot "
+                                + snapshotFile);
+                        }
+                    }
+
+                    if (journal != null)
+                    {
+                        journal.close();
+                    }
+                    journal = new FileOutputStream(journalFile, false);
+                    records = 0;
+                    synced = appended;
+                }
+            }
+        }
+    }
+
+    /**
+     * Syncs and closes the journal. A later change opens the journal again.
+     * 
+     * @throws IOException if error occurs
+     */
+    public void close() throws IOException
+    {
+        synchronized (syncLock)
+        {
+            synchronized (this)
+            {
+                if (journal == null)
+                {
+                    return;
+                }
+                try
+                {
+                    journal.getFD().sync();
+                    synced = appended;
+                }
+                finally
+                {
+                    journal.close();
+                    journal = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Syncs the journal to disk, unless the record with the given sequence number has already
+     * been synced by another change.
+     * 
+     * @param sequence Sequence number of the record to sync.
+     * @throws IOException if error occurs
+     */
+    private void sync(long sequence) throws IOException
+    {
+        synchronized (syncLock)
+        {
+            if (synced >= sequence)
+            {
+                return;
+            }
+            long target;
+            FileOutputStream out;
+            synchronized (this)
+            {
+                target = appended;
+                out = journal;
+            }
+            out.getFD().sync();
+            synced = target;
+        }
+    }
+
+    /**
+     * Replays a journal record.
+     * 
+     * @param database The handle database
+     * @param record The journal record
+     */
+    private static void replay(HandleDatabase database, JSONObject record)
+    {
+        Object handleId = record.get(KEY_ID);
+        if (!(handleId instanceof String))
+        {
+            return;
+        }
+        Object properties = record.get(KEY_PROPERTIES);
+        if (properties instanceof Map)
+        {
+            database.restore((String) handleId, (Map<?, ?>) properties);
+        }
+        else
+        {
+            database.remove((String) handleId);
+        }
+    }
+
+    /**
+     * @return The file a new snapshot is written to before replacing the snapshot.
+     */
+    private File getTemporarySnapshotFile()
+    {
+        return new File(snapshotFile.getPath() + ".tmp");
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.daemon.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Shared reader of a growing log file. The end of the log is kept in a ring buffer, which all
+ * viewers of the log read from; the file itself is read by at most one viewer per refresh
+ * interval, and only for the bytes appended since the previous read.
+ */
+public class LogTailer
+{
+    /**
+     * Number of bytes kept in the ring buffer.
+     */
+    public static final int CAPACITY = 1024 * 1024;
+
+    /**
+     * Log file.
+     */
+    private final File file;
+
+    /**
+     * Minimum time between two reads of the log file, in milliseconds.
+     */
+    private final long refreshTime;
+
+    /**
+     * Ring buffer containing the bytes of the log file preceding {@link #end}.
+     */
+    private final byte[] buffer = new byte[CAPACITY];
+
+    /**
+     * Position in the log file up to which it has been read.
+     */
+    private long end;
+
+    /**
+     * Position in the log file of the first byte in the ring buffer.
+     */
+    private long start;
+
+    /**
+     * Time of the last read of the log file.
+     */
+    private long lastRefresh;
+
+    /**
+     * Time of the last access by a viewer.
+     */
+    private volatile long lastAccess = System.currentTimeMillis();
+
+    /**
+     * Creates a tailer. The log file is read once the first viewer asks for its content.
+     * @param file Log file.
+     * @param refreshTime Minimum time between two reads of the log file, in milliseconds.
+     */
+    public LogTailer(File file, long refreshTime)
+    {
+        this.file = file;
+        this.refreshTime = refreshTime;
+    }
+
+    /**
+     * @return Size of the log file, as of the last read.
+     */
+    public synchronized long getLength()
+    {
+        return this.end;
+    }
+
+    /**
+     * @return Position in the log file of the oldest byte which can be read.
+     */
+    public synchronized long getStart()
+    {
+        return this.start;
+    }
+
+    /**
+     * @return Time of the last access by a viewer.
+     */
+    public long getLastAccess()
+    {
+        return this.lastAccess;
+    }
+
+    /**
+     * Read the bytes appended to the log file since the last read, unless the log file has been
+     * read less than a refresh interval ago. Viewers waiting for new content are notified.
+     * @throws IOException If the log file cannot be read.
+     */
+    public synchronized void refresh() throws IOException
+    {
+        this.lastAccess = System.currentTimeMillis();
+        if (this.lastAccess - this.lastRefresh < this.refreshTime)
+        {
+            return;
+        }
+        this.lastRefresh = this.lastAccess;
+
+        long length = this.file.length();
+        if (length < this.end)
+        {
+            // The log has been truncated or replaced, read it again
+            this.start = 0;
+            this.end = 0;
+        }
+        if (length == this.end)
+        {
+            return;
+        }
+
+        long from = Math.max(this.end, length - CAPACITY);
+        RandomAccessFile log = new RandomAccessFile(this.file, "r");
+        try
+        {
+            log.seek(from);
+            long position = from;
+            while (position < length)
+            {
+                int index = (int) (position % CAPACITY);
+                int count = (int) Math.min(CAPACITY - index, length - position);
+                int read = log.read(this.buffer, index, count);
+                if (read == -1)
+                {
+                    break;
+                }
+                position += read;
+            }
+            if (from > this.end)
+            {
+                // More than the ring buffer has been appended, older bytes are not buffered
+                this.start = from;
+            }
+            this.end = position;
+            this.start = Math.max(this.start, this.end - CAPACITY);
+        }
+        finally
+        {
+            log.close();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Get the content of the log file from a given position, as of the last read.
+     * @param offset Position in the log file.
+     * @return Bytes from <code>offset</code> up to the end of the log file, <code>null</code> if
+     * the bytes at <code>offset</code> are not in the ring buffer anymore.
+     */
+    public synchronized byte[] read(long offset)
+    {
+        this.lastAccess = System.currentTimeMillis();
+        if (offset < this.start || offset > this.end)
+        {
+            return null;
+        }
+
+        byte[] content = new byte[(int) (this.end - offset)];
+        int index = (int) (offset % CAPACITY);
+        int first = Math.min(content.length, CAPACITY - index);
+        System.arraycopy(this.buffer, index, content, 0, first);
+        System.arraycopy(this.buffer, 0, content, first, content.length - first);
+        return content;
+    }
+
+    /**
+     * Wait until the log file has grown beyond a given position, or has been truncated.
+     * @param offset Position in the log file.
+     * @param timeout Maximum time to wait, in milliseconds.
+     * @return <code>true</code> if the length of the log file is not <code>offset</code>
+     * anymore.
+     * @throws IOException If the log file cannot be read.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public synchronized boolean await(long offset, long timeout)
+        throws IOException, InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeout;
+        refresh();
+        while (this.end == offset)
+        {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+            {
+                return false;
+            }
+            // Never wait with a zero timeout, which would wait until notified
+            wait(Math.max(1, Math.min(remaining, this.refreshTime)));
+            refresh();
+        }
+        return true;
+    }
+}
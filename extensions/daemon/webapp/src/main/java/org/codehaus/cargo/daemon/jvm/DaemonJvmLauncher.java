@@ -34,14 +34,16 @@ import com.sun.jna.platform.win32.Kernel32;
 import com.sun.jna.platform.win32.WinNT.HANDLE;
 
 import org.apache.tools.ant.types.Commandline;
+import org.codehaus.cargo.container.spi.jvm.JvmExitListener;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncher;
 import org.codehaus.cargo.container.spi.jvm.JvmLauncherException;
+import org.codehaus.cargo.container.spi.jvm.ObservableJvmLauncher;
 
 /**
  * A JVM launcher that launches a new Process, that can be forcibly killed if needed.
  *
  */
-class DaemonJvmLauncher implements JvmLauncher
+class DaemonJvmLauncher implements JvmLauncher, ObservableJvmLauncher
 {
     /**
      * The working directory.
@@ -96,7 +98,7 @@ class DaemonJvmLauncher implements JvmLauncher
     /**
      * The running process.
      */
-    private Process process;
+    private volatile Process process;
 
     /**
      * Output file.
@@ -108,6 +110,11 @@ class DaemonJvmLauncher implements JvmLauncher
      */
     private boolean appendOutput = false;
 
+    /**
+     * Listener to notify when the started process exits, <code>null</code> if none.
+     */
+    private JvmExitListener exitListener;
+
     /**
      * Creates a new launcher.
      */
@@ -477,11 +484,57 @@ class DaemonJvmLauncher implements JvmLauncher
     {
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setExitListener(JvmExitListener listener)
+    {
+        this.exitListener = listener;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void start() throws JvmLauncherException
+    {
+        launch();
+
+        final JvmExitListener listener = this.exitListener;
+        final Process started = this.process;
+        if (listener != null)
+        {
+            Thread exitWatcher = new Thread()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void run()
+                {
+                    int exitCode;
+                    try
+                    {
+                        exitCode = started.waitFor();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                    listener.jvmExited(DaemonJvmLauncher.this, exitCode);
+                }
+            };
+            exitWatcher.setDaemon(true);
+            exitWatcher.start();
+        }
+    }
+
+    /**
+     * Launch the process.
+     * @throws JvmLauncherException If the process cannot be launched.
+     */
+    private void launch() throws JvmLauncherException
     {
         try
         {
@@ -537,7 +590,7 @@ class DaemonJvmLauncher implements JvmLauncher
     @Override
     public int execute() throws JvmLauncherException
     {
-        start();
+        launch();
         try
         {
             return this.process.waitFor();
@@ -549,48 +602,101 @@ class DaemonJvmLauncher implements JvmLauncher
     }
  
     /**
-     * Forcefully kill the launched process using platform specific methods.
+     * @return the identifier of the launched process, <code>-1</code> if the process is not
+     * running or its identifier cannot be determined.
      */
-    private void nativeKill()
+    int getPid()
     {
-        if (process == null)
+        Process running = this.process;
+        if (running == null)
         {
-            return;
+            return -1;
+        }
+        try
+        {
+            running.exitValue();
+            return -1;
+        }
+        catch (IllegalThreadStateException e)
+        {
+            // Still running
         }
-        if (process.getClass().getName().equals("java.lang.UNIXProcess"))
+        return getPid(running);
+    }
+
+    /**
+     * Get the identifier of a process using platform specific methods.
+     * 
+     * @param running Process.
+     * @return the identifier of the process, <code>-1</code> if it cannot be determined.
+     */
+    private static int getPid(Process running)
+    {
+        if (running.getClass().getName().equals("java.lang.UNIXProcess"))
         {
             try
             {
-                Field f = process.getClass().getDeclaredField("pid");
+                Field f = running.getClass().getDeclaredField("pid");
                 f.setAccessible(true);
-                int pid = f.getInt(process);
-                Runtime.getRuntime().exec("kill -9 " + pid);
+                return f.getInt(running);
             }
             catch (Throwable e)
             {
                 // Ignore, we tried our best
             }
         }
-        else if (process.getClass().getName().equals("java.lang.Win32Process")
-            || process.getClass().getName().equals("java.lang.ProcessImpl"))
+        else if (running.getClass().getName().equals("java.lang.Win32Process")
+            || running.getClass().getName().equals("java.lang.ProcessImpl"))
         {
             try
             {
-                Field f = process.getClass().getDeclaredField("handle");
+                Field f = running.getClass().getDeclaredField("handle");
                 f.setAccessible(true);
-                long handleId = f.getLong(process);
+                long handleId = f.getLong(running);
 
                 Kernel32 kernel = Kernel32.INSTANCE;
                 HANDLE handle = new HANDLE();
                 handle.setPointer(Pointer.createConstant(handleId));
-                int pid = kernel.GetProcessId(handle);
-                Runtime.getRuntime().exec("taskkill /PID " + pid + " /F");
+                return kernel.GetProcessId(handle);
             }
             catch (Throwable e)
             {
                 // Ignore, we tried our best
             }
         }
+        return -1;
+    }
+
+    /**
+     * Forcefully kill the launched process using platform specific methods.
+     */
+    private void nativeKill()
+    {
+        Process running = this.process;
+        if (running == null)
+        {
+            return;
+        }
+        int pid = getPid(running);
+        if (pid == -1)
+        {
+            return;
+        }
+        try
+        {
+            if (running.getClass().getName().equals("java.lang.UNIXProcess"))
+            {
+                Runtime.getRuntime().exec("kill -9 " + pid);
+            }
+            else
+            {
+                Runtime.getRuntime().exec("taskkill /PID " + pid + " /F");
+            }
+        }
+        catch (Throwable e)
+        {
+            // Ignore, we tried our best
+        }
     }
 
 }
@@ -35,6 +35,11 @@ public class DaemonJvmLauncherFactory implements JvmLauncherFactory
      */
     private List<String> additionalClasspathEntries;
 
+    /**
+     * The launcher of the container JVM, <code>null</code> if not created yet.
+     */
+    private volatile DaemonJvmLauncher serverLauncher;
+
     /**
      * Constructs a launcher with default settings.
      */
@@ -65,7 +70,26 @@ public class DaemonJvmLauncherFactory implements JvmLauncherFactory
             launcher.addClasspathEntries(additionalClasspathEntries);
         }
 
+        if (request.isServer())
+        {
+            this.serverLauncher = launcher;
+        }
+
         return launcher;
     }
 
+    /**
+     * @return the process identifier of the container JVM, <code>-1</code> if it is not running
+     * or its identifier cannot be determined.
+     */
+    public int getServerPid()
+    {
+        DaemonJvmLauncher launcher = this.serverLauncher;
+        if (launcher == null)
+        {
+            return -1;
+        }
+        return launcher.getPid();
+    }
+
 }
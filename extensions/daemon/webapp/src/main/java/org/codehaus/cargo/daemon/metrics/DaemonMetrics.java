@@ -0,0 +1,484 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.daemon.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.codehaus.cargo.container.lifecycle.LifecycleListener;
+import org.codehaus.cargo.container.lifecycle.LifecyclePhase;
+import org.codehaus.cargo.daemon.AutostartScheduler;
+import org.codehaus.cargo.daemon.Handle;
+import org.codehaus.cargo.daemon.HandleDatabase;
+import org.codehaus.cargo.daemon.jvm.DaemonJvmLauncherFactory;
+import org.json.simple.JSONValue;
+
+/**
+ * Metrics of the daemon and of the containers it manages, written as JSON or in the Prometheus
+ * text format. Start and stop durations are collected from the lifecycle instrumentation of the
+ * containers, process statistics are read when the metrics are written and log growth is
+ * computed each time {@link #sampleLogs(HandleDatabase)} is called.
+ */
+public class DaemonMetrics implements LifecycleListener
+{
+    /**
+     * Per handle metrics written as a single sample: key in the collected values, Prometheus
+     * name, Prometheus type and help text.
+     */
+    private static final String[][] HANDLE_SAMPLES =
+    {
+        {"up", "cargo_daemon_container_up", "gauge",
+            "Whether the container is started."},
+        {"pid", "cargo_daemon_process_id", "gauge",
+            "Process identifier of the container JVM."},
+        {"residentMemoryBytes", "cargo_daemon_process_resident_memory_bytes", "gauge",
+            "Resident memory size of the container JVM."},
+        {"cpuSeconds", "cargo_daemon_process_cpu_seconds_total", "counter",
+            "User and system CPU time consumed by the container JVM."},
+        {"restarts", "cargo_daemon_restarts_total", "counter",
+            "Number of times the container has been restarted by autostart."},
+        {"startFailures", "cargo_daemon_start_failures_total", "counter",
+            "Number of failed container starts."},
+        {"stopFailures", "cargo_daemon_stop_failures_total", "counter",
+            "Number of failed container stops."},
+        {"logBytes", "cargo_daemon_log_bytes", "gauge",
+            "Size of the container output log."},
+        {"logBytesPerSecond", "cargo_daemon_log_growth_bytes_per_second", "gauge",
+            "Growth rate of the container output log between the last two samples."}
+    };
+
+    /**
+     * Metrics kept for a handle.
+     */
+    private static final class HandleMetrics
+    {
+        /**
+         * Start durations.
+         */
+        private final LatencyHistogram start = new LatencyHistogram();
+
+        /**
+         * Stop durations.
+         */
+        private final LatencyHistogram stop = new LatencyHistogram();
+
+        /**
+         * Number of failed starts.
+         */
+        private long startFailures;
+
+        /**
+         * Number of failed stops.
+         */
+        private long stopFailures;
+
+        /**
+         * Launcher factory of the current container, <code>null</code> if none.
+         */
+        private volatile DaemonJvmLauncherFactory launcherFactory;
+
+        /**
+         * Size of the output log at the last sample, <code>-1</code> if not sampled yet.
+         */
+        private long logBytes = -1;
+
+        /**
+         * Time of the last log sample.
+         */
+        private long logSampleTime;
+
+        /**
+         * Log growth rate between the last two samples, in bytes per second.
+         */
+        private double logBytesPerSecond;
+    }
+
+    /**
+     * Handle identifiers, keyed by container.
+     */
+    private final Map<Object, String> containers =
+        Collections.synchronizedMap(new WeakHashMap<Object, String>());
+
+    /**
+     * Metrics, keyed by handle identifier.
+     */
+    private final ConcurrentMap<String, HandleMetrics> handleMetrics =
+        new ConcurrentHashMap<String, HandleMetrics>();
+
+    /**
+     * Durations of the uploads received with start requests.
+     */
+    private final LatencyHistogram uploadDurations = new LatencyHistogram();
+
+    /**
+     * Number of bytes received with start requests.
+     */
+    private long uploadBytes;
+
+    /**
+     * Scheduler starting containers with autostart.
+     */
+    private final AutostartScheduler autostartScheduler;
+
+    /**
+     * Executor running the periodic daemon tasks.
+     */
+    private final ThreadPoolExecutor scheduledExecutor;
+
+    /**
+     * Save all attributes.
+     * @param autostartScheduler Scheduler starting containers with autostart.
+     * @param scheduledExecutor Executor running the periodic daemon tasks.
+     */
+    public DaemonMetrics(AutostartScheduler autostartScheduler,
+        ThreadPoolExecutor scheduledExecutor)
+    {
+        this.autostartScheduler = autostartScheduler;
+        this.scheduledExecutor = scheduledExecutor;
+    }
+
+    /**
+     * Associate a newly created container with its handle.
+     * @param handleId Handle identifier.
+     * @param container Container.
+     * @param launcherFactory Factory creating the JVM launchers of the container.
+     */
+    public void register(String handleId, Object container,
+        DaemonJvmLauncherFactory launcherFactory)
+    {
+        this.containers.put(container, handleId);
+        HandleMetrics metrics = getHandleMetrics(handleId);
+        metrics.launcherFactory = launcherFactory;
+    }
+
+    /**
+     * Discard the metrics of a deleted handle.
+     * @param handleId Handle identifier.
+     */
+    public void forget(String handleId)
+    {
+        this.handleMetrics.remove(handleId);
+    }
+
+    /**
+     * Record the start and stop durations of the registered containers.
+     * @param phase Completed phase.
+     */
+    @Override
+    public void phaseCompleted(LifecyclePhase phase)
+    {
+        if (!phase.getName().equals(phase.getPath()))
+        {
+            return;
+        }
+        String handleId = this.containers.get(phase.getSource());
+        if (handleId == null)
+        {
+            return;
+        }
+
+        HandleMetrics metrics = getHandleMetrics(handleId);
+        synchronized (metrics)
+        {
+            if ("start".equals(phase.getName()))
+            {
+                metrics.start.record(phase.getDuration());
+                if (phase.getFailure() != null)
+                {
+                    metrics.startFailures++;
+                }
+            }
+            else if ("stop".equals(phase.getName()))
+            {
+                metrics.stop.record(phase.getDuration());
+                if (phase.getFailure() != null)
+                {
+                    metrics.stopFailures++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Record an upload received with a start request.
+     * @param bytes Number of uploaded bytes.
+     * @param duration Time spent receiving the upload, in milliseconds.
+     */
+    public void recordUpload(long bytes, long duration)
+    {
+        synchronized (this.uploadDurations)
+        {
+            this.uploadBytes += bytes;
+            this.uploadDurations.record(duration);
+        }
+    }
+
+    /**
+     * Sample the size of the container output logs, to compute their growth rate.
+     * @param handles Handle database.
+     */
+    public void sampleLogs(HandleDatabase handles)
+    {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Handle> entry : handles.entrySet())
+        {
+            String path = entry.getValue().getContainerOutputPath();
+            if (path == null)
+            {
+                continue;
+            }
+            long size = new File(path).length();
+            HandleMetrics metrics = getHandleMetrics(entry.getKey());
+            synchronized (metrics)
+            {
+                if (metrics.logBytes >= 0 && now > metrics.logSampleTime)
+                {
+                    // A log that got smaller has been rotated or truncated
+                    long growth = size >= metrics.logBytes ? size - metrics.logBytes : size;
+                    metrics.logBytesPerSecond =
+                        growth * 1000.0 / (now - metrics.logSampleTime);
+                }
+                metrics.logBytes = size;
+                metrics.logSampleTime = now;
+            }
+        }
+    }
+
+    /**
+     * Write the metrics as JSON.
+     * @param writer Writer.
+     * @param handles Handle database, can be <code>null</code> if not loaded.
+     * @throws IOException If writing fails.
+     */
+    public void writeJson(Writer writer, HandleDatabase handles) throws IOException
+    {
+        Map<String, Object> handleValues = new TreeMap<String, Object>();
+        for (Map.Entry<String, Map<String, Object>> entry : collect(handles).entrySet())
+        {
+            HandleMetrics metrics = getHandleMetrics(entry.getKey());
+            Map<String, Object> values = entry.getValue();
+            values.put("start", metrics.start.toMap());
+            values.put("stop", metrics.stop.toMap());
+            handleValues.put(entry.getKey(), values);
+        }
+
+        Map<String, Object> uploads = new LinkedHashMap<String, Object>();
+        synchronized (this.uploadDurations)
+        {
+            uploads.put("count", this.uploadDurations.getCount());
+            uploads.put("bytes", this.uploadBytes);
+            uploads.put("duration", this.uploadDurations.toMap());
+        }
+
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("handles", handleValues);
+        result.put("uploads", uploads);
+        result.put("workers", collectWorkers());
+        writer.write(JSONValue.toJSONString(result));
+    }
+
+    /**
+     * Write the metrics in the Prometheus text format.
+     * @param writer Writer.
+     * @param handles Handle database, can be <code>null</code> if not loaded.
+     * @throws IOException If writing fails.
+     */
+    public void writePrometheus(Writer writer, HandleDatabase handles) throws IOException
+    {
+        Map<String, Map<String, Object>> values = collect(handles);
+
+        writeHeader(writer, "cargo_daemon_handles", "gauge", "Number of handles.");
+        writer.write("cargo_daemon_handles " + values.size() + "\n");
+        for (String[] sample : HANDLE_SAMPLES)
+        {
+            writeHeader(writer, sample[1], sample[2], sample[3]);
+            for (Map.Entry<String, Map<String, Object>> entry : values.entrySet())
+            {
+                Object value = entry.getValue().get(sample[0]);
+                if (value instanceof Number)
+                {
+                    writer.write(sample[1] + "{" + getHandleLabel(entry.getKey()) + "} " + value
+                        + "\n");
+                }
+            }
+        }
+
+        writeHeader(writer, "cargo_daemon_start_duration_seconds", "histogram",
+            "Duration of container starts.");
+        for (String handleId : values.keySet())
+        {
+            getHandleMetrics(handleId).start.writePrometheus(writer,
+                "cargo_daemon_start_duration_seconds", getHandleLabel(handleId));
+        }
+        writeHeader(writer, "cargo_daemon_stop_duration_seconds", "histogram",
+            "Duration of container stops.");
+        for (String handleId : values.keySet())
+        {
+            getHandleMetrics(handleId).stop.writePrometheus(writer,
+                "cargo_daemon_stop_duration_seconds", getHandleLabel(handleId));
+        }
+
+        synchronized (this.uploadDurations)
+        {
+            writeHeader(writer, "cargo_daemon_upload_bytes_total", "counter",
+                "Number of bytes uploaded with start requests.");
+            writer.write("cargo_daemon_upload_bytes_total " + this.uploadBytes + "\n");
+            writeHeader(writer, "cargo_daemon_upload_duration_seconds", "histogram",
+                "Time spent receiving the uploads of start requests.");
+            this.uploadDurations.writePrometheus(writer, "cargo_daemon_upload_duration_seconds",
+                "");
+        }
+
+        Map<String, Object> workers = collectWorkers();
+        writeHeader(writer, "cargo_daemon_autostart_queue_depth", "gauge",
+            "Number of container starts waiting for an autostart worker.");
+        writer.write("cargo_daemon_autostart_queue_depth " + workers.get("autostartQueued")
+            + "\n");
+        writeHeader(writer, "cargo_daemon_autostart_active_workers", "gauge",
+            "Number of autostart workers starting a container.");
+        writer.write("cargo_daemon_autostart_active_workers " + workers.get("autostartActive")
+            + "\n");
+        writeHeader(writer, "cargo_daemon_scheduler_queue_depth", "gauge",
+            "Number of periodic daemon tasks waiting to run.");
+        writer.write("cargo_daemon_scheduler_queue_depth " + workers.get("scheduledQueued")
+            + "\n");
+    }
+
+    /**
+     * Collect the single valued metrics of all handles.
+     * @param handles Handle database, can be <code>null</code> if not loaded.
+     * @return Values keyed by handle identifier, then by metric key.
+     */
+    private Map<String, Map<String, Object>> collect(HandleDatabase handles)
+    {
+        Map<String, Map<String, Object>> result = new TreeMap<String, Map<String, Object>>();
+        if (handles == null)
+        {
+            return result;
+        }
+
+        for (Map.Entry<String, Handle> entry : handles.entrySet())
+        {
+            Handle handle = entry.getValue();
+            HandleMetrics metrics = getHandleMetrics(entry.getKey());
+            Map<String, Object> values = new LinkedHashMap<String, Object>();
+            values.put("state", handle.getContainerStatus().toString());
+            values.put("up", handle.getContainerStatus().isStarted() ? 1 : 0);
+
+            DaemonJvmLauncherFactory launcherFactory = metrics.launcherFactory;
+            int pid = launcherFactory == null ? -1 : launcherFactory.getServerPid();
+            if (pid != -1)
+            {
+                values.put("pid", pid);
+                long residentMemory = ProcessStatistics.getResidentMemory(pid);
+                if (residentMemory != -1)
+                {
+                    values.put("residentMemoryBytes", residentMemory);
+                }
+                double cpuSeconds = ProcessStatistics.getCpuSeconds(pid);
+                if (cpuSeconds != -1)
+                {
+                    values.put("cpuSeconds", cpuSeconds);
+                }
+            }
+
+            values.put("restarts", handle.getRestartCount());
+            values.put("lastAutostartFailure", handle.getLastAutostartFailure());
+            synchronized (metrics)
+            {
+                values.put("startFailures", metrics.startFailures);
+                values.put("stopFailures", metrics.stopFailures);
+                if (metrics.logBytes >= 0)
+                {
+                    values.put("logBytes", metrics.logBytes);
+                    values.put("logBytesPerSecond", metrics.logBytesPerSecond);
+                }
+            }
+            result.put(entry.getKey(), values);
+        }
+        return result;
+    }
+
+    /**
+     * @return Queue depths and activity of the daemon workers.
+     */
+    private Map<String, Object> collectWorkers()
+    {
+        Map<String, Object> workers = new LinkedHashMap<String, Object>();
+        workers.put("autostartQueued", this.autostartScheduler.getQueueSize());
+        workers.put("autostartActive", this.autostartScheduler.getActiveCount());
+        workers.put("scheduledQueued", this.scheduledExecutor.getQueue().size());
+        return workers;
+    }
+
+    /**
+     * @param handleId Handle identifier.
+     * @return Metrics of the handle, created if needed.
+     */
+    private HandleMetrics getHandleMetrics(String handleId)
+    {
+        HandleMetrics metrics = this.handleMetrics.get(handleId);
+        if (metrics == null)
+        {
+            metrics = new HandleMetrics();
+            HandleMetrics existing = this.handleMetrics.putIfAbsent(handleId, metrics);
+            if (existing != null)
+            {
+                metrics = existing;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Write the help and type lines of a Prometheus metric.
+     * @param writer Writer.
+     * @param name Metric name.
+     * @param type Metric type.
+     * @param help Help text.
+     * @throws IOException If writing fails.
+     */
+    private static void writeHeader(Writer writer, String name, String type, String help)
+        throws IOException
+    {
+        writer.write("# HELP " + name + " " + help + "\n");
+        writer.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    /**
+     * @param handleId Handle identifier.
+     * @return Prometheus label identifying the handle.
+     */
+    static String getHandleLabel(String handleId)
+    {
+        String escaped = handleId.replace("\\", "\\\\").replace("\"", "\\\"")
+            .replace("\n", "\\n");
+        return "handle=\"" + escaped + "\"";
+    }
+}
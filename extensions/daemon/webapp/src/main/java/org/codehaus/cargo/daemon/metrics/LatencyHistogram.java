@@ -0,0 +1,131 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.daemon.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Histogram of durations, with fixed buckets ranging from 100 milliseconds to 5 minutes.
+ */
+public class LatencyHistogram
+{
+    /**
+     * Upper bounds of the buckets, in milliseconds.
+     */
+    private static final long[] BOUNDS =
+    {
+        100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 120000, 300000
+    };
+
+    /**
+     * Number of durations in each bucket, the last bucket having no upper bound.
+     */
+    private final long[] buckets = new long[BOUNDS.length + 1];
+
+    /**
+     * Number of durations.
+     */
+    private long count;
+
+    /**
+     * Sum of all durations, in milliseconds.
+     */
+    private long sum;
+
+    /**
+     * Longest duration, in milliseconds.
+     */
+    private long max;
+
+    /**
+     * Record a duration.
+     * @param millis Duration in milliseconds.
+     */
+    public synchronized void record(long millis)
+    {
+        int bucket = 0;
+        while (bucket < BOUNDS.length && millis > BOUNDS[bucket])
+        {
+            bucket++;
+        }
+        this.buckets[bucket]++;
+        this.count++;
+        this.sum += millis;
+        this.max = Math.max(this.max, millis);
+    }
+
+    /**
+     * @return Number of recorded durations.
+     */
+    public synchronized long getCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * @return Histogram as a map with the count, sum and maximum in milliseconds, and the
+     * cumulative count of each bucket keyed by its upper bound in milliseconds.
+     */
+    public synchronized Map<String, Object> toMap()
+    {
+        Map<String, Object> buckets = new LinkedHashMap<String, Object>();
+        long cumulative = 0;
+        for (int i = 0; i < BOUNDS.length; i++)
+        {
+            cumulative += this.buckets[i];
+            buckets.put(Long.toString(BOUNDS[i]), cumulative);
+        }
+        buckets.put("+Inf", this.count);
+
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("count", this.count);
+        result.put("sumMillis", this.sum);
+        result.put("maxMillis", this.max);
+        result.put("buckets", buckets);
+        return result;
+    }
+
+    /**
+     * Write the histogram samples in the Prometheus text format, in seconds.
+     * @param writer Writer.
+     * @param name Metric name.
+     * @param labels Labels, without braces, can be empty.
+     * @throws IOException If writing fails.
+     */
+    public synchronized void writePrometheus(Writer writer, String name, String labels)
+        throws IOException
+    {
+        String prefix = labels.length() == 0 ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < BOUNDS.length; i++)
+        {
+            cumulative += this.buckets[i];
+            writer.write(name + "_bucket{" + prefix + "le=\"" + BOUNDS[i] / 1000.0 + "\"} "
+                + cumulative + "\n");
+        }
+        writer.write(name + "_bucket{" + prefix + "le=\"+Inf\"} " + this.count + "\n");
+        String suffix = labels.length() == 0 ? " " : "{" + labels + "} ";
+        writer.write(name + "_sum" + suffix + this.sum / 1000.0 + "\n");
+        writer.write(name + "_count" + suffix + this.count + "\n");
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.daemon.metrics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Resource usage of a process, as reported by the Linux <code>/proc</code> file system. On other
+ * platforms, no statistics are available.
+ */
+public final class ProcessStatistics
+{
+    /**
+     * Number of clock ticks per second in which CPU times are reported.
+     */
+    private static final double CLOCK_TICKS = 100.0;
+
+    /**
+     * Utility class.
+     */
+    private ProcessStatistics()
+    {
+        // Nothing
+    }
+
+    /**
+     * @param pid Process identifier.
+     * @return Resident set size of the process in bytes, <code>-1</code> if not available.
+     */
+    public static long getResidentMemory(int pid)
+    {
+        String status = readFile(pid, "status");
+        if (status == null)
+        {
+            return -1;
+        }
+        for (String line : status.split("\n"))
+        {
+            if (line.startsWith("VmRSS:"))
+            {
+                String[] fields = line.substring(6).trim().split("\\s+");
+                try
+                {
+                    return Long.parseLong(fields[0]) * 1024;
+                }
+                catch (NumberFormatException e)
+                {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param pid Process identifier.
+     * @return User and system CPU time consumed by the process in seconds, <code>-1</code> if
+     * not available.
+     */
+    public static double getCpuSeconds(int pid)
+    {
+        String stat = readFile(pid, "stat");
+        if (stat == null)
+        {
+            return -1;
+        }
+        return parseCpuSeconds(stat);
+    }
+
+    /**
+     * @param stat Content of the <code>stat</code> file of a process.
+     * @return User and system CPU time consumed by the process in seconds, <code>-1</code> if
+     * the content cannot be parsed.
+     */
+    static double parseCpuSeconds(String stat)
+    {
+        // The command name, in parentheses, can contain spaces
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 1).trim().split("\\s+");
+        if (fields.length < 13)
+        {
+            return -1;
+        }
+        try
+        {
+            return (Long.parseLong(fields[11]) + Long.parseLong(fields[12])) / CLOCK_TICKS;
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * @param pid Process identifier.
+     * @param name File name within the process directory.
+     * @return File content, <code>null</code> if it cannot be read.
+     */
+    private static String readFile(int pid, String name)
+    {
+        if (pid <= 0)
+        {
+            return null;
+        }
+        File file = new File("/proc/" + pid, name);
+        if (!file.isFile())
+        {
+            return null;
+        }
+        try
+        {
+            BufferedReader reader =
+                new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try
+            {
+                StringBuilder content = new StringBuilder();
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    content.append(line);
+                    content.append('\n');
+                }
+                return content.toString();
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+}
@@ -59,6 +59,16 @@ public class StartRequest
      */
     private boolean save = false;
 
+    /**
+     * Number of bytes of the uploaded files, <code>-1</code> if the request was not an upload.
+     */
+    private long uploadBytes = -1;
+
+    /**
+     * Time spent receiving and parsing the upload, in milliseconds.
+     */
+    private long uploadDuration;
+
     /**
      * Parses the servlet request.
      * 
@@ -78,7 +88,10 @@ public class StartRequest
             List<FileItem> fileItems;
             try
             {
+                long startTime = System.currentTimeMillis();
                 fileItems = servletFileUpload.parseRequest(request);
+                uploadDuration = System.currentTimeMillis() - startTime;
+                uploadBytes = 0;
 
                 for (FileItem item : fileItems)
                 {
@@ -93,6 +106,7 @@ public class StartRequest
                     else
                     {
                         files.put(fieldName, item);
+                        uploadBytes += item.getSize();
                     }
                 }
             }
@@ -303,6 +317,23 @@ public class StartRequest
         }
     }
 
+    /**
+     * @return the number of bytes of the uploaded files, <code>-1</code> if the request was not
+     * an upload
+     */
+    public long getUploadBytes()
+    {
+        return uploadBytes;
+    }
+
+    /**
+     * @return the time spent receiving and parsing the upload, in milliseconds
+     */
+    public long getUploadDuration()
+    {
+        return uploadDuration;
+    }
+
     /**
      * @return if this request needs to be saved
      */
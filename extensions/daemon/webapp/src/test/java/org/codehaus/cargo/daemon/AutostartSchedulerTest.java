@@ -0,0 +1,299 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.daemon;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link AutostartScheduler}.
+ */
+public class AutostartSchedulerTest extends TestCase
+{
+    /**
+     * Starter recording the starts, which can fail or block until released.
+     */
+    private static class TestStarter implements AutostartScheduler.Starter
+    {
+        /**
+         * Number of starts.
+         */
+        private final AtomicInteger starts = new AtomicInteger();
+
+        /**
+         * Number of starts running.
+         */
+        private final AtomicInteger running = new AtomicInteger();
+
+        /**
+         * Maximum number of starts which have been running at the same time.
+         */
+        private final AtomicInteger maxRunning = new AtomicInteger();
+
+        /**
+         * Latch starts wait on, <code>null</code> to not wait.
+         */
+        private volatile CountDownLatch release;
+
+        /**
+         * Whether starts fail.
+         */
+        private volatile boolean failing;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void start(Handle handle) throws Throwable
+        {
+            int current = running.incrementAndGet();
+            try
+            {
+                int max = maxRunning.get();
+                while (current > max && !maxRunning.compareAndSet(max, current))
+                {
+                    max = maxRunning.get();
+                }
+                starts.incrementAndGet();
+                if (release != null)
+                {
+                    assertTrue(release.await(10, TimeUnit.SECONDS));
+                }
+                if (failing)
+                {
+                    throw new IllegalStateException("Start failed");
+                }
+            }
+            finally
+            {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Starter under test.
+     */
+    private TestStarter starter;
+
+    /**
+     * Scheduler under test.
+     */
+    private AutostartScheduler scheduler;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        starter = new TestStarter();
+        scheduler = new AutostartScheduler(starter, 2, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        scheduler.shutdown();
+        super.tearDown();
+    }
+
+    /**
+     * @param count Number of handles.
+     * @return Handle database with <code>count</code> stopped handles which have autostart
+     * enabled.
+     */
+    private static HandleDatabase createHandles(int count)
+    {
+        HandleDatabase handles = new HandleDatabase();
+        for (int i = 0; i < count; i++)
+        {
+            handles.restore("handle" + i, Collections.singletonMap("autostart", "true"));
+        }
+        return handles;
+    }
+
+    /**
+     * Wait for the workers to have no more starts running or queued.
+     * @throws Exception If anything goes wrong.
+     */
+    private void awaitIdle() throws Exception
+    {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (scheduler.getActiveCount() > 0 || scheduler.getQueueSize() > 0)
+        {
+            assertTrue("Starts still running", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Test that a failed start is retried with an exponential backoff.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testBackoff() throws Exception
+    {
+        HandleDatabase handles = createHandles(1);
+        starter.failing = true;
+
+        long before = System.currentTimeMillis();
+        assertEquals(1, scheduler.schedule(handles, before));
+        awaitIdle();
+        long after = System.currentTimeMillis();
+        assertEquals("java.lang.IllegalStateException: Start failed",
+            handles.get("handle0").getLastAutostartFailure());
+
+        // First retry after the initial backoff, with a jitter of up to 20 %
+        long initial = AutostartScheduler.INITIAL_BACKOFF;
+        assertEquals(0, scheduler.schedule(handles, after));
+        assertEquals(0, scheduler.schedule(handles, before + initial * 8 / 10 - 1));
+        before = System.currentTimeMillis();
+        assertEquals(1, scheduler.schedule(handles, after + initial * 12 / 10 + 1));
+        awaitIdle();
+        after = System.currentTimeMillis();
+
+        // Second retry after twice the initial backoff
+        assertEquals(0, scheduler.schedule(handles, before + initial * 16 / 10 - 1));
+        assertEquals(1, scheduler.schedule(handles, after + initial * 24 / 10 + 1));
+        awaitIdle();
+        assertEquals(3, starter.starts.get());
+    }
+
+    /**
+     * Test that the backoff does not exceed its maximum.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testMaximumBackoff() throws Exception
+    {
+        HandleDatabase handles = createHandles(1);
+        starter.failing = true;
+        long max = AutostartScheduler.MAX_BACKOFF;
+
+        long before = 0;
+        long after = 0;
+        for (int i = 0; i < 20; i++)
+        {
+            before = System.currentTimeMillis();
+            assertEquals(1, scheduler.schedule(handles, before + max * 2));
+            awaitIdle();
+            after = System.currentTimeMillis();
+        }
+        assertEquals(0, scheduler.schedule(handles, before + max * 8 / 10 - 1));
+        assertEquals(1, scheduler.schedule(handles, after + max * 12 / 10 + 1));
+    }
+
+    /**
+     * Test that a container stopping shortly after having been started is handled as a failed
+     * start, and that a container which ran long enough is started again right away.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testStableTime() throws Exception
+    {
+        HandleDatabase handles = createHandles(1);
+        long before = System.currentTimeMillis();
+        assertEquals(1, scheduler.schedule(handles, before));
+        awaitIdle();
+        assertEquals(1, handles.get("handle0").getRestartCount());
+
+        // The container of the handle is stopped again before having been stable
+        assertEquals(0, scheduler.schedule(handles, before + 1000));
+        assertTrue(handles.get("handle0").getLastAutostartFailure(),
+            handles.get("handle0").getLastAutostartFailure().startsWith("Container stopped"));
+        assertEquals(1, scheduler.schedule(handles,
+            before + 1000 + AutostartScheduler.INITIAL_BACKOFF * 12 / 10 + 1000));
+        awaitIdle();
+
+        // This time, the container stops once stable: no backoff
+        long started = System.currentTimeMillis();
+        assertEquals(1, scheduler.schedule(handles, started + AutostartScheduler.STABLE_TIME
+            + AutostartScheduler.INITIAL_BACKOFF * 12 / 10));
+        awaitIdle();
+        assertEquals(3, handles.get("handle0").getRestartCount());
+    }
+
+    /**
+     * Test that containers are started in parallel by at most the given number of workers, and
+     * that a container being started is not queued again.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testParallelism() throws Exception
+    {
+        HandleDatabase handles = createHandles(5);
+        starter.release = new CountDownLatch(1);
+
+        assertEquals(5, scheduler.schedule(handles));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (starter.running.get() < 2)
+        {
+            assertTrue("Starts not running", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertEquals(3, scheduler.getQueueSize());
+        assertEquals(0, scheduler.schedule(handles));
+
+        starter.release.countDown();
+        awaitIdle();
+        assertEquals(2, starter.maxRunning.get());
+        assertEquals(5, starter.starts.get());
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals(1, handles.get("handle" + i).getRestartCount());
+        }
+    }
+
+    /**
+     * Test that shutting down completes the running starts and discards the queued ones.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testShutdown() throws Exception
+    {
+        HandleDatabase handles = createHandles(3);
+        scheduler = new AutostartScheduler(starter, 1, 0);
+        starter.release = new CountDownLatch(1);
+
+        assertEquals(3, scheduler.schedule(handles));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (starter.running.get() < 1)
+        {
+            assertTrue("Start not running", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        scheduler.shutdown();
+        assertEquals(0, scheduler.getQueueSize());
+
+        starter.release.countDown();
+        awaitIdle();
+        assertEquals(1, starter.starts.get());
+        int restarted = 0;
+        for (int i = 0; i < 3; i++)
+        {
+            restarted += handles.get("handle" + i).getRestartCount();
+        }
+        assertEquals(1, restarted);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.daemon;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.configuration.LocalConfiguration;
+import org.codehaus.cargo.container.deployable.WAR;
+import org.codehaus.cargo.container.property.GeneralPropertySet;
+import org.codehaus.cargo.container.property.ServletPropertySet;
+import org.codehaus.cargo.container.spi.configuration.ConfigurationSnapshotCache;
+import org.codehaus.cargo.container.tomcat.Tomcat7xInstalledLocalContainer;
+import org.codehaus.cargo.container.tomcat.Tomcat7xStandaloneLocalConfiguration;
+import org.codehaus.cargo.daemon.file.FileManager;
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+
+/**
+ * Unit tests for the workspace templates of {@link CargoDaemonServlet}.
+ */
+public class CargoDaemonServletTest extends TestCase
+{
+    /**
+     * File handler.
+     */
+    private final FileHandler fileHandler = new DefaultFileHandler();
+
+    /**
+     * Cargo home directory of the daemon.
+     */
+    private String cargoHome;
+
+    /**
+     * Original value of the <code>cargo.home</code> system property.
+     */
+    private String originalCargoHome;
+
+    /**
+     * File manager of the daemon, using {@link #cargoHome}.
+     */
+    private FileManager fileManager;
+
+    /**
+     * Configuration of the handle being started.
+     */
+    private LocalConfiguration configuration;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        cargoHome = fileHandler.createUniqueTmpDirectory();
+        originalCargoHome = System.getProperty("cargo.home");
+        System.setProperty("cargo.home", cargoHome);
+        fileManager = new FileManager();
+        configuration = new Tomcat7xStandaloneLocalConfiguration(
+            fileHandler.append(cargoHome, "workspace/handle"));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        System.clearProperty(CargoDaemonServlet.TEMPLATES_PROPERTY);
+        if (originalCargoHome == null)
+        {
+            System.clearProperty("cargo.home");
+        }
+        else
+        {
+            System.setProperty("cargo.home", originalCargoHome);
+        }
+        fileHandler.delete(cargoHome);
+        super.tearDown();
+    }
+
+    /**
+     * Test that workspace templates are not used unless enabled.
+     */
+    public void testTemplatesDisabledByDefault()
+    {
+        CargoDaemonServlet.setupWorkspaceTemplate(configuration, fileManager, "handle");
+
+        assertNull(configuration.getPropertyValue(
+            GeneralPropertySet.CONFIGURATION_SNAPSHOT_DIRECTORY));
+        assertNull(configuration.getPropertyValue(
+            GeneralPropertySet.CONFIGURATION_SNAPSHOT_RELOCATABLE));
+    }
+
+    /**
+     * Test that enabled workspace templates make the configuration use relocatable snapshots
+     * in the template directory of the daemon.
+     */
+    public void testTemplatesEnabled()
+    {
+        System.setProperty(CargoDaemonServlet.TEMPLATES_PROPERTY, "true");
+
+        CargoDaemonServlet.setupWorkspaceTemplate(configuration, fileManager, "handle");
+
+        assertEquals(fileHandler.append(cargoHome, "templates"),
+            configuration.getPropertyValue(GeneralPropertySet.CONFIGURATION_SNAPSHOT_DIRECTORY));
+        assertEquals("true", configuration.getPropertyValue(
+            GeneralPropertySet.CONFIGURATION_SNAPSHOT_RELOCATABLE));
+        assertEquals(fileManager.getWorkspaceDirectory("handle"),
+            configuration.getPropertyValue(GeneralPropertySet.CONFIGURATION_SNAPSHOT_ROOT));
+        assertEquals(String.valueOf(CargoDaemonServlet.MAX_TEMPLATES),
+            configuration.getPropertyValue(GeneralPropertySet.CONFIGURATION_SNAPSHOT_MAX));
+    }
+
+    /**
+     * Test that a snapshot directory chosen by the request is kept.
+     */
+    public void testExplicitSnapshotDirectoryKept()
+    {
+        System.setProperty(CargoDaemonServlet.TEMPLATES_PROPERTY, "true");
+        String snapshots = fileHandler.append(cargoHome, "snapshots");
+        configuration.setProperty(GeneralPropertySet.CONFIGURATION_SNAPSHOT_DIRECTORY,
+            snapshots);
+
+        CargoDaemonServlet.setupWorkspaceTemplate(configuration, fileManager, "handle");
+
+        assertEquals(snapshots,
+            configuration.getPropertyValue(GeneralPropertySet.CONFIGURATION_SNAPSHOT_DIRECTORY));
+        assertNull(configuration.getPropertyValue(
+            GeneralPropertySet.CONFIGURATION_SNAPSHOT_RELOCATABLE));
+    }
+
+    /**
+     * Test that a maximum number of snapshots chosen by the request is kept.
+     */
+    public void testExplicitTemplateMaximumKept()
+    {
+        System.setProperty(CargoDaemonServlet.TEMPLATES_PROPERTY, "true");
+        configuration.setProperty(GeneralPropertySet.CONFIGURATION_SNAPSHOT_MAX, "4");
+
+        CargoDaemonServlet.setupWorkspaceTemplate(configuration, fileManager, "handle");
+
+        assertEquals("4",
+            configuration.getPropertyValue(GeneralPropertySet.CONFIGURATION_SNAPSHOT_MAX));
+    }
+
+    /**
+     * Test that handles deploying their own copies of the same file on different ports share
+     * their workspace template.
+     */
+    public void testSimilarHandlesShareTemplate()
+    {
+        System.setProperty(CargoDaemonServlet.TEMPLATES_PROPERTY, "true");
+
+        assertEquals(computeTemplateFingerprint("handle1", "8081", "app", 60000),
+            computeTemplateFingerprint("handle2", "8082", "app", 0));
+        assertFalse(computeTemplateFingerprint("handle1", "8081", "app", 0).equals(
+            computeTemplateFingerprint("handle3", "8083", "changed", 0)));
+    }
+
+    /**
+     * @param handleId Handle identifier.
+     * @param port Servlet port of the handle.
+     * @param war Content of the WAR file uploaded to the workspace directory of the handle.
+     * @param age Age of the WAR file, in milliseconds.
+     * @return Fingerprint of the workspace template of the handle.
+     */
+    private String computeTemplateFingerprint(String handleId, String port, String war, long age)
+    {
+        LocalConfiguration handleConfiguration = new Tomcat7xStandaloneLocalConfiguration(
+            fileManager.getConfigurationDirectory(handleId));
+        handleConfiguration.setProperty(ServletPropertySet.PORT, port);
+        String warFile = fileManager.resolveWorkspacePath(handleId, "app.war");
+        fileHandler.mkdirs(fileHandler.getParent(warFile));
+        fileHandler.writeTextFile(warFile, war, "UTF-8");
+        new File(warFile).setLastModified(System.currentTimeMillis() - age);
+        handleConfiguration.addDeployable(new WAR(warFile));
+
+        CargoDaemonServlet.setupWorkspaceTemplate(handleConfiguration, fileManager, handleId);
+
+        ConfigurationSnapshotCache cache = new ConfigurationSnapshotCache(
+            fileManager.getTemplateDirectory(), fileHandler, true);
+        return cache.computeFingerprint(
+            new Tomcat7xInstalledLocalContainer(handleConfiguration), handleConfiguration);
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.daemon.file;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.daemon.HandleDatabase;
+import org.codehaus.cargo.util.DefaultFileHandler;
+import org.codehaus.cargo.util.FileHandler;
+
+/**
+ * Unit tests for {@link HandleJournal}, including the recovery after crashes.
+ */
+public class HandleJournalTest extends TestCase
+{
+    /**
+     * File handler.
+     */
+    private final FileHandler fileHandler = new DefaultFileHandler();
+
+    /**
+     * Directory of the snapshot and journal files.
+     */
+    private File directory;
+
+    /**
+     * Snapshot file.
+     */
+    private File snapshotFile;
+
+    /**
+     * Journal file.
+     */
+    private File journalFile;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        directory = new File(fileHandler.createUniqueTmpDirectory());
+        snapshotFile = new File(directory, "handles.properties");
+        journalFile = new File(directory, "handle.journal");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        fileHandler.delete(directory.getPath());
+        super.tearDown();
+    }
+
+    /**
+     * Set a handle of the database and record it in the journal.
+     * @param journal Journal.
+     * @param database Handle database.
+     * @param handleId Handle id.
+     * @param value Value of the <code>test</code> property of the handle.
+     * @throws IOException If the journal cannot be written.
+     */
+    private static void put(HandleJournal journal, HandleDatabase database, String handleId,
+        String value) throws IOException
+    {
+        database.restore(handleId, Collections.singletonMap("test", value));
+        journal.record(database, handleId);
+    }
+
+    /**
+     * @param database Handle database.
+     * @param handleId Handle id.
+     * @return Value of the <code>test</code> property of the handle, <code>null</code> if the
+     * handle is not in the database.
+     */
+    private static String get(HandleDatabase database, String handleId)
+    {
+        return database.get(handleId) == null ? null
+            : database.get(handleId).getProperties().get("test");
+    }
+
+    /**
+     * @return Handle database loaded by a new journal, as after a restart.
+     * @throws IOException If the files cannot be read.
+     */
+    private HandleDatabase reload() throws IOException
+    {
+        HandleJournal journal = new HandleJournal(snapshotFile, journalFile);
+        try
+        {
+            return journal.load();
+        }
+        finally
+        {
+            journal.close();
+        }
+    }
+
+    /**
+     * @param file File.
+     * @return Content of the file.
+     */
+    private String read(File file)
+    {
+        return fileHandler.readTextFile(file.getPath(), "UTF-8");
+    }
+
+    /**
+     * @param file File.
+     * @param content Content to write to the file.
+     * @param append Whether to append the content.
+     * @throws IOException If the file cannot be written.
+     */
+    private static void write(File file, String content, boolean append) throws IOException
+    {
+        OutputStream out = new FileOutputStream(file, append);
+        try
+        {
+            out.write(content.getBytes("UTF-8"));
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Test that changes recorded in the journal only, without any snapshot, are replayed.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testReplayJournal() throws Exception
+    {
+        HandleJournal journal = new HandleJournal(snapshotFile, journalFile);
+        HandleDatabase database = new HandleDatabase();
+        put(journal, database, "h1", "a");
+        put(journal, database, "h2", "b");
+        put(journal, database, "h1", "c");
+        database.remove("h2");
+        journal.record(database, "h2");
+        journal.close();
+        assertFalse(snapshotFile.exists());
+
+        HandleDatabase loaded = reload();
+        assertEquals("c", get(loaded, "h1"));
+        assertNull(get(loaded, "h2"));
+        // Loading compacts the journal into a new snapshot
+        assertTrue(snapshotFile.isFile());
+        assertEquals(0, journalFile.length());
+        assertEquals("c", get(reload(), "h1"));
+    }
+
+    /**
+     * Test that a record torn by a crash while being written is skipped, and that the records
+     * before it are replayed.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testTornFinalRecord() throws Exception
+    {
+        HandleJournal journal = new HandleJournal(snapshotFile, journalFile);
+        HandleDatabase database = new HandleDatabase();
+        put(journal, database, "h1", "a");
+        put(journal, database, "h2", "b");
+        journal.close();
+        write(journalFile, "{\"id\":\"h3\",\"properties\":{\"te", true);
+
+        HandleDatabase loaded = reload();
+        assertEquals("a", get(loaded, "h1"));
+        assertEquals("b", get(loaded, "h2"));
+        assertNull(loaded.get("h3"));
+    }
+
+    /**
+     * Test a crash after a new snapshot has replaced the previous one but before the journal has
+     * been emptied: replaying the records already part of the snapshot is harmless.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCrashBeforeJournalTruncated() throws Exception
+    {
+        HandleJournal journal = new HandleJournal(snapshotFile, journalFile);
+        HandleDatabase database = new HandleDatabase();
+        put(journal, database, "h1", "a");
+        put(journal, database, "h2", "b");
+        database.remove("h2");
+        journal.record(database, "h2");
+        put(journal, database, "h1", "c");
+        String records = read(journalFile);
+
+        journal.compact(database);
+        journal.close();
+        assertEquals(0, journalFile.length());
+        write(journalFile, records, false);
+
+        HandleDatabase loaded = reload();
+        assertEquals("c", get(loaded, "h1"));
+        assertNull(loaded.get("h2"));
+    }
+
+    /**
+     * Test a crash while replacing the snapshot, after the previous snapshot has been deleted but
+     * before the new one has been renamed: the new snapshot is loaded from its temporary file.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testCrashWhileReplacingSnapshot() throws Exception
+    {
+        HandleJournal journal = new HandleJournal(snapshotFile, journalFile);
+        HandleDatabase database = new HandleDatabase();
+        put(journal, database, "h1", "a");
+        journal.compact(database);
+        put(journal, database, "h2", "b");
+        journal.close();
+        assertTrue(snapshotFile.renameTo(new File(snapshotFile.getPath() + ".tmp")));
+
+        HandleDatabase loaded = reload();
+        assertEquals("a", get(loaded, "h1"));
+        assertEquals("b", get(loaded, "h2"));
+        assertTrue(snapshotFile.isFile());
+    }
+
+    /**
+     * Test that the journal is opened again by changes recorded after it has been closed.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testRecordAfterClose() throws Exception
+    {
+        HandleJournal journal = new HandleJournal(snapshotFile, journalFile);
+        HandleDatabase database = new HandleDatabase();
+        put(journal, database, "h1", "a");
+        journal.close();
+        journal.close();
+        put(journal, database, "h2", "b");
+        journal.close();
+
+        HandleDatabase loaded = reload();
+        assertEquals("a", get(loaded, "h1"));
+        assertEquals("b", get(loaded, "h2"));
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.daemon.file;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link LogTailer}.
+ */
+public class LogTailerTest extends TestCase
+{
+    /**
+     * Log file.
+     */
+    private File log;
+
+    /**
+     * Tailer under test, reading the log file at each refresh.
+     */
+    private LogTailer tailer;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        log = File.createTempFile("cargo-daemon-", ".log");
+        tailer = new LogTailer(log, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        log.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Append bytes to the log file. The byte at each position of the log file is derived from the
+     * position, so that reads can be checked against the position they start from.
+     * @param count Number of bytes to append.
+     * @throws IOException If the log file cannot be written.
+     */
+    private void append(int count) throws IOException
+    {
+        long position = log.length();
+        byte[] bytes = new byte[count];
+        for (int i = 0; i < count; i++)
+        {
+            bytes[i] = getByte(position + i);
+        }
+        OutputStream out = new FileOutputStream(log, true);
+        try
+        {
+            out.write(bytes);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * @param position Position in the log file.
+     * @return Byte written at <code>position</code>.
+     */
+    private static byte getByte(long position)
+    {
+        return (byte) (position % 251);
+    }
+
+    /**
+     * Check that content read from the tailer matches the log file.
+     * @param offset Position the content has been read from.
+     * @param content Content read.
+     */
+    private void assertContent(long offset, byte[] content)
+    {
+        assertNotNull("No content at " + offset, content);
+        assertEquals(tailer.getLength() - offset, content.length);
+        for (int i = 0; i < content.length; i++)
+        {
+            if (content[i] != getByte(offset + i))
+            {
+                fail("Wrong byte at " + (offset + i));
+            }
+        }
+    }
+
+    /**
+     * Test reading the bytes appended to the log file.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testReadAppended() throws Exception
+    {
+        append(100);
+        tailer.refresh();
+        assertEquals(0, tailer.getStart());
+        assertEquals(100, tailer.getLength());
+        assertContent(0, tailer.read(0));
+
+        append(50);
+        tailer.refresh();
+        assertEquals(150, tailer.getLength());
+        assertContent(100, tailer.read(100));
+        assertContent(0, tailer.read(0));
+        assertEquals(0, tailer.read(150).length);
+        assertNull(tailer.read(151));
+    }
+
+    /**
+     * Test that appends crossing the end of the ring buffer wrap around to its beginning, and
+     * that reads spanning the wrap point return the bytes in order.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testWrapAround() throws Exception
+    {
+        append(LogTailer.CAPACITY - 10);
+        tailer.refresh();
+        assertEquals(0, tailer.getStart());
+
+        append(100);
+        tailer.refresh();
+        assertEquals(LogTailer.CAPACITY + 90, tailer.getLength());
+        assertEquals(90, tailer.getStart());
+        assertContent(90, tailer.read(90));
+        assertContent(LogTailer.CAPACITY - 20, tailer.read(LogTailer.CAPACITY - 20));
+        assertContent(LogTailer.CAPACITY + 5, tailer.read(LogTailer.CAPACITY + 5));
+    }
+
+    /**
+     * Test that bytes which have been overwritten in the ring buffer cannot be read anymore,
+     * including when more than the ring buffer has been appended at once.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testReadOlderThanBuffer() throws Exception
+    {
+        append(1000);
+        tailer.refresh();
+        assertContent(0, tailer.read(0));
+
+        append(LogTailer.CAPACITY + 500);
+        tailer.refresh();
+        long length = 1000 + LogTailer.CAPACITY + 500;
+        assertEquals(length, tailer.getLength());
+        assertEquals(length - LogTailer.CAPACITY, tailer.getStart());
+        assertNull(tailer.read(0));
+        assertNull(tailer.read(1000));
+        assertNull(tailer.read(tailer.getStart() - 1));
+        assertContent(tailer.getStart(), tailer.read(tailer.getStart()));
+    }
+
+    /**
+     * Test that a truncated log file is read again from its beginning.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testTruncated() throws Exception
+    {
+        append(1000);
+        tailer.refresh();
+
+        RandomAccessFile file = new RandomAccessFile(log, "rw");
+        try
+        {
+            file.setLength(0);
+        }
+        finally
+        {
+            file.close();
+        }
+        append(10);
+        tailer.refresh();
+        assertEquals(0, tailer.getStart());
+        assertEquals(10, tailer.getLength());
+        assertContent(0, tailer.read(0));
+        assertNull(tailer.read(1000));
+    }
+
+    /**
+     * Test waiting for the log file to grow.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testAwait() throws Exception
+    {
+        append(10);
+        assertTrue(tailer.await(0, 100));
+        assertFalse(tailer.await(10, 100));
+
+        append(10);
+        assertTrue(tailer.await(10, 100));
+        assertEquals(20, tailer.getLength());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.daemon.metrics;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.daemon.AutostartScheduler;
+import org.codehaus.cargo.daemon.HandleDatabase;
+
+/**
+ * Unit tests for {@link DaemonMetrics}.
+ */
+public class DaemonMetricsTest extends TestCase
+{
+    /**
+     * Scheduler starting containers with autostart.
+     */
+    private AutostartScheduler autostartScheduler;
+
+    /**
+     * Executor running the periodic daemon tasks.
+     */
+    private ThreadPoolExecutor scheduledExecutor;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        autostartScheduler = new AutostartScheduler(null, 1, 0);
+        scheduledExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown() throws Exception
+    {
+        autostartScheduler.shutdown();
+        scheduledExecutor.shutdown();
+        super.tearDown();
+    }
+
+    /**
+     * Test that backslashes, double quotes and line feeds are escaped in handle labels.
+     */
+    public void testHandleLabelEscaping()
+    {
+        assertEquals("handle=\"h1\"", DaemonMetrics.getHandleLabel("h1"));
+        assertEquals("handle=\"a\\\\b\\\"c\\nd\"", DaemonMetrics.getHandleLabel("a\\b\"c\nd"));
+    }
+
+    /**
+     * Test that handle identifiers needing escaping are escaped in all Prometheus samples.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testPrometheusEscapesHandles() throws Exception
+    {
+        HandleDatabase handles = new HandleDatabase();
+        handles.restore("my \"app\"\n", Collections.emptyMap());
+        DaemonMetrics metrics = new DaemonMetrics(autostartScheduler, scheduledExecutor);
+        metrics.recordUpload(2048, 1500);
+
+        StringWriter writer = new StringWriter();
+        metrics.writePrometheus(writer, handles);
+        String samples = writer.toString();
+
+        String label = "handle=\"my \\\"app\\\"\\n\"";
+        assertTrue(samples, samples.contains("cargo_daemon_handles 1\n"));
+        assertTrue(samples, samples.contains("cargo_daemon_container_up{" + label + "} 0\n"));
+        assertTrue(samples, samples.contains(
+            "cargo_daemon_start_duration_seconds_bucket{" + label + ",le=\"+Inf\"} 0\n"));
+        assertTrue(samples, samples.contains(
+            "cargo_daemon_stop_duration_seconds_count{" + label + "} 0\n"));
+        assertTrue(samples, samples.contains("cargo_daemon_upload_bytes_total 2048\n"));
+        assertTrue(samples, samples.contains(
+            "cargo_daemon_upload_duration_seconds_bucket{le=\"2.5\"} 1\n"));
+
+        for (String line : samples.split("\n"))
+        {
+            assertTrue(line, line.startsWith("# ") || line.startsWith("cargo_daemon_"));
+        }
+    }
+}
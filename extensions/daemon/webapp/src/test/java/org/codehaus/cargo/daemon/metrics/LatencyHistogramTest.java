@@ -0,0 +1,113 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.daemon.metrics;
+
+import java.io.StringWriter;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest extends TestCase
+{
+    /**
+     * Histogram under test, with durations on and around bucket bounds.
+     */
+    private LatencyHistogram histogram;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        histogram = new LatencyHistogram();
+        histogram.record(40);
+        histogram.record(100);
+        histogram.record(101);
+        histogram.record(1500);
+        histogram.record(400000);
+    }
+
+    /**
+     * Test that durations are counted in cumulative buckets, bounds being inclusive.
+     */
+    @SuppressWarnings("unchecked")
+    public void testBuckets()
+    {
+        Map<String, Object> values = histogram.toMap();
+        assertEquals(5L, values.get("count"));
+        assertEquals(401741L, values.get("sumMillis"));
+        assertEquals(400000L, values.get("maxMillis"));
+
+        Map<String, Object> buckets = (Map<String, Object>) values.get("buckets");
+        assertEquals(12, buckets.size());
+        assertEquals(2L, buckets.get("100"));
+        assertEquals(3L, buckets.get("250"));
+        assertEquals(3L, buckets.get("1000"));
+        assertEquals(4L, buckets.get("2500"));
+        assertEquals(4L, buckets.get("300000"));
+        assertEquals(5L, buckets.get("+Inf"));
+    }
+
+    /**
+     * Test the Prometheus samples, with bucket bounds written in seconds.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testPrometheus() throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        histogram.writePrometheus(writer, "duration_seconds", "handle=\"h1\"");
+
+        assertEquals("duration_seconds_bucket{handle=\"h1\",le=\"0.1\"} 2\n"
+            + "duration_seconds_bucket{handle=\"h1\",le=\"0.25\"} 3\n"
+            + "duration_seconds_bucket{handle=\"h1\",le=\"0.5\"} 3\n"
+            + "duration_seconds_bucket{handle=\"h1\",le=\"1.0\"} 3\n"
+            + "duration_seconds_bucket{handle=\"h1\",le=\"2.5\"} 4\n"
+            + "duration_seconds_bucket{handle=\"h1\",le=\"5.0\"} 4\n"
+            + "duration_seconds_bucket{handle=\"h1\",le=\"10.0\"} 4\n"
+            + "duration_seconds_bucket{handle=\"h1\",le=\"30.0\"} 4\n"
+            + "duration_seconds_bucket{handle=\"h1\",le=\"60.0\"} 4\n"
+            + "duration_seconds_bucket{handle=\"h1\",le=\"120.0\"} 4\n"
+            + "duration_seconds_bucket{handle=\"h1\",le=\"300.0\"} 4\n"
+            + "duration_seconds_bucket{handle=\"h1\",le=\"+Inf\"} 5\n"
+            + "duration_seconds_sum{handle=\"h1\"} 401.741\n"
+            + "duration_seconds_count{handle=\"h1\"} 5\n", writer.toString());
+    }
+
+    /**
+     * Test the Prometheus samples of an empty histogram without labels.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testPrometheusWithoutLabels() throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        new LatencyHistogram().writePrometheus(writer, "duration_seconds", "");
+
+        String samples = writer.toString();
+        assertTrue(samples, samples.startsWith("duration_seconds_bucket{le=\"0.1\"} 0\n"));
+        assertTrue(samples, samples.endsWith("duration_seconds_bucket{le=\"+Inf\"} 0\n"
+            + "duration_seconds_sum 0.0\n"
+            + "duration_seconds_count 0\n"));
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.daemon.metrics;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link ProcessStatistics}.
+ */
+public class ProcessStatisticsTest extends TestCase
+{
+    /**
+     * Test reading the CPU time of a process whose command name has spaces and parentheses.
+     */
+    public void testCpuSeconds()
+    {
+        String stat = "4242 (java (cargo) S 1) S 1 4242 4242 0 -1 4194304 9120 0 3 0 250 50 7 2"
+            + " 20 0 31 0 1234567 3456789504 51234 18446744073709551615 1 1 0 0 0 0 0 4096"
+            + " 16796879 0 0 0 17 3 0 0 0 0 0\n";
+        assertEquals(3.0, ProcessStatistics.parseCpuSeconds(stat), 0.0001);
+    }
+
+    /**
+     * Test that truncated or invalid content is reported as not available.
+     */
+    public void testInvalidCpuSeconds()
+    {
+        assertEquals(-1.0, ProcessStatistics.parseCpuSeconds("4242 (java) S 1 4242"), 0.0001);
+        assertEquals(-1.0, ProcessStatistics.parseCpuSeconds(
+            "4242 (java) S 1 4242 4242 0 -1 4194304 9120 0 3 0 x 50"), 0.0001);
+    }
+
+    /**
+     * Test that statistics of processes which do not exist are not available.
+     */
+    public void testUnknownProcess()
+    {
+        assertEquals(-1.0, ProcessStatistics.getCpuSeconds(-1), 0.0001);
+        assertEquals(-1, ProcessStatistics.getResidentMemory(-1));
+    }
+}
@@ -33,6 +33,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.factory.ArtifactFactory;
@@ -46,12 +47,16 @@ import org.apache.maven.settings.Server;
 import org.apache.maven.settings.Settings;
 import org.codehaus.cargo.container.ContainerType;
 import org.codehaus.cargo.container.LocalContainer;
+import org.codehaus.cargo.container.ObservableContainer;
 import org.codehaus.cargo.container.RemoteContainer;
 import org.codehaus.cargo.container.configuration.ConfigurationType;
 import org.codehaus.cargo.container.configuration.LocalConfiguration;
 import org.codehaus.cargo.container.configuration.RuntimeConfiguration;
 import org.codehaus.cargo.container.deployer.DeployableMonitor;
 import org.codehaus.cargo.container.internal.util.ResourceUtils;
+import org.codehaus.cargo.container.lifecycle.LifecycleInstrumentation;
+import org.codehaus.cargo.container.lifecycle.LifecycleReporter;
+import org.codehaus.cargo.container.lifecycle.LifecycleSourceFilter;
 import org.codehaus.cargo.container.spi.deployer.DeployerWatchdog;
 import org.codehaus.cargo.maven2.configuration.ArtifactInstaller;
 import org.codehaus.cargo.maven2.configuration.Configuration;
@@ -63,7 +68,9 @@ import org.codehaus.cargo.maven2.configuration.ZipUrlInstaller;
 import org.codehaus.cargo.maven2.deployer.DefaultDeployableMonitorFactory;
 import org.codehaus.cargo.maven2.deployer.DeployableMonitorFactory;
 import org.codehaus.cargo.maven2.log.MavenLogger;
+import org.codehaus.cargo.maven2.util.ArtifactResolutionCache;
 import org.codehaus.cargo.maven2.util.CargoProject;
+import org.codehaus.cargo.maven2.util.EmbeddedClassLoaderCache;
 import org.codehaus.cargo.maven2.util.EmbeddedContainerArtifactResolver;
 import org.codehaus.cargo.util.DefaultFileHandler;
 import org.codehaus.cargo.util.FileHandler;
@@ -87,6 +94,21 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
     public static final String CONTEXT_KEY_CONTAINER =
         AbstractCargoMojo.class.getName() + "-Container";
 
+    /**
+     * Lifecycle reporters shared by the Cargo MOJO executions of a Maven session, keyed by
+     * session then by report file. The reporters of a session are discarded once the session is
+     * not referenced anymore, so that long-lived Maven processes do not report the phases of
+     * previous builds.
+     */
+    private static final Map<Object, Map<String, LifecycleReporter>> LIFECYCLE_REPORTERS =
+        new WeakHashMap<Object, Map<String, LifecycleReporter>>();
+
+    /**
+     * Listener forwarding the lifecycle phases of this execution to its lifecycle reporter,
+     * <code>null</code> if no report is requested.
+     */
+    private LifecycleSourceFilter lifecycleFilter;
+
     /**
      * File utility class.
      */
@@ -119,6 +141,29 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
      */
     private Daemon daemon;
 
+    /**
+     * The Maven session, which scopes the artifact resolution cache and the lifecycle reporters.
+     * It is only used as an identity key, and is typed as {@link Object} because the plugin is
+     * built against the Maven 2.0 plugin and project APIs, which do not include
+     * <code>MavenSession</code> (it lives in <code>maven-core</code>, which the plugin does not
+     * depend on).
+     *
+     * @parameter default-value="${session}"
+     * @readonly
+     */
+    private Object session;
+
+    /**
+     * Classloader acquired from the {@link EmbeddedClassLoaderCache} by this execution,
+     * <code>null</code> if none.
+     */
+    private ClassLoader acquiredClassLoader;
+
+    /**
+     * Embedded container created with {@link #acquiredClassLoader}.
+     */
+    private org.codehaus.cargo.container.Container acquiringContainer;
+
 
     /**
      * Configures a Cargo {@link org.codehaus.cargo.container.deployer.Deployer}. See the <a
@@ -222,6 +267,16 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
      */
     private boolean ignoreFailures = false;
 
+    /**
+     * File to write the durations, bytes copied and processes spawned of all container,
+     * configuration, installer and deployer lifecycle phases to. The report is written as CSV if
+     * the file name ends with <code>.csv</code> and as JSON otherwise, and is rewritten after each
+     * Cargo execution with the phases of all executions so far.
+     *
+     * @parameter property="cargo.lifecycle.report"
+     */
+    private File lifecycleReport;
+
     /**
      * Calculates the container artifact ID for a given container ID. Note that all containers
      * identifier are in the form <code>containerArtifactId + the version number + x</code>; for
@@ -457,6 +512,13 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
                 }
             }
 
+            LifecycleReporter reporter = getLifecycleReporter();
+            if (reporter != null)
+            {
+                this.lifecycleFilter =
+                    new LifecycleSourceFilter(reporter, Thread.currentThread());
+                LifecycleInstrumentation.addListener(this.lifecycleFilter);
+            }
             try
             {
                 doExecute();
@@ -472,6 +534,16 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
                     throw e;
                 }
             }
+            finally
+            {
+                if (this.lifecycleFilter != null)
+                {
+                    LifecycleInstrumentation.removeListener(this.lifecycleFilter);
+                    this.lifecycleFilter = null;
+                }
+                writeLifecycleReport(reporter);
+                releaseEmbeddedClassLoader();
+            }
         }
         finally
         {
@@ -489,6 +561,109 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
         }
     }
 
+    /**
+     * Release the embedded container classloader acquired by this execution, if any. If the
+     * container has been left running, for example by the start goal, the classloader is only
+     * released once the container gets stopped; it is kept for good if the container does not
+     * publish its state changes, since it could otherwise be closed while still in use.
+     */
+    private void releaseEmbeddedClassLoader()
+    {
+        ClassLoader classLoader = this.acquiredClassLoader;
+        org.codehaus.cargo.container.Container container = this.acquiringContainer;
+        this.acquiredClassLoader = null;
+        this.acquiringContainer = null;
+        if (classLoader == null)
+        {
+            return;
+        }
+
+        if (container instanceof LocalContainer
+            && !((LocalContainer) container).getState().isStopped())
+        {
+            if (container instanceof ObservableContainer)
+            {
+                EmbeddedClassLoaderCache.getInstance().releaseWhenStopped(
+                    (ObservableContainer) container, classLoader);
+            }
+        }
+        else
+        {
+            EmbeddedClassLoaderCache.getInstance().release(classLoader);
+        }
+    }
+
+    /**
+     * @return Reporter collecting the lifecycle phases for {@link #lifecycleReport},
+     * <code>null</code> if no report is requested.
+     */
+    private LifecycleReporter getLifecycleReporter()
+    {
+        if (this.lifecycleReport == null)
+        {
+            return null;
+        }
+
+        if (this.session == null)
+        {
+            return new LifecycleReporter();
+        }
+
+        String key = this.lifecycleReport.getAbsolutePath();
+        synchronized (LIFECYCLE_REPORTERS)
+        {
+            Map<String, LifecycleReporter> reporters = LIFECYCLE_REPORTERS.get(this.session);
+            if (reporters == null)
+            {
+                reporters = new HashMap<String, LifecycleReporter>();
+                LIFECYCLE_REPORTERS.put(this.session, reporters);
+            }
+            LifecycleReporter reporter = reporters.get(key);
+            if (reporter == null)
+            {
+                reporter = new LifecycleReporter();
+                reporters.put(key, reporter);
+            }
+            return reporter;
+        }
+    }
+
+    /**
+     * Add a source whose lifecycle phases go to the lifecycle report of this execution even when
+     * they complete on another thread. Phases completing on the thread of this execution are
+     * always reported, phases of other sources (for example the containers of other modules of a
+     * parallel build) never are.
+     * @param source Container, configuration or deployer created by this execution.
+     */
+    protected void addLifecycleSource(Object source)
+    {
+        if (this.lifecycleFilter != null)
+        {
+            this.lifecycleFilter.addSource(source);
+        }
+    }
+
+    /**
+     * Write the lifecycle report, if requested. Failures are only logged.
+     * @param reporter Reporter, <code>null</code> if no report is requested.
+     */
+    private void writeLifecycleReport(LifecycleReporter reporter)
+    {
+        if (reporter == null)
+        {
+            return;
+        }
+
+        try
+        {
+            reporter.write(this.lifecycleReport);
+        }
+        catch (IOException e)
+        {
+            getLog().warn("Failed to write the lifecycle report " + this.lifecycleReport, e);
+        }
+    }
+
     /**
      * Executes the plugin.
      *
@@ -742,6 +917,16 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
             context.put(containerKey, container);
         }
 
+        addLifecycleSource(container);
+        if (container instanceof LocalContainer)
+        {
+            addLifecycleSource(((LocalContainer) container).getConfiguration());
+        }
+        else if (container instanceof RemoteContainer)
+        {
+            addLifecycleSource(((RemoteContainer) container).getConfiguration());
+        }
+
         return container;
     }
 
@@ -776,11 +961,16 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
         {
             EmbeddedContainerArtifactResolver resolver =
                 new EmbeddedContainerArtifactResolver(this.artifactResolver, this.localRepository,
-                    this.repositories, this.artifactFactory);
+                    this.repositories, this.artifactFactory,
+                        ArtifactResolutionCache.getInstance(this.session));
             ClassLoader classLoader = resolver.resolveDependencies(
                 getContainerElement().getContainerId(),
                     getCargoProject().getEmbeddedClassLoader());
             getCargoProject().setEmbeddedClassLoader(classLoader);
+            if (classLoader != null && EmbeddedClassLoaderCache.isEnabled())
+            {
+                acquiredClassLoader = classLoader;
+            }
 
             if ("tomcat8x".equals(getContainerElement().getContainerId())
                 || "tomcat9x".equals(getContainerElement().getContainerId()))
@@ -803,6 +993,10 @@ public abstract class AbstractCargoMojo extends AbstractCommonMojo
         container = getContainerElement().createContainer(configuration,
             logger, getCargoProject(), artifactFactory, artifactResolver, localRepository,
             repositories, settings);
+        if (acquiredClassLoader != null)
+        {
+            acquiringContainer = container;
+        }
 
         return container;
     }
@@ -25,6 +25,7 @@ import java.util.List;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.codehaus.cargo.container.deployer.DeployableMonitor;
 import org.codehaus.cargo.container.deployer.DeployableMonitorListener;
+import org.codehaus.cargo.container.spi.deployer.AbstractRemoteDeployer;
 import org.codehaus.cargo.generic.deployer.DefaultDeployerFactory;
 import org.codehaus.cargo.generic.deployer.DeployerFactory;
 import org.codehaus.cargo.maven2.configuration.Deployable;
@@ -93,7 +94,17 @@ public abstract class AbstractDeployerMojo extends AbstractCargoMojo
         org.codehaus.cargo.container.Container container = createContainer();
         org.codehaus.cargo.container.deployer.Deployer deployer = createDeployer(container);
 
-        performDeployerActionOnAllDeployables(container, deployer);
+        try
+        {
+            performDeployerActionOnAllDeployables(container, deployer);
+        }
+        finally
+        {
+            if (deployer instanceof AbstractRemoteDeployer)
+            {
+                ((AbstractRemoteDeployer) deployer).release();
+            }
+        }
     }
 
     /**
@@ -118,6 +129,7 @@ public abstract class AbstractDeployerMojo extends AbstractCargoMojo
             deployer = getDeployerElement().createDeployer(container);
         }
 
+        addLifecycleSource(deployer);
         return deployer;
     }
 
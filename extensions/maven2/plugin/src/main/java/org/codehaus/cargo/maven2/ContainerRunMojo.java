@@ -21,11 +21,16 @@ package org.codehaus.cargo.maven2;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.List;
 
 import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.cargo.container.ContainerException;
 import org.codehaus.cargo.container.ContainerType;
 import org.codehaus.cargo.container.LocalContainer;
+import org.codehaus.cargo.container.deployable.Deployable;
+import org.codehaus.cargo.container.spi.deployer.DeployableWatcher;
 import org.codehaus.cargo.container.spi.util.ContainerUtils;
+import org.codehaus.cargo.generic.deployer.DefaultDeployerFactory;
 import org.codehaus.cargo.maven2.configuration.Container;
 import org.codehaus.cargo.maven2.configuration.ZipUrlInstaller;
 
@@ -51,6 +56,22 @@ public class ContainerRunMojo extends ContainerStartMojo
      */
     private String containerUrl;
 
+    /**
+     * Whether to watch the deployables once the container is started and push their changes to
+     * the container, so that a change can be tried out without running the goal again.
+     * 
+     * @parameter property="cargo.maven.watch" default-value="false"
+     */
+    private boolean watch;
+
+    /**
+     * Interval, in milliseconds, at which the deployables are checked for changes when watching.
+     * Changes are pushed once no further change has been seen for one interval.
+     * 
+     * @parameter property="cargo.maven.watch.interval" default-value="1000"
+     */
+    private long watchInterval = DeployableWatcher.DEFAULT_INTERVAL;
+
     /**
      * {@inheritDoc}
      */
@@ -101,8 +122,56 @@ public class ContainerRunMojo extends ContainerStartMojo
             getLog().error("Starting container [" + this.localContainer + "] failed", t);
         }
 
+        DeployableWatcher watcher = null;
+        if (this.watch)
+        {
+            watcher = createDeployableWatcher();
+        }
+
         getLog().info("Press Ctrl-C to stop the container...");
-        ContainerUtils.waitTillContainerIsStopped(this.localContainer);
+        try
+        {
+            ContainerUtils.waitTillContainerIsStopped(this.localContainer);
+        }
+        catch (ContainerException e)
+        {
+            // The container has crashed, the message contains the end of its output
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        finally
+        {
+            if (watcher != null)
+            {
+                watcher.stop();
+            }
+        }
+    }
+
+    /**
+     * Start watching the deployables of the container.
+     * @return Started watcher, <code>null</code> if the container has no deployables.
+     */
+    private DeployableWatcher createDeployableWatcher()
+    {
+        List<Deployable> deployables = this.localContainer.getConfiguration().getDeployables();
+        if (deployables.isEmpty())
+        {
+            getLog().warn("The container has no deployables to watch");
+            return null;
+        }
+
+        org.codehaus.cargo.container.deployer.Deployer deployer =
+            new DefaultDeployerFactory().createDeployer(this.localContainer);
+        addLifecycleSource(deployer);
+        DeployableWatcher watcher = new DeployableWatcher(deployer, deployables,
+            this.watchInterval);
+        watcher.setLogger(this.localContainer.getLogger());
+        watcher.start();
+        for (Deployable deployable : deployables)
+        {
+            getLog().info("Watching [" + deployable.getFile() + "] for changes");
+        }
+        return watcher;
     }
 
     /**
@@ -39,6 +39,7 @@ import org.apache.maven.profiles.DefaultProfileManager;
 import org.apache.maven.profiles.ProfileManager;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectBuilder;
+import org.codehaus.cargo.maven2.util.ArtifactResolutionCache;
 import org.codehaus.plexus.PlexusContainer;
 
 /**
@@ -87,6 +88,9 @@ public class DependencyCalculator
     /** Container */
     private PlexusContainer container;
 
+    /** Artifact resolution cache */
+    private ArtifactResolutionCache resolutionCache;
+
     /**
      * Saves all attributes.
      * @param artifactFactory Artifact factory.
@@ -103,6 +107,30 @@ public class DependencyCalculator
         MavenProject mavenProject, MavenProjectBuilder mavenProjectBuilder,
         ArtifactInstaller installer, PlexusContainer container)
     {
+        this(artifactFactory, resolver, localRepository, remoteRepositories, mavenProject,
+            mavenProjectBuilder, installer, container, ArtifactResolutionCache.getInstance(null));
+    }
+
+    /**
+     * Saves all attributes.
+     * @param artifactFactory Artifact factory.
+     * @param resolver Artifact resolver.
+     * @param localRepository Artifact repository.
+     * @param remoteRepositories Remote repositories.
+     * @param mavenProject Maven2 project.
+     * @param mavenProjectBuilder Maven2 project builder.
+     * @param installer Artifact installer.
+     * @param container Plexus container.
+     * @param resolutionCache Artifact resolution cache, used to memoise the results across
+     * executions of the same Maven session.
+     */
+    public DependencyCalculator(ArtifactFactory artifactFactory, ArtifactResolver resolver,
+        ArtifactRepository localRepository, List<ArtifactRepository> remoteRepositories,
+        MavenProject mavenProject, MavenProjectBuilder mavenProjectBuilder,
+        ArtifactInstaller installer, PlexusContainer container,
+        ArtifactResolutionCache resolutionCache)
+    {
+        this.resolutionCache = resolutionCache;
         this.artifactFactory = artifactFactory;
         this.resolver = resolver;
         this.localRepository = localRepository;
@@ -120,6 +148,13 @@ public class DependencyCalculator
      */
     public Set<File> execute() throws Exception
     {
+        String calculationKey = getCalculationKey();
+        Set<File> calculated = resolutionCache.getCalculatedDependencies(calculationKey);
+        if (calculated != null)
+        {
+            return new HashSet<File>(calculated);
+        }
+
         ProfileManager profileManager = new DefaultProfileManager(container);
 
         fixupProjectArtifact();
@@ -141,14 +176,43 @@ public class DependencyCalculator
             Artifact artdep = (Artifact) artifact;
             if (artdep.getType().equals("jar"))
             {
-                resolver.resolve(artdep, remoteRepositories, localRepository);
-                filesToAdd.add(artdep.getFile());
+                filesToAdd.add(resolutionCache.resolve(artdep, remoteRepositories,
+                    localRepository, resolver));
             }
         }
 
+        resolutionCache.flush();
+        resolutionCache.putCalculatedDependencies(calculationKey, filesToAdd);
         return filesToAdd;
     }
 
+    /**
+     * @return Key identifying a dependency calculation: the project coordinates, its declared
+     * dependencies and the repositories used.
+     */
+    protected String getCalculationKey()
+    {
+        StringBuilder key = new StringBuilder();
+        key.append(mavenProject.getGroupId());
+        key.append(':');
+        key.append(mavenProject.getArtifactId());
+        key.append(':');
+        key.append(mavenProject.getVersion());
+        for (Object dependency : mavenProject.getDependencies())
+        {
+            Dependency dep = (Dependency) dependency;
+            key.append(',');
+            key.append(dep.getManagementKey());
+            key.append(':');
+            key.append(dep.getVersion());
+            key.append(':');
+            key.append(dep.getScope());
+        }
+        key.append(ArtifactResolutionCache.getRepositoriesKey(remoteRepositories,
+            localRepository));
+        return key.toString();
+    }
+
     /**
      * Fixup the project artifact.
      * @throws Exception If anything goes wrong.
@@ -193,31 +257,54 @@ public class DependencyCalculator
      */
     protected void fixupRepositoryArtifact(Artifact artifact) throws Exception
     {
-        // Resolve it
-        resolver.resolve(artifact, remoteRepositories, localRepository);
-        File artifactFile = artifact.getFile();
-
-        // Also, create a project for it
-        MavenProject mavenProject = mavenProjectBuilder.buildFromRepository(
-                artifact, remoteRepositories, localRepository);
-        for (Object createdArtifact : mavenProject.createArtifacts(artifactFactory, null, null))
+        // The derived POM of a given artifact only needs to be installed once per session. It is
+        // marked before the work is done so that dependency cycles terminate, and unmarked if
+        // the work fails so that later executions of the session do not skip it.
+        String key = ArtifactResolutionCache.getKey(artifact, remoteRepositories,
+            localRepository);
+        if (!resolutionCache.markPrepared(key))
         {
-            Artifact art = (Artifact) createdArtifact;
+            return;
+        }
 
-            if (art.getType().equals("war"))
+        boolean prepared = false;
+        try
+        {
+            // Resolve it
+            File artifactFile = resolutionCache.resolve(artifact, remoteRepositories,
+                localRepository, resolver);
+
+            // Also, create a project for it
+            MavenProject mavenProject = mavenProjectBuilder.buildFromRepository(
+                    artifact, remoteRepositories, localRepository);
+            for (Object createdArtifact
+                : mavenProject.createArtifacts(artifactFactory, null, null))
             {
-                // Sigh...
-                Artifact art2 = artifactFactory.createArtifactWithClassifier(
-                        art.getGroupId(), art.getArtifactId(),
-                        art.getVersion(), "pom", null);
-                fixupRepositoryArtifact(art2);
+                Artifact art = (Artifact) createdArtifact;
+
+                if (art.getType().equals("war"))
+                {
+                    // Sigh...
+                    Artifact art2 = artifactFactory.createArtifactWithClassifier(
+                            art.getGroupId(), art.getArtifactId(),
+                            art.getVersion(), "pom", null);
+                    fixupRepositoryArtifact(art2);
+                }
             }
-        }
 
-        MavenXpp3Reader pomReader = new MavenXpp3Reader();
-        Model pomFile = pomReader.read(new FileReader(artifactFile));
+            MavenXpp3Reader pomReader = new MavenXpp3Reader();
+            Model pomFile = pomReader.read(new FileReader(artifactFile));
 
-        fixModelAndSaveInRepository(artifact, pomFile);
+            fixModelAndSaveInRepository(artifact, pomFile);
+            prepared = true;
+        }
+        finally
+        {
+            if (!prepared)
+            {
+                resolutionCache.unmarkPrepared(key);
+            }
+        }
     }
 
     /**
@@ -43,6 +43,7 @@ import org.apache.maven.project.MavenProjectBuilder;
 import org.codehaus.cargo.maven2.io.xpp3.UberWarXpp3Reader;
 import org.codehaus.cargo.maven2.merge.MergeWebXml;
 import org.codehaus.cargo.maven2.merge.MergeXslt;
+import org.codehaus.cargo.maven2.util.ArtifactResolutionCache;
 import org.codehaus.cargo.module.merge.DocumentStreamAdapter;
 import org.codehaus.cargo.module.merge.MergeException;
 import org.codehaus.cargo.module.merge.MergeProcessor;
@@ -140,6 +141,14 @@ public class UberWarMojo extends AbstractUberWarMojo implements Contextualizable
      */
     private MavenProject mavenProject;
 
+    /**
+     * The Maven session, which scopes the artifact resolution cache.
+     *
+     * @parameter default-value="${session}"
+     * @readonly
+     */
+    private Object session;
+
     /**
      * The archive configuration to use. See <a
      * href="http://maven.apache.org/shared/maven-archiver/index.html">Maven Archiver Reference</a>.
@@ -354,7 +363,7 @@ public class UberWarMojo extends AbstractUberWarMojo implements Contextualizable
     {
         DependencyCalculator dc = new DependencyCalculator(artifactFactory, resolver,
             localRepository, remoteRepositories, mavenProject, mavenProjectBuilder, installer,
-            container);
+            container, ArtifactResolutionCache.getInstance(this.session));
 
         try
         {
@@ -67,7 +67,8 @@ public class MergeXslt implements MergeProcessorFactory
 
             InputStream is = new FileInputStream(file);
 
-            DocumentMergerByXslt documentMergerByXslt = new DocumentMergerByXslt(is);
+            DocumentMergerByXslt documentMergerByXslt =
+                new DocumentMergerByXslt(is, file.toURI().toString());
 
             return documentMergerByXslt;
         }
@@ -0,0 +1,415 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.maven2.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+
+/**
+ * Cache of artifact resolution results, shared by all Cargo MOJO executions of a Maven session.
+ * Each Maven session gets its own cache, so that long-lived Maven processes (such as the Maven
+ * daemon or embedded Maven) never serve resolutions from a previous build.
+ * Resolved files are keyed by artifact coordinates and by the set of repositories they have been
+ * resolved against, so that a reactor with many modules using the same embedded container or the
+ * same uberwar dependencies only resolves them once.<br><br>
+ * Optionally, when the <code>cargo.maven.resolutionIndex</code> system property is set to
+ * <code>true</code> (in which case the index is stored in the local repository) or to a file name,
+ * resolved release artifacts are also written to a persistent index so that later builds can skip
+ * resolution entirely as long as the indexed files still exist. SNAPSHOT artifacts are never
+ * indexed.
+ */
+public final class ArtifactResolutionCache
+{
+    /**
+     * System property enabling the persistent resolution index.
+     */
+    public static final String RESOLUTION_INDEX_PROPERTY = "cargo.maven.resolutionIndex";
+
+    /**
+     * Name of the persistent resolution index file when stored in the local repository.
+     */
+    public static final String RESOLUTION_INDEX_FILE = ".cargo/resolution-index.properties";
+
+    /**
+     * Caches of the running Maven sessions, keyed by session.
+     */
+    private static final Map<Object, ArtifactResolutionCache> SESSIONS =
+        new WeakHashMap<Object, ArtifactResolutionCache>();
+
+    /**
+     * Resolved artifact files.
+     */
+    private ConcurrentMap<String, File> resolvedFiles = new ConcurrentHashMap<String, File>();
+
+    /**
+     * Results of dependency calculations.
+     */
+    private ConcurrentMap<String, Set<File>> calculatedDependencies =
+        new ConcurrentHashMap<String, Set<File>>();
+
+    /**
+     * Keys of artifacts which have already been prepared in the local repository.
+     */
+    private Set<String> preparedArtifacts =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Persistent resolution index, <code>null</code> if not loaded yet.
+     */
+    private Properties index;
+
+    /**
+     * File the persistent resolution index is stored in.
+     */
+    private File indexFile;
+
+    /**
+     * Whether the persistent resolution index has changed since it has been loaded.
+     */
+    private boolean indexChanged;
+
+    /**
+     * Use {@link #getInstance(Object)}.
+     */
+    ArtifactResolutionCache()
+    {
+        // Nothing
+    }
+
+    /**
+     * Get the resolution cache of a Maven session. The cache is discarded once the session is not
+     * referenced anymore.
+     *
+     * @param session Maven session, <code>null</code> for a cache which is not shared.
+     * @return Resolution cache.
+     */
+    public static ArtifactResolutionCache getInstance(Object session)
+    {
+        if (session == null)
+        {
+            return new ArtifactResolutionCache();
+        }
+
+        synchronized (SESSIONS)
+        {
+            ArtifactResolutionCache cache = SESSIONS.get(session);
+            if (cache == null)
+            {
+                cache = new ArtifactResolutionCache();
+                SESSIONS.put(session, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Resolve an artifact, unless it has already been resolved against the same repositories. In
+     * all cases, the artifact's file is set.
+     *
+     * @param artifact Artifact to resolve.
+     * @param remoteRepositories Remote repositories.
+     * @param localRepository Local repository.
+     * @param resolver Artifact resolver to use if the artifact is not cached.
+     * @return Resolved file.
+     * @throws ArtifactResolutionException If resolution fails.
+     * @throws ArtifactNotFoundException If the artifact cannot be found.
+     */
+    public File resolve(Artifact artifact, List<ArtifactRepository> remoteRepositories,
+        ArtifactRepository localRepository, ArtifactResolver resolver)
+        throws ArtifactResolutionException, ArtifactNotFoundException
+    {
+        String key = getKey(artifact, remoteRepositories, localRepository);
+
+        File file = resolvedFiles.get(key);
+        if (file == null && !artifact.isSnapshot())
+        {
+            file = getIndexedFile(key, localRepository);
+        }
+        if (file != null && file.isFile())
+        {
+            artifact.setFile(file);
+            artifact.setResolved(true);
+            return file;
+        }
+
+        resolver.resolve(artifact, remoteRepositories, localRepository);
+        file = artifact.getFile();
+        if (file != null)
+        {
+            resolvedFiles.put(key, file);
+            if (!artifact.isSnapshot())
+            {
+                putIndexedFile(key, file, localRepository);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * @param key Dependency calculation key.
+     * @return Result of a previous dependency calculation with the same key, <code>null</code>
+     * if none.
+     */
+    public Set<File> getCalculatedDependencies(String key)
+    {
+        return calculatedDependencies.get(key);
+    }
+
+    /**
+     * @param key Dependency calculation key.
+     * @param files Result of the dependency calculation.
+     */
+    public void putCalculatedDependencies(String key, Set<File> files)
+    {
+        calculatedDependencies.put(key, Collections.unmodifiableSet(new HashSet<File>(files)));
+    }
+
+    /**
+     * Mark an artifact as prepared, for example once a derived POM has been installed for it.
+     *
+     * @param key Artifact key.
+     * @return <code>true</code> if the artifact had not been prepared before.
+     */
+    public boolean markPrepared(String key)
+    {
+        return preparedArtifacts.add(key);
+    }
+
+    /**
+     * Forget that an artifact has been prepared, for example when preparing it failed, so that
+     * later executions of the same Maven session try again.
+     *
+     * @param key Artifact key.
+     */
+    public void unmarkPrepared(String key)
+    {
+        preparedArtifacts.remove(key);
+    }
+
+    /**
+     * Compute the cache key of an artifact.
+     *
+     * @param artifact Artifact.
+     * @param remoteRepositories Remote repositories.
+     * @param localRepository Local repository.
+     * @return Key made of the artifact coordinates and the repositories.
+     */
+    public static String getKey(Artifact artifact, List<ArtifactRepository> remoteRepositories,
+        ArtifactRepository localRepository)
+    {
+        StringBuilder key = new StringBuilder();
+        key.append(artifact.getGroupId());
+        key.append(':');
+        key.append(artifact.getArtifactId());
+        key.append(':');
+        key.append(artifact.getType());
+        key.append(':');
+        if (artifact.getClassifier() != null)
+        {
+            key.append(artifact.getClassifier());
+        }
+        key.append(':');
+        key.append(artifact.getVersion());
+        key.append(getRepositoriesKey(remoteRepositories, localRepository));
+        return key.toString();
+    }
+
+    /**
+     * Compute the part of a cache key that identifies a set of repositories.
+     *
+     * @param remoteRepositories Remote repositories.
+     * @param localRepository Local repository.
+     * @return Key identifying the repositories.
+     */
+    public static String getRepositoriesKey(List<ArtifactRepository> remoteRepositories,
+        ArtifactRepository localRepository)
+    {
+        StringBuilder key = new StringBuilder();
+        key.append('@');
+        if (localRepository != null)
+        {
+            key.append(localRepository.getBasedir());
+        }
+        if (remoteRepositories != null)
+        {
+            for (ArtifactRepository repository : remoteRepositories)
+            {
+                key.append('|');
+                key.append(repository.getId());
+                key.append('=');
+                key.append(repository.getUrl());
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Write the persistent resolution index if it has changed.
+     */
+    public synchronized void flush()
+    {
+        if (index == null || !indexChanged || indexFile == null)
+        {
+            return;
+        }
+
+        indexFile.getParentFile().mkdirs();
+        File tmpFile = new File(indexFile.getPath() + ".tmp");
+        try
+        {
+            OutputStream os = new FileOutputStream(tmpFile);
+            try
+            {
+                index.store(os, "Cargo artifact resolution index");
+            }
+            finally
+            {
+                os.close();
+            }
+            if (!tmpFile.renameTo(indexFile))
+            {
+                indexFile.delete();
+                tmpFile.renameTo(indexFile);
+            }
+            indexChanged = false;
+        }
+        catch (IOException ignored)
+        {
+            // The index is only an optimization
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * @param key Artifact key.
+     * @param localRepository Local repository.
+     * @return File from the persistent resolution index, <code>null</code> if none.
+     */
+    private synchronized File getIndexedFile(String key, ArtifactRepository localRepository)
+    {
+        if (!loadIndex(localRepository))
+        {
+            return null;
+        }
+        String path = index.getProperty(key);
+        if (path == null)
+        {
+            return null;
+        }
+        File file = new File(path);
+        if (!file.isFile())
+        {
+            index.remove(key);
+            indexChanged = true;
+            return null;
+        }
+        resolvedFiles.put(key, file);
+        return file;
+    }
+
+    /**
+     * @param key Artifact key.
+     * @param file Resolved file.
+     * @param localRepository Local repository.
+     */
+    private synchronized void putIndexedFile(String key, File file,
+        ArtifactRepository localRepository)
+    {
+        if (loadIndex(localRepository) && !file.getAbsolutePath().equals(index.getProperty(key)))
+        {
+            index.setProperty(key, file.getAbsolutePath());
+            indexChanged = true;
+        }
+    }
+
+    /**
+     * Load the persistent resolution index, if enabled.
+     *
+     * @param localRepository Local repository.
+     * @return <code>true</code> if the persistent resolution index is enabled.
+     */
+    private boolean loadIndex(ArtifactRepository localRepository)
+    {
+        if (index != null)
+        {
+            return true;
+        }
+
+        String setting = System.getProperty(RESOLUTION_INDEX_PROPERTY);
+        if (setting == null || setting.length() == 0 || "false".equalsIgnoreCase(setting))
+        {
+            return false;
+        }
+        if ("true".equalsIgnoreCase(setting))
+        {
+            if (localRepository == null)
+            {
+                return false;
+            }
+            indexFile = new File(localRepository.getBasedir(), RESOLUTION_INDEX_FILE);
+        }
+        else
+        {
+            indexFile = new File(setting);
+        }
+
+        index = new Properties();
+        if (indexFile.isFile())
+        {
+            try
+            {
+                InputStream is = new FileInputStream(indexFile);
+                try
+                {
+                    index.load(is);
+                }
+                finally
+                {
+                    is.close();
+                }
+            }
+            catch (IOException ignored)
+            {
+                // A broken index is simply rebuilt
+                index.clear();
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.maven2.util;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.codehaus.cargo.container.ContainerListener;
+import org.codehaus.cargo.container.LocalContainer;
+import org.codehaus.cargo.container.ObservableContainer;
+import org.codehaus.cargo.container.State;
+
+/**
+ * Cache of the classloaders of embedded containers, shared by all Cargo MOJO executions and
+ * modules running in the same Maven JVM. Classloaders are keyed by container id, classpath and
+ * parent classloader; each module that starts the same embedded container therefore reuses the
+ * already loaded and verified container classes, as well as the reflective handles the container
+ * implementations cache per classloader.<br><br>
+ * Classloaders are reference counted: a classloader is in use from the moment it has been
+ * acquired until the embedded container using it has been stopped, or until the end of the MOJO
+ * execution that acquired it if that execution did not leave the container running. Classloaders
+ * that are not in use anymore are kept for later modules, up to {@link #MAX_IDLE_CLASSLOADERS};
+ * the least recently used ones are then discarded. Setting the
+ * <code>cargo.maven.embeddedClassLoaderCache</code> system property to <code>false</code> disables
+ * the cache.
+ */
+public final class EmbeddedClassLoaderCache
+{
+    /**
+     * System property that disables the cache when set to <code>false</code>.
+     */
+    public static final String CACHE_PROPERTY = "cargo.maven.embeddedClassLoaderCache";
+
+    /**
+     * Maximum number of classloaders which are not in use that are kept.
+     */
+    public static final int MAX_IDLE_CLASSLOADERS = 4;
+
+    /**
+     * Cache instance shared by all Cargo MOJOs loaded in the same plugin class realm.
+     */
+    private static final EmbeddedClassLoaderCache SHARED = new EmbeddedClassLoaderCache();
+
+    /**
+     * Cached classloaders, in least recently used order.
+     */
+    private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+    /**
+     * Key of a cached classloader.
+     */
+    private static final class Key
+    {
+        /**
+         * Container id.
+         */
+        private final String containerId;
+
+        /**
+         * Classpath, as strings since {@link URL#equals(Object)} may resolve host names.
+         */
+        private final List<String> urls;
+
+        /**
+         * Parent classloader, compared by identity.
+         */
+        private final ClassLoader parent;
+
+        /**
+         * Save all attributes.
+         * @param containerId Container id.
+         * @param urls Classpath.
+         * @param parent Parent classloader, can be <code>null</code>.
+         */
+        private Key(String containerId, URL[] urls, ClassLoader parent)
+        {
+            this.containerId = containerId;
+            this.urls = new ArrayList<String>(urls.length);
+            for (URL url : urls)
+            {
+                this.urls.add(url.toExternalForm());
+            }
+            this.parent = parent;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object object)
+        {
+            if (!(object instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key) object;
+            return this.containerId.equals(other.containerId) && this.urls.equals(other.urls)
+                && this.parent == other.parent;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode()
+        {
+            return this.containerId.hashCode() * 31 + this.urls.hashCode()
+                + System.identityHashCode(this.parent);
+        }
+    }
+
+    /**
+     * Cached classloader and its reference count.
+     */
+    private static final class Entry
+    {
+        /**
+         * Classloader.
+         */
+        private final ClassLoader classLoader;
+
+        /**
+         * Number of embedded containers using the classloader.
+         */
+        private int references;
+
+        /**
+         * Save all attributes.
+         * @param classLoader Classloader.
+         */
+        private Entry(ClassLoader classLoader)
+        {
+            this.classLoader = classLoader;
+        }
+    }
+
+    /**
+     * Use {@link #getInstance()}.
+     */
+    EmbeddedClassLoaderCache()
+    {
+        // Nothing
+    }
+
+    /**
+     * @return Cache shared by all Cargo MOJOs.
+     */
+    public static EmbeddedClassLoaderCache getInstance()
+    {
+        return SHARED;
+    }
+
+    /**
+     * @return <code>true</code> unless the cache has been disabled using {@link #CACHE_PROPERTY}.
+     */
+    public static boolean isEnabled()
+    {
+        return !"false".equalsIgnoreCase(System.getProperty(CACHE_PROPERTY));
+    }
+
+    /**
+     * Acquire the classloader for an embedded container, creating it if no classloader with the
+     * same container id, classpath and parent is cached. The classloader is in use until it is
+     * given to {@link #release(ClassLoader)}.
+     * @param containerId Container id.
+     * @param urls Classpath.
+     * @param parent Parent classloader, <code>null</code> for the system classloader.
+     * @return Classloader.
+     */
+    public synchronized ClassLoader acquire(String containerId, URL[] urls, ClassLoader parent)
+    {
+        Key key = new Key(containerId, urls, parent);
+        Entry entry = this.entries.get(key);
+        if (entry == null)
+        {
+            ClassLoader classLoader;
+            if (parent == null)
+            {
+                classLoader = new URLClassLoader(urls);
+            }
+            else
+            {
+                classLoader = new URLClassLoader(urls, parent);
+            }
+            entry = new Entry(classLoader);
+            this.entries.put(key, entry);
+        }
+        entry.references++;
+        evictIdleEntries();
+        return entry.classLoader;
+    }
+
+    /**
+     * Release a classloader acquired with {@link #acquire(String, URL[], ClassLoader)}. The
+     * classloader can also be a child of the acquired classloader, for example one adding the
+     * extra classpath of the container.
+     * @param classLoader Classloader, can be <code>null</code>.
+     * @return <code>true</code> if a cached classloader has been released.
+     */
+    public synchronized boolean release(ClassLoader classLoader)
+    {
+        for (ClassLoader cl = classLoader; cl != null; cl = cl.getParent())
+        {
+            for (Entry entry : this.entries.values())
+            {
+                if (entry.classLoader == cl)
+                {
+                    if (entry.references > 0)
+                    {
+                        entry.references--;
+                    }
+                    evictIdleEntries();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Release a classloader once the embedded container using it has stopped, whichever way it
+     * gets stopped.
+     * @param container Embedded container, which is running.
+     * @param classLoader Classloader acquired for the container.
+     */
+    public void releaseWhenStopped(final ObservableContainer container,
+        final ClassLoader classLoader)
+    {
+        container.addContainerListener(new ContainerListener()
+        {
+            /**
+             * Whether the classloader has been released.
+             */
+            private final AtomicBoolean released = new AtomicBoolean();
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void stateChanged(LocalContainer localContainer, State previousState,
+                State state)
+            {
+                if (state.isStopped() && this.released.compareAndSet(false, true))
+                {
+                    container.removeContainerListener(this);
+                    release(classLoader);
+                }
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void containerExited(LocalContainer localContainer, int exitCode,
+                String outputTail)
+            {
+                // The classloader is released once the container state has changed
+            }
+        });
+    }
+
+    /**
+     * @param classLoader Classloader.
+     * @return Number of embedded containers using the classloader, <code>-1</code> if the
+     * classloader is not cached.
+     */
+    public synchronized int getReferences(ClassLoader classLoader)
+    {
+        for (Entry entry : this.entries.values())
+        {
+            if (entry.classLoader == classLoader)
+            {
+                return entry.references;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Number of cached classloaders.
+     */
+    public synchronized int size()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * Discard the least recently used classloaders which are not in use, so that no more than
+     * {@link #MAX_IDLE_CLASSLOADERS} idle classloaders are kept.
+     */
+    private void evictIdleEntries()
+    {
+        int idle = 0;
+        for (Entry entry : this.entries.values())
+        {
+            if (entry.references == 0)
+            {
+                idle++;
+            }
+        }
+        for (Iterator<Entry> it = this.entries.values().iterator();
+            it.hasNext() && idle > MAX_IDLE_CLASSLOADERS;)
+        {
+            if (it.next().references == 0)
+            {
+                it.remove();
+                idle--;
+            }
+        }
+    }
+}
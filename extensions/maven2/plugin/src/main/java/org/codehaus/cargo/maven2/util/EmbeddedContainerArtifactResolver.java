@@ -19,6 +19,7 @@
  */
 package org.codehaus.cargo.maven2.util;
 
+import java.io.File;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
@@ -58,6 +59,11 @@ public class EmbeddedContainerArtifactResolver
      */
     private ArtifactFactory artifactFactory;
 
+    /**
+     * Artifact resolution cache.
+     */
+    private ArtifactResolutionCache resolutionCache;
+
     /**
      * Map of embedded container dependencies.
      */
@@ -109,6 +115,23 @@ public class EmbeddedContainerArtifactResolver
         ArtifactRepository localRepository, List<ArtifactRepository> repositories,
         ArtifactFactory artifactFactory)
     {
+        this(artifactResolver, localRepository, repositories, artifactFactory,
+            ArtifactResolutionCache.getInstance(null));
+    }
+
+    /**
+     * Save all attributes.
+     * @param artifactResolver Artifact resolver.
+     * @param localRepository Local repository.
+     * @param repositories List of repositories to look in.
+     * @param artifactFactory Artifact factory.
+     * @param resolutionCache Artifact resolution cache.
+     */
+    public EmbeddedContainerArtifactResolver(ArtifactResolver artifactResolver,
+        ArtifactRepository localRepository, List<ArtifactRepository> repositories,
+        ArtifactFactory artifactFactory, ArtifactResolutionCache resolutionCache)
+    {
+        this.resolutionCache = resolutionCache;
         this.artifactResolver = artifactResolver;
         this.localRepository = localRepository;
         this.repositories = repositories;
@@ -375,13 +398,15 @@ public class EmbeddedContainerArtifactResolver
      * Resolve dependencies.
      * @param containerId Container id.
      * @param parent Parent {@link ClassLoader}.
-     * @return {@link ClassLoader} with the resolved dependencies and given <code>parent</code>.
+     * @return {@link ClassLoader} with the resolved dependencies and given <code>parent</code>,
+     * shared with other executions using the same container unless the
+     * {@link EmbeddedClassLoaderCache} is disabled.
      * @throws MojoExecutionException If dependencies cannot be resolved.
      */
     public ClassLoader resolveDependencies(String containerId, ClassLoader parent)
         throws MojoExecutionException
     {
-        URLClassLoader classloader;
+        ClassLoader classloader;
 
         List<Dependency> dependencies = this.containerDependencies.get(containerId);
         if (dependencies == null)
@@ -396,9 +421,11 @@ public class EmbeddedContainerArtifactResolver
             {
                 Artifact artifact = this.artifactFactory.createArtifact(dependency.groupId,
                     dependency.artifactId, dependency.version, "compile", "jar");
-                this.artifactResolver.resolve(artifact, this.repositories, this.localRepository);
-                urls.add(artifact.getFile().toURI().toURL());
+                File file = this.resolutionCache.resolve(artifact, this.repositories,
+                    this.localRepository, this.artifactResolver);
+                urls.add(file.toURI().toURL());
             }
+            this.resolutionCache.flush();
 
             // On OSX, the tools.jar classes are included in the classes.jar so there is no need to
             // include any tools.jar file to the cp. On Java 9, there is no more tools.jar.
@@ -408,7 +435,12 @@ public class EmbeddedContainerArtifactResolver
             }
 
             URL[] urlArray = (URL[]) urls.toArray(new URL[urls.size()]);
-            if (parent == null)
+            if (EmbeddedClassLoaderCache.isEnabled())
+            {
+                classloader = EmbeddedClassLoaderCache.getInstance().acquire(containerId,
+                    urlArray, parent);
+            }
+            else if (parent == null)
             {
                 classloader = new URLClassLoader(urlArray);
             }
@@ -0,0 +1,144 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.maven2.util;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.jmock.Mock;
+import org.jmock.MockObjectTestCase;
+
+/**
+ * Unit tests for {@link ArtifactResolutionCache}.
+ */
+public class ArtifactResolutionCacheTest extends MockObjectTestCase
+{
+    /**
+     * Resolved file.
+     */
+    private File file;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.file = File.createTempFile("cargo-resolution", ".jar");
+        this.file.deleteOnExit();
+    }
+
+    /**
+     * Test that an artifact is only resolved once.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testArtifactIsResolvedOnce() throws Exception
+    {
+        ArtifactResolutionCache cache = new ArtifactResolutionCache();
+        List<ArtifactRepository> repositories = Collections.emptyList();
+
+        Mock mockResolver = mock(ArtifactResolver.class);
+        mockResolver.expects(once()).method("resolve");
+        ArtifactResolver resolver = (ArtifactResolver) mockResolver.proxy();
+
+        Artifact first = createArtifact("1.0");
+        first.setFile(this.file);
+        assertEquals(this.file, cache.resolve(first, repositories, null, resolver));
+
+        Artifact second = createArtifact("1.0");
+        assertEquals(this.file, cache.resolve(second, repositories, null, resolver));
+        assertEquals(this.file, second.getFile());
+    }
+
+    /**
+     * Test that different versions are resolved separately.
+     * @throws Exception If anything goes wrong.
+     */
+    public void testDifferentVersionsAreResolvedSeparately() throws Exception
+    {
+        ArtifactResolutionCache cache = new ArtifactResolutionCache();
+        List<ArtifactRepository> repositories = Collections.emptyList();
+
+        Mock mockResolver = mock(ArtifactResolver.class);
+        mockResolver.expects(exactly(2)).method("resolve");
+        ArtifactResolver resolver = (ArtifactResolver) mockResolver.proxy();
+
+        Artifact first = createArtifact("1.0");
+        first.setFile(this.file);
+        cache.resolve(first, repositories, null, resolver);
+
+        Artifact second = createArtifact("2.0");
+        second.setFile(this.file);
+        cache.resolve(second, repositories, null, resolver);
+    }
+
+    /**
+     * Test that each Maven session gets its own cache.
+     */
+    public void testGetInstancePerSession()
+    {
+        Object session = new Object();
+        ArtifactResolutionCache cache = ArtifactResolutionCache.getInstance(session);
+        assertSame(cache, ArtifactResolutionCache.getInstance(session));
+        assertNotSame(cache, ArtifactResolutionCache.getInstance(new Object()));
+        assertNotSame(ArtifactResolutionCache.getInstance(null),
+            ArtifactResolutionCache.getInstance(null));
+    }
+
+    /**
+     * Test that a prepared artifact is only prepared once.
+     */
+    public void testMarkPrepared()
+    {
+        ArtifactResolutionCache cache = new ArtifactResolutionCache();
+        assertTrue(cache.markPrepared("group:artifact:pom::1.0@"));
+        assertFalse(cache.markPrepared("group:artifact:pom::1.0@"));
+    }
+
+    /**
+     * Test that an artifact whose preparation failed can be prepared again.
+     */
+    public void testUnmarkPrepared()
+    {
+        ArtifactResolutionCache cache = new ArtifactResolutionCache();
+        assertTrue(cache.markPrepared("group:artifact:pom::1.0@"));
+        cache.unmarkPrepared("group:artifact:pom::1.0@");
+        assertTrue(cache.markPrepared("group:artifact:pom::1.0@"));
+    }
+
+    /**
+     * @param version Artifact version.
+     * @return Test artifact.
+     */
+    private static Artifact createArtifact(String version)
+    {
+        return new DefaultArtifact("org.codehaus.cargo", "test",
+            VersionRange.createFromVersion(version), "compile", "jar", null,
+                new DefaultArtifactHandler("jar"));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * ========================================================================
+ *
+ * Codehaus CARGO, copyright 2004-2011 Vincent Massol, 2012-2017 Ali Tokmen.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ========================================================================
+ */
+package org.codehaus.cargo.maven2.util;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.cargo.container.ContainerListener;
+import org.codehaus.cargo.container.ObservableContainer;
+import org.codehaus.cargo.container.State;
+import org.codehaus.cargo.container.stub.EmbeddedLocalContainerStub;
+
+/**
+ * Unit tests for {@link EmbeddedClassLoaderCache}.
+ */
+public class EmbeddedClassLoaderCacheTest extends TestCase
+{
+    /**
+     * Embedded container recording its listeners.
+     */
+    private static class ObservableContainerStub extends EmbeddedLocalContainerStub
+        implements ObservableContainer
+    {
+        /**
+         * Registered listeners.
+         */
+        private final List<ContainerListener> listeners = new ArrayList<ContainerListener>();
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void addContainerListener(ContainerListener listener)
+        {
+            this.listeners.add(listener);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void removeContainerListener(ContainerListener listener)
+        {
+            this.listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Classpath of the embedded container.
+     */
+    private URL[] urls;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        this.urls = new URL[] {new File("target/container.jar").toURI().toURL()};
+    }
+
+    /**
+     * Test that the same container and classpath share the same classloader.
+     */
+    public void testSameClasspathSharesClassLoader()
+    {
+        EmbeddedClassLoaderCache cache = new EmbeddedClassLoaderCache();
+        ClassLoader first = cache.acquire("jetty9x", this.urls, null);
+        ClassLoader second = cache.acquire("jetty9x", this.urls.clone(), null);
+        assertSame(first, second);
+        assertEquals(2, cache.getReferences(first));
+        assertEquals(1, cache.size());
+
+        assertNotSame(first, cache.acquire("tomcat9x", this.urls, null));
+        assertNotSame(first, cache.acquire("jetty9x", this.urls, getClass().getClassLoader()));
+        assertEquals(3, cache.size());
+    }
+
+    /**
+     * Test that releasing a child of a cached classloader releases the cached classloader, and
+     * that released classloaders are kept for later use.
+     */
+    public void testReleaseKeepsClassLoader()
+    {
+        EmbeddedClassLoaderCache cache = new EmbeddedClassLoaderCache();
+        ClassLoader classLoader = cache.acquire("jetty9x", this.urls, null);
+        ClassLoader extraClasspath = new URLClassLoader(new URL[0], classLoader);
+
+        assertTrue(cache.release(extraClasspath));
+        assertEquals(0, cache.getReferences(classLoader));
+        assertSame(classLoader, cache.acquire("jetty9x", this.urls, null));
+        assertFalse(cache.release(getClass().getClassLoader()));
+    }
+
+    /**
+     * Test that only a limited number of classloaders which are not in use are kept.
+     */
+    public void testIdleClassLoadersAreEvicted()
+    {
+        EmbeddedClassLoaderCache cache = new EmbeddedClassLoaderCache();
+        ClassLoader inUse = cache.acquire("tomcat9x", this.urls, null);
+        for (int i = 0; i < EmbeddedClassLoaderCache.MAX_IDLE_CLASSLOADERS + 2; i++)
+        {
+            cache.release(cache.acquire("container" + i, this.urls, null));
+        }
+
+        assertEquals(EmbeddedClassLoaderCache.MAX_IDLE_CLASSLOADERS + 1, cache.size());
+        assertEquals(1, cache.getReferences(inUse));
+    }
+
+    /**
+     * Test that a classloader is released once the container using it has stopped, and only
+     * once.
+     */
+    public void testReleaseWhenStopped()
+    {
+        ObservableContainerStub container = new ObservableContainerStub();
+        List<ContainerListener> listeners = container.listeners;
+
+        EmbeddedClassLoaderCache cache = new EmbeddedClassLoaderCache();
+        ClassLoader classLoader = cache.acquire("jetty9x", this.urls, null);
+        cache.acquire("jetty9x", this.urls, null);
+        cache.releaseWhenStopped(container, classLoader);
+        assertEquals(1, listeners.size());
+
+        ContainerListener listener = listeners.get(0);
+        listener.stateChanged(container, State.STARTING, State.STARTED);
+        assertEquals(2, cache.getReferences(classLoader));
+        listener.stateChanged(container, State.STOPPING, State.STOPPED);
+        assertEquals(1, cache.getReferences(classLoader));
+        assertTrue(listeners.isEmpty());
+        listener.stateChanged(container, State.STOPPING, State.STOPPED);
+        assertEquals(1, cache.getReferences(classLoader));
+    }
+}